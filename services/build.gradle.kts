@@ -4,6 +4,8 @@ plugins {
 
 testModuleInfo {
   requires("org.junit.jupiter.api")
+  // per-thread allocation counters for the main-method benchmarks
+  requires("jdk.management")
   runtimeOnly("org.junit.jupiter.engine")
 }
 
@@ -64,6 +66,8 @@ hardening {
       // (ResourceUtil) that no *Test* pattern matches
       "systems.glam.services.*Test*",
       "systems.glam.services.*Fuzz*",
+      // main-method benchmarks in the test sources are not under test
+      "systems.glam.services.*Benchmark*",
       "systems.glam.services.tests.*",
       // 'Integ.*' scratch files are git-ignored: present on a dev machine and
       // absent in CI, so mutating them would make the baseline
@@ -6,15 +6,68 @@ import systems.comodal.jsoniter.FieldBufferPredicate;
 import systems.comodal.jsoniter.JsonIterator;
 
 import java.time.Duration;
+import java.util.Locale;
 import java.util.Properties;
 import java.util.function.Supplier;
 
 import static systems.comodal.jsoniter.JsonIterator.fieldEquals;
 
-public record AccountFetcherConfig(Duration fetchDelay, boolean reactive) {
+/// `responseCacheTtl` enables the fetcher's read-through response cache when
+/// positive: the longest any cached response may be served for.
+///
+/// `maxBatchAge` bounds how long the batch planner may pass over a queued
+/// request in favor of better packed ones; once older, it is served ahead of
+/// priority work. Zero defaults it to three fetch delays, and no less than a
+/// second.
+///
+/// `dispatchQueueCapacity` is how many fetched batches may wait for one
+/// consumer before fetching blocks until it catches up.
+///
+/// `fetchMode` picks how requests spread over the RPC endpoints, see
+/// [FetchMode]. `hedgePercentile` is the fraction of recent fetches a hedged
+/// request waits to be slower than before it is re-sent.
+///
+/// `hotKeyChanges` enables websocket subscriptions for hot keys when
+/// positive: a polled key whose data changed at least this many times within
+/// one `hotKeyWindow` is subscribed to and served from its pushes rather than
+/// polled, for as long as its latest push is no older than one `fetchDelay`.
+/// Zero `hotKeyWindow` defaults it to a minute.
+///
+/// `maxPollInterval` enables an adaptive cadence for the always-fetch keys
+/// when positive: keys whose data stays the same while slots advance back off
+/// exponentially from every request to at most this interval, and are fetched
+/// on their own once it passes. Callers can bound classes of keys tighter, see
+/// `AccountFetcher.boundPollInterval`.
+public record AccountFetcherConfig(Duration fetchDelay,
+                                   boolean reactive,
+                                   int fetchLanes,
+                                   Duration responseCacheTtl,
+                                   Duration maxBatchAge,
+                                   int dispatchQueueCapacity,
+                                   FetchMode fetchMode,
+                                   double hedgePercentile,
+                                   int hotKeyChanges,
+                                   Duration hotKeyWindow,
+                                   Duration maxPollInterval) {
+
+  public static final int DEFAULT_DISPATCH_QUEUE_CAPACITY = 16;
+  public static final double DEFAULT_HEDGE_PERCENTILE = 0.95;
+
+  public enum FetchMode {
+    /// Each request goes to whichever endpoint the RPC load balancer picks.
+    BALANCED,
+    /// A request that outlasts the hedge percentile is re-sent to a second
+    /// endpoint, and the first usable answer wins.
+    HEDGED,
+    /// Each batch goes to the endpoint its keys hash to.
+    SHARDED
+  }
 
   public static AccountFetcherConfig createDefault() {
-    return new AccountFetcherConfig(Duration.ofSeconds(5), false);
+    return new AccountFetcherConfig(
+        Duration.ofSeconds(5), false, 1, Duration.ZERO, Duration.ZERO, DEFAULT_DISPATCH_QUEUE_CAPACITY,
+        FetchMode.BALANCED, DEFAULT_HEDGE_PERCENTILE, 0, Duration.ZERO, Duration.ZERO
+    );
   }
 
   public static AccountFetcherConfig parseConfig(final Properties properties) {
@@ -35,6 +88,15 @@ public record AccountFetcherConfig(Duration fetchDelay, boolean reactive) {
 
     private Duration fetchDelay;
     private boolean reactive;
+    private int fetchLanes = 1;
+    private Duration responseCacheTtl;
+    private Duration maxBatchAge;
+    private int dispatchQueueCapacity = DEFAULT_DISPATCH_QUEUE_CAPACITY;
+    private FetchMode fetchMode = FetchMode.BALANCED;
+    private double hedgePercentile = DEFAULT_HEDGE_PERCENTILE;
+    private int hotKeyChanges;
+    private Duration hotKeyWindow;
+    private Duration maxPollInterval;
 
     private Parser() {
     }
@@ -46,13 +108,58 @@ public record AccountFetcherConfig(Duration fetchDelay, boolean reactive) {
         this.fetchDelay = fetchDelay;
       }
       this.reactive = parseBoolean(properties, p, "reactive", this.reactive);
+      final var fetchLanes = getProperty(properties, p, "fetchLanes");
+      if (fetchLanes != null) {
+        this.fetchLanes = Integer.parseInt(fetchLanes);
+      }
+      final var responseCacheTtl = parseDuration(properties, p, "responseCacheTtl");
+      if (responseCacheTtl != null) {
+        this.responseCacheTtl = responseCacheTtl;
+      }
+      final var maxBatchAge = parseDuration(properties, p, "maxBatchAge");
+      if (maxBatchAge != null) {
+        this.maxBatchAge = maxBatchAge;
+      }
+      final var dispatchQueueCapacity = getProperty(properties, p, "dispatchQueueCapacity");
+      if (dispatchQueueCapacity != null) {
+        this.dispatchQueueCapacity = Integer.parseInt(dispatchQueueCapacity);
+      }
+      final var fetchMode = getProperty(properties, p, "fetchMode");
+      if (fetchMode != null) {
+        this.fetchMode = FetchMode.valueOf(fetchMode.toUpperCase(Locale.ENGLISH));
+      }
+      final var hedgePercentile = getProperty(properties, p, "hedgePercentile");
+      if (hedgePercentile != null) {
+        this.hedgePercentile = Double.parseDouble(hedgePercentile);
+      }
+      final var hotKeyChanges = getProperty(properties, p, "hotKeyChanges");
+      if (hotKeyChanges != null) {
+        this.hotKeyChanges = Integer.parseInt(hotKeyChanges);
+      }
+      final var hotKeyWindow = parseDuration(properties, p, "hotKeyWindow");
+      if (hotKeyWindow != null) {
+        this.hotKeyWindow = hotKeyWindow;
+      }
+      final var maxPollInterval = parseDuration(properties, p, "maxPollInterval");
+      if (maxPollInterval != null) {
+        this.maxPollInterval = maxPollInterval;
+      }
     }
 
     @Override
     public AccountFetcherConfig get() {
       return new AccountFetcherConfig(
           fetchDelay == null ? Duration.ofSeconds(5) : fetchDelay,
-          reactive
+          reactive,
+          fetchLanes,
+          responseCacheTtl == null ? Duration.ZERO : responseCacheTtl,
+          maxBatchAge == null ? Duration.ZERO : maxBatchAge,
+          dispatchQueueCapacity,
+          fetchMode,
+          hedgePercentile,
+          hotKeyChanges,
+          hotKeyWindow == null ? Duration.ZERO : hotKeyWindow,
+          maxPollInterval == null ? Duration.ZERO : maxPollInterval
       );
     }
 
@@ -62,6 +169,24 @@ public record AccountFetcherConfig(Duration fetchDelay, boolean reactive) {
         fetchDelay = ServiceConfigUtil.parseDuration(ji);
       } else if (fieldEquals("reactive", buf, offset, len)) {
         reactive = ji.readBoolean();
+      } else if (fieldEquals("fetchLanes", buf, offset, len)) {
+        fetchLanes = ji.readInt();
+      } else if (fieldEquals("responseCacheTtl", buf, offset, len)) {
+        responseCacheTtl = ServiceConfigUtil.parseDuration(ji);
+      } else if (fieldEquals("maxBatchAge", buf, offset, len)) {
+        maxBatchAge = ServiceConfigUtil.parseDuration(ji);
+      } else if (fieldEquals("dispatchQueueCapacity", buf, offset, len)) {
+        dispatchQueueCapacity = ji.readInt();
+      } else if (fieldEquals("fetchMode", buf, offset, len)) {
+        fetchMode = FetchMode.valueOf(ji.readString().toUpperCase(Locale.ENGLISH));
+      } else if (fieldEquals("hedgePercentile", buf, offset, len)) {
+        hedgePercentile = ji.readDouble();
+      } else if (fieldEquals("hotKeyChanges", buf, offset, len)) {
+        hotKeyChanges = ji.readInt();
+      } else if (fieldEquals("hotKeyWindow", buf, offset, len)) {
+        hotKeyWindow = ServiceConfigUtil.parseDuration(ji);
+      } else if (fieldEquals("maxPollInterval", buf, offset, len)) {
+        maxPollInterval = ServiceConfigUtil.parseDuration(ji);
       } else {
         throw new IllegalStateException("Unknown AccountFetcherConfig field " + new String(buf, offset, len));
       }
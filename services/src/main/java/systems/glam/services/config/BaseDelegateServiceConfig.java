@@ -201,23 +201,20 @@ public record BaseDelegateServiceConfig(PublicKey glamStateKey,
   @Override
   public ExecutionServiceContext createExecutionServiceContext(final ServiceContext serviceContext,
                                                                final EpochInfoService epochInfoService,
-                                                               final InstructionProcessor instructionProcessor) {
+                                                               final InstructionProcessor instructionProcessor,
+                                                               final AccountFetcher accountFetcher) {
     return ExecutionServiceContext.createContext(
         serviceContext,
         epochInfoService,
         instructionProcessor,
-        instructions -> Transaction.createTx(serviceContext.serviceKey(), instructions)
+        instructions -> Transaction.createTx(serviceContext.serviceKey(), instructions),
+        accountFetcher.slotClock()
     );
   }
 
   @Override
   public AccountFetcher createAccountFetcher(final Set<PublicKey> alwaysFetch) {
-    return AccountFetcher.createFetcher(
-        accountFetcherConfig.fetchDelay(),
-        accountFetcherConfig.reactive(),
-        rpcCaller,
-        alwaysFetch
-    );
+    return AccountFetcher.createFetcher(accountFetcherConfig, rpcCaller, alwaysFetch);
   }
 
   public static class ConfigParser implements FieldBufferPredicate {
@@ -11,6 +11,13 @@ import java.util.function.Supplier;
 
 import static systems.comodal.jsoniter.JsonIterator.fieldEquals;
 
+/// How often each class of accounts is polled to catch changes a subscription
+/// or the program scans missed. Each is the delay handed to the cache owning
+/// that class, such as `globalConfig` to `GlobalConfigCache.initCache`,
+/// `integTables` to `IntegLookupTableCache.initCache` and `kaminoScope` to
+/// `KaminoCache.initService`. Those owners also bound their keys' adaptive poll
+/// cadence by it through `AccountFetcher.boundPollInterval`, so an always
+/// fetched key is never backed off past its class's guarantee.
 public record DefensivePollingConfig(Duration globalConfig,
                                      Duration glamStateAccounts,
                                      Duration integTables,
@@ -113,9 +113,12 @@ public interface DelegateServiceConfig {
 
   MintCache createMintCache();
 
+  /// The context shares `accountFetcher`'s slot clock, which every fetch and
+  /// push through the fetcher feeds.
   ExecutionServiceContext createExecutionServiceContext(final ServiceContext serviceContext,
                                                         final EpochInfoService epochInfoService,
-                                                        final InstructionProcessor instructionProcessor);
+                                                        final InstructionProcessor instructionProcessor,
+                                                        final AccountFetcher accountFetcher);
 
   AccountFetcher createAccountFetcher(final Set<PublicKey> alwaysFetch);
 }
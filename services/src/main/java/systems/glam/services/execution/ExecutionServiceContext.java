@@ -8,6 +8,7 @@ import software.sava.rpc.json.http.response.AccountInfo;
 import software.sava.services.solana.epoch.EpochInfoService;
 import software.sava.services.solana.remote.call.RpcCaller;
 import systems.glam.services.ServiceContext;
+import systems.glam.services.rpc.SlotClock;
 
 import java.util.List;
 import java.util.Map;
@@ -18,12 +19,14 @@ public interface ExecutionServiceContext {
   static ExecutionServiceContext createContext(final ServiceContext serviceContext,
                                                final EpochInfoService epochInfoService,
                                                final InstructionProcessor instructionProcessor,
-                                               final Function<List<Instruction>, Transaction> transactionFactory) {
+                                               final Function<List<Instruction>, Transaction> transactionFactory,
+                                               final SlotClock slotClock) {
     return new ExecutionServiceContextImpl(
         serviceContext,
         epochInfoService,
         instructionProcessor,
-        transactionFactory
+        transactionFactory,
+        slotClock
     );
   }
 
@@ -45,6 +48,11 @@ public interface ExecutionServiceContext {
 
   long medianMillisPerSlot();
 
+  /// The account fetcher's, fitted to the slots of every fetch and push
+  /// through it as well as this service's own reads; see [SlotClock]. Falls
+  /// back on [#medianMillisPerSlot()] until it has an estimate.
+  SlotClock slotClock();
+
   boolean processInstructions(final String logContext,
                               final List<Instruction> instructions) throws InterruptedException;
 
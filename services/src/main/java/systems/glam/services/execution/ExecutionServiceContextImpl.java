@@ -4,6 +4,7 @@ import software.sava.core.tx.Instruction;
 import software.sava.core.tx.Transaction;
 import software.sava.services.solana.epoch.EpochInfoService;
 import systems.glam.services.ServiceContext;
+import systems.glam.services.rpc.SlotClock;
 
 import java.util.List;
 import java.util.function.Function;
@@ -13,15 +14,18 @@ final class ExecutionServiceContextImpl extends BaseServiceContext implements Ex
   private final EpochInfoService epochInfoService;
   private final InstructionProcessor instructionProcessor;
   private final Function<List<Instruction>, Transaction> transactionFactory;
+  private final SlotClock slotClock;
 
   ExecutionServiceContextImpl(final ServiceContext serviceContext,
                               final EpochInfoService epochInfoService,
                               final InstructionProcessor instructionProcessor,
-                              final Function<List<Instruction>, Transaction> transactionFactory) {
+                              final Function<List<Instruction>, Transaction> transactionFactory,
+                              final SlotClock slotClock) {
     super(serviceContext);
     this.epochInfoService = epochInfoService;
     this.instructionProcessor = instructionProcessor;
     this.transactionFactory = transactionFactory;
+    this.slotClock = slotClock;
   }
 
   @Override
@@ -49,6 +53,11 @@ final class ExecutionServiceContextImpl extends BaseServiceContext implements Ex
     return epochInfoService.epochInfo().medianMillisPerSlot();
   }
 
+  @Override
+  public SlotClock slotClock() {
+    return slotClock;
+  }
+
   @Override
   public boolean processInstructions(final String logContext,
                                      final List<Instruction> instructions) throws InterruptedException {
@@ -12,6 +12,8 @@ import systems.glam.services.execution.ExecutionServiceContext;
 import systems.glam.services.fulfillment.accounting.RedemptionSummary;
 import systems.glam.services.mints.MintContext;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.util.*;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
@@ -72,16 +74,26 @@ public abstract class BaseFulfillmentService extends BaseDelegateService
   protected abstract void handleVault() throws InterruptedException;
 
   protected final void fetchAccounts() {
+    final long requestedAt = System.currentTimeMillis();
     final var accountsNeeded = serviceContext.rpcCaller().courteousGet(
         rpcClient -> rpcClient.getAccounts(accountsNeededList),
         "rpcClient::getPositionRelatedAccounts"
     );
+    final long receivedAt = System.currentTimeMillis();
     accountsNeededMap.clear();
+    long slot = 0;
     for (final var accountInfo : accountsNeeded) {
       if (accountInfo != null) {
         accountsNeededMap.put(accountInfo.pubKey(), accountInfo);
+        final var context = accountInfo.context();
+        if (context != null) {
+          slot = Math.max(slot, context.slot());
+        }
       }
     }
+    if (slot != 0) {
+      serviceContext.slotClock().observe(slot, Instant.ofEpochMilli(requestedAt + ((receivedAt - requestedAt) / 2)));
+    }
   }
 
   protected final RedemptionSummary redemptionSummary(final Clock clock) {
@@ -160,6 +172,12 @@ public abstract class BaseFulfillmentService extends BaseDelegateService
     if (redeemWindowInSeconds) {
       return SECONDS.toNanos(availableAt - redemptionSummary.epochSeconds());
     } else {
+      // wait out the estimate's error too, so the timer lands after the slot
+      // rather than before it
+      final var slotTime = serviceContext.slotClock().timeOfSlot(availableAt);
+      if (slotTime != null) {
+        return Math.max(0, Duration.between(Instant.now(), slotTime.latest()).toNanos());
+      }
       final long millisPerSlot = serviceContext.medianMillisPerSlot();
       return MILLISECONDS.toNanos((availableAt - redemptionSummary.slot()) * millisPerSlot);
     }
@@ -127,6 +127,7 @@ final class SingleAssetFulfillmentService extends BaseFulfillmentService {
   public void accept(final AccountInfo<byte[]> accountInfo) {
     try {
       final long slot = accountInfo.context().slot();
+      serviceContext.slotClock().observe(slot, Instant.now());
       final byte[] data = accountInfo.data();
       final var owner = accountInfo.owner();
 
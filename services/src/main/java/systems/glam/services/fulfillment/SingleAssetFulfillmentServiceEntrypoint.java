@@ -11,6 +11,7 @@ import systems.glam.sdk.*;
 import systems.glam.sdk.idl.programs.glam.mint.gen.GlamMintConstants;
 import systems.glam.services.fulfillment.config.FulfillmentServiceConfig;
 import systems.glam.services.mints.MintContext;
+import systems.glam.services.rpc.AccountFetcher;
 
 import java.net.http.HttpClient;
 import java.util.*;
@@ -22,6 +23,7 @@ import static java.lang.System.Logger.Level.*;
 
 public record SingleAssetFulfillmentServiceEntrypoint(WebSocketManager webSocketManager,
                                                       EpochInfoService epochInfoService,
+                                                      AccountFetcher accountFetcher,
                                                       FulfillmentService fulfillmentService) implements Runnable {
 
   private static final System.Logger logger = System.getLogger(SingleAssetFulfillmentServiceEntrypoint.class.getName());
@@ -166,8 +168,14 @@ public record SingleAssetFulfillmentServiceEntrypoint(WebSocketManager webSocket
         glamAccounts
     );
 
+    // the fulfillment service's slot timing reads the fetcher's clock, fed by
+    // every fetch and push through it
+    final var accountFetcher = delegateServiceConfig.createAccountFetcher(Set.of());
+    webSocketConsumers.add(accountFetcher::subscribe);
+    accountFetcher.subscribe(webSocketManager.webSocket());
+
     final var executionServiceContext = delegateServiceConfig.createExecutionServiceContext(
-        serviceContext, epochInfoService, instructionProcessor
+        serviceContext, epochInfoService, instructionProcessor, accountFetcher
     );
 
     final var fulfillmentService = FulfillmentService.createSingleAssetService(
@@ -181,7 +189,9 @@ public record SingleAssetFulfillmentServiceEntrypoint(WebSocketManager webSocket
     webSocketConsumers.add(fulfillmentService::subscribe);
     fulfillmentService.subscribe(webSocketManager.webSocket());
 
-    return new SingleAssetFulfillmentServiceEntrypoint(webSocketManager, epochInfoService, fulfillmentService);
+    return new SingleAssetFulfillmentServiceEntrypoint(
+        webSocketManager, epochInfoService, accountFetcher, fulfillmentService
+    );
   }
 
   // package-private so tests can drive the gate directly (same precedent as
@@ -202,8 +212,9 @@ public record SingleAssetFulfillmentServiceEntrypoint(WebSocketManager webSocket
 
   @Override
   public void run() {
-    try (final var executorService = Executors.newFixedThreadPool(2)) {
+    try (final var executorService = Executors.newFixedThreadPool(3)) {
       executorService.execute(epochInfoService);
+      executorService.execute(accountFetcher);
       executorService.execute(fulfillmentService);
       for (; ; ) {
         webSocketManager.checkConnection();
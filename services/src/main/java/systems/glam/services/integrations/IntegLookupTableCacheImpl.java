@@ -11,6 +11,7 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentMap;
@@ -52,7 +53,13 @@ final class IntegLookupTableCacheImpl implements IntegLookupTableCache {
   public void run() {
     try {
       for (; ; ) {
-        accountFetcher.queueBatchable(List.copyOf(integrationTables.keySet()), this);
+        // a defensive poll: good enough as long as it lands before the next one
+        final var fetchBy = Instant.now().plus(fetchDelay);
+        final var tableKeys = List.copyOf(integrationTables.keySet());
+        // should the fetcher also fetch them always, it must not back off
+        // past this poll
+        accountFetcher.boundPollInterval(tableKeys, fetchDelay);
+        accountFetcher.queueBatchableBy(tableKeys, fetchBy, this);
         //noinspection BusyWait
         Thread.sleep(fetchDelay);
       }
@@ -13,6 +13,8 @@ import software.sava.rpc.json.http.client.ProgramAccountsRequest;
 import software.sava.rpc.json.http.response.AccountInfo;
 import software.sava.rpc.json.http.ws.SolanaRpcWebsocket;
 import software.sava.services.solana.remote.call.RpcCaller;
+import systems.glam.services.io.AccountData;
+import systems.glam.services.io.AccountSnapshot;
 import systems.glam.services.io.FileUtils;
 import systems.glam.services.oracles.scope.MappingsContext;
 import systems.glam.services.oracles.scope.ScopeFeedContext;
@@ -25,6 +27,7 @@ import java.nio.file.Path;
 import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.function.Consumer;
@@ -32,7 +35,7 @@ import java.util.function.Consumer;
 import static software.sava.core.accounts.PublicKey.PUBLIC_KEY_LENGTH;
 import static systems.glam.services.integrations.kamino.KaminoCacheImpl.*;
 
-public interface KaminoCache extends ScopeAggregateIndexes, Runnable, Consumer<AccountInfo<byte[]>> {
+public interface KaminoCache extends ScopeAggregateIndexes, Runnable, Consumer<AccountInfo<byte[]>>, AutoCloseable {
 
   private static ProgramAccountsRequest<byte[]> scopeConfigurationAccountsRequest(final KaminoAccounts kaminoAccounts) {
     return ProgramAccountsRequest.build()
@@ -58,10 +61,33 @@ public interface KaminoCache extends ScopeAggregateIndexes, Runnable, Consumer<A
         .createRequest();
   }
 
+  private static void fetchReservePartitions(final RpcCaller rpcCaller,
+                                             final PublicKey kLendProgram,
+                                             final Consumer<AccountInfo<byte[]>> consumer) {
+    try {
+      ReservePartitions.fetchReserves(rpcCaller, kLendProgram, consumer);
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new CompletionException(e);
+    }
+  }
+
   static CompletableFuture<KaminoCache> initService(final RpcCaller rpcCaller,
                                                     final AccountFetcher accountFetcher,
                                                     final KaminoAccounts kaminoAccounts,
                                                     final Duration pollingDelay) {
+    return initService(rpcCaller, accountFetcher, kaminoAccounts, pollingDelay, false);
+  }
+
+  /// With `partitionReserves` the reserves are fetched with one request per
+  /// lending market, all in flight at once and parsed as each lands, here and
+  /// in the full sweeps of the poll loop, rather than with one request for
+  /// the whole lending program.
+  static CompletableFuture<KaminoCache> initService(final RpcCaller rpcCaller,
+                                                    final AccountFetcher accountFetcher,
+                                                    final KaminoAccounts kaminoAccounts,
+                                                    final Duration pollingDelay,
+                                                    final boolean partitionReserves) {
     return CompletableFuture.supplyAsync(() -> {
       final var kLendProgram = kaminoAccounts.kLendProgram();
       final var scopeProgram = kaminoAccounts.scopePricesProgram();
@@ -81,7 +107,7 @@ public interface KaminoCache extends ScopeAggregateIndexes, Runnable, Consumer<A
       );
 
       final var reserveAccountsRequest = reserveAccountsRequest(kaminoAccounts);
-      final var reserveAccountsFuture = rpcCaller.courteousCall(
+      final var reserveAccountsFuture = partitionReserves ? null : rpcCaller.courteousCall(
           rpcClient -> rpcClient.getProgramAccounts(reserveAccountsRequest),
           "rpcClient#getKaminoReserves"
       );
@@ -107,8 +133,15 @@ public interface KaminoCache extends ScopeAggregateIndexes, Runnable, Consumer<A
         }
       }
 
-      final var reserveAccounts = reserveAccountsFuture.join();
-      final var reserveContextMap = new ConcurrentHashMap<PublicKey, ReserveContext>(Integer.highestOneBit(reserveAccounts.size()) << 1);
+      final List<AccountInfo<byte[]>> reserveAccounts;
+      final ConcurrentMap<PublicKey, ReserveContext> reserveContextMap;
+      if (reserveAccountsFuture == null) {
+        reserveAccounts = null;
+        reserveContextMap = new ConcurrentHashMap<>(512);
+      } else {
+        reserveAccounts = reserveAccountsFuture.join();
+        reserveContextMap = new ConcurrentHashMap<>(Integer.highestOneBit(reserveAccounts.size()) << 1);
+      }
 
       final int priceFeedKeyFromOffset = Reserve.CONFIG_OFFSET + ReserveConfig.TOKEN_INFO_OFFSET + TokenInfo.SCOPE_CONFIGURATION_OFFSET;
       final int priceFeedKeyToOffset = priceFeedKeyFromOffset + PUBLIC_KEY_LENGTH;
@@ -116,7 +149,7 @@ public interface KaminoCache extends ScopeAggregateIndexes, Runnable, Consumer<A
       final byte[] nilKeyBytes = KaminoAccounts.NULL_KEY.toByteArray();
 
       final var noMappings = Map.<PublicKey, MappingsContext>of();
-      for (final var reserveAccountInfo : reserveAccounts) {
+      final Consumer<AccountInfo<byte[]>> keepFeedless = reserveAccountInfo -> {
         final byte[] data = reserveAccountInfo.data();
         if (Arrays.equals(
             data, priceFeedKeyFromOffset, priceFeedKeyToOffset,
@@ -128,6 +161,11 @@ public interface KaminoCache extends ScopeAggregateIndexes, Runnable, Consumer<A
           final var reserveContext = ReserveContext.createContext(reserveAccountInfo, noMappings);
           reserveContextMap.put(reserveContext.pubKey(), reserveContext);
         }
+      };
+      if (reserveAccounts == null) {
+        fetchReservePartitions(rpcCaller, kLendProgram, keepFeedless);
+      } else {
+        reserveAccounts.forEach(keepFeedless);
       }
 
       final var mappingAccountList = List.copyOf(mappingAccountKeys);
@@ -175,16 +213,18 @@ public interface KaminoCache extends ScopeAggregateIndexes, Runnable, Consumer<A
           kVaultsProgram,
           reserveAccountsRequest,
           KVaultsRequest,
+          partitionReserves,
           pollingDelay,
           null,
           null,
           null,
+          null,
           feedContextMap,
           mappingsContextMap,
           reserveContextMap,
           vaultStateMap
       );
-      accountFetcher.listenToAll(cache);
+      accountFetcher.listenToChanges(cache);
       return cache;
     });
   }
@@ -194,177 +234,281 @@ public interface KaminoCache extends ScopeAggregateIndexes, Runnable, Consumer<A
                                                     final AccountFetcher accountFetcher,
                                                     final KaminoAccounts kaminoAccounts,
                                                     final Duration pollingDelay) {
+    return initService(kaminoAccountsPath, rpcCaller, accountFetcher, kaminoAccounts, pollingDelay, false);
+  }
+
+  /// See [#initService(RpcCaller, AccountFetcher, KaminoAccounts, Duration, boolean)]
+  /// for `partitionReserves`.
+  static CompletableFuture<KaminoCache> initService(final Path kaminoAccountsPath,
+                                                    final RpcCaller rpcCaller,
+                                                    final AccountFetcher accountFetcher,
+                                                    final KaminoAccounts kaminoAccounts,
+                                                    final Duration pollingDelay,
+                                                    final boolean partitionReserves) {
+    return CompletableFuture.supplyAsync(() -> initStoredService(
+        kaminoAccountsPath, null,
+        rpcCaller, accountFetcher, kaminoAccounts, pollingDelay, partitionReserves
+    ));
+  }
+
+  /// Keeps the Scope configurations, their mappings and the reserves in the
+  /// single memory-mapped [AccountSnapshot] at `snapshotFilePath`, rather than
+  /// in a directory tree holding one compressed file per account. A start
+  /// reads the snapshot's index and copies each account out of the mapping,
+  /// with no directories to walk and nothing to inflate, and a change is
+  /// written over the account in place.
+  ///
+  /// See [#initService(RpcCaller, AccountFetcher, KaminoAccounts, Duration, boolean)]
+  /// for `partitionReserves`.
+  static CompletableFuture<KaminoCache> initSnapshotService(final Path snapshotFilePath,
+                                                            final RpcCaller rpcCaller,
+                                                            final AccountFetcher accountFetcher,
+                                                            final KaminoAccounts kaminoAccounts,
+                                                            final Duration pollingDelay,
+                                                            final boolean partitionReserves) {
     return CompletableFuture.supplyAsync(() -> {
+      final var snapshot = AccountSnapshot.openSnapshot(snapshotFilePath);
       try {
-        final var reserveDataFilePath = kaminoAccountsPath.resolve("reserves");
-        final var scopeAccountsPath = kaminoAccountsPath.resolve("scope");
-        final var configurationsPath = scopeAccountsPath.resolve("configurations");
-        final var mappingsPath = scopeAccountsPath.resolve("mappings");
-        final var kLendProgram = kaminoAccounts.kLendProgram();
-        final var scopeProgram = kaminoAccounts.scopePricesProgram();
-        final var kVaultsProgram = kaminoAccounts.kVaultsProgram();
-
-        final var KVaultsRequest = kVaultAccountsRequest(kaminoAccounts);
-        final var vaultStateAccountsFuture = rpcCaller.courteousCall(
-            rpcClient -> rpcClient.getProgramAccounts(KVaultsRequest),
-            "rpcClient#getKaminoVaultAccounts"
+        return initStoredService(
+            null, snapshot,
+            rpcCaller, accountFetcher, kaminoAccounts, pollingDelay, partitionReserves
         );
+      } catch (final RuntimeException e) {
+        snapshot.close();
+        throw e;
+      }
+    });
+  }
+
+  /// Starts from the accounts kept under `kaminoAccountsPath`, or in
+  /// `snapshot` when it is not null.
+  private static KaminoCache initStoredService(final Path kaminoAccountsPath,
+                                               final AccountSnapshot snapshot,
+                                               final RpcCaller rpcCaller,
+                                               final AccountFetcher accountFetcher,
+                                               final KaminoAccounts kaminoAccounts,
+                                               final Duration pollingDelay,
+                                               final boolean partitionReserves) {
+    try {
+      final Path reserveDataFilePath;
+      final Path configurationsPath;
+      final Path mappingsPath;
+      if (snapshot == null) {
+        reserveDataFilePath = kaminoAccountsPath.resolve("reserves");
+        final var scopeAccountsPath = kaminoAccountsPath.resolve("scope");
+        configurationsPath = scopeAccountsPath.resolve("configurations");
+        mappingsPath = scopeAccountsPath.resolve("mappings");
+      } else {
+        reserveDataFilePath = null;
+        configurationsPath = null;
+        mappingsPath = null;
+      }
+      final var kLendProgram = kaminoAccounts.kLendProgram();
+      final var scopeProgram = kaminoAccounts.scopePricesProgram();
+      final var kVaultsProgram = kaminoAccounts.kVaultsProgram();
 
-        final var reserveAccountsRequest = reserveAccountsRequest(kaminoAccounts);
+      final var KVaultsRequest = kVaultAccountsRequest(kaminoAccounts);
+      final var vaultStateAccountsFuture = rpcCaller.courteousCall(
+          rpcClient -> rpcClient.getProgramAccounts(KVaultsRequest),
+          "rpcClient#getKaminoVaultAccounts"
+      );
 
-        final int priceFeedKeyFromOffset = Reserve.CONFIG_OFFSET + ReserveConfig.TOKEN_INFO_OFFSET + TokenInfo.SCOPE_CONFIGURATION_OFFSET;
-        final int priceFeedKeyToOffset = priceFeedKeyFromOffset + PUBLIC_KEY_LENGTH;
-        final byte[] nullKeyBytes = PublicKey.NONE.toByteArray();
-        final byte[] nilKeyBytes = KaminoAccounts.NULL_KEY.toByteArray();
+      final var reserveAccountsRequest = reserveAccountsRequest(kaminoAccounts);
 
-        final ConcurrentMap<PublicKey, ReserveContext> reserveContextMap;
-        final List<AccountInfo<byte[]>> reserveAccounts;
-        final Set<PublicKey> priceFeedsNeeded;
-        if (Files.exists(reserveDataFilePath)) {
+      final int priceFeedKeyFromOffset = Reserve.CONFIG_OFFSET + ReserveConfig.TOKEN_INFO_OFFSET + TokenInfo.SCOPE_CONFIGURATION_OFFSET;
+      final int priceFeedKeyToOffset = priceFeedKeyFromOffset + PUBLIC_KEY_LENGTH;
+      final byte[] nullKeyBytes = PublicKey.NONE.toByteArray();
+      final byte[] nilKeyBytes = KaminoAccounts.NULL_KEY.toByteArray();
+
+      final var storedConfigurations = new ArrayList<AccountData>();
+      final var storedMappings = new ArrayList<AccountData>();
+      final var storedReserves = new ArrayList<AccountData>();
+      if (snapshot != null) {
+        readSnapshot(snapshot, storedConfigurations, storedMappings, storedReserves);
+      }
+
+      final ConcurrentMap<PublicKey, ReserveContext> reserveContextMap;
+      final List<AccountInfo<byte[]>> reserveAccounts;
+      final Set<PublicKey> priceFeedsNeeded;
+      if (snapshot == null ? Files.exists(reserveDataFilePath) : !storedReserves.isEmpty()) {
+        reserveContextMap = new ConcurrentHashMap<>(512);
+        reserveAccounts = List.of();
+        priceFeedsNeeded = Set.of();
+      } else {
+        if (partitionReserves) {
+          reserveAccounts = new ArrayList<>(512);
           reserveContextMap = new ConcurrentHashMap<>(512);
-          reserveAccounts = List.of();
-          priceFeedsNeeded = Set.of();
         } else {
           reserveAccounts = rpcCaller.courteousGet(
               rpcClient -> rpcClient.getProgramAccounts(reserveAccountsRequest),
               "rpcClient#getKaminoReserves"
           );
           reserveContextMap = new ConcurrentHashMap<>(Integer.highestOneBit(reserveAccounts.size()) << 1);
-
-          final var noMappings = Map.<PublicKey, MappingsContext>of();
-          priceFeedsNeeded = HashSet.newHashSet(8);
-
-          for (final var reserveAccountInfo : reserveAccounts) {
-            final byte[] data = reserveAccountInfo.data();
-            if (Arrays.equals(
-                data, priceFeedKeyFromOffset, priceFeedKeyToOffset,
-                nullKeyBytes, 0, nullKeyBytes.length
-            ) || Arrays.equals(
-                data, priceFeedKeyFromOffset, priceFeedKeyToOffset,
-                nilKeyBytes, 0, nilKeyBytes.length
-            )) {
-              final var reserveContext = ReserveContext.createContext(reserveAccountInfo, noMappings);
-              reserveContextMap.put(reserveContext.pubKey(), reserveContext);
-            } else {
-              final var priceFeedKey = PublicKey.readPubKey(data, priceFeedKeyFromOffset);
-              priceFeedsNeeded.add(priceFeedKey);
-            }
-          }
         }
 
-        final var feedContextMap = KaminoCache.loadFeedContexts(configurationsPath);
-        // Note: New Configurations will be discovered indirectly via Kamino Lending Reserves.
-        final CompletableFuture<List<AccountInfo<byte[]>>> scopeConfigurationsFuture;
-        if (feedContextMap.keySet().containsAll(priceFeedsNeeded) && !feedContextMap.isEmpty()) {
-          scopeConfigurationsFuture = null;
+        final var noMappings = Map.<PublicKey, MappingsContext>of();
+        priceFeedsNeeded = HashSet.newHashSet(8);
+
+        final Consumer<AccountInfo<byte[]>> sortReserve = reserveAccountInfo -> {
+          final byte[] data = reserveAccountInfo.data();
+          if (Arrays.equals(
+              data, priceFeedKeyFromOffset, priceFeedKeyToOffset,
+              nullKeyBytes, 0, nullKeyBytes.length
+          ) || Arrays.equals(
+              data, priceFeedKeyFromOffset, priceFeedKeyToOffset,
+              nilKeyBytes, 0, nilKeyBytes.length
+          )) {
+            final var reserveContext = ReserveContext.createContext(reserveAccountInfo, noMappings);
+            reserveContextMap.put(reserveContext.pubKey(), reserveContext);
+          } else {
+            final var priceFeedKey = PublicKey.readPubKey(data, priceFeedKeyFromOffset);
+            priceFeedsNeeded.add(priceFeedKey);
+          }
+        };
+        if (partitionReserves) {
+          fetchReservePartitions(rpcCaller, kLendProgram, reserveAccountInfo -> {
+            reserveAccounts.add(reserveAccountInfo);
+            sortReserve.accept(reserveAccountInfo);
+          });
         } else {
-          final var configAccountsRequest = scopeConfigurationAccountsRequest(kaminoAccounts);
-          scopeConfigurationsFuture = rpcCaller.courteousCall(
-              rpcClient -> rpcClient.getProgramAccounts(configAccountsRequest),
-              "Scope Configuration accounts"
-          );
+          reserveAccounts.forEach(sortReserve);
         }
+      }
 
-        if (scopeConfigurationsFuture != null) {
-          final var configurationAccounts = scopeConfigurationsFuture.join();
-          for (final var accountInfo : configurationAccounts) {
-            if (accountInfo != null) {
-              final byte[] data = accountInfo.data();
-              if (data.length != MIN_CONFIGURATION_LENGTH || !Configuration.DISCRIMINATOR.equals(data, 0)) {
-                throw new IllegalStateException(String.format(
-                    "%s is not a valid Scope Configuration account.", accountInfo.pubKey()
-                ));
-              }
-              final var feedContext = ScopeFeedContext.createContext(accountInfo);
-              feedContextMap.put(feedContext.configurationKey(), feedContext);
-              feedContextMap.put(feedContext.oracleMappings(), feedContext);
-              feedContextMap.put(feedContext.priceFeed(), feedContext);
+      final var feedContextMap = snapshot == null
+          ? KaminoCache.loadFeedContexts(configurationsPath)
+          : KaminoCache.loadFeedContexts(storedConfigurations);
+      // Note: New Configurations will be discovered indirectly via Kamino Lending Reserves.
+      final CompletableFuture<List<AccountInfo<byte[]>>> scopeConfigurationsFuture;
+      if (feedContextMap.keySet().containsAll(priceFeedsNeeded) && !feedContextMap.isEmpty()) {
+        scopeConfigurationsFuture = null;
+      } else {
+        final var configAccountsRequest = scopeConfigurationAccountsRequest(kaminoAccounts);
+        scopeConfigurationsFuture = rpcCaller.courteousCall(
+            rpcClient -> rpcClient.getProgramAccounts(configAccountsRequest),
+            "Scope Configuration accounts"
+        );
+      }
+
+      if (scopeConfigurationsFuture != null) {
+        final var configurationAccounts = scopeConfigurationsFuture.join();
+        for (final var accountInfo : configurationAccounts) {
+          if (accountInfo != null) {
+            final byte[] data = accountInfo.data();
+            if (data.length != MIN_CONFIGURATION_LENGTH || !Configuration.DISCRIMINATOR.equals(data, 0)) {
+              throw new IllegalStateException(String.format(
+                  "%s is not a valid Scope Configuration account.", accountInfo.pubKey()
+              ));
+            }
+            final var feedContext = ScopeFeedContext.createContext(accountInfo);
+            feedContextMap.put(feedContext.configurationKey(), feedContext);
+            feedContextMap.put(feedContext.oracleMappings(), feedContext);
+            feedContextMap.put(feedContext.priceFeed(), feedContext);
+            if (snapshot == null) {
               writeScopeConfiguration(configurationsPath, feedContext);
+            } else {
+              snapshot.write(feedContext.configurationKey(), feedContext.slot(), feedContext.configurationData());
             }
           }
         }
+      }
 
-        final var mappingsContextMap = loadMappings(mappingsPath, feedContextMap);
+      final var mappingsContextMap = snapshot == null
+          ? loadMappings(mappingsPath, feedContextMap)
+          : loadMappings(storedMappings, feedContextMap);
 
-        final var missingMappings = feedContextMap.values().stream().<PublicKey>mapMulti((configuration, downstream) -> {
-          if (!mappingsContextMap.containsKey(configuration.priceFeed())) {
-            downstream.accept(configuration.oracleMappings());
-          }
-        }).distinct().toList();
+      final var missingMappings = feedContextMap.values().stream().<PublicKey>mapMulti((configuration, downstream) -> {
+        if (!mappingsContextMap.containsKey(configuration.priceFeed())) {
+          downstream.accept(configuration.oracleMappings());
+        }
+      }).distinct().toList();
 
-        if (!missingMappings.isEmpty()) {
-          final var mappingsFuture = rpcCaller.courteousCall(
-              rpcClient -> rpcClient.getAccounts(missingMappings),
-              "Oracle Mappings accounts"
-          );
+      if (!missingMappings.isEmpty()) {
+        final var mappingsFuture = rpcCaller.courteousCall(
+            rpcClient -> rpcClient.getAccounts(missingMappings),
+            "Oracle Mappings accounts"
+        );
 
-          for (final var accountInfo : mappingsFuture.join()) {
-            if (accountInfo == null) {
-              throw new IllegalStateException("Oracle Mappings account not found.");
-            }
-            final byte[] data = accountInfo.data();
-            if (!OracleMappings.DISCRIMINATOR.equals(data, 0) || data.length != OracleMappings.BYTES) {
-              throw new IllegalStateException(String.format(
-                  "%s is not a valid Scope OracleMappings account.", accountInfo.pubKey()
-              ));
-            }
-            final var mappingsKey = accountInfo.pubKey();
-            final var priceFeedContext = feedContextMap.get(mappingsKey);
-            final var mappingsContext = MappingsContext.createContext(accountInfo);
-            mappingsContextMap.put(priceFeedContext.priceFeed(), mappingsContext);
-            mappingsContextMap.put(mappingsKey, mappingsContext);
+        for (final var accountInfo : mappingsFuture.join()) {
+          if (accountInfo == null) {
+            throw new IllegalStateException("Oracle Mappings account not found.");
+          }
+          final byte[] data = accountInfo.data();
+          if (!OracleMappings.DISCRIMINATOR.equals(data, 0) || data.length != OracleMappings.BYTES) {
+            throw new IllegalStateException(String.format(
+                "%s is not a valid Scope OracleMappings account.", accountInfo.pubKey()
+            ));
+          }
+          final var mappingsKey = accountInfo.pubKey();
+          final var priceFeedContext = feedContextMap.get(mappingsKey);
+          final var mappingsContext = MappingsContext.createContext(accountInfo);
+          mappingsContextMap.put(priceFeedContext.priceFeed(), mappingsContext);
+          mappingsContextMap.put(mappingsKey, mappingsContext);
+          if (snapshot == null) {
             FileUtils.writeCompressedAccountData(mappingsPath, mappingsKey, mappingsContext.data());
+          } else {
+            snapshot.write(mappingsKey, accountInfo.context().slot(), mappingsContext.data());
           }
         }
+      }
 
-        if (reserveAccounts.isEmpty()) {
+      if (reserveAccounts.isEmpty()) {
+        if (snapshot == null) {
           loadReserves(reserveDataFilePath, mappingsContextMap, reserveContextMap);
         } else {
-          for (final var reserveAccountInfo : reserveAccounts) {
-            if (!reserveContextMap.containsKey(reserveAccountInfo.pubKey())) {
-              final var reserveContext = ReserveContext.createContext(reserveAccountInfo, mappingsContextMap);
-              reserveContextMap.put(reserveContext.pubKey(), reserveContext);
-              KaminoCacheImpl.persistReserve(reserveDataFilePath, reserveContext);
+          loadReserves(storedReserves, mappingsContextMap, reserveContextMap);
+        }
+      } else {
+        for (final var reserveAccountInfo : reserveAccounts) {
+          if (!reserveContextMap.containsKey(reserveAccountInfo.pubKey())) {
+            final var reserveContext = ReserveContext.createContext(reserveAccountInfo, mappingsContextMap);
+            reserveContextMap.put(reserveContext.pubKey(), reserveContext);
+            if (snapshot == null) {
+              KaminoCacheImpl.persistReserve(reserveDataFilePath, reserveContext, reserveAccountInfo.data());
+            } else {
+              KaminoCacheImpl.persistReserve(snapshot, reserveContext, reserveAccountInfo.data());
             }
           }
         }
+      }
 
-        final var vaultStateAccounts = vaultStateAccountsFuture.join();
-        final var vaultStateMap = new ConcurrentHashMap<PublicKey, KaminoVaultContext>(Integer.highestOneBit(vaultStateAccounts.size()) << 1);
-        for (final var accountInfo : vaultStateAccounts) {
-          final byte[] data = accountInfo.data();
-          if (data.length != MIN_VAULT_STATE_LENGTH || !VaultState.DISCRIMINATOR.equals(data, 0)) {
-            throw new IllegalStateException(String.format(
-                "%s is not a valid Kamino Vault account.", accountInfo.pubKey()
-            ));
-          }
-          final var vaultStateContext = KaminoVaultContext.createContext(accountInfo);
-          vaultStateMap.put(vaultStateContext.sharesMint(), vaultStateContext);
+      final var vaultStateAccounts = vaultStateAccountsFuture.join();
+      final var vaultStateMap = new ConcurrentHashMap<PublicKey, KaminoVaultContext>(Integer.highestOneBit(vaultStateAccounts.size()) << 1);
+      for (final var accountInfo : vaultStateAccounts) {
+        final byte[] data = accountInfo.data();
+        if (data.length != MIN_VAULT_STATE_LENGTH || !VaultState.DISCRIMINATOR.equals(data, 0)) {
+          throw new IllegalStateException(String.format(
+              "%s is not a valid Kamino Vault account.", accountInfo.pubKey()
+          ));
         }
-
-        final var cache = new KaminoCacheImpl(
-            rpcCaller,
-            accountFetcher,
-            kLendProgram,
-            scopeProgram,
-            kVaultsProgram,
-            reserveAccountsRequest,
-            KVaultsRequest,
-            pollingDelay,
-            configurationsPath,
-            mappingsPath,
-            reserveDataFilePath,
-            feedContextMap,
-            mappingsContextMap,
-            reserveContextMap,
-            vaultStateMap
-        );
-        accountFetcher.listenToAll(cache);
-        return cache;
-      } catch (final IOException e) {
-        throw new UncheckedIOException(e);
+        final var vaultStateContext = KaminoVaultContext.createContext(accountInfo);
+        vaultStateMap.put(vaultStateContext.sharesMint(), vaultStateContext);
       }
-    });
+
+      final var cache = new KaminoCacheImpl(
+          rpcCaller,
+          accountFetcher,
+          kLendProgram,
+          scopeProgram,
+          kVaultsProgram,
+          reserveAccountsRequest,
+          KVaultsRequest,
+          partitionReserves,
+          pollingDelay,
+          configurationsPath,
+          mappingsPath,
+          reserveDataFilePath,
+          snapshot,
+          feedContextMap,
+          mappingsContextMap,
+          reserveContextMap,
+          vaultStateMap
+      );
+      accountFetcher.listenToChanges(cache);
+      return cache;
+    } catch (final IOException e) {
+      throw new UncheckedIOException(e);
+    }
   }
 
   private static Map<PublicKey, ScopeFeedContext> loadFeedContexts(final Path configurationsPath) throws IOException {
@@ -394,6 +538,53 @@ public interface KaminoCache extends ScopeAggregateIndexes, Runnable, Consumer<A
     return feedContextMap;
   }
 
+  /// Sorts every account in the snapshot by type, copied out of the mapping,
+  /// and drops any that is none of them, as the directory loaders delete
+  /// files they cannot read.
+  private static void readSnapshot(final AccountSnapshot snapshot,
+                                   final List<AccountData> configurations,
+                                   final List<AccountData> mappings,
+                                   final List<AccountData> reserves) {
+    for (final var key : snapshot.keys()) {
+      final byte[] data = snapshot.read(key);
+      if (data == null) {
+        continue;
+      }
+      final var accountData = new AccountData(data, key);
+      if (accountData.isAccountAtLeast(Reserve.DISCRIMINATOR, MIN_RESERVE_LENGTH)) {
+        reserves.add(accountData);
+      } else if (accountData.isAccountExact(OracleMappings.DISCRIMINATOR, OracleMappings.BYTES)) {
+        mappings.add(accountData);
+      } else if (accountData.isAccountAtLeast(Configuration.DISCRIMINATOR, MIN_CONFIGURATION_LENGTH)) {
+        configurations.add(accountData);
+      } else {
+        snapshot.remove(key);
+      }
+    }
+  }
+
+  private static Map<PublicKey, ScopeFeedContext> loadFeedContexts(final List<AccountData> configurations) {
+    final var feedContextMap = HashMap.<PublicKey, ScopeFeedContext>newHashMap(configurations.size() * 3);
+    for (final var accountData : configurations) {
+      final var feedContext = accountData.read(ScopeFeedContext::createContext);
+      feedContextMap.put(feedContext.configurationKey(), feedContext);
+      feedContextMap.put(feedContext.oracleMappings(), feedContext);
+      feedContextMap.put(feedContext.priceFeed(), feedContext);
+    }
+    return feedContextMap;
+  }
+
+  private static void loadReserves(final List<AccountData> reserves,
+                                   final Map<PublicKey, MappingsContext> mappingsContextMap,
+                                   final ConcurrentMap<PublicKey, ReserveContext> reserveContextMap) {
+    reserves.parallelStream().forEach(accountData -> {
+      final var reserveContext = ReserveContext.createContext(
+          accountData.pubKey(), accountData.data(), mappingsContextMap
+      );
+      reserveContextMap.put(reserveContext.pubKey(), reserveContext);
+    });
+  }
+
   private static void loadReserves(final Path reserveDataFilePath,
                                    final Map<PublicKey, MappingsContext> mappingsContextMap,
                                    final ConcurrentMap<PublicKey, ReserveContext> reserveContextMap) throws IOException {
@@ -440,13 +631,7 @@ public interface KaminoCache extends ScopeAggregateIndexes, Runnable, Consumer<A
         paths.forEach(path -> {
           final var accountData = FileUtils.readAccountData(path);
           if (accountData.isAccountExact(OracleMappings.DISCRIMINATOR, OracleMappings.BYTES)) {
-            final var mappings = accountData.read(OracleMappings::read);
-            final var scopeEntries = ScopeReader.parseEntries(0, mappings);
-            final var feedContext = feedContextMap.get(mappings._address());
-            final var mappingsKey = mappings._address();
-            final var mappingsContext = new MappingsContext(mappingsKey, accountData.data(), scopeEntries);
-            mappingsContextByPriceFeed.put(mappingsKey, mappingsContext);
-            mappingsContextByPriceFeed.put(feedContext.priceFeed(), mappingsContext);
+            putMappings(mappingsContextByPriceFeed, feedContextMap, accountData);
             FileUtils.compressIfNeeded(mappingsPath, path, accountData);
           } else {
             try {
@@ -461,6 +646,27 @@ public interface KaminoCache extends ScopeAggregateIndexes, Runnable, Consumer<A
     return mappingsContextByPriceFeed;
   }
 
+  private static ConcurrentMap<PublicKey, MappingsContext> loadMappings(final List<AccountData> mappingsAccounts,
+                                                                        final Map<PublicKey, ScopeFeedContext> feedContextMap) {
+    final var mappingsContextByPriceFeed = new ConcurrentHashMap<PublicKey, MappingsContext>();
+    for (final var accountData : mappingsAccounts) {
+      putMappings(mappingsContextByPriceFeed, feedContextMap, accountData);
+    }
+    return mappingsContextByPriceFeed;
+  }
+
+  private static void putMappings(final ConcurrentMap<PublicKey, MappingsContext> mappingsContextByPriceFeed,
+                                  final Map<PublicKey, ScopeFeedContext> feedContextMap,
+                                  final AccountData accountData) {
+    final var mappings = accountData.read(OracleMappings::read);
+    final var scopeEntries = ScopeReader.parseEntries(0, mappings);
+    final var feedContext = feedContextMap.get(mappings._address());
+    final var mappingsKey = mappings._address();
+    final var mappingsContext = new MappingsContext(mappingsKey, accountData.data(), scopeEntries);
+    mappingsContextByPriceFeed.put(mappingsKey, mappingsContext);
+    mappingsContextByPriceFeed.put(feedContext.priceFeed(), mappingsContext);
+  }
+
   Path reserveDataFilePath();
 
   Path mappingsPath();
@@ -479,6 +685,13 @@ public interface KaminoCache extends ScopeAggregateIndexes, Runnable, Consumer<A
 
   void subscribe(final SolanaRpcWebsocket websocket);
 
+  /// Forces and closes the snapshot of a cache started by
+  /// [#initSnapshotService], after which its changes are no longer kept.
+  /// Interrupt the thread running the poll first. A cache kept in
+  /// directories has nothing to close.
+  @Override
+  void close();
+
   default void subscribeToAll(final KaminoListener listener) {
     subscribeToScope(listener);
     subscribeToReserves(listener);
@@ -1,6 +1,8 @@
 package systems.glam.services.integrations.kamino;
 
 import software.sava.core.accounts.PublicKey;
+import software.sava.core.encoding.ByteUtil;
+import software.sava.idl.clients.kamino.lend.gen.types.LastUpdate;
 import software.sava.idl.clients.kamino.lend.gen.types.Reserve;
 import software.sava.idl.clients.kamino.scope.entries.OracleEntry;
 import software.sava.idl.clients.kamino.scope.gen.types.Configuration;
@@ -8,26 +10,31 @@ import software.sava.idl.clients.kamino.scope.gen.types.OracleMappings;
 import software.sava.idl.clients.kamino.scope.gen.types.OracleType;
 import software.sava.idl.clients.kamino.vaults.gen.types.VaultState;
 import software.sava.rpc.json.http.client.ProgramAccountsRequest;
-import software.sava.rpc.json.http.client.SolanaRpcClient;
 import software.sava.rpc.json.http.response.AccountInfo;
 import software.sava.rpc.json.http.ws.SolanaRpcWebsocket;
 import software.sava.services.solana.remote.call.RpcCaller;
+import systems.glam.services.io.AccountSnapshot;
 import systems.glam.services.io.FileUtils;
 import systems.glam.services.oracles.scope.FeedIndexes;
 import systems.glam.services.oracles.scope.MappingsContext;
 import systems.glam.services.oracles.scope.ScopeFeedContext;
 import systems.glam.services.rpc.AccountConsumer;
 import systems.glam.services.rpc.AccountFetcher;
+import systems.glam.services.rpc.InconsistentSnapshotException;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigInteger;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import static java.lang.System.Logger.Level.ERROR;
@@ -39,6 +46,18 @@ final class KaminoCacheImpl implements KaminoCache, AccountConsumer {
   static final int MIN_CONFIGURATION_LENGTH = Configuration.PADDING_OFFSET;
   static final int MIN_RESERVE_LENGTH = Reserve.PADDING_OFFSET;
   static final int MIN_VAULT_STATE_LENGTH = VaultState.PADDING_2_OFFSET;
+  /// Every this many polls the reserves are fetched in full; in between only
+  /// their [LastUpdate] is, as a fingerprint, and only those whose fingerprint
+  /// moved are fetched in full. The full sweep also catches a change made
+  /// without a refresh, which leaves the fingerprint where it was.
+  static final int FULL_RESERVE_SWEEP_INTERVAL = 32;
+  /// A power of two, well above the number of Scope price feeds in use.
+  static final int NUM_FEED_LOCK_STRIPES = 16;
+  /// Stands in for a lookup with no answer, which a concurrent map cannot hold.
+  private static final FeedIndexes NO_FEED_INDEXES = new FeedIndexes(null, null, NO_AGGREGATE_INDEXES, BigInteger.ZERO);
+
+  private record OracleKey(PublicKey oracle, OracleType oracleType) {
+  }
 
   private final RpcCaller rpcCaller;
   private final AccountFetcher accountFetcher;
@@ -47,22 +66,47 @@ final class KaminoCacheImpl implements KaminoCache, AccountConsumer {
   private final PublicKey kVaultsProgram;
   private final ProgramAccountsRequest<byte[]> reservesRequest;
   private final ProgramAccountsRequest<byte[]> kVaultsRequest;
+  /// Whether full sweeps fetch the reserves market by market, see [ReservePartitions].
+  private final boolean partitionReserves;
+  /// Package-private so tests can tell the fingerprint poll from the sweep.
+  final ProgramAccountsRequest<byte[]> reserveFingerprintsRequest;
+  /// Only touched by the poll loop.
+  private final Map<PublicKey, long[]> reserveFingerprints;
   private final Set<PublicKey> accountsNeededSet;
   private final long pollingDelayNanos;
   private final Path configurationsPath;
+  /// Holds the configurations, mappings and reserves in place of the three
+  /// directories when the cache was started from a snapshot, otherwise null.
+  private final AccountSnapshot snapshot;
   private final Path mappingsPath;
   private final Path reserveDataFilePath;
   private final ConcurrentMap<PublicKey, ReserveContext> reserveContextMap;
   private final ConcurrentMap<PublicKey, MappingsContext> mappingsContextMap;
   private final ConcurrentMap<PublicKey, ScopeFeedContext> priceFeedContextMap;
   private final ConcurrentMap<PublicKey, KaminoVaultContext> vaultStateContextMap;
-  /// Package-private so tests can assert both views were released; a leaked
+  /// The answers of [#indexes], by mint and then oracle, kept current by the
+  /// writers: a reserve change recomputes the answers for its mint, a mappings
+  /// or configuration change recomputes them all. A lookup that hits takes no
+  /// lock. A miss stores its answer only if no writer has changed a feed
+  /// since it started computing, see [#feedIndexesVersion].
+  private final ConcurrentMap<PublicKey, ConcurrentMap<OracleKey, FeedIndexes>> feedIndexesByMint;
+  /// Moved by every writer before it refreshes [#feedIndexesByMint].
+  private final AtomicLong feedIndexesVersion;
+  /// Changes to one price feed, its reserves and its mappings, take the read
+  /// side of `lock` and then the feed's stripe of `feedLocks`, so a burst on
+  /// one feed does not hold up another. Adding, replacing and removing a
+  /// configuration changes which feeds exist and takes the write side, which
+  /// waits out every per-feed change. An [#indexes] miss takes the read side.
+  ///
+  /// Package-private so tests can assert every lock was released; a leaked
   /// lock blocks every other caller and no result assertion can see it.
   final ReentrantReadWriteLock lock;
+  final ReentrantLock[] feedLocks;
   private final ReentrantReadWriteLock.WriteLock writeLock;
+  private final ReentrantReadWriteLock.ReadLock readLock;
+  private final ReentrantLock reserveScopeChangeLock;
   private final Condition reserveScopeChangeCondition;
   private volatile int numReserveChanges;
-  private final ReentrantReadWriteLock.ReadLock readLock;
 
   private final Map<PublicKey, KaminoListener> scopeListeners;
   private final Map<PublicKey, KaminoListener> reserveListeners;
@@ -77,10 +121,12 @@ final class KaminoCacheImpl implements KaminoCache, AccountConsumer {
                   final PublicKey kVaultsProgram,
                   final ProgramAccountsRequest<byte[]> reservesRequest,
                   final ProgramAccountsRequest<byte[]> kVaultsRequest,
+                  final boolean partitionReserves,
                   final Duration pollingDelay,
                   final Path configurationsPath,
                   final Path mappingsPath,
                   final Path reserveDataFilePath,
+                  final AccountSnapshot snapshot,
                   final Map<PublicKey, ScopeFeedContext> feedContextMap,
                   final ConcurrentMap<PublicKey, MappingsContext> mappingsContextMap,
                   final ConcurrentMap<PublicKey, ReserveContext> reserveContextMap,
@@ -92,14 +138,20 @@ final class KaminoCacheImpl implements KaminoCache, AccountConsumer {
     this.kVaultsProgram = kVaultsProgram;
     this.reservesRequest = reservesRequest;
     this.kVaultsRequest = kVaultsRequest;
+    this.partitionReserves = partitionReserves;
+    this.reserveFingerprintsRequest = reserveFingerprintsRequest(kLendProgram);
+    this.reserveFingerprints = HashMap.newHashMap(reserveContextMap.size());
     this.pollingDelayNanos = pollingDelay.toNanos();
     this.configurationsPath = configurationsPath;
     this.mappingsPath = mappingsPath;
     this.reserveDataFilePath = reserveDataFilePath;
+    this.snapshot = snapshot;
     this.reserveContextMap = reserveContextMap;
     this.mappingsContextMap = mappingsContextMap;
     this.vaultStateContextMap = vaultStateContextMap;
     this.priceFeedContextMap = new ConcurrentHashMap<>();
+    this.feedIndexesByMint = new ConcurrentHashMap<>();
+    this.feedIndexesVersion = new AtomicLong();
     this.accountsNeededSet = ConcurrentHashMap.newKeySet(feedContextMap.size() << 1);
     for (final var feedContext : feedContextMap.values()) {
       priceFeedContextMap.put(feedContext.configurationKey(), feedContext);
@@ -118,7 +170,12 @@ final class KaminoCacheImpl implements KaminoCache, AccountConsumer {
     this.lock = lock;
     this.writeLock = lock.writeLock();
     this.readLock = lock.readLock();
-    this.reserveScopeChangeCondition = writeLock.newCondition();
+    this.feedLocks = new ReentrantLock[NUM_FEED_LOCK_STRIPES];
+    for (int i = 0; i < NUM_FEED_LOCK_STRIPES; ++i) {
+      feedLocks[i] = new ReentrantLock();
+    }
+    this.reserveScopeChangeLock = new ReentrantLock();
+    this.reserveScopeChangeCondition = reserveScopeChangeLock.newCondition();
     this.scopeListeners = new ConcurrentHashMap<>();
     this.reserveListeners = new ConcurrentHashMap<>();
     this.specificReserveListeners = new ConcurrentHashMap<>();
@@ -126,6 +183,14 @@ final class KaminoCacheImpl implements KaminoCache, AccountConsumer {
     this.specificVaultListeners = new ConcurrentHashMap<>();
   }
 
+  static ProgramAccountsRequest<byte[]> reserveFingerprintsRequest(final PublicKey kLendProgram) {
+    return ProgramAccountsRequest.build()
+        .filters(List.of(Reserve.SIZE_FILTER, Reserve.DISCRIMINATOR_FILTER))
+        .programId(kLendProgram)
+        .dataSliceLength(Reserve.LAST_UPDATE_OFFSET, LastUpdate.BYTES)
+        .createRequest();
+  }
+
   static void writeScopeConfiguration(final Path configurationsPath,
                                       final ScopeFeedContext scopeFeedContext) throws IOException {
     FileUtils.writeCompressedAccountData(
@@ -143,6 +208,13 @@ final class KaminoCacheImpl implements KaminoCache, AccountConsumer {
     return mappingsPath;
   }
 
+  @Override
+  public void close() {
+    if (snapshot != null) {
+      snapshot.close();
+    }
+  }
+
   @Override
   public Path configurationsPath() {
     return configurationsPath;
@@ -170,47 +242,95 @@ final class KaminoCacheImpl implements KaminoCache, AccountConsumer {
 
   @Override
   public FeedIndexes indexes(final PublicKey mint, final PublicKey oracle, final OracleType oracleType) {
+    final var oracleKey = new OracleKey(oracle, oracleType);
+    final var forMint = feedIndexesByMint.get(mint);
+    if (forMint != null) {
+      final var feedIndexes = forMint.get(oracleKey);
+      if (feedIndexes != null) {
+        return feedIndexes == NO_FEED_INDEXES ? null : feedIndexes;
+      }
+    }
     readLock.lock();
     try {
-      final var bestFeedIndexes = priceFeedContextMap.values().stream().<FeedIndexes>mapMulti((scopeFeedContext, downstream) -> {
-        final var feedIndexes = scopeFeedContext.indexes(mint, oracle, oracleType);
-        if (feedIndexes != null) {
-          downstream.accept(feedIndexes);
+      final long version = feedIndexesVersion.get();
+      final var feedIndexes = computeIndexes(mint, oracle, oracleType);
+      // a refresh of this mint runs inside the same compute, so either it
+      // sees this answer and recomputes it, or it moved the version first
+      feedIndexesByMint.compute(mint, (_, answers) -> {
+        if (feedIndexesVersion.get() != version) {
+          return answers;
         }
-      }).sorted().findFirst().orElse(null);
-      if (bestFeedIndexes != null) {
-        return bestFeedIndexes;
-      } else {
-        final short[] indexes = new short[]{-1, -1, -1, -1};
-        int i = 0;
-        for (final var mappingsContext : mappingsContextMap.values()) {
-          final var scopeEntries = mappingsContext.scopeEntries();
-          final int numEntries = scopeEntries.numEntries();
-          for (int e = 0; e < numEntries; ++e) {
-            final var entry = scopeEntries.scopeEntry(e);
-            if (entry instanceof OracleEntry oracleEntry) {
-              if (oracleEntry.oracleType() == oracleType && oracleEntry.oracle().equals(oracle)) {
-                indexes[i] = (short) oracleEntry.index();
-                if (++i == indexes.length) {
-                  break;
-                }
+        final var forMint = answers == null ? new ConcurrentHashMap<OracleKey, FeedIndexes>() : answers;
+        forMint.put(oracleKey, feedIndexes == null ? NO_FEED_INDEXES : feedIndexes);
+        return forMint;
+      });
+      return feedIndexes;
+    } finally {
+      readLock.unlock();
+    }
+  }
+
+  /// Call after changing a feed, holding its lock.
+  private void refreshFeedIndexes(final PublicKey mint) {
+    feedIndexesVersion.incrementAndGet();
+    feedIndexesByMint.computeIfPresent(mint, (_, forMint) -> {
+      forMint.replaceAll((oracleKey, _) -> {
+        final var feedIndexes = computeIndexes(mint, oracleKey.oracle(), oracleKey.oracleType());
+        return feedIndexes == null ? NO_FEED_INDEXES : feedIndexes;
+      });
+      return forMint;
+    });
+  }
+
+  /// Call after changing a feed or the set of feeds, holding the lock for it.
+  private void refreshAllFeedIndexes() {
+    for (final var mint : feedIndexesByMint.keySet()) {
+      refreshFeedIndexes(mint);
+    }
+  }
+
+  /// The best indexes from the reserves of any feed, and failing those the
+  /// first mappings listing the oracle. Call holding at least the read side
+  /// of `lock`: the by-mint reserve arrays it reads from each feed are
+  /// replaced whole, never changed in place, so a concurrent per-feed change
+  /// is seen either before or after.
+  private FeedIndexes computeIndexes(final PublicKey mint, final PublicKey oracle, final OracleType oracleType) {
+    final var bestFeedIndexes = priceFeedContextMap.values().stream().<FeedIndexes>mapMulti((scopeFeedContext, downstream) -> {
+      final var feedIndexes = scopeFeedContext.indexes(mint, oracle, oracleType);
+      if (feedIndexes != null) {
+        downstream.accept(feedIndexes);
+      }
+    }).sorted().findFirst().orElse(null);
+    if (bestFeedIndexes != null) {
+      return bestFeedIndexes;
+    } else {
+      final short[] indexes = new short[]{-1, -1, -1, -1};
+      int i = 0;
+      for (final var mappingsContext : mappingsContextMap.values()) {
+        final var scopeEntries = mappingsContext.scopeEntries();
+        final int numEntries = scopeEntries.numEntries();
+        for (int e = 0; e < numEntries; ++e) {
+          final var entry = scopeEntries.scopeEntry(e);
+          if (entry instanceof OracleEntry oracleEntry) {
+            if (oracleEntry.oracleType() == oracleType && oracleEntry.oracle().equals(oracle)) {
+              indexes[i] = (short) oracleEntry.index();
+              if (++i == indexes.length) {
+                break;
               }
             }
           }
-          if (i > 0) {
-            final var scopeFeedContext = this.priceFeedContextMap.get(mappingsContext.publicKey());
-            return new FeedIndexes(
-                scopeFeedContext.readPriceFeed(),
-                scopeFeedContext.readOracleMappings(),
-                indexes,
-                BigInteger.ZERO
-            );
-          }
         }
-        return null;
+        if (i > 0) {
+          final var scopeFeedContext = this.priceFeedContextMap.get(mappingsContext.publicKey());
+          return new FeedIndexes(
+              scopeFeedContext.readPriceFeed(),
+              scopeFeedContext.readOracleMappings(),
+              indexes,
+              BigInteger.ZERO
+          );
+        }
       }
-    } finally {
-      readLock.unlock();
+      return null;
     }
   }
 
@@ -240,6 +360,14 @@ final class KaminoCacheImpl implements KaminoCache, AccountConsumer {
         logger.log(WARNING, "Failed to delete Scope Mappings.", e);
       }
     }
+    if (snapshot != null) {
+      try {
+        snapshot.remove(scopeFeedContext.configurationKey());
+        snapshot.remove(scopeFeedContext.oracleMappings());
+      } catch (final UncheckedIOException e) {
+        logger.log(WARNING, "Failed to delete Scope Configuration from the snapshot.", e);
+      }
+    }
   }
 
   private void removeConfig(final ScopeFeedContext scopeFeedContext) {
@@ -256,6 +384,7 @@ final class KaminoCacheImpl implements KaminoCache, AccountConsumer {
 
     this.mappingsContextMap.remove(priceFeedKey);
     this.mappingsContextMap.remove(mappingsKey);
+    refreshAllFeedIndexes();
   }
 
   private void handleConfigurationChange(final long slot,
@@ -286,7 +415,12 @@ final class KaminoCacheImpl implements KaminoCache, AccountConsumer {
         listener.onNewScopeConfiguration(scopeFeedContext.configurationKey(), scopeFeedContext);
       }
     } else if (!witness.isStaleOrUnchanged(slot, data)) {
-      removeConfig(witness);
+      writeLock.lock();
+      try {
+        removeConfig(witness);
+      } finally {
+        writeLock.unlock();
+      }
       final var scopeFeedContext = ScopeFeedContext.createContext(
           slot, data,
           configurationKey
@@ -297,7 +431,7 @@ final class KaminoCacheImpl implements KaminoCache, AccountConsumer {
     }
   }
 
-  private void persistMappings(final MappingsContext mappingContext) {
+  private void persistMappings(final long slot, final MappingsContext mappingContext) {
     if (mappingsPath != null) {
       try {
         FileUtils.writeCompressedAccountData(
@@ -306,6 +440,12 @@ final class KaminoCacheImpl implements KaminoCache, AccountConsumer {
       } catch (final IOException e) {
         logger.log(WARNING, "Failed to persist mappings.", e);
       }
+    } else if (snapshot != null) {
+      try {
+        snapshot.write(mappingContext.publicKey(), slot, mappingContext.data());
+      } catch (final UncheckedIOException e) {
+        logger.log(WARNING, "Failed to persist mappings.", e);
+      }
     }
   }
 
@@ -320,37 +460,51 @@ final class KaminoCacheImpl implements KaminoCache, AccountConsumer {
     }
     final MappingsContext mappingContext;
     final ScopeFeedContext scopeFeedContext;
-    writeLock.lock();
+    final int numChanges;
+    readLock.lock();
     try {
       scopeFeedContext = priceFeedContextMap.get(mappingsKey);
       if (scopeFeedContext == null) {
         return;
       }
-      witness = mappingsContextMap.get(mappingsKey);
-      if (witness == null || witness.changed(accountInfo)) {
-        mappingContext = MappingsContext.createContext(accountInfo);
-        mappingsContextMap.put(scopeFeedContext.priceFeed(), mappingContext);
-        mappingsContextMap.put(mappingsKey, mappingContext);
-        final int numChanges = scopeFeedContext.reIndexReserves(reserveContextMap, mappingContext);
-        if (numChanges > 0) {
-          this.numReserveChanges = numChanges;
-          reserveScopeChangeCondition.signalAll();
+      final var feedLock = feedLock(scopeFeedContext.priceFeed());
+      feedLock.lock();
+      try {
+        witness = mappingsContextMap.get(mappingsKey);
+        if (witness == null || witness.changed(accountInfo)) {
+          mappingContext = MappingsContext.createContext(accountInfo);
+          mappingsContextMap.put(scopeFeedContext.priceFeed(), mappingContext);
+          mappingsContextMap.put(mappingsKey, mappingContext);
+          numChanges = scopeFeedContext.reIndexReserves(reserveContextMap, mappingContext);
+          refreshAllFeedIndexes();
+        } else {
+          return;
         }
-      } else {
-        return;
+      } finally {
+        feedLock.unlock();
       }
     } finally {
-      writeLock.unlock();
+      readLock.unlock();
+    }
+
+    if (numChanges > 0) {
+      reserveScopeChangeLock.lock();
+      try {
+        this.numReserveChanges = numChanges;
+        reserveScopeChangeCondition.signalAll();
+      } finally {
+        reserveScopeChangeLock.unlock();
+      }
     }
 
     if (witness != null) {
       notifyMappingsChange(scopeFeedContext, witness, mappingContext);
     }
 
-    persistMappings(mappingContext);
+    persistMappings(accountInfo.context().slot(), mappingContext);
   }
 
-  private void updateIfChanged(final ReserveContext reserveContext) {
+  private void updateIfChanged(final ReserveContext reserveContext, final byte[] data) {
     final var priceFeed = reserveContext.priceFeed();
     if (!priceFeedContextMap.containsKey(priceFeed)) {
       return;
@@ -359,7 +513,7 @@ final class KaminoCacheImpl implements KaminoCache, AccountConsumer {
 
     var witness = reserveContextMap.putIfAbsent(key, reserveContext);
     if (witness == null) { // New Reserve
-      writeLock.lock();
+      lockFeeds(priceFeed, priceFeed);
       try {
         witness = reserveContextMap.get(key);
         if (witness == reserveContext) {
@@ -368,12 +522,13 @@ final class KaminoCacheImpl implements KaminoCache, AccountConsumer {
             return;
           } else {
             feedContext.indexReserveContext(reserveContext);
+            refreshFeedIndexes(reserveContext.mint());
             notifyNewReserve(reserveContext);
-            persistReserve(reserveDataFilePath, reserveContext);
+            persistReserve(reserveContext, data);
           }
         }
       } finally {
-        writeLock.unlock();
+        unlockFeeds(priceFeed, priceFeed);
       }
     }
     for (; ; ) {
@@ -382,7 +537,9 @@ final class KaminoCacheImpl implements KaminoCache, AccountConsumer {
         if (changes.isEmpty()) {
           return;
         } else {
-          writeLock.lock();
+          // a reserve moved to another feed changes both, so both are locked
+          final var previousFeed = witness.priceFeed();
+          lockFeeds(priceFeed, previousFeed);
           try {
             final var previous = reserveContextMap.get(key);
             if (previous != witness) {
@@ -391,19 +548,27 @@ final class KaminoCacheImpl implements KaminoCache, AccountConsumer {
             }
             reserveContextMap.put(key, reserveContext);
             final var feedContext = priceFeedContextMap.get(priceFeed);
+            final boolean sameFeed = previousFeed.equals(priceFeed);
             if (feedContext == null) {
               return;
-            } else if (ReserveContext.onlyCollateralChanged(changes)) {
+            } else if (sameFeed && ReserveContext.onlyCollateralChanged(changes)) {
               feedContext.resortReserves(reserveContext);
+              refreshFeedIndexes(reserveContext.mint());
               return;
             } else {
-              feedContext.removePreviousEntry(witness);
+              // the previous entry lives in the feed that indexed it, which
+              // for a moved reserve is not the one it is indexed into now
+              final var previousFeedContext = sameFeed ? feedContext : priceFeedContextMap.get(previousFeed);
+              if (previousFeedContext != null) {
+                previousFeedContext.removePreviousEntry(witness);
+              }
               feedContext.indexReserveContext(reserveContext);
+              refreshFeedIndexes(reserveContext.mint());
               notifyReserveChange(witness, reserveContext, changes);
-              persistReserve(reserveDataFilePath, reserveContext);
+              persistReserve(reserveContext, data);
             }
           } finally {
-            writeLock.unlock();
+            unlockFeeds(priceFeed, previousFeed);
           }
         }
       } else {
@@ -412,6 +577,37 @@ final class KaminoCacheImpl implements KaminoCache, AccountConsumer {
     }
   }
 
+  static int feedStripe(final PublicKey priceFeed) {
+    final int hash = priceFeed.hashCode();
+    return (hash ^ (hash >>> 16)) & (NUM_FEED_LOCK_STRIPES - 1);
+  }
+
+  private ReentrantLock feedLock(final PublicKey priceFeed) {
+    return feedLocks[feedStripe(priceFeed)];
+  }
+
+  /// Takes the read side of `lock` and the stripes of both feeds, lower
+  /// stripe first, so two writers spanning the same pair cannot deadlock.
+  private void lockFeeds(final PublicKey priceFeed, final PublicKey otherFeed) {
+    readLock.lock();
+    final int stripe = feedStripe(priceFeed);
+    final int otherStripe = feedStripe(otherFeed);
+    feedLocks[Math.min(stripe, otherStripe)].lock();
+    if (stripe != otherStripe) {
+      feedLocks[Math.max(stripe, otherStripe)].lock();
+    }
+  }
+
+  private void unlockFeeds(final PublicKey priceFeed, final PublicKey otherFeed) {
+    final int stripe = feedStripe(priceFeed);
+    final int otherStripe = feedStripe(otherFeed);
+    feedLocks[stripe].unlock();
+    if (stripe != otherStripe) {
+      feedLocks[otherStripe].unlock();
+    }
+    readLock.unlock();
+  }
+
   private void notifyReserveUpdate(final AccountInfo<byte[]> accountInfo) {
     for (final var listener : reserveListeners.values()) {
       listener.onReserveUpdate(accountInfo);
@@ -586,7 +782,7 @@ final class KaminoCacheImpl implements KaminoCache, AccountConsumer {
     if (data.length == Reserve.BYTES && Reserve.DISCRIMINATOR.equals(data, 0)) {
       final var reserveContext = ReserveContext.createContext(accountInfo, mappingsContextMap);
       notifyReserveUpdate(accountInfo);
-      updateIfChanged(reserveContext);
+      updateIfChanged(reserveContext, data);
       return reserveContext;
     } else {
       return null;
@@ -600,7 +796,7 @@ final class KaminoCacheImpl implements KaminoCache, AccountConsumer {
       if (data.length == Reserve.BYTES && Reserve.DISCRIMINATOR.equals(data, 0)) {
         final var reserveContext = ReserveContext.createContext(accountInfo, mappingsContextMap);
         notifyReserveUpdate(accountInfo);
-        updateIfChanged(reserveContext);
+        updateIfChanged(reserveContext, data);
       } else if (data.length == VaultState.BYTES && VaultState.DISCRIMINATOR.equals(data, 0)) {
         handleVaultStateChange(accountInfo);
       } else if (data.length == OracleMappings.BYTES && OracleMappings.DISCRIMINATOR.equals(data, 0)) {
@@ -625,7 +821,7 @@ final class KaminoCacheImpl implements KaminoCache, AccountConsumer {
       if (data.length == Reserve.BYTES && Reserve.DISCRIMINATOR.equals(data, 0)) {
         final var reserveContext = ReserveContext.createContext(accountInfo, mappingsContextMap);
         notifyReserveUpdate(accountInfo);
-        updateIfChanged(reserveContext);
+        updateIfChanged(reserveContext, data);
       } else if (data.length == VaultState.BYTES && VaultState.DISCRIMINATOR.equals(data, 0)) {
         handleVaultStateChange(accountInfo);
       } else if (data.length == OracleMappings.BYTES && OracleMappings.DISCRIMINATOR.equals(data, 0)) {
@@ -644,22 +840,26 @@ final class KaminoCacheImpl implements KaminoCache, AccountConsumer {
   @Override
   public void run() {
     try {
+      // anything fetched within half a poll interval, by this loop or another
+      // consumer of the fetcher, was already handed to accept
+      final var maxCachedAge = Duration.ofNanos(pollingDelayNanos >> 1);
+      final var pollingDelay = Duration.ofNanos(pollingDelayNanos);
       var accountsNeededList = new ArrayList<>(this.accountsNeededSet);
-      for (; ; ) {
+      for (long poll = 0; ; ++poll) {
+        // this loop is the scope accounts' defensive poll: should the fetcher
+        // also fetch them always, it must not back off past it
+        accountFetcher.boundPollInterval(this.accountsNeededSet, pollingDelay);
         final var kVaultsFuture = rpcCaller.courteousCall(
             rpcClient -> rpcClient.getProgramAccounts(kVaultsRequest),
             "rpcClient#getKaminoVaultAccounts"
         );
 
+        // one snapshot across every batch, so prices and mappings are read
+        // from the same slot
         int accountsDeleted = 0;
-        final int numAccounts = accountsNeededList.size();
-        for (int from = 0, to; ; from = to) {
-          to = Math.min(from + SolanaRpcClient.MAX_MULTIPLE_ACCOUNTS, numAccounts);
-          final var subList = accountsNeededList.subList(from, to);
-          final var accountInfoListFuture = accountFetcher.priorityQueue(subList);
-
-          final var accountMap = accountInfoListFuture.join().accountMap();
-          for (final var accountNeeded : subList) {
+        final var accountMap = scopeSnapshot(accountsNeededList, maxCachedAge);
+        if (accountMap != null) {
+          for (final var accountNeeded : accountsNeededList) {
             final var accountInfo = accountMap.get(accountNeeded);
             if (AccountFetcher.isNull(accountInfo)) {
               ++accountsDeleted;
@@ -675,10 +875,6 @@ final class KaminoCacheImpl implements KaminoCache, AccountConsumer {
               accept(accountInfo);
             }
           }
-
-          if (to == numAccounts) {
-            break;
-          }
         }
 
         if (accountsDeleted > 0) {
@@ -686,23 +882,43 @@ final class KaminoCacheImpl implements KaminoCache, AccountConsumer {
         }
 
         final var kVaultAccounts = kVaultsFuture.join();
-        final var reserveAccountsFutures = rpcCaller.courteousCall(
-            rpcClient -> rpcClient.getProgramAccounts(reservesRequest),
-            "rpcClient#getKaminoReserves"
-        );
-
-        for (final var accountInfo : kVaultAccounts) {
-          handleVaultStateChange(accountInfo);
-        }
+        final boolean fullSweep = poll % FULL_RESERVE_SWEEP_INTERVAL == 0;
+        if (fullSweep && partitionReserves) {
+          for (final var accountInfo : kVaultAccounts) {
+            handleVaultStateChange(accountInfo);
+          }
+          final var swept = HashSet.<PublicKey>newHashSet(reserveFingerprints.size());
+          ReservePartitions.fetchReserves(rpcCaller, kLendProgram, accountInfo -> {
+            swept.add(accountInfo.pubKey());
+            acceptPolledReserve(accountInfo);
+          });
+          // closed or gone reserves no longer take up a fingerprint
+          reserveFingerprints.keySet().retainAll(swept);
+        } else {
+          final var reservesPoll = fullSweep ? reservesRequest : reserveFingerprintsRequest;
+          final var reserveAccountsFutures = rpcCaller.courteousCall(
+              rpcClient -> rpcClient.getProgramAccounts(reservesPoll),
+              fullSweep ? "rpcClient#getKaminoReserves" : "rpcClient#getKaminoReserveFingerprints"
+          );
+
+          for (final var accountInfo : kVaultAccounts) {
+            handleVaultStateChange(accountInfo);
+          }
 
-        final var reserveAccounts = reserveAccountsFutures.join();
-        for (final var accountInfo : reserveAccounts) {
-          final var reserveContext = ReserveContext.createContext(accountInfo, mappingsContextMap);
-          notifyReserveUpdate(accountInfo);
-          updateIfChanged(reserveContext);
+          final var reserveAccounts = reserveAccountsFutures.join();
+          if (fullSweep) {
+            final var swept = HashSet.<PublicKey>newHashSet(reserveAccounts.size());
+            for (final var accountInfo : reserveAccounts) {
+              swept.add(accountInfo.pubKey());
+              acceptPolledReserve(accountInfo);
+            }
+            reserveFingerprints.keySet().retainAll(swept);
+          } else {
+            fetchMovedReserves(reserveAccounts);
+          }
         }
 
-        writeLock.lock();
+        reserveScopeChangeLock.lock();
         try {
           for (long remaining = pollingDelayNanos; ; ) {
             if (this.numReserveChanges > 0) {
@@ -715,7 +931,7 @@ final class KaminoCacheImpl implements KaminoCache, AccountConsumer {
             }
           }
         } finally {
-          writeLock.unlock();
+          reserveScopeChangeLock.unlock();
         }
       }
     } catch (final InterruptedException e) {
@@ -725,7 +941,96 @@ final class KaminoCacheImpl implements KaminoCache, AccountConsumer {
     }
   }
 
-  static void persistReserve(final Path reserveContextsFilePath, final ReserveContext reserveContext) {
+  /// The Scope accounts as of one slot, or null if the fetcher could not line
+  /// them up, in which case they are left as they are until the next poll.
+  private Map<PublicKey, AccountInfo<byte[]>> scopeSnapshot(final List<PublicKey> accounts, final Duration maxCachedAge) {
+    try {
+      return accountFetcher.priorityQueueSnapshot(accounts, maxCachedAge).join().accountMap();
+    } catch (final CompletionException e) {
+      if (e.getCause() instanceof InconsistentSnapshotException) {
+        logger.log(WARNING, "Skipping this poll of the Scope accounts. " + e.getCause().getMessage());
+        return null;
+      }
+      throw e;
+    }
+  }
+
+  private void acceptPolledReserve(final AccountInfo<byte[]> accountInfo) {
+    final byte[] data = accountInfo.data();
+    final var reserveContext = ReserveContext.createContext(accountInfo, mappingsContextMap);
+    notifyReserveUpdate(accountInfo);
+    updateIfChanged(reserveContext, data);
+    final var reserveKey = accountInfo.pubKey();
+    if (!priceFeedContextMap.containsKey(reserveContext.priceFeed()) || !reserveContextMap.containsKey(reserveKey)) {
+      // not taken in, such as on a price feed not known yet: without a
+      // fingerprint it is fetched in full again on the next poll
+      reserveFingerprints.remove(reserveKey);
+      return;
+    }
+    var fingerprint = reserveFingerprints.get(reserveKey);
+    if (fingerprint == null) {
+      fingerprint = new long[2];
+      reserveFingerprints.put(reserveKey, fingerprint);
+    }
+    fingerprint[0] = ByteUtil.getInt64LE(data, Reserve.LAST_UPDATE_OFFSET);
+    fingerprint[1] = ByteUtil.getInt64LE(data, Reserve.LAST_UPDATE_OFFSET + Long.BYTES);
+  }
+
+  private boolean fingerprintMoved(final PublicKey reserveKey, final byte[] lastUpdate) {
+    final long[] fingerprint = reserveFingerprints.get(reserveKey);
+    return fingerprint == null
+        || fingerprint[0] != ByteUtil.getInt64LE(lastUpdate, 0)
+        || fingerprint[1] != ByteUtil.getInt64LE(lastUpdate, Long.BYTES);
+  }
+
+  /// Fetches in full, as one batched request, the reserves whose
+  /// [LastUpdate] differs from the one last applied, including any new to
+  /// the poll. A reserve is refreshed on chain by every instruction that
+  /// reads or changes it, so an unchanged fingerprint means an unchanged
+  /// reserve.
+  private void fetchMovedReserves(final List<AccountInfo<byte[]>> fingerprints) {
+    final var moved = new ArrayList<PublicKey>();
+    for (final var accountInfo : fingerprints) {
+      final byte[] data = accountInfo.data();
+      if (data.length >= MIN_RESERVE_LENGTH) {
+        // served without the slice, as good as the full sweep
+        acceptPolledReserve(accountInfo);
+      } else if (data.length == LastUpdate.BYTES && fingerprintMoved(accountInfo.pubKey(), data)) {
+        moved.add(accountInfo.pubKey());
+      }
+    }
+    if (!moved.isEmpty()) {
+      final var accountMap = accountFetcher.priorityQueue(moved).join().accountMap();
+      for (final var reserveKey : moved) {
+        final var accountInfo = accountMap.get(reserveKey);
+        if (!AccountFetcher.isNull(accountInfo)) {
+          acceptPolledReserve(accountInfo);
+        }
+      }
+    }
+  }
+
+  private void persistReserve(final ReserveContext reserveContext, final byte[] data) {
+    if (snapshot == null) {
+      persistReserve(reserveDataFilePath, reserveContext, data);
+    } else {
+      persistReserve(snapshot, reserveContext, data);
+    }
+  }
+
+  static void persistReserve(final AccountSnapshot snapshot,
+                             final ReserveContext reserveContext,
+                             final byte[] data) {
+    try {
+      snapshot.write(reserveContext.pubKey(), reserveContext.slot(), data);
+    } catch (final UncheckedIOException e) {
+      logger.log(ERROR, "Failed to write Kamino Markets Reserve Scope Price Chains.", e);
+    }
+  }
+
+  static void persistReserve(final Path reserveContextsFilePath,
+                             final ReserveContext reserveContext,
+                             final byte[] data) {
     if (reserveContextsFilePath == null) {
       // an RPC-only cache keeps nothing on disk
       return;
@@ -736,7 +1041,7 @@ final class KaminoCacheImpl implements KaminoCache, AccountConsumer {
         Files.createDirectories(marketFilePath);
       }
       FileUtils.writeCompressedAccountData(
-          marketFilePath, reserveContext.pubKey(), reserveContext.data()
+          marketFilePath, reserveContext.pubKey(), data
       );
     } catch (final IOException e) {
       logger.log(ERROR, "Failed to write Kamino Markets Reserve Scope Price Chains.", e);
@@ -11,61 +11,93 @@ import software.sava.rpc.json.http.response.AccountInfo;
 import systems.glam.services.oracles.scope.MappingsContext;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import static software.sava.idl.clients.kamino.KaminoAccounts.NULL_KEY;
 
+/// The parts of a Kamino reserve the cache indexes and compares, without the
+/// account data they were read from: every reserve stays resident, and the
+/// raw account is only kept in the persisted store.
+///
+/// Oracle keys which are unset share the [PublicKey#NONE] and `NULL_KEY`
+/// instances rather than each holding a copy.
 public record ReserveContext(long slot,
-                             byte[] data,
                              PublicKey pubKey, AccountMeta writeReserve,
                              PublicKey market,
                              String tokenName,
                              PublicKey mint,
                              long totalCollateral,
                              PriceChains priceChains,
-                             TokenInfo tokenInfo) {
+                             ScopeConfiguration scopeConfiguration,
+                             PublicKey pythOracle,
+                             PublicKey switchboardPriceAggregator,
+                             PublicKey switchboardTwapAggregator,
+                             long maxAgePriceSeconds,
+                             long maxAgeTwapSeconds,
+                             long maxTwapDivergenceBps) {
 
-  private static final Map<PublicKey, AccountMeta> READ_PRICE_FEED_METAS = new HashMap<>();
-  private static final Map<PublicKey, AccountMeta> WRITE_MARKET_METAS = new HashMap<>(128);
+  // shared by every cache, and filled by the snapshot loader's parallel decode
+  private static final ConcurrentMap<PublicKey, AccountMeta> READ_PRICE_FEED_METAS = new ConcurrentHashMap<>();
+  private static final ConcurrentMap<PublicKey, AccountMeta> WRITE_MARKET_METAS = new ConcurrentHashMap<>(128);
+
+  private static final int TOKEN_INFO_OFFSET = Reserve.CONFIG_OFFSET + ReserveConfig.TOKEN_INFO_OFFSET;
+  private static final byte[] NONE_BYTES = PublicKey.NONE.toByteArray();
+  private static final byte[] NULL_KEY_BYTES = NULL_KEY.toByteArray();
+
+  public ReserveContext(final long slot,
+                        final PublicKey pubKey, final AccountMeta writeReserve,
+                        final PublicKey market,
+                        final String tokenName,
+                        final PublicKey mint,
+                        final long totalCollateral,
+                        final PriceChains priceChains,
+                        final TokenInfo tokenInfo) {
+    this(
+        slot,
+        pubKey, writeReserve,
+        market,
+        tokenName,
+        mint,
+        totalCollateral,
+        priceChains,
+        tokenInfo.scopeConfiguration(),
+        sharedNullKey(tokenInfo.pythConfiguration().price()),
+        sharedNullKey(tokenInfo.switchboardConfiguration().priceAggregator()),
+        sharedNullKey(tokenInfo.switchboardConfiguration().twapAggregator()),
+        tokenInfo.maxAgePriceSeconds(),
+        tokenInfo.maxAgeTwapSeconds(),
+        tokenInfo.maxTwapDivergenceBps()
+    );
+  }
 
   static AccountMeta readPriceFeedMeta(final PublicKey priceFeed) {
-    var readPriceFeedMeta = READ_PRICE_FEED_METAS.get(priceFeed);
-    if (readPriceFeedMeta == null) {
-      readPriceFeedMeta = AccountMeta.createRead(priceFeed);
-      READ_PRICE_FEED_METAS.putIfAbsent(priceFeed, readPriceFeedMeta);
-    }
-    return readPriceFeedMeta;
+    return READ_PRICE_FEED_METAS.computeIfAbsent(priceFeed, AccountMeta::createRead);
   }
 
   static AccountMeta writeMarketMeta(final PublicKey market) {
-    var writeMarketMeta = WRITE_MARKET_METAS.get(market);
-    if (writeMarketMeta == null) {
-      writeMarketMeta = AccountMeta.createWrite(market);
-      WRITE_MARKET_METAS.putIfAbsent(market, writeMarketMeta);
+    return WRITE_MARKET_METAS.computeIfAbsent(market, AccountMeta::createWrite);
+  }
+
+  private static PublicKey sharedNullKey(final PublicKey key) {
+    if (key.equals(PublicKey.NONE)) {
+      return PublicKey.NONE;
+    } else if (key.equals(NULL_KEY)) {
+      return NULL_KEY;
+    } else {
+      return key;
     }
-    return writeMarketMeta;
   }
 
-  private static ReserveContext createContext(final long slot,
-                                              final byte[] data,
-                                              final PublicKey reserveKey,
-                                              final PublicKey lendingMarketKey,
-                                              final PublicKey mintKey,
-                                              final long totalCollateral,
-                                              final TokenInfo tokenInfo,
-                                              final PriceChains priceChains) {
-    final byte[] name = tokenInfo.name();
-    final var tokenName = SerDeUtil.fixedLengthString(name);
-    return new ReserveContext(
-        slot,
-        data,
-        reserveKey, AccountMeta.createWrite(reserveKey),
-        lendingMarketKey,
-        tokenName,
-        mintKey,
-        totalCollateral,
-        priceChains,
-        tokenInfo
-    );
+  private static PublicKey readOracleKey(final byte[] data, final int offset) {
+    final int to = offset + PublicKey.PUBLIC_KEY_LENGTH;
+    if (Arrays.equals(data, offset, to, NONE_BYTES, 0, PublicKey.PUBLIC_KEY_LENGTH)) {
+      return PublicKey.NONE;
+    } else if (Arrays.equals(data, offset, to, NULL_KEY_BYTES, 0, PublicKey.PUBLIC_KEY_LENGTH)) {
+      return NULL_KEY;
+    } else {
+      return PublicKey.readPubKey(data, offset);
+    }
   }
 
   private static PriceChains readPriceChains(final PublicKey mintKey,
@@ -102,58 +134,58 @@ public record ReserveContext(long slot,
                                               final Map<PublicKey, MappingsContext> mappingsContextByPriceFeed) {
     final var lendingMarketKey = PublicKey.readPubKey(data, Reserve.LENDING_MARKET_OFFSET);
     final var mintKey = PublicKey.readPubKey(data, Reserve.LIQUIDITY_OFFSET + ReserveLiquidity.MINT_PUBKEY_OFFSET);
-    final var tokenInfo = TokenInfo.read(data, Reserve.CONFIG_OFFSET + ReserveConfig.TOKEN_INFO_OFFSET);
-    final var scopeConfiguration = tokenInfo.scopeConfiguration();
+    // read field by field: decoding the whole TokenInfo would allocate parts
+    // of the config no one reads, on every poll of every reserve
+    final var tokenName = SerDeUtil.fixedLengthString(
+        data, TOKEN_INFO_OFFSET + TokenInfo.NAME_OFFSET, TOKEN_INFO_OFFSET + TokenInfo.NAME_OFFSET + TokenInfo.NAME_LEN
+    );
+    final var scopeConfiguration = ScopeConfiguration.read(data, TOKEN_INFO_OFFSET + TokenInfo.SCOPE_CONFIGURATION_OFFSET);
     final var priceChains = readPriceChains(mintKey, scopeConfiguration, mappingsContextByPriceFeed);
-    long totalCollateral = ByteUtil.getInt64LE(data, Reserve.COLLATERAL_OFFSET + ReserveCollateral.MINT_TOTAL_SUPPLY_OFFSET);
-    return createContext(
+    final int switchboardOffset = TOKEN_INFO_OFFSET + TokenInfo.SWITCHBOARD_CONFIGURATION_OFFSET;
+    final long totalCollateral = ByteUtil.getInt64LE(data, Reserve.COLLATERAL_OFFSET + ReserveCollateral.MINT_TOTAL_SUPPLY_OFFSET);
+    return new ReserveContext(
         slot,
-        data,
-        reserveKey,
+        reserveKey, AccountMeta.createWrite(reserveKey),
         lendingMarketKey,
+        tokenName,
         mintKey,
         totalCollateral,
-        tokenInfo,
-        priceChains
+        priceChains,
+        scopeConfiguration,
+        readOracleKey(data, TOKEN_INFO_OFFSET + TokenInfo.PYTH_CONFIGURATION_OFFSET + PythConfiguration.PRICE_OFFSET),
+        readOracleKey(data, switchboardOffset + SwitchboardConfiguration.PRICE_AGGREGATOR_OFFSET),
+        readOracleKey(data, switchboardOffset + SwitchboardConfiguration.TWAP_AGGREGATOR_OFFSET),
+        ByteUtil.getInt64LE(data, TOKEN_INFO_OFFSET + TokenInfo.MAX_AGE_PRICE_SECONDS_OFFSET),
+        ByteUtil.getInt64LE(data, TOKEN_INFO_OFFSET + TokenInfo.MAX_AGE_TWAP_SECONDS_OFFSET),
+        ByteUtil.getInt64LE(data, TOKEN_INFO_OFFSET + TokenInfo.MAX_TWAP_DIVERGENCE_BPS_OFFSET)
     );
   }
 
   public ReserveContext withPriceChains(final PriceChains priceChains) {
     return new ReserveContext(
         slot,
-        data,
         pubKey, writeReserve,
         market,
         tokenName,
         mint,
         totalCollateral,
         priceChains,
-        tokenInfo
+        scopeConfiguration,
+        pythOracle,
+        switchboardPriceAggregator,
+        switchboardTwapAggregator,
+        maxAgePriceSeconds,
+        maxAgeTwapSeconds,
+        maxTwapDivergenceBps
     );
   }
 
-  public ScopeConfiguration scopeConfiguration() {
-    return tokenInfo.scopeConfiguration();
-  }
-
   public int[] priceChainIndexes() {
-    return scopeConfiguration().priceChain();
+    return scopeConfiguration.priceChain();
   }
 
   public PublicKey priceFeed() {
-    return scopeConfiguration().priceFeed();
-  }
-
-  public long maxAgePriceSeconds() {
-    return tokenInfo.maxAgePriceSeconds();
-  }
-
-  public long maxAgeTwapSeconds() {
-    return tokenInfo.maxAgeTwapSeconds();
-  }
-
-  public long maxTwapDivergenceBps() {
-    return tokenInfo.maxTwapDivergenceBps();
+    return scopeConfiguration.priceFeed();
   }
 
   static boolean isNullKey(final PublicKey key) {
@@ -168,16 +200,13 @@ public record ReserveContext(long slot,
 
     final var priceFeed = priceFeed();
     if (isNullKey(priceFeed)) {
-      final var pythOracle = tokenInfo.pythConfiguration().price();
       if (isNullKey(pythOracle)) {
-        final var switchboardConfig = tokenInfo.switchboardConfiguration();
-        final var switchboardOracle = switchboardConfig.priceAggregator();
-        if (isNullKey(switchboardOracle)) {
+        if (isNullKey(switchboardPriceAggregator)) {
           throw new IllegalStateException("No oracle configuration for Kamino Reserve " + pubKey);
         } else {
           accounts.add(NULL_ACCOUNT_META);
-          accounts.add(readPriceFeedMeta(switchboardOracle));
-          accounts.add(readPriceFeedMeta(switchboardConfig.twapAggregator()));
+          accounts.add(readPriceFeedMeta(switchboardPriceAggregator));
+          accounts.add(readPriceFeedMeta(switchboardTwapAggregator));
           accounts.add(NULL_ACCOUNT_META);
         }
       } else {
@@ -0,0 +1,80 @@
+package systems.glam.services.integrations.kamino;
+
+import software.sava.core.accounts.PublicKey;
+import software.sava.idl.clients.kamino.lend.gen.types.LendingMarket;
+import software.sava.idl.clients.kamino.lend.gen.types.Reserve;
+import software.sava.rpc.json.http.client.ProgramAccountsRequest;
+import software.sava.rpc.json.http.response.AccountInfo;
+import software.sava.services.solana.remote.call.RpcCaller;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+import static systems.glam.services.integrations.kamino.KaminoCacheImpl.MIN_RESERVE_LENGTH;
+
+/// Fetches every Kamino Reserve as one getProgramAccounts request per lending
+/// market, filtered by a memcmp on the reserve's market, rather than as one
+/// request for the whole program.
+///
+/// The markets are found first with a request returning no account data. The
+/// partitions are then sent at once through the [RpcCaller], and each is
+/// handed to the caller as soon as it lands, so reserves are parsed while
+/// slower markets are still in flight. A single partition is small enough to
+/// stay clear of the timeouts the whole sweep runs into.
+final class ReservePartitions {
+
+  private ReservePartitions() {
+  }
+
+  static ProgramAccountsRequest<byte[]> lendingMarketsRequest(final PublicKey kLendProgram) {
+    return ProgramAccountsRequest.build()
+        .filters(List.of(LendingMarket.SIZE_FILTER, LendingMarket.DISCRIMINATOR_FILTER))
+        .programId(kLendProgram)
+        .dataSliceLength(0, 0)
+        .createRequest();
+  }
+
+  static ProgramAccountsRequest<byte[]> marketReservesRequest(final PublicKey kLendProgram, final PublicKey market) {
+    return ProgramAccountsRequest.build()
+        .filters(List.of(Reserve.SIZE_FILTER, Reserve.DISCRIMINATOR_FILTER, Reserve.createLendingMarketFilter(market)))
+        .programId(kLendProgram)
+        .dataSliceLength(0, MIN_RESERVE_LENGTH)
+        .createRequest();
+  }
+
+  /// Hands every reserve to `consumer`, on the calling thread, partition by
+  /// partition in the order they land. A failed partition fails the fetch
+  /// once it is reached. Returns the number of reserves.
+  static int fetchReserves(final RpcCaller rpcCaller,
+                           final PublicKey kLendProgram,
+                           final Consumer<AccountInfo<byte[]>> consumer) throws InterruptedException {
+    final var marketsRequest = lendingMarketsRequest(kLendProgram);
+    final var markets = rpcCaller.courteousGet(
+        rpcClient -> rpcClient.getProgramAccounts(marketsRequest),
+        "rpcClient#getKaminoLendingMarkets"
+    );
+    final int numPartitions = markets.size();
+    if (numPartitions == 0) {
+      return 0;
+    }
+    final var landed = new ArrayBlockingQueue<CompletableFuture<List<AccountInfo<byte[]>>>>(numPartitions);
+    for (final var market : markets) {
+      final var request = marketReservesRequest(kLendProgram, market.pubKey());
+      final var partition = rpcCaller.courteousCall(
+          rpcClient -> rpcClient.getProgramAccounts(request),
+          "rpcClient#getKaminoMarketReserves"
+      );
+      partition.whenComplete((_, _) -> landed.add(partition));
+    }
+    int numReserves = 0;
+    for (int i = 0; i < numPartitions; ++i) {
+      for (final var accountInfo : landed.take().join()) {
+        consumer.accept(accountInfo);
+        ++numReserves;
+      }
+    }
+    return numReserves;
+  }
+}
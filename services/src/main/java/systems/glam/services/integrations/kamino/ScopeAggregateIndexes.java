@@ -20,5 +20,6 @@ public interface ScopeAggregateIndexes {
     return KaminoCache.NO_AGGREGATE_INDEXES;
   }
 
+  /// The result is shared between callers and must not be modified.
   FeedIndexes indexes(final PublicKey mint, final PublicKey oracle, final OracleType oracleType);
 }
@@ -0,0 +1,60 @@
+package systems.glam.services.io;
+
+import software.sava.core.accounts.PublicKey;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/// Account data for many keys in one file, in place of a directory holding
+/// one compressed file per account.
+///
+/// The file opens with a header and an index of (key, slot, offset, length)
+/// entries, followed by the account data. Opening it maps the file and reads
+/// the index; an account's data is copied out of the mapping when it is read,
+/// with nothing to inflate. A write of data no longer than what the account
+/// held goes over it in place, anything else is appended and re-pointed, and
+/// the file is rewritten compacted once the replaced data outweighs the live
+/// data, or the index is full.
+///
+/// Writes are not forced to the device one by one; [#close] forces them, so
+/// the owner must close the snapshot on shutdown. Each entry carries a
+/// checksum of its fields and data: an entry or account torn by a crash
+/// fails it and is dropped on the next open, to be refetched by its owner.
+public interface AccountSnapshot extends AutoCloseable {
+
+  /// Opens the snapshot at `filePath`, creating it if needed. A file that is
+  /// not a snapshot is logged and started over empty.
+  static AccountSnapshot openSnapshot(final Path filePath) {
+    try {
+      final var directory = filePath.toAbsolutePath().getParent();
+      if (directory != null) {
+        Files.createDirectories(directory);
+      }
+      return AccountSnapshotImpl.open(filePath);
+    } catch (final IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  Path filePath();
+
+  int numAccounts();
+
+  /// The keys held, in index order.
+  List<PublicKey> keys();
+
+  /// The slot the account was last written at, or `-1` if it is not held.
+  long slot(final PublicKey key);
+
+  /// A copy of the account's data, or `null` if it is not held.
+  byte[] read(final PublicKey key);
+
+  void write(final PublicKey key, final long slot, final byte[] data);
+
+  boolean remove(final PublicKey key);
+
+  void close();
+}
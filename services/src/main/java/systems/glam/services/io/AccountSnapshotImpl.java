@@ -0,0 +1,419 @@
+package systems.glam.services.io;
+
+import software.sava.core.accounts.PublicKey;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+import static java.lang.System.Logger.Level.WARNING;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.*;
+import static software.sava.core.accounts.PublicKey.PUBLIC_KEY_LENGTH;
+
+/// Layout, little-endian:
+///
+/// ```
+/// header   magic i32 | version i32 | index capacity i32 | count i32 | data end i64 | reserved i64
+/// index    capacity x (key [32] | slot i64 | offset i64 | length i32 | capacity i32 | checksum i32 | reserved i32)
+/// data     account data, each at its entry's offset with room for its capacity
+/// ```
+///
+/// An entry's capacity is the room its data was given when appended, so a
+/// later write may shrink and grow back in place. Its checksum is a CRC-32C
+/// of the entry's fields before it and of its data, so an entry or an
+/// in-place write torn by a crash fails it and is dropped on open.
+final class AccountSnapshotImpl implements AccountSnapshot {
+
+  private static final System.Logger logger = System.getLogger(AccountSnapshotImpl.class.getName());
+
+  static final int MAGIC = 0x534D_4C47; // GLMS
+  static final int VERSION = 2;
+  static final int HEADER_BYTES = 32;
+  static final int CHECKSUM_OFFSET = PUBLIC_KEY_LENGTH + Long.BYTES + Long.BYTES + Integer.BYTES + Integer.BYTES;
+  static final int INDEX_ENTRY_BYTES = CHECKSUM_OFFSET + Integer.BYTES + Integer.BYTES;
+  static final int INITIAL_INDEX_CAPACITY = 1_024;
+  /// Replaced data below this is never worth a rewrite.
+  static final long MIN_COMPACTION_BYTES = 1 << 20;
+
+  private record Entry(int index, long slot, long offset, int length, int capacity, int checksum) {
+
+    static Entry createEntry(final int index,
+                             final PublicKey key,
+                             final long slot,
+                             final long offset,
+                             final int capacity,
+                             final ByteBuffer data) {
+      final int length = data.remaining();
+      return new Entry(index, slot, offset, length, capacity, checksum(key, slot, offset, length, capacity, data));
+    }
+
+    Entry moveTo(final int index) {
+      return new Entry(index, slot, offset, length, capacity, checksum);
+    }
+  }
+
+  /// Package-private so tests can assert the lock is released; a leaked lock
+  /// blocks every other caller and no result assertion can see it.
+  final ReentrantLock lock;
+  private final Path filePath;
+  private final Map<PublicKey, Entry> entries;
+  private final List<PublicKey> keysByIndex;
+  private FileChannel fileChannel;
+  private ByteBuffer mapped;
+  private int indexCapacity;
+  private long dataEnd;
+  private long replacedBytes;
+
+  private AccountSnapshotImpl(final Path filePath) {
+    this.filePath = filePath;
+    this.lock = new ReentrantLock();
+    this.entries = new HashMap<>();
+    this.keysByIndex = new ArrayList<>();
+  }
+
+  static AccountSnapshotImpl open(final Path filePath) throws IOException {
+    final var snapshot = new AccountSnapshotImpl(filePath);
+    snapshot.load();
+    return snapshot;
+  }
+
+  static long dataStart(final int indexCapacity) {
+    return HEADER_BYTES + (long) indexCapacity * INDEX_ENTRY_BYTES;
+  }
+
+  static int checksum(final PublicKey key,
+                      final long slot,
+                      final long offset,
+                      final int length,
+                      final int capacity,
+                      final ByteBuffer data) {
+    final var fields = ByteBuffer.allocate(CHECKSUM_OFFSET).order(ByteOrder.LITTLE_ENDIAN);
+    key.write(fields.array(), 0);
+    fields.putLong(PUBLIC_KEY_LENGTH, slot);
+    fields.putLong(PUBLIC_KEY_LENGTH + Long.BYTES, offset);
+    fields.putInt(PUBLIC_KEY_LENGTH + (Long.BYTES << 1), length);
+    fields.putInt(PUBLIC_KEY_LENGTH + (Long.BYTES << 1) + Integer.BYTES, capacity);
+    final var crc = new CRC32C();
+    crc.update(fields);
+    crc.update(data.duplicate());
+    return (int) crc.getValue();
+  }
+
+  private void load() throws IOException {
+    this.fileChannel = FileChannel.open(filePath, CREATE, READ, WRITE);
+    final long fileSize = fileChannel.size();
+    if (fileSize == 0) {
+      startOver(INITIAL_INDEX_CAPACITY);
+      return;
+    } else if (fileSize > Integer.MAX_VALUE) {
+      throw new IOException(String.format("%s is larger than a single mapping: %d bytes", filePath, fileSize));
+    }
+    final var buffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize).order(ByteOrder.LITTLE_ENDIAN);
+    if (fileSize < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+      logger.log(WARNING, "Not an account snapshot, starting over: " + filePath);
+      startOver(INITIAL_INDEX_CAPACITY);
+      return;
+    }
+    final int capacity = buffer.getInt(8);
+    final int count = buffer.getInt(12);
+    final long end = buffer.getLong(16);
+    final long dataStart = dataStart(capacity);
+    if (capacity <= 0 || count < 0 || count > capacity || end < dataStart || end > fileSize) {
+      logger.log(WARNING, "Corrupt account snapshot header, starting over: " + filePath);
+      startOver(INITIAL_INDEX_CAPACITY);
+      return;
+    }
+    this.mapped = buffer;
+    this.indexCapacity = capacity;
+    this.dataEnd = end;
+
+    long liveBytes = 0;
+    int numDropped = 0;
+    for (int i = 0; i < count; ++i) {
+      final int position = HEADER_BYTES + i * INDEX_ENTRY_BYTES;
+      final byte[] keyBytes = new byte[PUBLIC_KEY_LENGTH];
+      buffer.get(position, keyBytes);
+      final long slot = buffer.getLong(position + PUBLIC_KEY_LENGTH);
+      final long offset = buffer.getLong(position + PUBLIC_KEY_LENGTH + Long.BYTES);
+      final int length = buffer.getInt(position + PUBLIC_KEY_LENGTH + (Long.BYTES << 1));
+      final int entryCapacity = buffer.getInt(position + PUBLIC_KEY_LENGTH + (Long.BYTES << 1) + Integer.BYTES);
+      final int checksum = buffer.getInt(position + CHECKSUM_OFFSET);
+      final var key = PublicKey.createPubKey(keyBytes);
+      if (offset < dataStart || length < 0 || length > entryCapacity
+          || offset + entryCapacity > end || entries.containsKey(key)
+          || checksum != checksum(key, slot, offset, length, entryCapacity, buffer.slice((int) offset, length))) {
+        ++numDropped;
+        continue;
+      }
+      entries.put(key, new Entry(keysByIndex.size(), slot, offset, length, entryCapacity, checksum));
+      keysByIndex.add(key);
+      liveBytes += entryCapacity;
+    }
+    this.replacedBytes = end - dataStart - liveBytes;
+    if (numDropped > 0) {
+      logger.log(WARNING, String.format("Dropped %d invalid entries from %s.", numDropped, filePath));
+      // the kept entries moved up the index, so it must be written out again
+      rewrite(indexCapacity);
+    } else {
+      compactIfWasteful();
+    }
+  }
+
+  private void startOver(final int capacity) throws IOException {
+    entries.clear();
+    keysByIndex.clear();
+    fileChannel.truncate(0);
+    this.indexCapacity = capacity;
+    this.dataEnd = dataStart(capacity);
+    this.replacedBytes = 0;
+    final var header = ByteBuffer.allocate(Math.toIntExact(dataEnd)).order(ByteOrder.LITTLE_ENDIAN);
+    putHeader(header, capacity, 0, dataEnd);
+    writeFully(fileChannel, header, 0);
+    remap();
+  }
+
+  private void remap() throws IOException {
+    final long fileSize = fileChannel.size();
+    if (fileSize > Integer.MAX_VALUE) {
+      throw new IOException(String.format("%s is larger than a single mapping: %d bytes", filePath, fileSize));
+    }
+    this.mapped = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize).order(ByteOrder.LITTLE_ENDIAN);
+  }
+
+  private static void putHeader(final ByteBuffer buffer, final int capacity, final int count, final long dataEnd) {
+    buffer.putInt(0, MAGIC);
+    buffer.putInt(4, VERSION);
+    buffer.putInt(8, capacity);
+    buffer.putInt(12, count);
+    buffer.putLong(16, dataEnd);
+    buffer.putLong(24, 0L);
+  }
+
+  private static void putEntry(final ByteBuffer buffer, final int position, final PublicKey key, final Entry entry) {
+    buffer.put(position, key.toByteArray());
+    buffer.putLong(position + PUBLIC_KEY_LENGTH, entry.slot());
+    buffer.putLong(position + PUBLIC_KEY_LENGTH + Long.BYTES, entry.offset());
+    buffer.putInt(position + PUBLIC_KEY_LENGTH + (Long.BYTES << 1), entry.length());
+    buffer.putInt(position + PUBLIC_KEY_LENGTH + (Long.BYTES << 1) + Integer.BYTES, entry.capacity());
+    buffer.putInt(position + CHECKSUM_OFFSET, entry.checksum());
+    buffer.putInt(position + CHECKSUM_OFFSET + Integer.BYTES, 0);
+  }
+
+  private static void writeFully(final FileChannel channel, final ByteBuffer buffer, long position) throws IOException {
+    while (buffer.hasRemaining()) {
+      position += channel.write(buffer, position);
+    }
+  }
+
+  private void writeHeader() throws IOException {
+    final var header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    putHeader(header, indexCapacity, keysByIndex.size(), dataEnd);
+    writeFully(fileChannel, header, 0);
+  }
+
+  private void writeEntry(final PublicKey key, final Entry entry) throws IOException {
+    final var buffer = ByteBuffer.allocate(INDEX_ENTRY_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    putEntry(buffer, 0, key, entry);
+    writeFully(fileChannel, buffer, HEADER_BYTES + (long) entry.index() * INDEX_ENTRY_BYTES);
+  }
+
+  private byte[] readData(final Entry entry) throws IOException {
+    if (entry.offset() + entry.length() > mapped.limit()) {
+      // appended since the file was last mapped
+      remap();
+    }
+    final byte[] data = new byte[entry.length()];
+    mapped.get((int) entry.offset(), data);
+    return data;
+  }
+
+  private void compactIfWasteful() throws IOException {
+    final long liveBytes = dataEnd - dataStart(indexCapacity) - replacedBytes;
+    if (replacedBytes > MIN_COMPACTION_BYTES && replacedBytes > liveBytes) {
+      rewrite(indexCapacity);
+    }
+  }
+
+  /// Writes the live data, packed, to a sibling file and moves it over this
+  /// one, so a crash part way leaves the previous file whole.
+  private void rewrite(final int newCapacity) throws IOException {
+    final var tmpPath = filePath.resolveSibling(filePath.getFileName() + ".tmp");
+    final long dataStart = dataStart(newCapacity);
+    final int count = keysByIndex.size();
+    final var rewritten = HashMap.<PublicKey, Entry>newHashMap(count);
+    final var index = ByteBuffer.allocate(Math.toIntExact(dataStart)).order(ByteOrder.LITTLE_ENDIAN);
+    long offset = dataStart;
+    try (final var out = FileChannel.open(tmpPath, CREATE, TRUNCATE_EXISTING, WRITE)) {
+      for (int i = 0; i < count; ++i) {
+        final var key = keysByIndex.get(i);
+        final var entry = entries.get(key);
+        final var data = ByteBuffer.wrap(readData(entry));
+        final var moved = Entry.createEntry(i, key, entry.slot(), offset, entry.length(), data);
+        writeFully(out, data, offset);
+        putEntry(index, HEADER_BYTES + i * INDEX_ENTRY_BYTES, key, moved);
+        rewritten.put(key, moved);
+        offset += entry.length();
+      }
+      putHeader(index, newCapacity, count, offset);
+      writeFully(out, index, 0);
+      out.force(true);
+    }
+    fileChannel.close();
+    Files.move(tmpPath, filePath, REPLACE_EXISTING, ATOMIC_MOVE);
+    this.fileChannel = FileChannel.open(filePath, READ, WRITE);
+    entries.putAll(rewritten);
+    this.indexCapacity = newCapacity;
+    this.dataEnd = offset;
+    this.replacedBytes = 0;
+    remap();
+  }
+
+  @Override
+  public Path filePath() {
+    return filePath;
+  }
+
+  @Override
+  public int numAccounts() {
+    lock.lock();
+    try {
+      return keysByIndex.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public List<PublicKey> keys() {
+    lock.lock();
+    try {
+      return List.copyOf(keysByIndex);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public long slot(final PublicKey key) {
+    lock.lock();
+    try {
+      final var entry = entries.get(key);
+      return entry == null ? -1 : entry.slot();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public byte[] read(final PublicKey key) {
+    lock.lock();
+    try {
+      final var entry = entries.get(key);
+      return entry == null ? null : readData(entry);
+    } catch (final IOException ex) {
+      throw new UncheckedIOException(ex);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void write(final PublicKey key, final long slot, final byte[] data) {
+    lock.lock();
+    try {
+      final var entry = entries.get(key);
+      if (entry != null && data.length <= entry.capacity()) {
+        // the entry is written after the data, so a crash between the two
+        // leaves the previous checksum over the new data
+        final var updated = Entry.createEntry(entry.index(), key, slot, entry.offset(), entry.capacity(), ByteBuffer.wrap(data));
+        writeFully(fileChannel, ByteBuffer.wrap(data), entry.offset());
+        writeEntry(key, updated);
+        entries.put(key, updated);
+        return;
+      }
+      if (entry == null && keysByIndex.size() == indexCapacity) {
+        rewrite(indexCapacity << 1);
+      }
+      final long offset = dataEnd;
+      writeFully(fileChannel, ByteBuffer.wrap(data), offset);
+      final int index;
+      if (entry == null) {
+        index = keysByIndex.size();
+        keysByIndex.add(key);
+      } else {
+        index = entry.index();
+        replacedBytes += entry.capacity();
+      }
+      final var appended = Entry.createEntry(index, key, slot, offset, data.length, ByteBuffer.wrap(data));
+      // the data lands before the entry pointing at it, and the entry before
+      // the header counting it
+      writeEntry(key, appended);
+      entries.put(key, appended);
+      this.dataEnd = offset + data.length;
+      writeHeader();
+      compactIfWasteful();
+    } catch (final IOException ex) {
+      throw new UncheckedIOException(ex);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public boolean remove(final PublicKey key) {
+    lock.lock();
+    try {
+      final var removed = entries.remove(key);
+      if (removed == null) {
+        return false;
+      }
+      final int last = keysByIndex.size() - 1;
+      if (removed.index() != last) {
+        // fill the hole with the last entry, as KeyedFlatFile does
+        final var lastKey = keysByIndex.get(last);
+        final var lastEntry = entries.get(lastKey);
+        final var moved = lastEntry.moveTo(removed.index());
+        keysByIndex.set(removed.index(), lastKey);
+        writeEntry(lastKey, moved);
+        entries.put(lastKey, moved);
+      }
+      keysByIndex.remove(last);
+      replacedBytes += removed.capacity();
+      writeHeader();
+      compactIfWasteful();
+      return true;
+    } catch (final IOException ex) {
+      throw new UncheckedIOException(ex);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void close() {
+    lock.lock();
+    try {
+      if (fileChannel.isOpen()) {
+        fileChannel.force(true);
+        fileChannel.close();
+      }
+      this.mapped = null;
+    } catch (final IOException ex) {
+      throw new UncheckedIOException(ex);
+    } finally {
+      lock.unlock();
+    }
+  }
+}
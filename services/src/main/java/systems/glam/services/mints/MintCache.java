@@ -8,12 +8,11 @@ import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.concurrent.ConcurrentHashMap;
 
 public interface MintCache extends AutoCloseable {
 
   static MintCache createCache(final SolanaAccounts solanaAccounts, final Path cacheFile) {
-    final var mintMap = new ConcurrentHashMap<PublicKey, MintContext>();
+    final var mintMap = PublicKeyIndex.<MintContext>createIndex(1_024);
     try {
       if (Files.exists(cacheFile)) {
         MintCacheImpl.loadFromFile(solanaAccounts, cacheFile, mintMap);
@@ -26,6 +25,12 @@ public interface MintCache extends AutoCloseable {
 
   MintContext get(final PublicKey mintPubkey);
 
+  /// Looks up the mint key held in `data` at `offset`, such as a token
+  /// account's mint, without reading it into a [PublicKey] first.
+  default MintContext get(final byte[] data, final int offset) {
+    return get(PublicKey.readPubKey(data, offset));
+  }
+
   MintContext setGet(final MintContext mintContext);
 
   MintContext delete(final PublicKey mintPubkey);
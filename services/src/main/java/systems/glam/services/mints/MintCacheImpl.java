@@ -7,21 +7,20 @@ import systems.glam.services.io.KeyedFlatFile;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Map;
 
 final class MintCacheImpl implements MintCache {
 
-  private final Map<PublicKey, MintContext> mintMap;
+  private final PublicKeyIndex<MintContext> mintMap;
   private final KeyedFlatFile<MintContext> fileChannel;
 
-  MintCacheImpl(final Map<PublicKey, MintContext> mintMap, final KeyedFlatFile<MintContext> fileChannel) {
+  MintCacheImpl(final PublicKeyIndex<MintContext> mintMap, final KeyedFlatFile<MintContext> fileChannel) {
     this.mintMap = mintMap;
     this.fileChannel = fileChannel;
   }
 
   static void loadFromFile(final SolanaAccounts solanaAccounts,
                            final Path cacheFile,
-                           final Map<PublicKey, MintContext> mintMap) throws IOException {
+                           final PublicKeyIndex<MintContext> mintMap) throws IOException {
     final byte[] data = Files.readAllBytes(cacheFile);
     for (int offset = 0; offset < data.length; ) {
       final var mintKey = PublicKey.readPubKey(data, offset);
@@ -38,6 +37,11 @@ final class MintCacheImpl implements MintCache {
     return mintMap.get(mintPubkey);
   }
 
+  @Override
+  public MintContext get(final byte[] data, final int offset) {
+    return mintMap.get(data, offset);
+  }
+
   @Override
   public MintContext setGet(final MintContext mintContext) {
     final var previous = mintMap.putIfAbsent(mintContext.mint(), mintContext);
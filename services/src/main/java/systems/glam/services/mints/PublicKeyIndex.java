@@ -0,0 +1,217 @@
+package systems.glam.services.mints;
+
+import software.sava.core.accounts.PublicKey;
+import software.sava.core.encoding.ByteUtil;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/// A hash map from public keys to values for lookups on hot paths.
+///
+/// Each key is stored as four longs in one flat array and found by linear
+/// probing, so a lookup neither hashes a [PublicKey] object nor chases
+/// per-entry nodes, and [#get(byte[], int)] reads a key straight out of
+/// account data without allocating one.
+///
+/// Reads are lock free and writes are serialized. A slot, once given a key,
+/// keeps it for the life of its table: its value is published after the key
+/// and read before it, a removal leaves the key behind with no value, and a
+/// table that fills up is rehashed into a new one that replaces it whole.
+public final class PublicKeyIndex<V> {
+
+  private static final int MIN_CAPACITY = 16;
+  private static final Object REMOVED = new Object();
+
+  private final ReentrantLock lock;
+  private volatile Table table;
+  /// Slots given a key in the current table, removed or not. Guarded by `lock`.
+  private int size;
+
+  private PublicKeyIndex(final int expectedSize) {
+    this.lock = new ReentrantLock();
+    this.table = new Table(capacityFor(expectedSize));
+  }
+
+  public static <V> PublicKeyIndex<V> createIndex(final int expectedSize) {
+    return new PublicKeyIndex<>(expectedSize);
+  }
+
+  public static <V> PublicKeyIndex<V> createIndex(final Map<PublicKey, V> entries) {
+    final var index = new PublicKeyIndex<V>(entries.size());
+    entries.forEach(index::put);
+    return index;
+  }
+
+  /// Keeps the table at most half full, so probes stay short.
+  private static int capacityFor(final int numKeys) {
+    return Math.max(MIN_CAPACITY, Integer.highestOneBit(Math.max(1, numKeys) * 2 - 1) << 1);
+  }
+
+  private static int hash(final long k0, final long k1, final long k2, final long k3) {
+    // vanity and program derived keys share prefixes, so fold in every word;
+    // one multiply then spreads the bits the mask keeps
+    final long h = (k0 ^ Long.rotateLeft(k1, 16) ^ Long.rotateLeft(k2, 32) ^ Long.rotateLeft(k3, 48))
+        * 0x9E3779B97F4A7C15L;
+    return (int) (h >>> 32);
+  }
+
+  public V get(final PublicKey key) {
+    return get(key.toByteArray(), 0);
+  }
+
+  /// Looks up the key held in `data` at `offset`.
+  @SuppressWarnings("unchecked")
+  public V get(final byte[] data, final int offset) {
+    final long k0 = ByteUtil.getInt64LE(data, offset);
+    final long k1 = ByteUtil.getInt64LE(data, offset + 8);
+    final long k2 = ByteUtil.getInt64LE(data, offset + 16);
+    final long k3 = ByteUtil.getInt64LE(data, offset + 24);
+    final var table = this.table;
+    final int mask = table.mask;
+    final long[] keys = table.keys;
+    for (int slot = hash(k0, k1, k2, k3) & mask; ; slot = (slot + 1) & mask) {
+      final var value = table.values.getAcquire(slot);
+      if (value == null) {
+        return null;
+      }
+      final int i = slot << 2;
+      if (keys[i] == k0 && keys[i + 1] == k1 && keys[i + 2] == k2 && keys[i + 3] == k3) {
+        return value == REMOVED ? null : (V) value;
+      }
+    }
+  }
+
+  public boolean containsKey(final PublicKey key) {
+    return get(key) != null;
+  }
+
+  public V put(final PublicKey key, final V value) {
+    return put(key, value, false);
+  }
+
+  public V putIfAbsent(final PublicKey key, final V value) {
+    return put(key, value, true);
+  }
+
+  @SuppressWarnings("unchecked")
+  private V put(final PublicKey key, final V value, final boolean ifAbsent) {
+    final byte[] bytes = key.toByteArray();
+    final long k0 = ByteUtil.getInt64LE(bytes, 0);
+    final long k1 = ByteUtil.getInt64LE(bytes, 8);
+    final long k2 = ByteUtil.getInt64LE(bytes, 16);
+    final long k3 = ByteUtil.getInt64LE(bytes, 24);
+    lock.lock();
+    try {
+      var table = this.table;
+      int slot = table.find(k0, k1, k2, k3);
+      final var previous = table.values.getPlain(slot);
+      if (previous != null && previous != REMOVED) {
+        if (!ifAbsent) {
+          table.values.setRelease(slot, value);
+        }
+        return (V) previous;
+      }
+      if (previous == null) {
+        // a fresh slot; removed ones are reused by their own key
+        if ((size + 1) << 1 > table.capacity()) {
+          table = rehash(table);
+          slot = table.find(k0, k1, k2, k3);
+        }
+        ++size;
+        table.writeKey(slot, k0, k1, k2, k3);
+      }
+      table.values.setRelease(slot, value);
+      return null;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  public V remove(final PublicKey key) {
+    final byte[] bytes = key.toByteArray();
+    lock.lock();
+    try {
+      final var table = this.table;
+      final int slot = table.find(
+          ByteUtil.getInt64LE(bytes, 0), ByteUtil.getInt64LE(bytes, 8),
+          ByteUtil.getInt64LE(bytes, 16), ByteUtil.getInt64LE(bytes, 24)
+      );
+      final var previous = table.values.getPlain(slot);
+      if (previous == null || previous == REMOVED) {
+        return null;
+      }
+      table.values.setRelease(slot, REMOVED);
+      return (V) previous;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /// Drops removed keys, and grows the table if the live ones need it.
+  private Table rehash(final Table table) {
+    final int capacity = table.capacity();
+    int live = 0;
+    for (int slot = 0; slot < capacity; ++slot) {
+      final var value = table.values.getPlain(slot);
+      if (value != null && value != REMOVED) {
+        ++live;
+      }
+    }
+    final var rehashed = new Table(capacityFor(live + 1));
+    final long[] keys = table.keys;
+    for (int slot = 0; slot < capacity; ++slot) {
+      final var value = table.values.getPlain(slot);
+      if (value != null && value != REMOVED) {
+        final int i = slot << 2;
+        final int to = rehashed.find(keys[i], keys[i + 1], keys[i + 2], keys[i + 3]);
+        rehashed.writeKey(to, keys[i], keys[i + 1], keys[i + 2], keys[i + 3]);
+        rehashed.values.setPlain(to, value);
+      }
+    }
+    this.size = live;
+    // the volatile write publishes the new table with everything in it
+    this.table = rehashed;
+    return rehashed;
+  }
+
+  private static final class Table {
+
+    private final long[] keys;
+    private final AtomicReferenceArray<Object> values;
+    private final int mask;
+
+    private Table(final int capacity) {
+      this.keys = new long[capacity << 2];
+      this.values = new AtomicReferenceArray<>(capacity);
+      this.mask = capacity - 1;
+    }
+
+    private int capacity() {
+      return mask + 1;
+    }
+
+    /// The key's slot, or the empty one it would go in. Only called by the
+    /// writer, which keeps the table from ever filling.
+    private int find(final long k0, final long k1, final long k2, final long k3) {
+      for (int slot = hash(k0, k1, k2, k3) & mask; ; slot = (slot + 1) & mask) {
+        if (values.getPlain(slot) == null) {
+          return slot;
+        }
+        final int i = slot << 2;
+        if (keys[i] == k0 && keys[i + 1] == k1 && keys[i + 2] == k2 && keys[i + 3] == k3) {
+          return slot;
+        }
+      }
+    }
+
+    private void writeKey(final int slot, final long k0, final long k1, final long k2, final long k3) {
+      final int i = slot << 2;
+      keys[i] = k0;
+      keys[i + 1] = k1;
+      keys[i + 2] = k2;
+      keys[i + 3] = k3;
+    }
+  }
+}
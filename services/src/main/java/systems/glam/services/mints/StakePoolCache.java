@@ -21,7 +21,6 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 
 public interface StakePoolCache extends Runnable, AutoCloseable {
@@ -53,7 +52,7 @@ public interface StakePoolCache extends Runnable, AutoCloseable {
                 sanctumMultiValidatorStakePoolProgram, createFlatFile(stakePoolStateCacheDirectory, sanctumMultiValidatorStakePoolProgram),
                 sanctumSingleValidatorStakePoolProgram, createFlatFile(stakePoolStateCacheDirectory, sanctumSingleValidatorStakePoolProgram)
             );
-            final var stakePoolContextByMint = new ConcurrentHashMap<PublicKey, StakePoolContext>();
+            final var stakePoolContextByMint = PublicKeyIndex.<StakePoolContext>createIndex(1_024);
             final var marinadeContext = new StakePoolContext(
                 marinadeAccounts.marinadeProgram(),
                 AccountMeta.createRead(marinadeAccounts.stateAccount()),
@@ -111,6 +110,12 @@ public interface StakePoolCache extends Runnable, AutoCloseable {
 
   StakePoolContext get(final PublicKey mintPubkey);
 
+  /// Looks up the pool mint key held in `data` at `offset` without reading it
+  /// into a [PublicKey] first.
+  default StakePoolContext get(final byte[] data, final int offset) {
+    return get(PublicKey.readPubKey(data, offset));
+  }
+
   @Override
   void close();
 }
@@ -23,13 +23,13 @@ final class StakePoolCacheImpl implements StakePoolCache, Consumer<AccountInfo<b
   private final RpcCaller rpcCaller;
   private final List<Filter> stakePoolFilters;
   private final Map<PublicKey, KeyedFlatFile<StakePoolContext>> stakePoolFileChannelByProgram;
-  private final Map<PublicKey, StakePoolContext> stakePoolContextByMint;
+  private final PublicKeyIndex<StakePoolContext> stakePoolContextByMint;
 
   StakePoolCacheImpl(final Duration fetchDelay,
                      final RpcCaller rpcCaller,
                      final List<Filter> stakePoolFilters,
                      final Map<PublicKey, KeyedFlatFile<StakePoolContext>> stakePoolFileChannelByProgram,
-                     final Map<PublicKey, StakePoolContext> stakePoolContextByMint) {
+                     final PublicKeyIndex<StakePoolContext> stakePoolContextByMint) {
     // This delay is slept between polling passes; below a millisecond that
     // sleep rounds to nothing and the loop spins a core.
     if (fetchDelay.toMillis() < 1) {
@@ -79,10 +79,11 @@ final class StakePoolCacheImpl implements StakePoolCache, Consumer<AccountInfo<b
     if (data.length < StakePoolState.NEXT_EPOCH_FEE_OFFSET) {
       return;
     }
-    final var mintKey = PublicKey.readPubKey(data, StakePoolState.POOL_MINT_OFFSET);
-    if (this.stakePoolContextByMint.containsKey(mintKey)) {
+    // every known pool comes back on each poll; only read the key of a new one
+    if (this.stakePoolContextByMint.get(data, StakePoolState.POOL_MINT_OFFSET) != null) {
       return;
     }
+    final var mintKey = PublicKey.readPubKey(data, StakePoolState.POOL_MINT_OFFSET);
 
     final var owner = accountInfo.owner();
     final var stakePoolContext = StakePoolContext.createContext(owner, accountInfo.pubKey(), mintKey);
@@ -103,6 +104,11 @@ final class StakePoolCacheImpl implements StakePoolCache, Consumer<AccountInfo<b
     return stakePoolContextByMint.get(mintPubkey);
   }
 
+  @Override
+  public StakePoolContext get(final byte[] data, final int offset) {
+    return stakePoolContextByMint.get(data, offset);
+  }
+
   @Override
   public void close() {
     for (final var stakePoolFileChannel : stakePoolFileChannelByProgram.values()) {
@@ -219,8 +219,12 @@ public record ScopeFeedContext(long slot, byte[] configurationData,
             if (reservesForIndex.containsKey(reservePubKey)) {
               reservesByIndex.set(index, null);
             }
-          } else if (numReserves > 0) {
-            reservesForIndex.remove(reservePubKey);
+          } else if (reservesForIndex.containsKey(reservePubKey)) {
+            // replaced rather than changed in place, like every other write,
+            // as lookups read these maps without a lock
+            final var newMap = new HashMap<>(reservesForIndex);
+            newMap.remove(reservePubKey);
+            reservesByIndex.set(index, newMap);
           }
         }
       }
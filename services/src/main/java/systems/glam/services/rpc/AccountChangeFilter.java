@@ -0,0 +1,101 @@
+package systems.glam.services.rpc;
+
+import software.sava.core.accounts.PublicKey;
+import software.sava.core.encoding.ByteUtil;
+import software.sava.rpc.json.http.response.AccountInfo;
+
+import java.util.*;
+
+/// Narrows fetched batches down to the accounts one consumer has not seen yet.
+///
+/// Each delivered account leaves a fingerprint of its context slot and a 64-bit
+/// hash of its data. Later responses with the same hash, or from an older slot
+/// than the one delivered, are filtered out; an account that disappears is
+/// delivered once as missing. Not thread safe: the fetcher only calls it while
+/// dispatching to its consumer.
+final class AccountChangeFilter {
+
+  private static final long PRIME_1 = 0x9E3779B97F4A7C15L;
+  private static final long PRIME_2 = 0xC2B2AE3D27D4EB4FL;
+  private static final long PRIME_3 = 0x165667B19E3779F9L;
+
+  private final AccountConsumer accountConsumer;
+  /// `[slot, hash]` per key, updated in place.
+  private final HashMap<PublicKey, long[]> fingerprints;
+
+  AccountChangeFilter(final AccountConsumer accountConsumer) {
+    this.accountConsumer = accountConsumer;
+    this.fingerprints = HashMap.newHashMap(256);
+  }
+
+  AccountConsumer accountConsumer() {
+    return accountConsumer;
+  }
+
+  /// `keys` and `accounts` are a request and its response, index for index.
+  /// Returns null when nothing changed.
+  AccountResult changes(final List<PublicKey> keys, final List<AccountInfo<byte[]>> accounts) {
+    List<AccountInfo<byte[]>> changed = null;
+    Map<PublicKey, AccountInfo<byte[]>> changedMap = null;
+    final int numAccounts = accounts.size();
+    for (int i = 0; i < numAccounts; ++i) {
+      final var key = keys.get(i);
+      final var accountInfo = accounts.get(i);
+      if (AccountFetcher.isNull(accountInfo)) {
+        if (fingerprints.remove(key) == null) {
+          continue;
+        }
+      } else {
+        final var context = accountInfo.context();
+        final long slot = context == null ? 0 : context.slot();
+        final long hash = hash(accountInfo.data());
+        final var fingerprint = fingerprints.get(key);
+        if (fingerprint == null) {
+          fingerprints.put(key, new long[]{slot, hash});
+        } else if (slot < fingerprint[0]) {
+          // a lagging response, older than what was already delivered
+          continue;
+        } else {
+          fingerprint[0] = slot;
+          if (fingerprint[1] == hash) {
+            continue;
+          }
+          fingerprint[1] = hash;
+        }
+      }
+      if (changed == null) {
+        changed = new ArrayList<>(numAccounts - i);
+        changedMap = HashMap.newHashMap(numAccounts - i);
+      }
+      if (AccountFetcher.isNull(accountInfo)) {
+        changed.add(null);
+        changedMap.put(key, AccountFetcher.NULL_ACCOUNT_INFO);
+      } else {
+        changed.add(accountInfo);
+        changedMap.put(key, accountInfo);
+      }
+    }
+    return changed == null
+        ? null
+        : new AccountResult(Collections.unmodifiableList(changed), Collections.unmodifiableMap(changedMap));
+  }
+
+  /// A fast non-cryptographic 64-bit hash; a collision would hide one update,
+  /// which at 64 bits is not a practical concern for change detection.
+  static long hash(final byte[] data) {
+    long hash = PRIME_1 * (data.length + 1L);
+    final int numWords = data.length & ~7;
+    int i = 0;
+    for (; i < numWords; i += Long.BYTES) {
+      hash = Long.rotateLeft(hash ^ (ByteUtil.getInt64LE(data, i) * PRIME_2), 31) * PRIME_1;
+    }
+    for (; i < data.length; ++i) {
+      hash = Long.rotateLeft(hash ^ ((data[i] & 0xFFL) * PRIME_3), 11) * PRIME_1;
+    }
+    hash ^= hash >>> 33;
+    hash *= 0xFF51AFD7ED558CCDL;
+    hash ^= hash >>> 33;
+    hash *= 0xC4CEB9FE1A85EC53L;
+    return hash ^ (hash >>> 33);
+  }
+}
@@ -2,13 +2,17 @@ package systems.glam.services.rpc;
 
 import software.sava.core.accounts.PublicKey;
 import software.sava.rpc.json.http.response.AccountInfo;
+import software.sava.rpc.json.http.ws.SolanaRpcWebsocket;
 import software.sava.services.solana.remote.call.RpcCaller;
+import systems.glam.services.config.AccountFetcherConfig;
 
 import java.time.Duration;
+import java.time.Instant;
 import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 public interface AccountFetcher extends Runnable {
 
@@ -24,19 +28,85 @@ public interface AccountFetcher extends Runnable {
                                       final boolean reactive,
                                       final RpcCaller rpcCaller,
                                       final Set<PublicKey> alwaysFetch) {
-    return new AccountFetcherImpl(fetchDelay, reactive, rpcCaller, alwaysFetch);
+    return createFetcher(fetchDelay, reactive, 1, rpcCaller, alwaysFetch);
+  }
+
+  /// `fetchLanes` bounds how many getMultipleAccounts requests are in flight
+  /// at once; each lane drains the shared queue into its own batches.
+  static AccountFetcher createFetcher(final Duration fetchDelay,
+                                      final boolean reactive,
+                                      final int fetchLanes,
+                                      final RpcCaller rpcCaller,
+                                      final Set<PublicKey> alwaysFetch) {
+    return createFetcher(
+        new AccountFetcherConfig(
+            fetchDelay, reactive, fetchLanes, Duration.ZERO, Duration.ZERO,
+            AccountFetcherConfig.DEFAULT_DISPATCH_QUEUE_CAPACITY,
+            AccountFetcherConfig.FetchMode.BALANCED, AccountFetcherConfig.DEFAULT_HEDGE_PERCENTILE, 0, Duration.ZERO, Duration.ZERO
+        ),
+        rpcCaller,
+        alwaysFetch
+    );
+  }
+
+  static AccountFetcher createFetcher(final AccountFetcherConfig config,
+                                      final RpcCaller rpcCaller,
+                                      final Set<PublicKey> alwaysFetch) {
+    return createFetcher(config, Thread::startVirtualThread, rpcCaller, alwaysFetch);
+  }
+
+  /// Consumer callbacks run on `dispatchExecutor`, each consumer's batches in
+  /// the order they were fetched, so a slow consumer only delays itself.
+  static AccountFetcher createFetcher(final AccountFetcherConfig config,
+                                      final Executor dispatchExecutor,
+                                      final RpcCaller rpcCaller,
+                                      final Set<PublicKey> alwaysFetch) {
+    return new AccountFetcherImpl(config, dispatchExecutor, rpcCaller, alwaysFetch);
   }
 
   StampedSlot recentSlot();
 
+  /// Fitted to the slot and midpoint time of every response, and of every
+  /// push when hot key subscriptions are on. Prefer it to [#recentSlot()]
+  /// for projecting when a future slot arrives.
+  SlotClock slotClock();
+
+  /// Hands the fetcher each new websocket, typically as one of the
+  /// `WebSocketManager` consumers. With hot key subscriptions configured,
+  /// frequently changing keys are subscribed to on it and served from their
+  /// pushes instead of polled; after a disconnect, or whenever pushes stop,
+  /// they are polled again until the next websocket resumes them. Otherwise
+  /// this does nothing.
+  void subscribe(final SolanaRpcWebsocket websocket);
+
+  /// With an adaptive poll cadence configured, caps how long any of these
+  /// always-fetch keys may go unfetched, below the configured
+  /// `maxPollInterval`; the tightest bound set for a key wins. Lets each class
+  /// of keys keep its own defensive polling guarantee. Otherwise, and for keys
+  /// that are not always fetched, this does nothing.
+  void boundPollInterval(final Collection<PublicKey> keys, final Duration maxInterval);
+
   void listenToAll(final AccountConsumer accountConsumer);
 
+  /// Like [#listenToAll(AccountConsumer)], but each batch is narrowed to the
+  /// accounts whose data changed since this consumer last received them; a
+  /// batch with no changes is not delivered at all. Accounts that disappear
+  /// are delivered once as missing.
+  void listenToChanges(final AccountConsumer accountConsumer);
+
   void stopListening(final AccountConsumer accountConsumer);
 
   void priorityQueueBatchable(final List<PublicKey> accounts, final AccountConsumer callback);
 
   void queueBatchable(final List<PublicKey> accounts, final AccountConsumer callback);
 
+  /// Batches are planned earliest deadline first. `priorityQueue` work is due
+  /// by the next regular fetch and other `queue` work within the configured
+  /// batch age bound; the `By` variants take the latest acceptable fetch time
+  /// instead. A deadline sooner than the fetch delay wakes a waiting fetcher
+  /// early, while slack ones ride along in requests with room to spare.
+  void queueBatchableBy(final List<PublicKey> accounts, final Instant fetchBy, final AccountConsumer callback);
+
   void priorityQueue(final Collection<PublicKey> accounts, final AccountConsumer callback);
 
   default void priorityQueue(final PublicKey account, final AccountConsumer callback) {
@@ -47,13 +117,74 @@ public interface AccountFetcher extends Runnable {
 
   CompletableFuture<AccountResult> priorityQueue(final Collection<PublicKey> accounts);
 
+  /// Completes from the response cache when every key was fetched within
+  /// `maxAge`, otherwise batches only the stale keys and merges the cached
+  /// remainder into the result. The configured cache TTL caps `maxAge`, and
+  /// without a cache this is plain [#priorityQueue(Collection)].
+  CompletableFuture<AccountResult> priorityQueue(final Collection<PublicKey> accounts, final Duration maxAge);
+
   void priorityQueueUnique(final Collection<PublicKey> accounts, final AccountConsumer callback);
 
   void queue(final Collection<PublicKey> accounts, final AccountConsumer callback);
 
+  /// See [#queueBatchableBy(List, Instant, AccountConsumer)].
+  void queueBy(final Collection<PublicKey> accounts, final Instant fetchBy, final AccountConsumer callback);
+
   default void queue(final PublicKey account, final AccountConsumer callback) {
     queue(List.of(account), callback);
   }
 
+  /// A request whose keys are all covered by a batch already in flight, or by
+  /// a pending one due no later, returns that batch's future instead of
+  /// queueing again. Like any future, it completes with the whole request the
+  /// keys rode in, so read it through the account map.
   CompletableFuture<AccountResult> queue(final Collection<PublicKey> accounts);
+
+  /// See [#queueBatchableBy(List, Instant, AccountConsumer)].
+  CompletableFuture<AccountResult> queueBy(final Collection<PublicKey> accounts, final Instant fetchBy);
+
+  /// See [#priorityQueue(Collection, Duration)].
+  CompletableFuture<AccountResult> queue(final Collection<PublicKey> accounts, final Duration maxAge);
+
+  /// Fetches any number of keys as one slot-consistent snapshot. The keys are
+  /// requested in batches of at most the RPC limit, and any key that comes
+  /// back from a slot behind the highest one seen across the batches is
+  /// fetched once more, uncached and in a request of its own. Should any
+  /// still come back behind, the snapshot fails with an
+  /// [InconsistentSnapshotException]. The result lines up with `accounts`.
+  ///
+  /// `maxAge` lets keys be served from the response cache as in
+  /// [#priorityQueue(Collection, Duration)]; cached keys are held to the same
+  /// slot as fetched ones.
+  CompletableFuture<AccountResult> priorityQueueSnapshot(final List<PublicKey> accounts, final Duration maxAge);
+
+  /// See [#priorityQueueSnapshot(List, Duration)].
+  CompletableFuture<AccountResult> queueSnapshot(final List<PublicKey> accounts, final Duration maxAge);
+
+  /// Keys served from the response cache.
+  long cacheHits();
+
+  /// Keys a cache-aware request had to fetch because no fresh enough response
+  /// was cached.
+  long cacheMisses();
+
+  /// Keys requested over the key capacity of every getMultipleAccounts
+  /// request made so far, from 0 to 1; NaN before the first request.
+  double batchFillRatio();
+
+  /// Times fetching had to wait for a consumer whose dispatch queue was full.
+  long dispatchStalls();
+
+  /// Requests a hedged fetcher re-sent to a second endpoint.
+  long hedgedRequests();
+
+  /// Keys served from websocket pushes rather than fetched.
+  long pushedKeys();
+
+  /// Snapshot keys fetched again because they came back behind the rest.
+  long snapshotRetries();
+
+  /// Always-fetch keys left out of a request because their adaptive poll
+  /// interval had not yet passed.
+  long deferredPolls();
 }
@@ -5,7 +5,10 @@ import software.sava.core.accounts.SolanaAccounts;
 import software.sava.core.encoding.ByteUtil;
 import software.sava.rpc.json.http.client.SolanaRpcClient;
 import software.sava.rpc.json.http.response.AccountInfo;
+import software.sava.rpc.json.http.ws.SolanaRpcWebsocket;
 import software.sava.services.solana.remote.call.RpcCaller;
+import systems.glam.services.config.AccountFetcherConfig;
+import systems.glam.services.config.AccountFetcherConfig.FetchMode;
 
 import java.time.Duration;
 import java.time.Instant;
@@ -13,7 +16,12 @@ import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
 import java.util.concurrent.locks.ReentrantLock;
 
 import static java.lang.System.Logger.Level.ERROR;
@@ -22,29 +30,58 @@ import static java.lang.System.Logger.Level.WARNING;
 final class AccountFetcherImpl implements AccountFetcher {
 
   private static final System.Logger logger = System.getLogger(AccountFetcher.class.getName());
+  private static final Duration MAX_SLACK = Duration.ofDays(365);
 
-  private final Duration pollDelay;
   private final long pollDelayNanos;
   private final boolean reactive;
-  private final RpcCaller rpcCaller;
+  private final EndpointRouter endpointRouter;
   private final Set<PublicKey> alwaysFetch;
-  private final LinkedHashSet<PublicKey> batch;
-  /// Package-private so tests can assert the lock is released; a leaked lock
-  /// blocks every other caller and no result assertion can see it.
+  private final FetchLane[] lanes;
+  /// Serializes batch planning across the fetch lanes; queueing never takes
+  /// it. Package-private so tests can assert the lock is released; a leaked
+  /// lock stalls every lane and no result assertion can see it.
   final ReentrantLock lock;
-  private final Condition newBatch;
   private final Set<AccountConsumer> pendingUniqueConsumers;
-  private final ConcurrentLinkedDeque<AccountBatch> queue;
-  private final ConcurrentLinkedDeque<AccountBatch> currentBatch;
+  private final ConcurrentLinkedDeque<QueuedBatch> queue;
   private final Set<AccountConsumer> alwaysCall;
+  private final ConcurrentHashMap<AccountConsumer, AccountChangeFilter> changeListeners;
+  /// Consumer callbacks run here rather than on the fetch lanes, through one
+  /// ordered [DispatchQueue] per consumer.
+  private final Executor dispatchExecutor;
+  private final int dispatchQueueCapacity;
+  private final ConcurrentHashMap<AccountConsumer, DispatchQueue> dispatchQueues;
+  private final LongAdder dispatchStalls;
+  /// Null unless a response cache TTL is configured.
+  private final ConcurrentHashMap<PublicKey, CachedAccount> responseCache;
+  private final long responseCacheTtlMillis;
+  private final LongAdder cacheHits;
+  private final LongAdder cacheMisses;
+  private final long maxBatchAgeNanos;
+  private final LongAdder requests;
+  private final LongAdder requestedKeys;
+  /// Null unless hot key subscriptions are configured.
+  private final HotKeySubscriptions hotKeys;
+  private final LongAdder pushedKeys;
+  private final LongAdder snapshotRetries;
+  /// Null unless an adaptive poll cadence is configured.
+  private final PollCadence pollCadence;
+  private final LongAdder deferredPolls;
+  /// Set when a batch is queued that cannot wait out the fetch delay, and
+  /// consumed by the lane it wakes.
+  private final AtomicBoolean urgentBatchQueued;
+
+  private final SlotClock slotClock;
 
-  private volatile Set<PublicKey> currentBatchKeys;
   private volatile StampedSlot recentSlot;
+  private volatile long lastCacheSweep;
 
-  AccountFetcherImpl(final Duration fetchDelay,
-                     final boolean reactive,
+  AccountFetcherImpl(final AccountFetcherConfig config,
+                     final Executor dispatchExecutor,
                      final RpcCaller rpcCaller,
                      final Set<PublicKey> alwaysFetch) {
+    final var fetchDelay = config.fetchDelay();
+    final boolean reactive = config.reactive();
+    final int fetchLanes = config.fetchLanes();
     // The polling path sleeps for this delay between passes; below a
     // millisecond that sleep rounds to nothing and the loop spins a core.
     // Reactive fetchers wait on a condition instead, so any delay works there.
@@ -53,20 +90,88 @@ final class AccountFetcherImpl implements AccountFetcher {
           "A polling account fetcher needs a fetch delay of at least one millisecond, not " + fetchDelay
       );
     }
-    this.pollDelay = fetchDelay;
+    if (fetchLanes < 1) {
+      throw new IllegalArgumentException("An account fetcher needs at least one fetch lane, not " + fetchLanes);
+    }
+    final int dispatchQueueCapacity = config.dispatchQueueCapacity();
+    if (dispatchQueueCapacity < 1) {
+      throw new IllegalArgumentException(
+          "An account fetcher needs a dispatch queue capacity of at least one, not " + dispatchQueueCapacity
+      );
+    }
+    final var fetchMode = config.fetchMode() == null ? FetchMode.BALANCED : config.fetchMode();
+    final double hedgePercentile = config.hedgePercentile();
+    if (fetchMode == FetchMode.HEDGED && !(hedgePercentile > 0 && hedgePercentile <= 1)) {
+      throw new IllegalArgumentException(
+          "A hedged account fetcher needs a hedge percentile in (0, 1], not " + hedgePercentile
+      );
+    }
     this.pollDelayNanos = fetchDelay.toNanos();
     this.reactive = reactive;
-    this.rpcCaller = rpcCaller;
+    this.endpointRouter = new EndpointRouter(rpcCaller, fetchMode, hedgePercentile);
     this.alwaysFetch = Set.copyOf(alwaysFetch);
-    this.batch = new LinkedHashSet<>((int) Math.ceil((SolanaRpcClient.MAX_MULTIPLE_ACCOUNTS << 1) / (double) 0.75f));
-    this.batch.addAll(alwaysFetch);
+    // A reactive fetcher may have no delay at all; back off from a
+    // millisecond there so doubling gets anywhere.
+    final var maxPollInterval = config.maxPollInterval();
+    this.pollCadence = maxPollInterval == null || !maxPollInterval.isPositive() || this.alwaysFetch.isEmpty()
+        ? null
+        : new PollCadence(alwaysFetch, Math.max(pollDelayNanos, 1_000_000L), maxPollInterval.toNanos());
+    this.deferredPolls = new LongAdder();
+    this.lanes = new FetchLane[fetchLanes];
+    // Only the first lane carries the always-fetch keys; the others fetch
+    // queued work alone rather than re-requesting the same base every cycle.
+    this.lanes[0] = new FetchLane(0, this.alwaysFetch, pollCadence);
+    for (int i = 1; i < fetchLanes; ++i) {
+      this.lanes[i] = new FetchLane(i, Set.of(), null);
+    }
     this.lock = new ReentrantLock();
-    this.newBatch = lock.newCondition();
     this.pendingUniqueConsumers = ConcurrentHashMap.newKeySet(128);
     this.queue = new ConcurrentLinkedDeque<>();
-    this.currentBatch = new ConcurrentLinkedDeque<>();
-    this.currentBatchKeys = this.alwaysFetch;
     this.alwaysCall = ConcurrentHashMap.newKeySet(32);
+    this.changeListeners = new ConcurrentHashMap<>(8);
+    this.dispatchExecutor = dispatchExecutor;
+    this.dispatchQueueCapacity = dispatchQueueCapacity;
+    this.dispatchQueues = new ConcurrentHashMap<>(32);
+    this.dispatchStalls = new LongAdder();
+    final var responseCacheTtl = config.responseCacheTtl();
+    if (responseCacheTtl != null && responseCacheTtl.isPositive()) {
+      this.responseCache = new ConcurrentHashMap<>(256);
+      this.responseCacheTtlMillis = responseCacheTtl.toMillis();
+    } else {
+      this.responseCache = null;
+      this.responseCacheTtlMillis = 0;
+    }
+    this.cacheHits = new LongAdder();
+    this.cacheMisses = new LongAdder();
+    // A bound under a second would let scheduling jitter, rather than real
+    // starvation, override priority order.
+    final var maxBatchAge = config.maxBatchAge();
+    this.maxBatchAgeNanos = maxBatchAge == null || !maxBatchAge.isPositive()
+        ? Math.max(3 * pollDelayNanos, 1_000_000_000L)
+        : maxBatchAge.toNanos();
+    this.requests = new LongAdder();
+    this.requestedKeys = new LongAdder();
+    this.slotClock = SlotClock.createClock();
+    final int hotKeyChanges = config.hotKeyChanges();
+    if (hotKeyChanges > 0) {
+      final var hotKeyWindow = config.hotKeyWindow();
+      // A push older than one poll could have been polled, and a quiet
+      // connection may be a dropped one, so it is polled instead. A
+      // subscription is only dropped once quiet for longer than a polled key
+      // may wait.
+      this.hotKeys = new HotKeySubscriptions(
+          hotKeyChanges,
+          hotKeyWindow == null || !hotKeyWindow.isPositive() ? 60_000_000_000L : hotKeyWindow.toNanos(),
+          Math.min(Math.max(pollDelayNanos, 250_000_000L), maxBatchAgeNanos),
+          maxBatchAgeNanos,
+          slotClock
+      );
+    } else {
+      this.hotKeys = null;
+    }
+    this.pushedKeys = new LongAdder();
+    this.snapshotRetries = new LongAdder();
+    this.urgentBatchQueued = new AtomicBoolean();
   }
 
   @Override
@@ -74,52 +179,98 @@ final class AccountFetcherImpl implements AccountFetcher {
     return recentSlot;
   }
 
+  @Override
+  public SlotClock slotClock() {
+    return slotClock;
+  }
+
+  @Override
+  public void subscribe(final SolanaRpcWebsocket websocket) {
+    if (hotKeys != null && websocket != null) {
+      hotKeys.subscribe(websocket);
+    }
+  }
+
+  @Override
+  public void boundPollInterval(final Collection<PublicKey> keys, final Duration maxInterval) {
+    if (pollCadence != null) {
+      pollCadence.bound(keys, maxInterval.toNanos());
+    }
+  }
+
   @Override
   public void listenToAll(final AccountConsumer accountConsumer) {
     this.alwaysCall.add(accountConsumer);
   }
 
+  @Override
+  public void listenToChanges(final AccountConsumer accountConsumer) {
+    this.changeListeners.computeIfAbsent(accountConsumer, AccountChangeFilter::new);
+  }
+
   @Override
   public void stopListening(final AccountConsumer accountConsumer) {
     this.alwaysCall.remove(accountConsumer);
+    this.changeListeners.remove(accountConsumer);
   }
 
-  private void lockedQueue(final boolean priority, final AccountBatch accountBatch) {
-    if (currentBatchKeys.containsAll(accountBatch.keys())) {
-      currentBatch.addLast(accountBatch);
-    } else {
-      if (priority) {
-        queue.addFirst(accountBatch);
-      } else {
-        queue.addLast(accountBatch);
-      }
-      if (reactive) {
-        newBatch.signal();
+  /// Priority work is due by the next regular fetch.
+  private long priorityDeadline() {
+    return System.nanoTime() + pollDelayNanos;
+  }
+
+  /// Other work may wait out the batch age bound.
+  private long defaultDeadline() {
+    return System.nanoTime() + maxBatchAgeNanos;
+  }
+
+  private static long deadline(final Instant fetchBy) {
+    final long now = System.nanoTime();
+    final var slack = Duration.between(Instant.now(), fetchBy);
+    // far-off deadlines saturate rather than overflow
+    return slack.compareTo(MAX_SLACK) >= 0 ? now + MAX_SLACK.toNanos() : now + slack.toNanos();
+  }
+
+  /// Lock free for any number of producers: a batch either rides a lane's
+  /// in-flight request, if that request's keys cover it and the lane has not
+  /// yet closed it, or joins the shared queue for the lanes to plan from.
+  private void queue(final long deadline, final AccountBatch accountBatch) {
+    final var keys = accountBatch.keys();
+    for (final var lane : lanes) {
+      final var inFlight = lane.inFlight;
+      if (inFlight.keys.containsAll(keys) && inFlight.attach(accountBatch)) {
+        return;
       }
     }
+    enqueue(deadline, accountBatch);
   }
 
-  private void queueUnique(final boolean priority,
-                           final Collection<PublicKey> accounts,
-                           final AccountConsumer callback) {
-    if (validBatch(accounts)) {
-      lock.lock();
-      try {
-        if (pendingUniqueConsumers.add(callback)) {
-          lockedQueue(priority, new UniqueAccountBatchRecord(accounts, callback));
+  /// Joins the shared queue without riding an in-flight request.
+  private void enqueue(final long deadline, final AccountBatch accountBatch) {
+    final long now = System.nanoTime();
+    queue.addLast(new QueuedBatch(accountBatch, deadline));
+    if (deadline - now < pollDelayNanos) {
+      // it cannot wait out a full delay: wake every lane, the first one up takes it
+      urgentBatchQueued.set(true);
+      for (final var lane : lanes) {
+        lane.wake();
+      }
+    } else if (reactive) {
+      for (final var lane : lanes) {
+        if (lane.waiting) {
+          lane.waiting = false;
+          lane.wake();
+          return;
         }
-      } finally {
-        lock.unlock();
       }
     }
   }
 
-  private void queue(final boolean priority, final AccountBatch accountBatch) {
-    lock.lock();
-    try {
-      lockedQueue(priority, accountBatch);
-    } finally {
-      lock.unlock();
+  private void queueUnique(final long deadline,
+                           final Collection<PublicKey> accounts,
+                           final AccountConsumer callback) {
+    if (validBatch(accounts) && pendingUniqueConsumers.add(callback)) {
+      queue(deadline, new UniqueAccountBatchRecord(accounts, callback));
     }
   }
 
@@ -134,19 +285,19 @@ final class AccountFetcherImpl implements AccountFetcher {
     }
   }
 
-  private void queue(final boolean priority, final Collection<PublicKey> accounts, final AccountConsumer callback) {
+  private void queue(final long deadline, final Collection<PublicKey> accounts, final AccountConsumer callback) {
     if (validBatch(accounts)) {
       final var accountBatch = new AccountBatchRecord(accounts, callback);
-      queue(priority, accountBatch);
+      queue(deadline, accountBatch);
     }
   }
 
-  private void queueBatchable(final boolean priority, final List<PublicKey> accounts, final AccountConsumer callback) {
+  private void queueBatchable(final long deadline, final List<PublicKey> accounts, final AccountConsumer callback) {
     final int numAccounts = accounts.size();
     if (numAccounts > SolanaRpcClient.MAX_MULTIPLE_ACCOUNTS) {
       for (int from = 0, to = SolanaRpcClient.MAX_MULTIPLE_ACCOUNTS; ; ) {
         final var batch = accounts.subList(from, to);
-        queue(priority, batch, callback);
+        queue(deadline, batch, callback);
         if (to >= numAccounts) {
           return;
         }
@@ -154,269 +305,871 @@ final class AccountFetcherImpl implements AccountFetcher {
         to = Math.min(to + SolanaRpcClient.MAX_MULTIPLE_ACCOUNTS, numAccounts);
       }
     } else {
-      queue(priority, accounts, callback);
+      queue(deadline, accounts, callback);
     }
   }
 
   @Override
   public void priorityQueueBatchable(final List<PublicKey> accounts, final AccountConsumer callback) {
-    queueBatchable(true, accounts, callback);
+    queueBatchable(priorityDeadline(), accounts, callback);
   }
 
   @Override
   public void queueBatchable(final List<PublicKey> accounts, final AccountConsumer callback) {
-    queueBatchable(false, accounts, callback);
+    queueBatchable(defaultDeadline(), accounts, callback);
+  }
+
+  @Override
+  public void queueBatchableBy(final List<PublicKey> accounts, final Instant fetchBy, final AccountConsumer callback) {
+    queueBatchable(deadline(fetchBy), accounts, callback);
   }
 
   @Override
   public void priorityQueue(final Collection<PublicKey> accounts, final AccountConsumer callback) {
-    queue(true, accounts, callback);
+    queue(priorityDeadline(), accounts, callback);
   }
 
   @Override
   public void priorityQueueUnique(final Collection<PublicKey> accounts, final AccountConsumer callback) {
-    queueUnique(true, accounts, callback);
+    queueUnique(priorityDeadline(), accounts, callback);
   }
 
   @Override
   public void queue(final Collection<PublicKey> accounts, final AccountConsumer callback) {
-    queue(false, accounts, callback);
+    queue(defaultDeadline(), accounts, callback);
+  }
+
+  @Override
+  public void queueBy(final Collection<PublicKey> accounts, final Instant fetchBy, final AccountConsumer callback) {
+    queue(deadline(fetchBy), accounts, callback);
   }
 
   @Override
   public void queueUnique(final Collection<PublicKey> accounts, final AccountConsumer callback) {
-    queueUnique(false, accounts, callback);
+    queueUnique(defaultDeadline(), accounts, callback);
   }
 
   private static final CompletableFuture<AccountResult> EMPTY = CompletableFuture.completedFuture(new AccountResult(List.of(), Map.of()));
 
-  private CompletableFuture<AccountResult> queue(final boolean priority, final Collection<PublicKey> accounts) {
+  private CompletableFuture<AccountResult> queue(final long deadline, final Collection<PublicKey> accounts) {
     if (validBatch(accounts)) {
+      final var keys = Collections.unmodifiableSequencedSet(new LinkedHashSet<>(accounts));
+      final var sharedResult = sharedResult(deadline, keys);
+      if (sharedResult != null) {
+        return sharedResult;
+      }
       final var future = new CompletableFuture<AccountResult>();
-      final var accountBatch = new CompletableAccountBatch(accounts, future);
-      queue(priority, accountBatch);
+      queue(deadline, new CompletableAccountBatch(keys, future));
       return future;
     } else {
       return EMPTY;
     }
   }
 
+  /// Queued as a request of its own, for keys whose last response is not
+  /// good enough: it neither shares an in-flight or pending result nor rides
+  /// an in-flight request, any of which may hold that very response.
+  private CompletableFuture<AccountResult> queueFresh(final long deadline, final Collection<PublicKey> accounts) {
+    final var keys = Collections.unmodifiableSequencedSet(new LinkedHashSet<>(accounts));
+    final var future = new CompletableFuture<AccountResult>();
+    enqueue(deadline, new CompletableAccountBatch(keys, future));
+    return future;
+  }
+
+  /// Futures complete with the whole request their batch rode, so a request
+  /// whose keys an in-flight or pending batch already covers can share that
+  /// batch's result instead of queueing its own. A pending batch is only
+  /// shared if it is due no later than the new request. An in-flight result
+  /// is completed by the lane even once it stops taking riders, so it can be
+  /// shared without attaching.
+  private CompletableFuture<AccountResult> sharedResult(final long deadline, final Set<PublicKey> keys) {
+    for (final var lane : lanes) {
+      final var inFlight = lane.inFlight;
+      if (inFlight.keys.containsAll(keys)) {
+        return inFlight.sharedResult;
+      }
+    }
+    for (final var queuedBatch : queue) {
+      if (queuedBatch.accountBatch() instanceof CompletableAccountBatch(final var batchKeys, final var future)
+          && queuedBatch.deadline() - deadline <= 0
+          && batchKeys.containsAll(keys)) {
+        return future;
+      }
+    }
+    return null;
+  }
+
   @Override
   public CompletableFuture<AccountResult> priorityQueue(final Collection<PublicKey> accounts) {
-    return queue(true, accounts);
+    return queue(priorityDeadline(), accounts);
   }
 
   @Override
   public CompletableFuture<AccountResult> queue(final Collection<PublicKey> accounts) {
-    return queue(false, accounts);
+    return queue(defaultDeadline(), accounts);
   }
 
-  private List<PublicKey> createBatchKeys(final int size) {
-    final var batchKeys = new PublicKey[size];
-    final var iterator = batch.iterator();
-    for (int i = 0; i < size; ++i) {
-      batchKeys[i] = iterator.next();
-    }
-    this.currentBatchKeys = Set.of(batchKeys);
-    return Arrays.asList(batchKeys);
+  @Override
+  public CompletableFuture<AccountResult> queueBy(final Collection<PublicKey> accounts, final Instant fetchBy) {
+    return queue(deadline(fetchBy), accounts);
   }
 
-  private void removeTrailing(final int count) {
-    for (int i = count; i > 0; --i) {
-      batch.removeLast();
+  private CompletableFuture<AccountResult> queue(final long deadline,
+                                                 final Collection<PublicKey> accounts,
+                                                 final Duration maxAge) {
+    if (responseCache == null || !validBatch(accounts)) {
+      return queue(deadline, accounts);
+    }
+    final long freshAfter = System.currentTimeMillis() - Math.min(maxAge.toMillis(), responseCacheTtlMillis);
+    final var accountMap = HashMap.<PublicKey, AccountInfo<byte[]>>newHashMap(accounts.size());
+    List<PublicKey> staleKeys = null;
+    for (final var key : accounts) {
+      final var cached = responseCache.get(key);
+      if (cached != null && cached.fetchedAt() > freshAfter) {
+        accountMap.put(key, cached.accountInfo());
+      } else {
+        if (staleKeys == null) {
+          staleKeys = new ArrayList<>(accounts.size());
+        }
+        staleKeys.add(key);
+      }
     }
+    final int numHits = accountMap.size();
+    cacheHits.add(numHits);
+    if (staleKeys == null) {
+      return CompletableFuture.completedFuture(toResult(accounts, accountMap));
+    }
+    cacheMisses.add(staleKeys.size());
+    if (numHits == 0) {
+      return queue(deadline, accounts);
+    }
+    final var requestedKeys = staleKeys;
+    return queue(deadline, requestedKeys).thenApply(result -> {
+      final var fetched = result.accountMap();
+      for (final var key : requestedKeys) {
+        accountMap.put(key, fetched.get(key));
+      }
+      return toResult(accounts, accountMap);
+    });
   }
 
-  private void clearBatch() {
-    removeTrailing(batch.size() - alwaysFetch.size());
+  @Override
+  public CompletableFuture<AccountResult> priorityQueueSnapshot(final List<PublicKey> accounts, final Duration maxAge) {
+    return snapshot(priorityDeadline(), accounts, maxAge);
   }
 
-  private List<PublicKey> createBatch() {
-    lock.lock();
-    try {
-      int size = batch.size();
-      AccountBatch accountBatch;
-      final var iterator = queue.iterator();
-      for (int numCallbacks = 0, nextSize; ; ) {
-        accountBatch = iterator.next();
-        final var keys = accountBatch.keys();
-        batch.addAll(keys);
-        nextSize = batch.size();
-        if (nextSize > SolanaRpcClient.MAX_MULTIPLE_ACCOUNTS) {
-          if (numCallbacks == 0) {
-            final int numAccounts = keys.size();
-            if (numAccounts > SolanaRpcClient.MAX_MULTIPLE_ACCOUNTS) {
-              // Should never happen because an exception is thrown on any attempt to add a batch that exceeds this limit.
-              logger.log(WARNING, "Ignoring batch because it exceeds the RPC limit of " + SolanaRpcClient.MAX_MULTIPLE_ACCOUNTS);
-              iterator.remove();
-              try {
-                accountBatch.mutableKeysExceededMaxSize();
-              } catch (final RuntimeException ex) {
-                logger.log(ERROR, "Account consumer failed handling an oversized batch; continuing to poll.", ex);
-              }
-              clearBatch();
-              if (iterator.hasNext()) {
-                continue;
-              }
-              // the dropped batch was the only queued work: fall back to the
-              // always-fetch base instead of running the iterator dry
-              break;
-            } else {
-              // This batch and the full always-fetch set cannot share one
-              // request. Serve the batch's own keys and top up with as many
-              // always-fetch keys as fit -- without rebasing the shared batch
-              // set, whose always-fetch prefix the cycle-end clearBatch trims by.
-              // insertion order is irrelevant here: the request list and
-              // currentBatchKeys both come from one toArray snapshot
-              final var batchKeys = HashSet.<PublicKey>newHashSet(SolanaRpcClient.MAX_MULTIPLE_ACCOUNTS);
-              batchKeys.addAll(keys);
-              int spaceAvailable = SolanaRpcClient.MAX_MULTIPLE_ACCOUNTS - batchKeys.size();
-              for (final var alwaysFetchIterator = alwaysFetch.iterator(); spaceAvailable > 0; ) {
-                if (batchKeys.add(alwaysFetchIterator.next())) {
-                  --spaceAvailable;
-                }
-              }
-              // the batch is being served this cycle: hand it to the dispatch
-              // loop, or its future never completes and it is refetched forever
-              iterator.remove();
-              currentBatch.addLast(accountBatch);
-              // batchKeys never escapes or changes after this point, so no
-              // immutable snapshot is needed -- unlike createBatchKeys, whose
-              // array is drawn from the constantly-mutated shared batch set
-              this.currentBatchKeys = batchKeys;
-              return Arrays.asList(batchKeys.toArray(new PublicKey[SolanaRpcClient.MAX_MULTIPLE_ACCOUNTS]));
-            }
+  @Override
+  public CompletableFuture<AccountResult> queueSnapshot(final List<PublicKey> accounts, final Duration maxAge) {
+    return snapshot(defaultDeadline(), accounts, maxAge);
+  }
+
+  /// Splits the keys into requests of at most the RPC limit, then brings every
+  /// key that came back behind the highest slot seen across them up to date
+  /// with one more fetch of its own. A key still behind fails the snapshot.
+  private CompletableFuture<AccountResult> snapshot(final long deadline,
+                                                    final List<PublicKey> accounts,
+                                                    final Duration maxAge) {
+    if (accounts.isEmpty()) {
+      return EMPTY;
+    }
+    final var accountMap = HashMap.<PublicKey, AccountInfo<byte[]>>newHashMap(accounts.size());
+    return queueChunks(deadline, accounts, maxAge, false, accountMap).thenCompose(_ -> {
+      long maxSlot = 0;
+      for (final var accountInfo : accountMap.values()) {
+        maxSlot = Math.max(maxSlot, contextSlot(accountInfo));
+      }
+      final long highestSlot = maxSlot;
+      List<PublicKey> lagging = null;
+      for (final var key : accounts) {
+        final long slot = contextSlot(accountMap.get(key));
+        if (slot != 0 && slot < highestSlot) {
+          if (lagging == null) {
+            lagging = new ArrayList<>();
           }
-          if (iterator.hasNext()) {
-            removeTrailing(nextSize - size);
-          } else {
-            break;
+          lagging.add(key);
+        }
+      }
+      if (lagging == null) {
+        return CompletableFuture.completedFuture(toResult(accounts, accountMap));
+      }
+      snapshotRetries.add(lagging.size());
+      final var retried = lagging;
+      return queueChunks(priorityDeadline(), retried, Duration.ZERO, true, accountMap).thenApply(_ -> {
+        int numBehind = 0;
+        for (final var key : retried) {
+          final long slot = contextSlot(accountMap.get(key));
+          if (slot != 0 && slot < highestSlot) {
+            ++numBehind;
           }
-        } else {
-          size = nextSize;
-          iterator.remove();
-          currentBatch.addLast(accountBatch);
-          ++numCallbacks;
-          if (!iterator.hasNext()) {
-            break;
-          } else if (size == SolanaRpcClient.MAX_MULTIPLE_ACCOUNTS) {
-            do { // Check for 100% overlap with the existing batch.
-              accountBatch = iterator.next();
-              if (batch.containsAll(accountBatch.keys())) {
-                iterator.remove();
-                currentBatch.addLast(accountBatch);
-              }
-            } while (iterator.hasNext());
-            break;
+        }
+        if (numBehind > 0) {
+          throw new InconsistentSnapshotException(String.format(
+              "%d of %d snapshot accounts were still behind slot %d when fetched again.",
+              numBehind, accounts.size(), highestSlot
+          ));
+        }
+        return toResult(accounts, accountMap);
+      });
+    });
+  }
+
+  /// Collects each chunk's share of its result into `accountMap`. `fresh`
+  /// chunks are requested on their own, see [#queueFresh].
+  private CompletableFuture<Void> queueChunks(final long deadline,
+                                              final List<PublicKey> keys,
+                                              final Duration maxAge,
+                                              final boolean fresh,
+                                              final Map<PublicKey, AccountInfo<byte[]>> accountMap) {
+    final int numKeys = keys.size();
+    final var chunks = new CompletableFuture<?>[(numKeys + SolanaRpcClient.MAX_MULTIPLE_ACCOUNTS - 1) / SolanaRpcClient.MAX_MULTIPLE_ACCOUNTS];
+    for (int from = 0, to, c = 0; from < numKeys; from = to, ++c) {
+      to = Math.min(from + SolanaRpcClient.MAX_MULTIPLE_ACCOUNTS, numKeys);
+      final var chunk = keys.subList(from, to);
+      final var chunkFuture = fresh ? queueFresh(deadline, chunk) : queue(deadline, chunk, maxAge);
+      chunks[c] = chunkFuture.thenAccept(result -> {
+        final var fetched = result.accountMap();
+        synchronized (accountMap) {
+          for (final var key : chunk) {
+            accountMap.put(key, fetched.get(key));
           }
         }
+      });
+    }
+    return CompletableFuture.allOf(chunks);
+  }
+
+  private static long contextSlot(final AccountInfo<byte[]> accountInfo) {
+    if (accountInfo == null) {
+      return 0;
+    }
+    final var context = accountInfo.context();
+    return context == null ? 0 : context.slot();
+  }
+
+  @Override
+  public CompletableFuture<AccountResult> priorityQueue(final Collection<PublicKey> accounts, final Duration maxAge) {
+    return queue(priorityDeadline(), accounts, maxAge);
+  }
+
+  @Override
+  public CompletableFuture<AccountResult> queue(final Collection<PublicKey> accounts, final Duration maxAge) {
+    return queue(defaultDeadline(), accounts, maxAge);
+  }
+
+  @Override
+  public long cacheHits() {
+    return cacheHits.sum();
+  }
+
+  @Override
+  public long cacheMisses() {
+    return cacheMisses.sum();
+  }
+
+  @Override
+  public long dispatchStalls() {
+    return dispatchStalls.sum();
+  }
+
+  @Override
+  public long pushedKeys() {
+    return pushedKeys.sum();
+  }
+
+  @Override
+  public long snapshotRetries() {
+    return snapshotRetries.sum();
+  }
+
+  @Override
+  public long deferredPolls() {
+    return deferredPolls.sum();
+  }
+
+  @Override
+  public long hedgedRequests() {
+    return endpointRouter.hedgedRequests();
+  }
+
+  @Override
+  public double batchFillRatio() {
+    final long requests = this.requests.sum();
+    return requests == 0
+        ? Double.NaN
+        : requestedKeys.sum() / (double) (requests * SolanaRpcClient.MAX_MULTIPLE_ACCOUNTS);
+  }
+
+  /// A result assembled per requested key rather than per fetched batch; the
+  /// list mirrors an RPC response, with null for missing accounts.
+  private static AccountResult toResult(final Collection<PublicKey> keys,
+                                        final Map<PublicKey, AccountInfo<byte[]>> accountMap) {
+    final var accounts = new ArrayList<AccountInfo<byte[]>>(keys.size());
+    for (final var key : keys) {
+      final var accountInfo = accountMap.get(key);
+      accounts.add(AccountFetcher.isNull(accountInfo) ? null : accountInfo);
+    }
+    return new AccountResult(Collections.unmodifiableList(accounts), Collections.unmodifiableMap(accountMap));
+  }
+
+  /// Keeps the newest response per key: a lane answering from an older slot
+  /// never replaces what another lane already cached. Entries past the TTL are
+  /// swept at most once per TTL.
+  private void cacheResponses(final Map<PublicKey, AccountInfo<byte[]>> accountsMap,
+                              final long batchSlot,
+                              final long fetchedAt) {
+    for (final var entry : accountsMap.entrySet()) {
+      final var accountInfo = entry.getValue();
+      final var context = accountInfo.context();
+      final var cached = new CachedAccount(accountInfo, context == null ? batchSlot : context.slot(), fetchedAt);
+      responseCache.merge(entry.getKey(), cached, (previous, latest) -> latest.slot() >= previous.slot() ? latest : previous);
+    }
+    final long expiredBefore = fetchedAt - responseCacheTtlMillis;
+    if (lastCacheSweep < expiredBefore) {
+      lastCacheSweep = fetchedAt;
+      responseCache.values().removeIf(cached -> cached.fetchedAt() < expiredBefore);
+    }
+  }
+
+  /// The calling thread drives the first lane; any further lanes run on their
+  /// own virtual threads for as long as it does, and are interrupted when it
+  /// exits.
+  @Override
+  public void run() {
+    final int numLanes = lanes.length;
+    if (numLanes == 1) {
+      lanes[0].run();
+    } else {
+      final var laneThreads = new Thread[numLanes - 1];
+      for (int i = 1; i < numLanes; ++i) {
+        laneThreads[i - 1] = Thread.ofVirtual().name("account-fetcher-lane-" + i).start(lanes[i]);
+      }
+      try {
+        lanes[0].run();
+      } finally {
+        for (final var laneThread : laneThreads) {
+          laneThread.interrupt();
+        }
+      }
+    }
+  }
+
+  /// Lanes finish out of order, so a response may carry an older slot than
+  /// one already observed; only ever move forward.
+  private void advanceRecentSlot(final long slot, final Instant timestamp) {
+    lock.lock();
+    try {
+      final var current = this.recentSlot;
+      if (current == null || slot > current.slot()) {
+        this.recentSlot = new StampedSlot(slot, timestamp);
       }
-      return createBatchKeys(size);
     } finally {
       lock.unlock();
     }
   }
 
-  private void delay(final Duration pollDelay, final long pollDelayNanos) throws InterruptedException {
-    if (reactive) {
-      // Break out on the first batch received after the minimum delay has been met.
+  /// One request in flight at a time: builds a batch from the shared queue,
+  /// fetches it and serves every consumer riding it. Each lane owns its batch
+  /// set, the batches it planned and its in-flight request; the queue is
+  /// shared and planning is serialized by `lock`, so deadline order and
+  /// unique-consumer guards hold across lanes.
+  private final class FetchLane implements Runnable {
+
+    private final int id;
+    private final Set<PublicKey> baseKeys;
+    /// Null unless this lane carries always-fetch keys on an adaptive
+    /// cadence, in which case each cycle starts from just the ones due.
+    private final PollCadence cadence;
+    /// What an idle lane's request covers: the always-fetch keys, unless
+    /// the next request may leave some of them out.
+    private final Set<PublicKey> idleKeys;
+    private final LinkedHashSet<PublicKey> batch;
+    /// Only touched by the lane's own thread.
+    private final ArrayList<AccountBatch> planned;
+
+    private volatile InFlight inFlight;
+    private volatile Thread thread;
+    /// Set while a reactive lane is parked on an empty queue; cleared by the
+    /// producer that wakes it, so the next one wakes another lane.
+    private volatile boolean waiting;
+
+    private FetchLane(final int id, final Set<PublicKey> baseKeys, final PollCadence cadence) {
+      this.id = id;
+      this.baseKeys = baseKeys;
+      this.cadence = cadence;
+      this.idleKeys = cadence == null ? baseKeys : Set.of();
+      this.batch = new LinkedHashSet<>((int) Math.ceil((SolanaRpcClient.MAX_MULTIPLE_ACCOUNTS << 1) / (double) 0.75f));
+      if (cadence == null) {
+        this.batch.addAll(baseKeys);
+      }
+      this.planned = new ArrayList<>();
+      this.inFlight = new InFlight(idleKeys, new CompletableFuture<>());
+    }
+
+    private void wake() {
+      final var thread = this.thread;
+      if (thread != null) {
+        LockSupport.unpark(thread);
+      }
+    }
+
+    /// Swaps in the request about to be sent. Riders that attached to the
+    /// idle always-fetch request are served by this one, as are futures
+    /// sharing its result.
+    private void publish(final Set<PublicKey> keys) {
+      final var previous = this.inFlight;
+      for (List<AccountBatch> riders; (riders = previous.drain()) != null; ) {
+        planned.addAll(riders);
+      }
+      this.inFlight = new InFlight(keys, previous.sharedResult);
+    }
+
+    private List<PublicKey> createBatchKeys(final int size) {
+      final var batchKeys = new PublicKey[size];
+      final var iterator = batch.iterator();
+      for (int i = 0; i < size; ++i) {
+        batchKeys[i] = iterator.next();
+      }
+      publish(Set.of(batchKeys));
+      return Arrays.asList(batchKeys);
+    }
+
+    private void removeTrailing(final int count) {
+      for (int i = count; i > 0; --i) {
+        batch.removeLast();
+      }
+    }
+
+    private void clearBatch() {
+      if (cadence == null) {
+        removeTrailing(batch.size() - baseKeys.size());
+      } else {
+        batch.clear();
+      }
+    }
+
+    private int newKeys(final Collection<PublicKey> keys) {
+      int newKeys = 0;
+      for (final var key : keys) {
+        if (!batch.contains(key)) {
+          ++newKeys;
+        }
+      }
+      return newKeys;
+    }
+
+    private boolean addIfFits(final QueuedBatch queuedBatch, final Set<QueuedBatch> taken) {
+      final var accountBatch = queuedBatch.accountBatch();
+      final var keys = accountBatch.keys();
+      if (batch.size() + newKeys(keys) > SolanaRpcClient.MAX_MULTIPLE_ACCOUNTS) {
+        return false;
+      }
+      batch.addAll(keys);
+      planned.add(accountBatch);
+      taken.add(queuedBatch);
+      return true;
+    }
+
+    /// Plans the next request from the shared queue, earliest deadline
+    /// first. Every batch that would miss its deadline waiting for the next
+    /// cycle is taken in deadline order; when none is, the batch due soonest
+    /// anchors the request. The space left is packed first-fit decreasing by
+    /// the keys each batch would add: keys already in the request cost
+    /// nothing, so batches with slack deadlines ride along with urgent ones.
+    ///
+    /// Returns null when another lane drained the queue first, unless an
+    /// always-fetch key has gone unfetched for its whole poll bound.
+    private List<PublicKey> createBatch() {
       lock.lock();
       try {
-        for (long remainingAwaitNanos = pollDelayNanos; ; ) {
-          remainingAwaitNanos = newBatch.awaitNanos(remainingAwaitNanos);
-          if (remainingAwaitNanos <= 0) {
-            break;
+        final long now = System.nanoTime();
+        if (queue.isEmpty() && (cadence == null || !cadence.overdue(now))) {
+          return null;
+        }
+        if (cadence != null) {
+          deferredPolls.add(cadence.addDue(batch, now));
+        }
+        final long dueBefore = now + pollDelayNanos;
+        final var anchors = new ArrayList<QueuedBatch>();
+        final var candidates = new ArrayList<QueuedBatch>();
+        QueuedBatch soonest = null;
+        for (final var iterator = queue.iterator(); iterator.hasNext(); ) {
+          final var queuedBatch = iterator.next();
+          final var accountBatch = queuedBatch.accountBatch();
+          if (accountBatch.keys().size() > SolanaRpcClient.MAX_MULTIPLE_ACCOUNTS) {
+            // Should never happen because an exception is thrown on any attempt to add a batch that exceeds this limit.
+            logger.log(WARNING, "Ignoring batch because it exceeds the RPC limit of " + SolanaRpcClient.MAX_MULTIPLE_ACCOUNTS);
+            iterator.remove();
+            try {
+              accountBatch.mutableKeysExceededMaxSize();
+            } catch (final RuntimeException ex) {
+              logger.log(ERROR, "Account consumer failed handling an oversized batch; continuing to poll.", ex);
+            }
+          } else if (queuedBatch.deadline() - dueBefore <= 0) {
+            anchors.add(queuedBatch);
+          } else {
+            candidates.add(queuedBatch);
+            if (soonest == null || queuedBatch.deadline() - soonest.deadline() < 0) {
+              soonest = queuedBatch;
+            }
           }
         }
-        while (queue.isEmpty()) {
-          newBatch.await();
+        if (anchors.isEmpty()) {
+          if (soonest == null) {
+            // every queued batch was dropped: fall back to the always-fetch base
+            return createBatchKeys(batch.size());
+          }
+          final var anchor = soonest;
+          candidates.removeIf(queuedBatch -> queuedBatch == anchor);
+          anchors.add(anchor);
+        } else {
+          // stable, so equal deadlines keep queue order
+          anchors.sort(QueuedBatch.DEADLINE_ORDER);
+        }
+
+        final var first = anchors.getFirst();
+        final var firstKeys = first.accountBatch().keys();
+        if (batch.size() + newKeys(firstKeys) > SolanaRpcClient.MAX_MULTIPLE_ACCOUNTS) {
+          // This batch and the full always-fetch set cannot share one
+          // request. Serve the batch's own keys and top up with as many
+          // always-fetch keys as fit -- without rebasing the shared batch
+          // set, whose always-fetch prefix the cycle-end clearBatch trims by.
+          // Nothing has been planned yet, so the batch set holds just the
+          // always-fetch keys due this cycle.
+          // insertion order is irrelevant here: the request list and
+          // the in-flight keys both come from one toArray snapshot
+          final var batchKeys = HashSet.<PublicKey>newHashSet(SolanaRpcClient.MAX_MULTIPLE_ACCOUNTS);
+          batchKeys.addAll(firstKeys);
+          int spaceAvailable = SolanaRpcClient.MAX_MULTIPLE_ACCOUNTS - batchKeys.size();
+          for (final var alwaysFetchIterator = batch.iterator(); spaceAvailable > 0; ) {
+            if (batchKeys.add(alwaysFetchIterator.next())) {
+              --spaceAvailable;
+            }
+          }
+          // the batch is being served this cycle: hand it to the dispatch
+          // loop, or its future never completes and it is refetched forever
+          queue.removeIf(queuedBatch -> queuedBatch == first);
+          planned.add(first.accountBatch());
+          // batchKeys never escapes or changes after this point, so no
+          // immutable snapshot is needed -- unlike createBatchKeys, whose
+          // array is drawn from the constantly-mutated shared batch set
+          publish(batchKeys);
+          return Arrays.asList(batchKeys.toArray(new PublicKey[SolanaRpcClient.MAX_MULTIPLE_ACCOUNTS]));
+        }
+
+        final var taken = Collections.newSetFromMap(new IdentityHashMap<QueuedBatch, Boolean>());
+        for (final var queuedBatch : anchors) {
+          addIfFits(queuedBatch, taken);
         }
+        if (!candidates.isEmpty()) {
+          final var ranked = new ArrayList<RankedBatch>(candidates.size());
+          for (final var queuedBatch : candidates) {
+            ranked.add(new RankedBatch(queuedBatch, newKeys(queuedBatch.accountBatch().keys())));
+          }
+          // stable, so equal costs keep queue order
+          ranked.sort(Comparator.comparingInt(RankedBatch::newKeys).reversed());
+          // Each pass only shrinks what the rest would add, so repeat while
+          // one still places a batch: a skipped batch may fit after another
+          // one covered part of its keys.
+          for (boolean placed = true; placed && !ranked.isEmpty(); ) {
+            placed = false;
+            for (final var iterator = ranked.iterator(); iterator.hasNext(); ) {
+              if (addIfFits(iterator.next().queuedBatch(), taken)) {
+                iterator.remove();
+                placed = true;
+              }
+            }
+          }
+        }
+        queue.removeIf(taken::contains);
+        return createBatchKeys(batch.size());
       } finally {
         lock.unlock();
       }
-    } else {
-      do { // Amortize (pollDelay / 2) after an initial batch is added.
-        Thread.sleep(pollDelay);
-      } while (queue.isEmpty());
     }
-  }
 
-  @Override
-  public void run() {
-    try {
-      if (queue.isEmpty()) {
-        delay(pollDelay, pollDelayNanos);
+    private void updateRecentSlot(final long batchSlot,
+                                  final Map<PublicKey, AccountInfo<byte[]>> accountsMap,
+                                  final long requestedAt,
+                                  final long receivedAt) {
+      final var clockSysVar = accountsMap.get(SolanaAccounts.MAIN_NET.clockSysVar());
+      final var estimatedSlotTime = Instant.ofEpochMilli(requestedAt + ((receivedAt - requestedAt) / 2));
+      if (batchSlot != 0) {
+        // the clock sysvar only has whole seconds of chain time; the slot clock
+        // wants when this process saw the slot
+        slotClock.observe(batchSlot, estimatedSlotTime);
       }
-      for (; ; ) {
-        final var keys = createBatch();
-
-        final long requestedAt = System.currentTimeMillis();
-        final var accounts = rpcCaller.courteousGet(
-            rpcClient -> rpcClient.getAccounts(keys),
-            "rpcClient#getAccountsBatch"
-        );
-        final long receivedAt = System.currentTimeMillis();
-
-        final var accountsMap = toMap(keys, accounts);
-        final var clockSysVar = accountsMap.get(SolanaAccounts.MAIN_NET.clockSysVar());
-        if (clockSysVar == null) {
-          for (final var accountInfo : accounts) {
-            if (accountInfo != null) {
-              final var context = accountInfo.context();
-              if (context != null) {
-                final long slot = context.slot();
-                if (slot != 0) {
-                  final long estimatedSlotTime = requestedAt + ((receivedAt - requestedAt) / 2);
-                  this.recentSlot = new StampedSlot(slot, Instant.ofEpochMilli(estimatedSlotTime));
-                }
-              }
-            }
-          }
-        } else {
-          final long epochSeconds = ByteUtil.getInt64LE(clockSysVar.data(), 32);
-          this.recentSlot = new StampedSlot(clockSysVar.context().slot(), Instant.ofEpochSecond(epochSeconds));
+      if (clockSysVar == null) {
+        if (batchSlot != 0) {
+          advanceRecentSlot(batchSlot, estimatedSlotTime);
         }
+      } else {
+        final long epochSeconds = ByteUtil.getInt64LE(clockSysVar.data(), 32);
+        advanceRecentSlot(clockSysVar.context().slot(), Instant.ofEpochSecond(epochSeconds));
+      }
+    }
+
+    private List<AccountInfo<byte[]>> fetch(final List<PublicKey> keys) throws InterruptedException {
+      requests.increment();
+      requestedKeys.add(keys.size());
+      final var stampedSlot = recentSlot;
+      return endpointRouter.getAccounts(keys, stampedSlot == null ? 0 : stampedSlot.slot());
+    }
 
-        for (final var accountConsumer : alwaysCall) {
-          dispatch(accountConsumer, accounts, accountsMap);
+    /// Requests only the keys without a fresh push, and fills the pushed
+    /// accounts back in so the response lines up with `keys` as usual.
+    private List<AccountInfo<byte[]>> fetchUnpushed(final List<PublicKey> keys) throws InterruptedException {
+      final int numKeys = keys.size();
+      final long now = System.nanoTime();
+      final var pushed = new ArrayList<AccountInfo<byte[]>>(numKeys);
+      final var remoteKeys = new ArrayList<PublicKey>(numKeys);
+      for (final var key : keys) {
+        final var accountInfo = hotKeys.pushed(key, now);
+        pushed.add(accountInfo);
+        if (accountInfo == null) {
+          remoteKeys.add(key);
         }
+      }
+      final int numPushed = numKeys - remoteKeys.size();
+      if (numPushed == 0) {
+        final var accounts = fetch(keys);
+        hotKeys.fetched(keys, accounts, System.nanoTime());
+        return accounts;
+      }
+      pushedKeys.add(numPushed);
+      final List<AccountInfo<byte[]>> remoteAccounts = remoteKeys.isEmpty() ? List.of() : fetch(remoteKeys);
+      hotKeys.fetched(remoteKeys, remoteAccounts, System.nanoTime());
+      final var accounts = new ArrayList<AccountInfo<byte[]>>(numKeys);
+      int r = 0;
+      for (final var accountInfo : pushed) {
+        accounts.add(accountInfo == null ? remoteAccounts.get(r++) : accountInfo);
+      }
+      return accounts;
+    }
+
+    /// Either way a batch that cannot wait out the delay cuts it short.
+    private void delay() throws InterruptedException {
+      for (long waitUntil = System.nanoTime() + pollDelayNanos; ; ) {
+        final long remainingNanos = waitUntil - System.nanoTime();
+        if (remainingNanos <= 0) {
+          if (reactive) {
+            break;
+          } else if (!queue.isEmpty() || (cadence != null && cadence.overdue(System.nanoTime()))) {
+            // Amortize (pollDelay / 2) after an initial batch is added.
+            return;
+          }
+          waitUntil = System.nanoTime() + pollDelayNanos;
+          continue;
+        }
+        LockSupport.parkNanos(this, remainingNanos);
+        if (Thread.interrupted()) {
+          throw new InterruptedException();
+        } else if (urgentBatchQueued.compareAndSet(true, false)) {
+          return;
+        }
+      }
+      // Break out on the first batch received after the minimum delay has been met.
+      // The flag is raised before the queue is checked, and producers add
+      // before they check the flag, so a wake-up cannot fall between the two.
+      while (queue.isEmpty()) {
+        final long untilOverdue = cadence == null ? Long.MAX_VALUE : cadence.nanosUntilOverdue(System.nanoTime());
+        if (untilOverdue <= 0) {
+          return;
+        }
+        waiting = true;
+        try {
+          if (!queue.isEmpty()) {
+            break;
+          } else if (cadence == null) {
+            LockSupport.park(this);
+          } else {
+            LockSupport.parkNanos(this, untilOverdue);
+          }
+        } finally {
+          waiting = false;
+        }
+        if (Thread.interrupted()) {
+          throw new InterruptedException();
+        }
+      }
+    }
 
+    private void deliver(final AccountBatch accountBatch,
+                         final List<AccountInfo<byte[]>> accounts,
+                         final Map<PublicKey, AccountInfo<byte[]>> accountsMap) throws InterruptedException {
+      if (accountBatch instanceof UniqueAccountBatchRecord(_, final AccountConsumer accountConsumer)) {
+        pendingUniqueConsumers.remove(accountConsumer);
+        handOff(accountConsumer, () -> dispatch(accountConsumer, accounts, accountsMap));
+      } else if (accountBatch instanceof AccountBatchRecord(_, final AccountConsumer accountConsumer)) {
+        handOff(accountConsumer, () -> dispatch(accountConsumer, accounts, accountsMap));
+      } else {
+        // completing a future is already a hand-off
+        dispatch(accountBatch, accounts, accountsMap);
+      }
+    }
+
+    @Override
+    public void run() {
+      this.thread = Thread.currentThread();
+      try {
+        if (queue.isEmpty()) {
+          delay();
+        }
         for (; ; ) {
-          final var accountBatch = currentBatch.pollFirst();
-          if (accountBatch == null) {
-            lock.lock();
-            try {
-              if (currentBatch.isEmpty()) { // Reset Batch
-                this.currentBatchKeys = this.alwaysFetch;
-                break;
+          final var keys = createBatch();
+          if (keys == null) {
+            delay();
+            continue;
+          }
+
+          final long requestedAt = System.currentTimeMillis();
+          final var accounts = hotKeys == null ? fetch(keys) : fetchUnpushed(keys);
+          final long receivedAt = System.currentTimeMillis();
+
+          final var accountsMap = toMap(keys, accounts);
+          final long batchSlot = maxContextSlot(accounts);
+          updateRecentSlot(batchSlot, accountsMap, requestedAt, receivedAt);
+          if (cadence != null) {
+            cadence.fetched(keys, accounts, batchSlot, System.nanoTime());
+          }
+          if (responseCache != null) {
+            cacheResponses(accountsMap, batchSlot, receivedAt);
+          }
+
+          for (final var accountConsumer : alwaysCall) {
+            handOff(accountConsumer, () -> dispatch(accountConsumer, accounts, accountsMap));
+          }
+          for (final var changeFilter : changeListeners.values()) {
+            // filtered on the consumer's dispatch queue, which also keeps the
+            // filter single threaded across lanes
+            final var accountConsumer = changeFilter.accountConsumer();
+            handOff(accountConsumer, () -> {
+              final var changes = changeFilter.changes(keys, accounts);
+              if (changes != null) {
+                dispatch(accountConsumer, changes.accounts(), changes.accountMap());
               }
-            } finally {
-              lock.unlock();
+            });
+          }
+
+          for (final var accountBatch : planned) {
+            deliver(accountBatch, accounts, accountsMap);
+          }
+          // riders keep attaching, from consumer callbacks too, until a drain
+          // comes back empty and closes the request to them
+          final var inFlight = this.inFlight;
+          for (List<AccountBatch> riders; (riders = inFlight.drain()) != null; ) {
+            for (final var accountBatch : riders) {
+              deliver(accountBatch, accounts, accountsMap);
             }
-          } else if (accountBatch instanceof UniqueAccountBatchRecord(_, final AccountConsumer accountConsumer)) {
-            pendingUniqueConsumers.remove(accountConsumer);
-            dispatch(accountConsumer, accounts, accountsMap);
-          } else {
-            dispatch(accountBatch, accounts, accountsMap);
           }
-        }
+          inFlight.sharedResult.complete(new AccountResult(accounts, accountsMap));
+          planned.clear();
+          this.inFlight = new InFlight(idleKeys, new CompletableFuture<>());
 
-        clearBatch();
+          clearBatch();
 
-        delay(pollDelay, pollDelayNanos);
+          delay();
+        }
+      } catch (final InterruptedException e) {
+        // exit
+      } catch (final RuntimeException ex) {
+        logger.log(ERROR, "Unexpected error fetching accounts on lane " + id + ".", ex);
       }
-    } catch (final InterruptedException e) {
-      // exit
-    } catch (final RuntimeException ex) {
-      logger.log(ERROR, "Unexpected error fetching accounts.", ex);
     }
   }
 
+  private void handOff(final AccountConsumer accountConsumer, final Runnable delivery) throws InterruptedException {
+    // a queue that retired between the lookup and the offer is already gone
+    // from the map, so the next lookup creates a fresh one
+    while (!dispatchQueues.computeIfAbsent(accountConsumer, DispatchQueue::new).offer(delivery)) {
+      Thread.onSpinWait();
+    }
+  }
+
+  /// Runs one consumer's deliveries in the order they were handed off, one at
+  /// a time, on the dispatch executor. A full queue blocks the handing-off
+  /// lane until the consumer catches up. Retires once drained, so one-off
+  /// consumers do not accumulate.
+  private final class DispatchQueue implements Runnable {
+
+    private final AccountConsumer accountConsumer;
+    private final ArrayDeque<Runnable> pending;
+    private final ReentrantLock queueLock;
+    private final Condition notFull;
+
+    private boolean scheduled;
+    private boolean retired;
+
+    private DispatchQueue(final AccountConsumer accountConsumer) {
+      this.accountConsumer = accountConsumer;
+      this.pending = new ArrayDeque<>(dispatchQueueCapacity);
+      this.queueLock = new ReentrantLock();
+      this.notFull = queueLock.newCondition();
+    }
+
+    /// Returns false if this queue retired first.
+    private boolean offer(final Runnable delivery) throws InterruptedException {
+      queueLock.lock();
+      try {
+        if (retired) {
+          return false;
+        }
+        if (pending.size() >= dispatchQueueCapacity) {
+          dispatchStalls.increment();
+          logger.log(WARNING, String.format(
+              "Account consumer %s is %d batches behind; fetching waits for it.",
+              accountConsumer, pending.size()
+          ));
+          do {
+            notFull.await();
+          } while (pending.size() >= dispatchQueueCapacity);
+        }
+        pending.addLast(delivery);
+        if (scheduled) {
+          return true;
+        }
+        scheduled = true;
+      } finally {
+        queueLock.unlock();
+      }
+      try {
+        dispatchExecutor.execute(this);
+      } catch (final RuntimeException ex) {
+        queueLock.lock();
+        try {
+          scheduled = false;
+        } finally {
+          queueLock.unlock();
+        }
+        throw ex;
+      }
+      return true;
+    }
+
+    @Override
+    public void run() {
+      for (; ; ) {
+        final Runnable delivery;
+        queueLock.lock();
+        try {
+          delivery = pending.pollFirst();
+          if (delivery == null) {
+            scheduled = false;
+            retired = true;
+            dispatchQueues.remove(accountConsumer, this);
+            return;
+          }
+          notFull.signal();
+        } finally {
+          queueLock.unlock();
+        }
+        delivery.run();
+      }
+    }
+  }
 
-  /// Consumer callbacks run on the polling thread inside run()'s try, so an
-  /// unguarded throw would exit the loop and silently stop account fetching
-  /// for every service sharing this fetcher. A consumer's failure is its own:
-  /// log it and keep polling.
+  /// An unguarded throw would end the consumer's dispatch queue drain, or for
+  /// a completed future the fetch lane itself. A consumer's failure is its
+  /// own: log it and keep serving.
   private static void dispatch(final AccountConsumer accountConsumer,
                                final List<AccountInfo<byte[]>> accounts,
                                final Map<PublicKey, AccountInfo<byte[]>> accountsMap) {
@@ -427,6 +1180,19 @@ final class AccountFetcherImpl implements AccountFetcher {
     }
   }
 
+  static long maxContextSlot(final List<AccountInfo<byte[]>> accounts) {
+    long maxSlot = 0;
+    for (final var accountInfo : accounts) {
+      if (accountInfo != null) {
+        final var context = accountInfo.context();
+        if (context != null) {
+          maxSlot = Math.max(maxSlot, context.slot());
+        }
+      }
+    }
+    return maxSlot;
+  }
+
   private static Map<PublicKey, AccountInfo<byte[]>> toMap(final List<PublicKey> keys,
                                                            final List<AccountInfo<byte[]>> accounts) {
     final var accountsMap = HashMap.<PublicKey, AccountInfo<byte[]>>newHashMap(accounts.size());
@@ -442,6 +1208,73 @@ final class AccountFetcherImpl implements AccountFetcher {
     return Collections.unmodifiableMap(accountsMap);
   }
 
+  private record CachedAccount(AccountInfo<byte[]> accountInfo, long slot, long fetchedAt) {
+  }
+
+  /// A lane's request and the batches riding it. Producers push riders onto a
+  /// lock-free stack; the lane drains it until a drain finds it empty, which
+  /// closes it so a late rider queues instead of being stranded.
+  private static final class InFlight {
+
+    private static final Rider CLOSED = new Rider(null, null);
+
+    private final Set<PublicKey> keys;
+    private final CompletableFuture<AccountResult> sharedResult;
+    private final AtomicReference<Rider> riders;
+
+    private InFlight(final Set<PublicKey> keys, final CompletableFuture<AccountResult> sharedResult) {
+      this.keys = keys;
+      this.sharedResult = sharedResult;
+      this.riders = new AtomicReference<>();
+    }
+
+    /// Returns false once the request is closed.
+    private boolean attach(final AccountBatch accountBatch) {
+      for (; ; ) {
+        final var head = riders.get();
+        if (head == CLOSED) {
+          return false;
+        } else if (riders.compareAndSet(head, new Rider(accountBatch, head))) {
+          return true;
+        }
+      }
+    }
+
+    /// The riders attached since the last drain, oldest first, or null once
+    /// there are none left and the request is closed.
+    private List<AccountBatch> drain() {
+      for (; ; ) {
+        final var head = riders.get();
+        if (head == CLOSED) {
+          return null;
+        } else if (head == null) {
+          if (riders.compareAndSet(null, CLOSED)) {
+            return null;
+          }
+        } else if (riders.compareAndSet(head, null)) {
+          final var drained = new ArrayList<AccountBatch>();
+          for (var rider = head; rider != null; rider = rider.next()) {
+            drained.add(rider.accountBatch());
+          }
+          return drained.reversed();
+        }
+      }
+    }
+  }
+
+  private record Rider(AccountBatch accountBatch, Rider next) {
+  }
+
+  /// `deadline` is a [System#nanoTime()] value.
+  private record QueuedBatch(AccountBatch accountBatch, long deadline) {
+
+    static final Comparator<QueuedBatch> DEADLINE_ORDER = (a, b) -> Long.compare(a.deadline - b.deadline, 0);
+  }
+
+  /// `newKeys` is what the batch would add to the request being planned.
+  private record RankedBatch(QueuedBatch queuedBatch, int newKeys) {
+  }
+
   private interface AccountBatch extends AccountConsumer {
 
     Collection<PublicKey> keys();
@@ -475,7 +1308,7 @@ final class AccountFetcherImpl implements AccountFetcher {
     }
   }
 
-  private record CompletableAccountBatch(Collection<PublicKey> keys,
+  private record CompletableAccountBatch(Set<PublicKey> keys,
                                          CompletableFuture<AccountResult> future) implements AccountBatch {
 
     @Override
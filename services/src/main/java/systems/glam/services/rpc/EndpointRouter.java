@@ -0,0 +1,202 @@
+package systems.glam.services.rpc;
+
+import software.sava.core.accounts.PublicKey;
+import software.sava.rpc.json.http.client.SolanaRpcClient;
+import software.sava.rpc.json.http.response.AccountInfo;
+import software.sava.services.core.remote.load_balance.BalancedItem;
+import software.sava.services.solana.remote.call.RpcCaller;
+import systems.glam.services.config.AccountFetcherConfig.FetchMode;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static java.lang.System.Logger.Level.DEBUG;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/// Sends the fetch lanes' getMultipleAccounts requests according to the
+/// configured [FetchMode].
+///
+/// Hedged and sharded requests address endpoints directly rather than through
+/// the courteous, capacity-tracked path, and fall back to it whenever no
+/// direct answer is usable, so a failing or lagging endpoint still gets the
+/// caller's retries and backoff. With fewer than two endpoints both modes are
+/// plain balanced requests.
+final class EndpointRouter {
+
+  private static final System.Logger logger = System.getLogger(AccountFetcher.class.getName());
+
+  /// Hedging waits for this many latency samples before trusting the
+  /// percentile; until then a request simply waits for its endpoint.
+  static final int MIN_LATENCY_SAMPLES = 16;
+  private static final int LATENCY_WINDOW = 128;
+
+  private final RpcCaller rpcCaller;
+  private final FetchMode fetchMode;
+  private final double hedgePercentile;
+  private final AtomicInteger nextEndpoint;
+  private final LongAdder hedgedRequests;
+  private final ReentrantLock latencyLock;
+  /// Guarded by `latencyLock`: a ring of the most recent fetch latencies.
+  private final long[] latencies;
+  private long numLatencies;
+
+  EndpointRouter(final RpcCaller rpcCaller, final FetchMode fetchMode, final double hedgePercentile) {
+    this.rpcCaller = rpcCaller;
+    this.fetchMode = fetchMode;
+    this.hedgePercentile = hedgePercentile;
+    this.nextEndpoint = new AtomicInteger();
+    this.hedgedRequests = new LongAdder();
+    this.latencyLock = new ReentrantLock();
+    this.latencies = new long[LATENCY_WINDOW];
+  }
+
+  long hedgedRequests() {
+    return hedgedRequests.sum();
+  }
+
+  /// `recentSlot` is the newest slot the fetcher has observed; a direct
+  /// response from an older slot is treated as unusable.
+  List<AccountInfo<byte[]>> getAccounts(final List<PublicKey> keys, final long recentSlot) throws InterruptedException {
+    return switch (fetchMode) {
+      case BALANCED -> courteousGet(keys);
+      case HEDGED -> hedgedGet(keys, recentSlot);
+      case SHARDED -> shardedGet(keys, recentSlot);
+    };
+  }
+
+  private List<AccountInfo<byte[]>> courteousGet(final List<PublicKey> keys) {
+    return rpcCaller.courteousGet(
+        rpcClient -> rpcClient.getAccounts(keys),
+        "rpcClient#getAccountsBatch"
+    );
+  }
+
+  /// Each batch goes to the endpoint its keys hash to, so a batch that is
+  /// fetched every cycle keeps reading from the same node while different
+  /// batches spread across all of them. The hash ignores key order.
+  private List<AccountInfo<byte[]>> shardedGet(final List<PublicKey> keys, final long recentSlot) {
+    final var endpoints = rpcCaller.rpcClients().items();
+    final int numEndpoints = endpoints.size();
+    if (numEndpoints < 2) {
+      return courteousGet(keys);
+    }
+    int hash = 0;
+    for (final var key : keys) {
+      hash += key.hashCode();
+    }
+    final var endpoint = endpoints.get(Math.floorMod(hash, numEndpoints));
+    final var accounts = usable(send(endpoint, keys), recentSlot);
+    return accounts == null ? courteousGet(keys) : accounts;
+  }
+
+  /// Sends to the next endpoint in turn and, if it has not answered by the
+  /// configured latency percentile, to the one after it as well. The first
+  /// usable answer wins; an unusable first answer hedges at once.
+  private List<AccountInfo<byte[]>> hedgedGet(final List<PublicKey> keys, final long recentSlot) throws InterruptedException {
+    final var endpoints = rpcCaller.rpcClients().items();
+    final int numEndpoints = endpoints.size();
+    if (numEndpoints < 2) {
+      return courteousGet(keys);
+    }
+    final int primary = Math.floorMod(nextEndpoint.getAndIncrement(), numEndpoints);
+    final var answers = new ArrayBlockingQueue<CompletableFuture<List<AccountInfo<byte[]>>>>(2);
+    final long start = System.nanoTime();
+    final long hedgeDelay = hedgeDelayNanos();
+
+    final var first = send(endpoints.get(primary), keys);
+    first.whenComplete((_, _) -> answers.add(first));
+    CompletableFuture<List<AccountInfo<byte[]>>> second = null;
+    int outstanding = 1;
+    for (; ; ) {
+      final CompletableFuture<List<AccountInfo<byte[]>>> answer;
+      if (second != null || hedgeDelay < 0) {
+        answer = answers.take();
+      } else {
+        answer = answers.poll(hedgeDelay - (System.nanoTime() - start), NANOSECONDS);
+      }
+      if (answer != null) {
+        --outstanding;
+        final var accounts = usable(answer, recentSlot);
+        if (accounts != null) {
+          recordLatency(System.nanoTime() - start);
+          if (outstanding > 0) {
+            (answer == first ? second : first).cancel(true);
+          }
+          return accounts;
+        } else if (second != null) {
+          if (outstanding == 0) {
+            return courteousGet(keys);
+          }
+          continue;
+        }
+      }
+      hedgedRequests.increment();
+      final var hedge = send(endpoints.get((primary + 1) % numEndpoints), keys);
+      second = hedge;
+      hedge.whenComplete((_, _) -> answers.add(hedge));
+      ++outstanding;
+    }
+  }
+
+  private static CompletableFuture<List<AccountInfo<byte[]>>> send(final BalancedItem<SolanaRpcClient> endpoint,
+                                                                    final List<PublicKey> keys) {
+    try {
+      return endpoint.item().getAccounts(keys);
+    } catch (final RuntimeException ex) {
+      return CompletableFuture.failedFuture(ex);
+    }
+  }
+
+  /// Null if the request failed, returned nothing, or answered from a slot
+  /// older than one already observed.
+  private static List<AccountInfo<byte[]>> usable(final CompletableFuture<List<AccountInfo<byte[]>>> answer,
+                                                  final long recentSlot) {
+    final List<AccountInfo<byte[]>> accounts;
+    try {
+      accounts = answer.join();
+    } catch (final RuntimeException ex) {
+      logger.log(DEBUG, "Direct account request failed.", ex);
+      return null;
+    }
+    if (accounts == null) {
+      return null;
+    }
+    final long slot = AccountFetcherImpl.maxContextSlot(accounts);
+    if (slot != 0 && slot < recentSlot) {
+      logger.log(DEBUG, "Discarding account response from slot {0}, behind {1}.", slot, recentSlot);
+      return null;
+    }
+    return accounts;
+  }
+
+  /// Negative until enough latencies have been sampled.
+  long hedgeDelayNanos() {
+    final long[] sorted;
+    latencyLock.lock();
+    try {
+      if (numLatencies < MIN_LATENCY_SAMPLES) {
+        return -1;
+      }
+      sorted = Arrays.copyOf(latencies, (int) Math.min(numLatencies, LATENCY_WINDOW));
+    } finally {
+      latencyLock.unlock();
+    }
+    Arrays.sort(sorted);
+    final int index = (int) Math.ceil(hedgePercentile * sorted.length) - 1;
+    return sorted[Math.clamp(index, 0, sorted.length - 1)];
+  }
+
+  void recordLatency(final long nanos) {
+    latencyLock.lock();
+    try {
+      latencies[(int) (numLatencies++ % LATENCY_WINDOW)] = nanos;
+    } finally {
+      latencyLock.unlock();
+    }
+  }
+}
@@ -0,0 +1,238 @@
+package systems.glam.services.rpc;
+
+import software.sava.core.accounts.PublicKey;
+import software.sava.rpc.json.http.response.AccountInfo;
+import software.sava.rpc.json.http.ws.SolanaRpcWebsocket;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static java.lang.System.Logger.Level.INFO;
+import static java.lang.System.Logger.Level.WARNING;
+
+/// Moves hot keys from polling to websocket account subscriptions.
+///
+/// Polled keys are watched for one window at a time; a key whose data changed
+/// in at least `changeThreshold` of its fetches during a window is subscribed
+/// once a websocket is available. While its latest push is fresh the fetch
+/// lanes serve the key from it instead of requesting it. A push older than
+/// `maxPushAgeNanos`, a push that came over a websocket since replaced, a
+/// websocket that has not pushed since it (re)connected, or no websocket at
+/// all, all fall back to polling the key. A dropped connection goes unnoticed
+/// until the next websocket is handed over, so `maxPushAgeNanos` is kept well
+/// under the time the key could otherwise wait. At the end of a window,
+/// subscriptions quiet for longer than `staleAfterNanos` or not requested are
+/// dropped and their keys are watched again.
+final class HotKeySubscriptions {
+
+  private static final System.Logger logger = System.getLogger(AccountFetcher.class.getName());
+
+  private final int changeThreshold;
+  private final long windowNanos;
+  private final long maxPushAgeNanos;
+  private final long staleAfterNanos;
+  /// Every push is a sample of when its slot was reached.
+  private final SlotClock slotClock;
+  private final ReentrantLock lock;
+  /// Guarded by `lock`.
+  private final HashMap<PublicKey, KeyStats> polled;
+  private final ConcurrentHashMap<PublicKey, Subscription> subscriptions;
+
+  /// Guarded by `lock`.
+  private long windowStart;
+  private volatile SolanaRpcWebsocket websocket;
+
+  HotKeySubscriptions(final int changeThreshold,
+                      final long windowNanos,
+                      final long maxPushAgeNanos,
+                      final long staleAfterNanos,
+                      final SlotClock slotClock) {
+    this.changeThreshold = changeThreshold;
+    this.windowNanos = windowNanos;
+    this.maxPushAgeNanos = maxPushAgeNanos;
+    this.staleAfterNanos = staleAfterNanos;
+    this.slotClock = slotClock;
+    this.lock = new ReentrantLock();
+    this.polled = HashMap.newHashMap(256);
+    this.subscriptions = new ConcurrentHashMap<>(32);
+    this.windowStart = System.nanoTime();
+  }
+
+  /// Called with each new websocket, so every subscription is renewed on the
+  /// new connection and polled until its first push arrives there.
+  void subscribe(final SolanaRpcWebsocket websocket) {
+    this.websocket = websocket;
+    for (final var subscription : subscriptions.values()) {
+      subscription.renew();
+      subscribe(websocket, subscription);
+    }
+  }
+
+  private void subscribe(final SolanaRpcWebsocket websocket, final Subscription subscription) {
+    try {
+      websocket.accountSubscribe(subscription.key, accountInfo -> {
+        if (this.websocket != websocket) {
+          // late from a replaced connection, which is no longer watched
+          return;
+        }
+        final var context = accountInfo.context();
+        if (context != null) {
+          slotClock.observe(context.slot(), Instant.now());
+        }
+        subscription.accept(accountInfo);
+      });
+    } catch (final RuntimeException ex) {
+      logger.log(WARNING, "Failed to subscribe to account " + subscription.key + "; it stays polled.", ex);
+    }
+  }
+
+  int numSubscribed() {
+    return subscriptions.size();
+  }
+
+  /// The key's latest push if it is fresh enough to serve in place of a fetch,
+  /// otherwise null.
+  AccountInfo<byte[]> pushed(final PublicKey key, final long now) {
+    final var subscription = subscriptions.get(key);
+    if (subscription == null) {
+      return null;
+    }
+    subscription.requested = true;
+    final var latest = subscription.latest;
+    return latest == null || now - subscription.pushedAt > maxPushAgeNanos ? null : latest;
+  }
+
+  /// `keys` and `accounts` are a fetched request and its response, index for
+  /// index.
+  void fetched(final List<PublicKey> keys, final List<AccountInfo<byte[]>> accounts, final long now) {
+    List<Subscription> promoted = null;
+    List<Subscription> dropped = null;
+    lock.lock();
+    try {
+      final int numAccounts = accounts.size();
+      for (int i = 0; i < numAccounts; ++i) {
+        final var key = keys.get(i);
+        if (subscriptions.containsKey(key)) {
+          // polled while its push is stale; judged by the subscription instead
+          continue;
+        }
+        final var accountInfo = accounts.get(i);
+        final long hash = AccountFetcher.isNull(accountInfo) ? 0 : AccountChangeFilter.hash(accountInfo.data());
+        final var stats = polled.get(key);
+        if (stats == null) {
+          polled.put(key, new KeyStats(hash));
+        } else {
+          stats.fetched = true;
+          if (stats.hash != hash) {
+            stats.hash = hash;
+            ++stats.changes;
+          }
+        }
+      }
+      if (now - windowStart < windowNanos) {
+        return;
+      }
+      windowStart = now;
+      for (final var subscription : subscriptions.values()) {
+        // quiet since its last push, or since it was (re)subscribed
+        if (!subscription.requested || now - subscription.pushedAt > staleAfterNanos) {
+          subscriptions.remove(subscription.key, subscription);
+          if (dropped == null) {
+            dropped = new ArrayList<>();
+          }
+          dropped.add(subscription);
+        } else {
+          subscription.requested = false;
+        }
+      }
+      final var websocket = this.websocket;
+      for (final var iterator = polled.entrySet().iterator(); iterator.hasNext(); ) {
+        final var entry = iterator.next();
+        final var stats = entry.getValue();
+        if (!stats.fetched) {
+          iterator.remove();
+        } else if (websocket != null && stats.changes >= changeThreshold) {
+          iterator.remove();
+          final var subscription = new Subscription(entry.getKey());
+          subscriptions.put(subscription.key, subscription);
+          if (promoted == null) {
+            promoted = new ArrayList<>();
+          }
+          promoted.add(subscription);
+        } else {
+          stats.fetched = false;
+          stats.changes = 0;
+        }
+      }
+    } finally {
+      lock.unlock();
+    }
+    // websocket calls are made outside the lock
+    final var websocket = this.websocket;
+    if (dropped != null) {
+      logger.log(INFO, "Polling {0} accounts whose subscriptions went quiet or unused.", dropped.size());
+      if (websocket != null) {
+        for (final var subscription : dropped) {
+          try {
+            websocket.accountUnsubscribe(subscription.key);
+          } catch (final RuntimeException ex) {
+            logger.log(WARNING, "Failed to unsubscribe from account " + subscription.key + ".", ex);
+          }
+        }
+      }
+    }
+    if (promoted != null && websocket != null) {
+      logger.log(INFO, "Subscribing to {0} frequently changing accounts instead of polling them.", promoted.size());
+      for (final var subscription : promoted) {
+        subscribe(websocket, subscription);
+      }
+    }
+  }
+
+  private static final class KeyStats {
+
+    private long hash;
+    private int changes;
+    private boolean fetched;
+
+    private KeyStats(final long hash) {
+      this.hash = hash;
+      this.fetched = true;
+    }
+  }
+
+  private static final class Subscription {
+
+    private final PublicKey key;
+    private volatile AccountInfo<byte[]> latest;
+    private volatile long pushedAt;
+    private volatile boolean requested;
+
+    private Subscription(final PublicKey key) {
+      this.key = key;
+      this.pushedAt = System.nanoTime();
+      this.requested = true;
+    }
+
+    /// Polled until it pushes over the new connection.
+    private void renew() {
+      this.latest = null;
+      this.pushedAt = System.nanoTime();
+    }
+
+    /// Pushes only move forward in slot.
+    private void accept(final AccountInfo<byte[]> accountInfo) {
+      final var latest = this.latest;
+      if (latest != null && latest.context() != null && accountInfo.context() != null
+          && accountInfo.context().slot() < latest.context().slot()) {
+        return;
+      }
+      this.pushedAt = System.nanoTime();
+      this.latest = accountInfo;
+    }
+  }
+}
@@ -0,0 +1,11 @@
+package systems.glam.services.rpc;
+
+/// Fails an [AccountFetcher] snapshot whose accounts could not be brought up
+/// to one slot: some came back behind the rest, and again when fetched on
+/// their own. Asking again later, from a caught up endpoint, may succeed.
+public final class InconsistentSnapshotException extends IllegalStateException {
+
+  public InconsistentSnapshotException(final String message) {
+    super(message);
+  }
+}
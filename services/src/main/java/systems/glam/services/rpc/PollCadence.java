@@ -0,0 +1,130 @@
+package systems.glam.services.rpc;
+
+import software.sava.core.accounts.PublicKey;
+import software.sava.rpc.json.http.response.AccountInfo;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/// Decides which always-fetch keys ride each request.
+///
+/// Every key starts out polled with every request. A fetch that finds its data
+/// unchanged although the chain moved on doubles the key's interval, up to its
+/// bound; a fetch that finds it changed brings it back to every request. A
+/// response from no newer a slot than the key's last one says nothing about
+/// it and leaves its interval alone. The bound is the configured cap, or a tighter
+/// one set for the key's class, and is a hard one: once a key has gone that
+/// long unfetched, the lane sends a request for it even with nothing queued.
+///
+/// Only the lane carrying the always-fetch keys calls into this, apart from
+/// [#bound(Collection, long)].
+final class PollCadence {
+
+  private final long minIntervalNanos;
+  private final long maxIntervalNanos;
+  private final LinkedHashMap<PublicKey, KeyCadence> keys;
+  private final ConcurrentHashMap<PublicKey, Long> bounds;
+
+  PollCadence(final Collection<PublicKey> alwaysFetch, final long minIntervalNanos, final long maxIntervalNanos) {
+    this.minIntervalNanos = minIntervalNanos;
+    this.maxIntervalNanos = Math.max(minIntervalNanos, maxIntervalNanos);
+    this.keys = LinkedHashMap.newLinkedHashMap(alwaysFetch.size());
+    final long now = System.nanoTime();
+    for (final var key : alwaysFetch) {
+      this.keys.put(key, new KeyCadence(now, minIntervalNanos));
+    }
+    this.bounds = new ConcurrentHashMap<>();
+  }
+
+  void bound(final Collection<PublicKey> keys, final long maxIntervalNanos) {
+    final long bound = Math.max(minIntervalNanos, maxIntervalNanos);
+    for (final var key : keys) {
+      if (this.keys.containsKey(key)) {
+        bounds.merge(key, bound, Math::min);
+      }
+    }
+  }
+
+  private long bound(final PublicKey key) {
+    final var bound = bounds.get(key);
+    return bound == null ? maxIntervalNanos : Math.min(bound, maxIntervalNanos);
+  }
+
+  /// Adds the keys due by `now` to `batch`, and returns how many were left
+  /// out. A key due within half the minimum interval counts as due, so
+  /// request jitter does not push it back a whole cycle.
+  int addDue(final Collection<PublicKey> batch, final long now) {
+    final long dueBy = now + (minIntervalNanos >> 1);
+    int deferred = 0;
+    for (final var entry : keys.entrySet()) {
+      final var cadence = entry.getValue();
+      // a bound tightened after the key backed off applies at once
+      final long intervalNanos = Math.min(cadence.intervalNanos, bound(entry.getKey()));
+      if (cadence.lastPolledAt + intervalNanos - dueBy <= 0) {
+        batch.add(entry.getKey());
+      } else {
+        ++deferred;
+      }
+    }
+    return deferred;
+  }
+
+  /// True once any key has gone unfetched for its whole bound.
+  boolean overdue(final long now) {
+    return nanosUntilOverdue(now) <= 0;
+  }
+
+  long nanosUntilOverdue(final long now) {
+    long until = Long.MAX_VALUE;
+    for (final var entry : keys.entrySet()) {
+      until = Math.min(until, entry.getValue().lastPolledAt + bound(entry.getKey()) - now);
+    }
+    return until;
+  }
+
+  /// `keys` and `accounts` are a fetched request and its response, index for
+  /// index, and `slot` the newest slot the response was read at.
+  void fetched(final List<PublicKey> keys,
+               final List<AccountInfo<byte[]>> accounts,
+               final long slot,
+               final long now) {
+    final int numAccounts = accounts.size();
+    for (int i = 0; i < numAccounts; ++i) {
+      final var key = keys.get(i);
+      final var cadence = this.keys.get(key);
+      if (cadence == null) {
+        continue;
+      }
+      final var accountInfo = accounts.get(i);
+      final long hash = AccountFetcher.isNull(accountInfo) ? 0 : AccountChangeFilter.hash(accountInfo.data());
+      if (cadence.polled) {
+        if (hash != cadence.hash) {
+          cadence.intervalNanos = minIntervalNanos;
+        } else if (slot > cadence.slot) {
+          cadence.intervalNanos = Math.min(cadence.intervalNanos << 1, bound(key));
+        }
+      }
+      cadence.polled = true;
+      cadence.hash = hash;
+      cadence.slot = Math.max(cadence.slot, slot);
+      cadence.lastPolledAt = now;
+    }
+  }
+
+  private static final class KeyCadence {
+
+    private long lastPolledAt;
+    private long intervalNanos;
+    private boolean polled;
+    private long hash;
+    private long slot;
+
+    private KeyCadence(final long lastPolledAt, final long intervalNanos) {
+      // due with the first request
+      this.lastPolledAt = lastPolledAt - intervalNanos;
+      this.intervalNanos = intervalNanos;
+    }
+  }
+}
@@ -0,0 +1,66 @@
+package systems.glam.services.rpc;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/// Maps slots to wall-clock time, and back, from observed `(slot, time)`
+/// samples: each fetch response read at a slot, each websocket push.
+///
+/// Keeps a least-squares line through the most recent samples, so the
+/// estimate follows the cluster's actual slot rate rather than an epoch-wide
+/// median, and reports how far off it may be: the 95% prediction interval
+/// around that line, which widens the further a query reaches past the
+/// samples, and the fewer of them there are.
+///
+/// No estimate is made until there are [#MIN_SAMPLES] samples spanning at
+/// least [#MIN_SLOT_SPAN] slots: a rate read off a handful of adjacent slots
+/// can be off by minutes once projected across a notice period, and callers
+/// are better served by their own fallback until then.
+public interface SlotClock {
+
+  int DEFAULT_WINDOW = 256;
+  int MIN_SAMPLES = 8;
+  long MIN_SLOT_SPAN = 8;
+
+  static SlotClock createClock() {
+    return createClock(DEFAULT_WINDOW);
+  }
+
+  /// `window` is how many of the most recent samples the line is fitted to.
+  static SlotClock createClock(final int window) {
+    if (window < MIN_SAMPLES) {
+      throw new IllegalArgumentException(
+          "A slot clock needs a window of at least " + MIN_SAMPLES + " samples, not " + window
+      );
+    }
+    return new SlotClockImpl(window);
+  }
+
+  /// Only the first observation of each slot counts, and only ahead of every
+  /// slot observed so far; a lagging node reporting an older slot says
+  /// nothing about when that slot happened.
+  void observe(final long slot, final Instant observedAt);
+
+  /// Null until there are enough samples, see [SlotClock].
+  SlotTime timeOfSlot(final long slot);
+
+  /// Null until there are enough samples, see [SlotClock].
+  EstimatedSlot slotAt(final Instant instant);
+
+  /// NaN until there are enough samples, see [SlotClock].
+  double millisPerSlot();
+
+  /// `time` is give or take `error`.
+  record SlotTime(Instant time, Duration error) {
+
+    /// The latest the slot is expected to arrive; waiting until then
+    /// overshoots it by no more than the error.
+    public Instant latest() {
+      return time.plus(error);
+    }
+  }
+
+  /// `slot` is give or take `error` slots.
+  record EstimatedSlot(long slot, long error) {
+  }
+}
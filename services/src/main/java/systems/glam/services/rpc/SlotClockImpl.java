@@ -0,0 +1,173 @@
+package systems.glam.services.rpc;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.locks.ReentrantLock;
+
+final class SlotClockImpl implements SlotClock {
+
+  /// Two-sided 95% Student-t quantiles by degrees of freedom, from one. Few
+  /// samples leave the residual variance itself uncertain, so the error
+  /// widens past twice the standard error until there are enough of them.
+  private static final double[] T_QUANTILES = {
+      12.706, 4.303, 3.182, 2.776, 2.571, 2.447, 2.365, 2.306, 2.262, 2.228,
+      2.201, 2.179, 2.160, 2.145, 2.131, 2.120, 2.110, 2.101, 2.093, 2.086,
+      2.080, 2.074, 2.069, 2.064, 2.060, 2.056, 2.052, 2.048, 2.045, 2.042
+  };
+
+  private final ReentrantLock lock;
+  private final long[] slots;
+  private final long[] micros;
+  private int next;
+  private int numSamples;
+  private long firstSlot;
+  private long latestSlot;
+  private volatile Fit fit;
+
+  SlotClockImpl(final int window) {
+    this.lock = new ReentrantLock();
+    this.slots = new long[window];
+    this.micros = new long[window];
+    this.latestSlot = Long.MIN_VALUE;
+  }
+
+  private static long epochMicros(final Instant instant) {
+    return Math.addExact(Math.multiplyExact(instant.getEpochSecond(), 1_000_000L), instant.getNano() / 1_000);
+  }
+
+  @Override
+  public void observe(final long slot, final Instant observedAt) {
+    lock.lock();
+    try {
+      if (slot <= latestSlot) {
+        return;
+      }
+      latestSlot = slot;
+      if (numSamples == 0) {
+        firstSlot = slot;
+      } else if (numSamples == slots.length) {
+        // the oldest sample still in the window once this one overwrites it
+        firstSlot = slots[(next + 1) % slots.length];
+      }
+      slots[next] = slot;
+      micros[next] = epochMicros(observedAt);
+      next = (next + 1) % slots.length;
+      if (numSamples < slots.length) {
+        ++numSamples;
+      }
+      this.fit = null;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /// Null until there are [#MIN_SAMPLES] spanning [#MIN_SLOT_SPAN] slots,
+  /// or while the samples cannot place a line with time moving forward.
+  private Fit fit() {
+    final var fit = this.fit;
+    if (fit != null) {
+      return fit;
+    }
+    lock.lock();
+    try {
+      if (this.fit == null && numSamples >= MIN_SAMPLES && latestSlot - firstSlot >= MIN_SLOT_SPAN) {
+        this.fit = fit(numSamples);
+      }
+      return this.fit;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /// Regresses time on slot, both taken relative to the latest sample to keep
+  /// the sums well inside double precision.
+  private Fit fit(final int n) {
+    final int latest = (next - 1 + slots.length) % slots.length;
+    final long originSlot = slots[latest];
+    final long originMicros = micros[latest];
+
+    double sumX = 0, sumY = 0;
+    for (int i = 0; i < n; ++i) {
+      sumX += slots[i] - originSlot;
+      sumY += micros[i] - originMicros;
+    }
+    final double meanX = sumX / n;
+    final double meanY = sumY / n;
+
+    double sxx = 0, sxy = 0;
+    for (int i = 0; i < n; ++i) {
+      final double dx = (slots[i] - originSlot) - meanX;
+      sxx += dx * dx;
+      sxy += dx * ((micros[i] - originMicros) - meanY);
+    }
+    final double slope = sxy / sxx;
+    if (!(slope > 0)) {
+      return Fit.NONE;
+    }
+    final double intercept = meanY - slope * meanX;
+
+    double sumSquaredResiduals = 0;
+    for (int i = 0; i < n; ++i) {
+      final double residual = (micros[i] - originMicros) - (intercept + slope * (slots[i] - originSlot));
+      sumSquaredResiduals += residual * residual;
+    }
+    final int degreesOfFreedom = n - 2;
+    final double tQuantile = degreesOfFreedom <= T_QUANTILES.length ? T_QUANTILES[degreesOfFreedom - 1] : 2;
+    return new Fit(
+        originSlot, originMicros, n, meanX, sxx, slope, intercept,
+        sumSquaredResiduals / degreesOfFreedom, tQuantile
+    );
+  }
+
+  @Override
+  public SlotTime timeOfSlot(final long slot) {
+    final var fit = fit();
+    if (fit == null || fit == Fit.NONE) {
+      return null;
+    }
+    final double x = slot - fit.originSlot;
+    final long micros = fit.originMicros + Math.round(fit.intercept + fit.slope * x);
+    final long errorMicros = Math.round(fit.errorMicros(x));
+    return new SlotTime(
+        Instant.ofEpochSecond(Math.floorDiv(micros, 1_000_000L), Math.floorMod(micros, 1_000_000L) * 1_000L),
+        Duration.ofNanos(errorMicros * 1_000L)
+    );
+  }
+
+  @Override
+  public EstimatedSlot slotAt(final Instant instant) {
+    final var fit = fit();
+    if (fit == null || fit == Fit.NONE) {
+      return null;
+    }
+    final double y = epochMicros(instant) - fit.originMicros;
+    final double x = (y - fit.intercept) / fit.slope;
+    final long error = (long) Math.ceil(fit.errorMicros(x) / fit.slope);
+    return new EstimatedSlot(fit.originSlot + Math.round(x), error);
+  }
+
+  @Override
+  public double millisPerSlot() {
+    final var fit = fit();
+    return fit == null || fit == Fit.NONE ? Double.NaN : fit.slope / 1_000;
+  }
+
+  private record Fit(long originSlot,
+                     long originMicros,
+                     int n,
+                     double meanX,
+                     double sxx,
+                     double slope,
+                     double intercept,
+                     double residualVariance,
+                     double tQuantile) {
+
+    static final Fit NONE = new Fit(0, 0, 0, 0, 0, 0, 0, 0, 0);
+
+    /// The 95% prediction interval's half-width for a single time at `x`.
+    double errorMicros(final double x) {
+      final double dx = x - meanX;
+      return tQuantile * Math.sqrt(residualVariance * (1 + 1.0 / n + (dx * dx) / sxx));
+    }
+  }
+}
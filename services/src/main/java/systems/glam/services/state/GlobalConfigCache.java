@@ -11,8 +11,6 @@ import systems.glam.services.mints.MintCache;
 import systems.glam.services.mints.MintContext;
 import systems.glam.services.rpc.AccountFetcher;
 
-import java.io.IOException;
-import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Duration;
@@ -23,8 +21,12 @@ import java.util.concurrent.CompletableFuture;
 
 import static systems.glam.services.state.GlobalConfigCacheImpl.*;
 
-public interface GlobalConfigCache extends Runnable {
+public interface GlobalConfigCache extends Runnable, AutoCloseable {
 
+  /// Restores the config from the journal beside `globalConfigFilePath`,
+  /// as of the slot it was last updated at. Without a journal, falls back to
+  /// the compressed account file, at an unknown slot, and then to fetching
+  /// the account. Should the fetch fail, the journal is closed with it.
   static CompletableFuture<GlobalConfigCache> initCache(final Path globalConfigFilePath,
                                                         final PublicKey configProgram,
                                                         final PublicKey globalConfigKey,
@@ -33,29 +35,22 @@ public interface GlobalConfigCache extends Runnable {
                                                         final RpcCaller rpcCaller,
                                                         final AccountFetcher accountFetcher,
                                                         final Duration fetchDelay) {
-    if (Files.exists(globalConfigFilePath)) {
+    final var journal = GlobalConfigJournal.openJournal(GlobalConfigJournal.resolveJournalPath(globalConfigFilePath));
+    final var latest = journal.latest();
+    if (latest != null) {
+      return CompletableFuture.completedFuture(restoreCache(
+          configProgram, globalConfigKey, solanaAccounts, mintCache, accountFetcher, fetchDelay,
+          journal, latest.slot(), latest.data()
+      ));
+    } else if (Files.exists(globalConfigFilePath)) {
       final byte[] data = FileUtils.readAccountData(globalConfigFilePath).data();
       if (data.length > 0) {
-        final var globalConfig = GlobalConfig.read(globalConfigKey, data);
-        final var assetMetaContexts = AssetMetaContext.mapAssetMetas(globalConfig);
-        final var assetMetaMap = createMap(assetMetaContexts);
-        final var globalConfigUpdate = new GlobalConfigUpdate(0, assetMetaContexts, data);
-        final var cache = new GlobalConfigCacheImpl(
-            globalConfigFilePath,
-            configProgram, globalConfigKey,
-            solanaAccounts,
-            mintCache,
-            accountFetcher,
-            fetchDelay,
-            globalConfigUpdate, assetMetaMap
-        );
-        return CompletableFuture.completedFuture(cache);
-      }
-    } else {
-      try {
-        Files.createDirectories(globalConfigFilePath.getParent());
-      } catch (final IOException e) {
-        throw new UncheckedIOException(e);
+        // written before the journal, which starts from it
+        journalGlobalConfig(journal, 0, data);
+        return CompletableFuture.completedFuture(restoreCache(
+            configProgram, globalConfigKey, solanaAccounts, mintCache, accountFetcher, fetchDelay,
+            journal, 0, data
+        ));
       }
     }
     return rpcCaller.courteousCall(
@@ -71,7 +66,7 @@ public interface GlobalConfigCache extends Runnable {
         final var globalConfigUpdate = new GlobalConfigUpdate(
             slot, assetMetaContexts, data
         );
-        persistGlobalConfig(globalConfigFilePath, data);
+        journalGlobalConfig(journal, slot, data);
         final var mintsNeeded = Arrays.stream(globalConfig.assetMetas()).<PublicKey>mapMulti((assetMeta, downstream) -> {
           final var asset = assetMeta.asset();
           final var mintContext = mintCache.get(asset);
@@ -80,7 +75,7 @@ public interface GlobalConfigCache extends Runnable {
           }
         }).toList();
         final var cache = new GlobalConfigCacheImpl(
-            globalConfigFilePath,
+            journal,
             configProgram, globalConfigKey,
             solanaAccounts,
             mintCache,
@@ -95,9 +90,37 @@ public interface GlobalConfigCache extends Runnable {
       } else {
         throw new IllegalStateException("Unexpected GlobalConfig Account.");
       }
+    }).whenComplete((cache, ex) -> {
+      if (ex != null) {
+        journal.close();
+      }
     });
   }
 
+  private static GlobalConfigCache restoreCache(final PublicKey configProgram,
+                                                final PublicKey globalConfigKey,
+                                                final SolanaAccounts solanaAccounts,
+                                                final MintCache mintCache,
+                                                final AccountFetcher accountFetcher,
+                                                final Duration fetchDelay,
+                                                final GlobalConfigJournal journal,
+                                                final long slot,
+                                                final byte[] data) {
+    final var globalConfig = GlobalConfig.read(globalConfigKey, data);
+    final var assetMetaContexts = AssetMetaContext.mapAssetMetas(globalConfig);
+    final var assetMetaMap = createMap(assetMetaContexts);
+    final var globalConfigUpdate = new GlobalConfigUpdate(slot, assetMetaContexts, data);
+    return new GlobalConfigCacheImpl(
+        journal,
+        configProgram, globalConfigKey,
+        solanaAccounts,
+        mintCache,
+        accountFetcher,
+        fetchDelay,
+        globalConfigUpdate, assetMetaMap
+    );
+  }
+
   private static Map<PublicKey, AssetMetaContext[]> createMap(final AssetMetaContext[] assetMetaContexts) {
     final var assetMetaMap = HashMap.<PublicKey, AssetMetaContext[]>newHashMap(assetMetaContexts.length);
     for (final var assetMetaContext : assetMetaContexts) {
@@ -129,6 +152,14 @@ public interface GlobalConfigCache extends Runnable {
 
   AssetMetaContext topPriorityForMint(final PublicKey mint);
 
+  /// Looks up the mint key held in `data` at `offset`, such as a token
+  /// account's mint, without reading it into a [PublicKey] first.
+  AssetMetaContext topPriorityForMint(final byte[] data, final int offset);
+
+  /// Every entry priced by `oracle`, in config order, or null if none is.
+  /// The array is shared: do not modify it.
+  AssetMetaContext[] assetMetasForOracle(final PublicKey oracle);
+
   boolean hasAssetMetaForMint(final PublicKey mint);
 
   AssetMetaContext solAssetMeta();
@@ -137,13 +168,43 @@ public interface GlobalConfigCache extends Runnable {
 
   AssetMetaContext topPriorityForMintChecked(final MintContext mintContext);
 
+  /// [#topPriorityForMintChecked(PublicKey)] for each of `mints`, resolved
+  /// against one config: the result lines up with `mints`, null where a mint
+  /// is not cached or has no entry. A decimals mismatch invalidates the config
+  /// and throws, as it does for a single mint.
+  AssetMetaContext[] topPriorityForMintsChecked(final PublicKey[] mints);
+
   CompletableFuture<Void> initCache();
 
   void forceCacheRefresh();
 
   void subscribe(final SolanaRpcWebsocket websocket);
 
+  /// Each listener is called in order on a virtual thread of its own, never
+  /// while the cache is being updated. A listener that falls behind has
+  /// consecutive changes to an asset index coalesced and, past a backlog of
+  /// 1,024 events, its oldest dropped.
   void subscribe(final GlobalConfigListener listener);
 
   void unsubscribe(final GlobalConfigListener listener);
+
+  /// Listener events delivered, summed over listeners.
+  long listenerEventsDelivered();
+
+  /// Listener events folded into the one queued before them.
+  long listenerEventsCoalesced();
+
+  /// Listener events dropped from a full listener queue.
+  long listenerEventsDropped();
+
+  /// How long the most recently delivered listener event waited to be
+  /// delivered; zero before the first.
+  Duration listenerDeliveryLag();
+
+  Duration maxListenerDeliveryLag();
+
+  /// Forces and closes the journal, after which updates are served but no
+  /// longer kept. Interrupt the thread running the poll first.
+  @Override
+  void close();
 }
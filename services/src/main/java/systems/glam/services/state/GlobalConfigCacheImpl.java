@@ -2,55 +2,99 @@ package systems.glam.services.state;
 
 import software.sava.core.accounts.PublicKey;
 import software.sava.core.accounts.SolanaAccounts;
+import software.sava.core.encoding.ByteUtil;
 import software.sava.rpc.json.http.response.AccountInfo;
 import software.sava.rpc.json.http.ws.SolanaRpcWebsocket;
+import systems.glam.sdk.idl.programs.glam.config.gen.types.AssetMeta;
 import systems.glam.sdk.idl.programs.glam.config.gen.types.GlobalConfig;
 import systems.glam.sdk.idl.programs.glam.config.gen.types.OracleSource;
 import systems.glam.services.mints.AssetMetaContext;
 import systems.glam.services.mints.MintCache;
 import systems.glam.services.mints.MintContext;
+import systems.glam.services.mints.PublicKeyIndex;
 import systems.glam.services.rpc.AccountConsumer;
 import systems.glam.services.rpc.AccountFetcher;
 
-import java.io.IOException;
-import java.nio.file.Path;
+import java.io.UncheckedIOException;
 import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Consumer;
-import java.util.zip.GZIPOutputStream;
 
 import static java.lang.System.Logger.Level.*;
-import static java.nio.file.Files.newOutputStream;
-import static java.nio.file.StandardOpenOption.*;
 
 final class GlobalConfigCacheImpl implements GlobalConfigCache, Consumer<AccountInfo<byte[]>>, AccountConsumer {
 
   private static final System.Logger logger = System.getLogger(GlobalConfigCache.class.getName());
 
-  private final Path globalConfigFilePath;
+  /// Where the first asset meta entry starts, after the vector's u32 length.
+  private static final int ASSET_METAS_DATA_OFFSET = GlobalConfig.ASSET_METAS_OFFSET + Integer.BYTES;
+
+  /// Package-private so tests can read back what was journaled.
+  final GlobalConfigJournal journal;
   private final PublicKey configProgram;
   private final PublicKey globalConfigKey;
   private final SolanaAccounts solanaAccounts;
   private final MintCache mintCache;
   private final AccountFetcher accountFetcher;
   private final long fetchDelayNanos;
-  /// Package-private so tests can assert both views were released; a leaked
-  /// lock blocks every other caller and no result assertion can see it.
-  final ReentrantReadWriteLock lock;
-  private final ReentrantReadWriteLock.ReadLock readLock;
-  private final ReentrantReadWriteLock.WriteLock writeLock;
+  /// Serializes writers and guards the conditions; readers never take it.
+  /// Package-private so tests can assert it was released; a leaked lock
+  /// blocks every other writer and no result assertion can see it.
+  final ReentrantLock lock;
   private final Condition invalidGlobalConfig;
   private final Condition newGlobalConfig;
+  private final GlobalConfigEventBus eventBus;
+  /// What validation reports to: only the bus, which queues for subscribers,
+  /// so no listener runs while the lock is held.
   private final Set<GlobalConfigListener> listeners;
 
-  volatile GlobalConfigUpdate globalConfigUpdate;
-  volatile Map<PublicKey, AssetMetaContext[]> assetMetaMap;
+  /// Everything a read needs, published as one immutable value so a reader
+  /// never pairs a config with another config's index. Null once the cache
+  /// has been invalidated.
+  private final AtomicReference<Snapshot> snapshot;
+
+  /// `assetMetaMap` is what the next update is validated against, and
+  /// `mintIndex` the same entries laid out for lookups. `oracleIndex` holds
+  /// the entries priced by each oracle, in config order.
+  private record Snapshot(GlobalConfigUpdate globalConfigUpdate,
+                          Map<PublicKey, AssetMetaContext[]> assetMetaMap,
+                          PublicKeyIndex<AssetMetaContext[]> mintIndex,
+                          PublicKeyIndex<AssetMetaContext[]> oracleIndex) {
+
+    static Snapshot create(final GlobalConfigUpdate globalConfigUpdate,
+                           final Map<PublicKey, AssetMetaContext[]> assetMetaMap) {
+      return new Snapshot(
+          globalConfigUpdate,
+          assetMetaMap,
+          PublicKeyIndex.createIndex(assetMetaMap),
+          createOracleIndex(globalConfigUpdate.assetMetaContexts())
+      );
+    }
 
-  GlobalConfigCacheImpl(final Path globalConfigFilePath,
+    /// For an update that left every entry as it was.
+    Snapshot withUpdate(final GlobalConfigUpdate globalConfigUpdate) {
+      return new Snapshot(globalConfigUpdate, assetMetaMap, mintIndex, oracleIndex);
+    }
+  }
+
+  private static PublicKeyIndex<AssetMetaContext[]> createOracleIndex(final AssetMetaContext[] assetMetaContexts) {
+    final var oracleMap = HashMap.<PublicKey, AssetMetaContext[]>newHashMap(assetMetaContexts.length);
+    for (final var assetMeta : assetMetaContexts) {
+      oracleMap.merge(assetMeta.oracle(), new AssetMetaContext[]{assetMeta}, (entries, _) -> {
+        final int len = entries.length;
+        final var newEntries = Arrays.copyOf(entries, len + 1);
+        newEntries[len] = assetMeta;
+        return newEntries;
+      });
+    }
+    return PublicKeyIndex.createIndex(oracleMap);
+  }
+
+  GlobalConfigCacheImpl(final GlobalConfigJournal journal,
                         final PublicKey configProgram,
                         final PublicKey globalConfigKey,
                         final SolanaAccounts solanaAccounts,
@@ -59,64 +103,72 @@ final class GlobalConfigCacheImpl implements GlobalConfigCache, Consumer<Account
                         final Duration fetchDelay,
                         final GlobalConfigUpdate globalConfigUpdate,
                         final Map<PublicKey, AssetMetaContext[]> assetMetaMap) {
-    this.globalConfigFilePath = globalConfigFilePath;
+    this.journal = journal;
     this.configProgram = configProgram;
     this.globalConfigKey = globalConfigKey;
     this.solanaAccounts = solanaAccounts;
     this.mintCache = mintCache;
     this.accountFetcher = accountFetcher;
     this.fetchDelayNanos = fetchDelay.toNanos();
-    final var lock = new ReentrantReadWriteLock();
-    this.lock = lock;
-    this.readLock = lock.readLock();
-    this.writeLock = lock.writeLock();
-    this.invalidGlobalConfig = writeLock.newCondition();
-    this.newGlobalConfig = writeLock.newCondition();
-    this.globalConfigUpdate = globalConfigUpdate;
-    this.assetMetaMap = assetMetaMap;
-    this.listeners = ConcurrentHashMap.newKeySet();
+    this.lock = new ReentrantLock();
+    this.invalidGlobalConfig = lock.newCondition();
+    this.newGlobalConfig = lock.newCondition();
+    this.snapshot = new AtomicReference<>(Snapshot.create(globalConfigUpdate, assetMetaMap));
+    this.eventBus = new GlobalConfigEventBus();
+    this.listeners = Set.of(eventBus);
   }
 
   @Override
   public GlobalConfigUpdate globalConfig() {
-    return globalConfigUpdate;
+    return globalConfigUpdate();
   }
 
   GlobalConfigUpdate globalConfigUpdate() {
-    return globalConfigUpdate;
+    final var snapshot = this.snapshot.get();
+    return snapshot == null ? null : snapshot.globalConfigUpdate;
+  }
+
+  Map<PublicKey, AssetMetaContext[]> assetMetaMap() {
+    final var snapshot = this.snapshot.get();
+    return snapshot == null ? null : snapshot.assetMetaMap;
   }
 
   @Override
   public AssetMetaContext getByIndex(final int index) {
-    readLock.lock();
-    try {
-      final var globalConfig = globalConfigUpdate;
-      return globalConfig.get(index);
-    } finally {
-      readLock.unlock();
-    }
+    final var snapshot = this.snapshot.get();
+    return snapshot == null ? null : snapshot.globalConfigUpdate.get(index);
   }
 
   @Override
   public AssetMetaContext topPriorityForMint(final PublicKey mint) {
-    readLock.lock();
-    try {
-      final var assetMetaMap = this.assetMetaMap;
-      final var assetMetaEntries = assetMetaMap.get(mint);
-      return assetMetaEntries == null ? null : assetMetaEntries[0];
-    } finally {
-      readLock.unlock();
+    final var snapshot = this.snapshot.get();
+    if (snapshot == null) {
+      return null;
     }
+    final var assetMetaEntries = snapshot.mintIndex.get(mint);
+    return assetMetaEntries == null ? null : assetMetaEntries[0];
   }
 
   @Override
-  public boolean hasAssetMetaForMint(final PublicKey mint) {
-    readLock.lock();
-    try {
-      return assetMetaMap.containsKey(mint);
-    } finally {
-      readLock.unlock();
+  public AssetMetaContext topPriorityForMint(final byte[] data, final int offset) {
+    final var snapshot = this.snapshot.get();
+    if (snapshot == null) {
+      return null;
     }
+    final var assetMetaEntries = snapshot.mintIndex.get(data, offset);
+    return assetMetaEntries == null ? null : assetMetaEntries[0];
+  }
+
+  @Override
+  public AssetMetaContext[] assetMetasForOracle(final PublicKey oracle) {
+    final var snapshot = this.snapshot.get();
+    return snapshot == null ? null : snapshot.oracleIndex.get(oracle);
+  }
+
+  @Override
+  public boolean hasAssetMetaForMint(final PublicKey mint) {
+    final var snapshot = this.snapshot.get();
+    return snapshot != null && snapshot.mintIndex.containsKey(mint);
   }
 
   @Override
@@ -125,38 +177,67 @@ final class GlobalConfigCacheImpl implements GlobalConfigCache, Consumer<Account
   }
 
   private AssetMetaContext topPriorityForMintChecked(final PublicKey mint, final int mintDecimals) {
-    final AssetMetaContext assetMeta;
-    readLock.lock();
-    try {
-      final var assetMetaMap = this.assetMetaMap;
-      if (assetMetaMap == null) {
+    for (; ; ) {
+      final var snapshot = this.snapshot.get();
+      if (snapshot == null) {
         // the cache has been invalidated; treat as a miss until a valid config is re-accepted
         return null;
       }
-      final var assetMetaEntries = assetMetaMap.get(mint);
+      final var assetMetaEntries = snapshot.mintIndex.get(mint);
       if (assetMetaEntries == null) {
         return null;
       }
-      assetMeta = assetMetaEntries[0];
+      final var assetMeta = assetMetaEntries[0];
       if (mintDecimals == assetMeta.decimals()) {
         return assetMeta;
       }
-    } finally {
-      readLock.unlock();
+      invalidateOnDecimals(snapshot, mint, mintDecimals, assetMeta);
     }
+  }
 
-    if (this.globalConfigUpdate == null || this.assetMetaMap == null) {
-      return null;
+  @Override
+  public AssetMetaContext[] topPriorityForMintsChecked(final PublicKey[] mints) {
+    final var mintContexts = new MintContext[mints.length];
+    for (int i = 0; i < mints.length; ++i) {
+      mintContexts[i] = mintCache.get(mints[i]);
     }
-    writeLock.lock();
-    try {
-      final var globalConfigUpdate = this.globalConfigUpdate;
-      if (globalConfigUpdate == null || this.assetMetaMap == null) {
-        return null;
+    final var assetMetas = new AssetMetaContext[mints.length];
+    retry:
+    for (; ; ) {
+      final var snapshot = this.snapshot.get();
+      if (snapshot == null) {
+        Arrays.fill(assetMetas, null);
+        return assetMetas;
       }
-      this.globalConfigUpdate = null;
-      this.assetMetaMap = null;
-      this.invalidGlobalConfig.signalAll();
+      final var mintIndex = snapshot.mintIndex;
+      for (int i = 0; i < mints.length; ++i) {
+        final var mintContext = mintContexts[i];
+        final var assetMetaEntries = mintContext == null ? null : mintIndex.get(mints[i]);
+        if (assetMetaEntries == null) {
+          assetMetas[i] = null;
+          continue;
+        }
+        final var assetMeta = assetMetaEntries[0];
+        if (mintContext.decimals() != assetMeta.decimals()) {
+          invalidateOnDecimals(snapshot, mints[i], mintContext.decimals(), assetMeta);
+          // resolve the whole batch again from the config that replaced it
+          continue retry;
+        }
+        assetMetas[i] = assetMeta;
+      }
+      return assetMetas;
+    }
+  }
+
+  /// Retires `snapshot` and throws, unless a newer config already replaced it,
+  /// in which case the caller checks that one afresh. Only the caller that
+  /// retires it reports it.
+  private void invalidateOnDecimals(final Snapshot snapshot,
+                                    final PublicKey mint,
+                                    final int mintDecimals,
+                                    final AssetMetaContext assetMeta) {
+    if (this.snapshot.compareAndSet(snapshot, null)) {
+      signalInvalid();
       final var msg = String.format("""
               {
                "event": "GlobalConfig decimals for Asset does not match Mint",
@@ -167,11 +248,21 @@ final class GlobalConfigCacheImpl implements GlobalConfigCache, Consumer<Account
       );
       logger.log(ERROR, msg);
       for (final var listener : listeners) {
-        listener.onInvalidDecimals(mint, mintDecimals, assetMeta, globalConfigUpdate);
+        listener.onInvalidDecimals(mint, mintDecimals, assetMeta, snapshot.globalConfigUpdate);
       }
       throw new IllegalStateException(msg);
+    }
+  }
+
+  /// Wakes the refresh loop so it stops, and any waiter for a new config so it
+  /// learns there is none.
+  private void signalInvalid() {
+    lock.lock();
+    try {
+      invalidGlobalConfig.signalAll();
+      newGlobalConfig.signalAll();
     } finally {
-      writeLock.unlock();
+      lock.unlock();
     }
   }
 
@@ -192,7 +283,7 @@ final class GlobalConfigCacheImpl implements GlobalConfigCache, Consumer<Account
 
   @Override
   public CompletableFuture<Void> initCache() {
-    return accountFetcher.priorityQueue(List.of(globalConfigKey))
+    return accountFetcher.priorityQueue(List.of(globalConfigKey), Duration.ofNanos(fetchDelayNanos >> 1))
         .thenAcceptAsync(result -> this.accept(result.accounts(), result.accountMap()));
   }
 
@@ -203,7 +294,7 @@ final class GlobalConfigCacheImpl implements GlobalConfigCache, Consumer<Account
     if (forceRefresh) {
       return;
     }
-    writeLock.lock();
+    lock.lock();
     try {
       if (forceRefresh) {
         return;
@@ -211,28 +302,31 @@ final class GlobalConfigCacheImpl implements GlobalConfigCache, Consumer<Account
       forceRefresh = true;
       invalidGlobalConfig.signal();
     } finally {
-      writeLock.unlock();
+      lock.unlock();
     }
   }
 
   @Override
   public void run() {
     try {
+      // this loop is the config's defensive poll: should the fetcher also
+      // fetch it always, it must not back off past it
+      accountFetcher.boundPollInterval(List.of(globalConfigKey), Duration.ofNanos(fetchDelayNanos));
       for (long remainingNanos; ; ) {
         accountFetcher.priorityQueue(globalConfigKey, this);
-        writeLock.lock();
+        lock.lock();
         try {
           forceRefresh = false;
           for (remainingNanos = fetchDelayNanos; ; ) {
             remainingNanos = invalidGlobalConfig.awaitNanos(remainingNanos);
-            if (this.globalConfigUpdate == null || this.assetMetaMap == null) {
+            if (this.snapshot.get() == null) {
               return;
             } else if (remainingNanos <= 0 || forceRefresh) {
               break;
             }
           }
         } finally {
-          writeLock.unlock();
+          lock.unlock();
         }
       }
     } catch (final InterruptedException e) {
@@ -269,155 +363,172 @@ final class GlobalConfigCacheImpl implements GlobalConfigCache, Consumer<Account
     final var previousOracleSourceMap = HashMap.<PublicKey, OracleSource>newHashMap(previousAssetMetaContexts.length);
     for (int i = 0, to = Math.min(previousAssetMetaContexts.length, assetMetaContexts.length); i < to; ++i) {
       final var previous = previousAssetMetaContexts[i];
-      final var current = assetMetaContexts[i];
-      if (previous.asset().equals(current.asset()) && previous.oracle().equals(current.oracle())) {
-        if (previous.decimals() != current.decimals()) {
-          final var msg = String.format("""
-                  {
-                   "event": "Inconsistent Asset Decimals Across GlobalConfig's",
-                   "slot": %s,
-                   "index": %d,
-                   "previous": %s,
-                   "new": %s
-                  }
-                  """,
-              Long.toUnsignedString(slot),
-              i,
-              previous.toJson(), current.toJson()
-          );
-          logger.log(ERROR, msg);
-          for (final var listener : listeners) {
-            listener.onDecimalsChange(slot, previous, current);
-          }
-          return null;
-        } else if (previous.oracleSource() != current.oracleSource()) {
-          final var msg = String.format("""
-                  {
-                   "event": "Inconsistent Asset OracleSource Across GlobalConfig's",
-                   "slot": %s,
-                   "index": %d,
-                   "previous": %s,
-                   "new": %s
-                  }
-                  """,
-              Long.toUnsignedString(slot),
-              i,
-              previous.toJson(), current.toJson()
-          );
-          logger.log(ERROR, msg);
-          for (final var listener : listeners) {
-            listener.onInconsistentOracleSource(slot, previous, current);
-          }
-          return null;
-        }
-        // Consistent OracleSource types are checked below.
-        if (previous.priority() != current.priority() || previous.maxAgeSeconds() != current.maxAgeSeconds()) {
-          logger.log(INFO, String.format("""
-                      {
-                       "event": "Oracle Configuration Change",
-                       "slot": %s,
-                       "index": %d,
-                       "previous": %s,
-                       "new": %s
-                      """,
-                  Long.toUnsignedString(slot), i,
-                  previous.toJson(), current.toJson()
-              )
-          );
-          for (final var listener : listeners) {
-            listener.onOracleConfigurationChange(slot, previous, current, assetMetaContexts);
-          }
-        }
-      } else if (previous.priority() < 0) {
+      if (!checkEntryChange(slot, i, previous, assetMetaContexts[i], assetMetaContexts, listeners)) {
+        return null;
+      }
+      previousOracleSourceMap.put(previous.oracle(), previous.oracleSource());
+    }
+
+    if (assetMetaContexts.length > previousAssetMetaContexts.length) {
+      for (int i = previousAssetMetaContexts.length; i < assetMetaContexts.length; ++i) {
+        logger.log(INFO, String.format("""
+                    {
+                     "event": "New GlobalConfig Oracle Entry",
+                     "slot": %s,
+                     "index": %d,
+                     "entry": %s
+                    }
+                    """,
+                Long.toUnsignedString(slot), i, assetMetaContexts[i].toJson()
+            )
+        );
+      }
+      for (final var listener : listeners) {
+        listener.onAssetMetaAdded(slot, previousAssetMetaContexts, assetMetaContexts);
+      }
+    }
+
+    final var assetMetaMap = createMapChecked(slot, assetMetaContexts, previousOracleSourceMap, mintCache, listeners);
+    if (assetMetaMap == null) {
+      return null;
+    }
+
+    for (final var entry : assetMetaMap.entrySet()) {
+      if (!checkDecimalsAcrossConfigs(slot, previousMetaMap.get(entry.getKey()), entry.getValue(), listeners)) {
+        return null;
+      }
+    }
+    return assetMetaMap;
+  }
+
+  /// Compares the entries at one index of two consecutive configs; false if
+  /// the change is rejected.
+  private static boolean checkEntryChange(final long slot,
+                                          final int i,
+                                          final AssetMetaContext previous,
+                                          final AssetMetaContext current,
+                                          final AssetMetaContext[] assetMetaContexts,
+                                          final Set<GlobalConfigListener> listeners) {
+    if (previous.asset().equals(current.asset()) && previous.oracle().equals(current.oracle())) {
+      if (previous.decimals() != current.decimals()) {
         final var msg = String.format("""
                 {
-                 "event": "GlobalConfig Oracle Entry Rotation",
+                 "event": "Inconsistent Asset Decimals Across GlobalConfig's",
                  "slot": %s,
                  "index": %d,
                  "previous": %s,
                  "new": %s
-                }""",
-            Long.toUnsignedString(slot), i, previous.toJson(), current.toJson()
+                }
+                """,
+            Long.toUnsignedString(slot),
+            i,
+            previous.toJson(), current.toJson()
         );
-        logger.log(INFO, msg);
+        logger.log(ERROR, msg);
         for (final var listener : listeners) {
-          listener.onOracleEntryRotation(slot, previous, current, assetMetaContexts);
+          listener.onDecimalsChange(slot, previous, current);
         }
-      } else {
+        return false;
+      } else if (previous.oracleSource() != current.oracleSource()) {
         final var msg = String.format("""
                 {
-                 "event": "Unexpected GlobalConfig Oracle Change",
+                 "event": "Inconsistent Asset OracleSource Across GlobalConfig's",
                  "slot": %s,
                  "index": %d,
                  "previous": %s,
                  "new": %s
                 }
                 """,
-            Long.toUnsignedString(slot), i,
+            Long.toUnsignedString(slot),
+            i,
             previous.toJson(), current.toJson()
         );
         logger.log(ERROR, msg);
         for (final var listener : listeners) {
-          listener.onUnexpectedOracleChange(slot, previous, current);
+          listener.onInconsistentOracleSource(slot, previous, current);
         }
-        // return null; TODO: Currently allowed in production env, return null once updated.
+        return false;
       }
-
-      previousOracleSourceMap.put(previous.oracle(), previous.oracleSource());
-    }
-
-    if (assetMetaContexts.length > previousAssetMetaContexts.length) {
-      for (int i = previousAssetMetaContexts.length; i < assetMetaContexts.length; ++i) {
+      // Consistent OracleSource types are checked below.
+      if (previous.priority() != current.priority() || previous.maxAgeSeconds() != current.maxAgeSeconds()) {
         logger.log(INFO, String.format("""
                     {
-                     "event": "New GlobalConfig Oracle Entry",
+                     "event": "Oracle Configuration Change",
                      "slot": %s,
                      "index": %d,
-                     "entry": %s
-                    }
+                     "previous": %s,
+                     "new": %s
                     """,
-                Long.toUnsignedString(slot), i, assetMetaContexts[i].toJson()
+                Long.toUnsignedString(slot), i,
+                previous.toJson(), current.toJson()
             )
         );
+        for (final var listener : listeners) {
+          listener.onOracleConfigurationChange(slot, previous, current, assetMetaContexts);
+        }
       }
+    } else if (previous.priority() < 0) {
+      final var msg = String.format("""
+              {
+               "event": "GlobalConfig Oracle Entry Rotation",
+               "slot": %s,
+               "index": %d,
+               "previous": %s,
+               "new": %s
+              }""",
+          Long.toUnsignedString(slot), i, previous.toJson(), current.toJson()
+      );
+      logger.log(INFO, msg);
       for (final var listener : listeners) {
-        listener.onAssetMetaAdded(slot, previousAssetMetaContexts, assetMetaContexts);
+        listener.onOracleEntryRotation(slot, previous, current, assetMetaContexts);
+      }
+    } else {
+      final var msg = String.format("""
+              {
+               "event": "Unexpected GlobalConfig Oracle Change",
+               "slot": %s,
+               "index": %d,
+               "previous": %s,
+               "new": %s
+              }
+              """,
+          Long.toUnsignedString(slot), i,
+          previous.toJson(), current.toJson()
+      );
+      logger.log(ERROR, msg);
+      for (final var listener : listeners) {
+        listener.onUnexpectedOracleChange(slot, previous, current);
       }
+      // return false; TODO: Currently allowed in production env, return false once updated.
     }
+    return true;
+  }
 
-    final var assetMetaMap = createMapChecked(slot, assetMetaContexts, previousOracleSourceMap, mintCache, listeners);
-    if (assetMetaMap == null) {
-      return null;
+  /// `assetMetas` are a mint's entries in the new config, `previousMetas` its
+  /// entries in the previous one, if any; false if their decimals disagree.
+  private static boolean checkDecimalsAcrossConfigs(final long slot,
+                                                    final AssetMetaContext[] previousMetas,
+                                                    final AssetMetaContext[] assetMetas,
+                                                    final Set<GlobalConfigListener> listeners) {
+    if (previousMetas == null || assetMetas[0].decimals() == previousMetas[0].decimals()) {
+      return true;
     }
-
-    for (final var entry : assetMetaMap.entrySet()) {
-      final var mint = entry.getKey();
-      final var assetMetas = entry.getValue();
-      final var previousMetas = previousMetaMap.get(mint);
-      if (previousMetas != null) {
-        final int expectedDecimals = assetMetas[0].decimals();
-        final int previousDecimals = previousMetas[0].decimals();
-        if (expectedDecimals != previousDecimals) {
-          final var msg = String.format("""
-                  {
-                   "event": "Inconsistent Asset Decimals Across GlobalConfig's",
-                   "slot": %s,
-                   "previous": %s,
-                   "new": %s
-                  }
-                  """,
-              Long.toUnsignedString(slot),
-              previousMetas[0].toJson(), assetMetas[0].toJson()
-          );
-          logger.log(ERROR, msg);
-          for (final var listener : listeners) {
-            listener.onInconsistentDecimals(slot, previousMetas[0], assetMetas[0]);
-          }
-          return null;
-        }
-      }
+    final var msg = String.format("""
+            {
+             "event": "Inconsistent Asset Decimals Across GlobalConfig's",
+             "slot": %s,
+             "previous": %s,
+             "new": %s
+            }
+            """,
+        Long.toUnsignedString(slot),
+        previousMetas[0].toJson(), assetMetas[0].toJson()
+    );
+    logger.log(ERROR, msg);
+    for (final var listener : listeners) {
+      listener.onInconsistentDecimals(slot, previousMetas[0], assetMetas[0]);
     }
-    return assetMetaMap;
+    return false;
   }
 
   private static boolean validOracleSource(final AssetMetaContext assetMeta) {
@@ -438,6 +549,137 @@ final class GlobalConfigCacheImpl implements GlobalConfigCache, Consumer<Account
     return createMapChecked(slot, assetMetaContexts, Map.of(), mintCache, Set.of());
   }
 
+  /// Checks one entry on its own: its decimals against its mint's, if known,
+  /// and its oracle source; false if it is rejected.
+  private static boolean checkEntry(final long slot,
+                                    final int i,
+                                    final AssetMetaContext assetMeta,
+                                    final MintCache mintCache,
+                                    final Set<GlobalConfigListener> listeners) {
+    final var mintContext = mintCache.get(assetMeta.asset());
+    if (mintContext != null && mintContext.decimals() != assetMeta.decimals()) {
+      final var msg = String.format("""
+              {
+               "event": "GlobalConfig Asset Decimals Does Not Match Mint",
+               "slot": %s,
+               "mintDecimals": %d,
+               "index": %d,
+               "entry": %s
+              """,
+          Long.toUnsignedString(slot), mintContext.decimals(), i, assetMeta.toJson()
+      );
+      logger.log(ERROR, msg);
+      for (final var listener : listeners) {
+        listener.onDecimalsDoNotMatchMint(slot, mintContext, assetMeta);
+      }
+      return false;
+    }
+
+    if (!validOracleSource(assetMeta)) {
+      final var msg = String.format("""
+              {
+               "event": "GlobalConfig Invalid OracleSource",
+               "slot": %s,
+               "index": %d,
+               "entry": %s
+              """,
+          Long.toUnsignedString(slot), i, assetMeta.toJson()
+      );
+      logger.log(ERROR, msg);
+      for (final var listener : listeners) {
+        listener.onInvalidOracleSource(slot, assetMeta);
+      }
+      return false;
+    }
+    return true;
+  }
+
+  private static void reportInconsistentOracleSourceAcrossConfigs(final long slot,
+                                                                  final OracleSource previousOracleSource,
+                                                                  final int i,
+                                                                  final AssetMetaContext assetMeta,
+                                                                  final Set<GlobalConfigListener> listeners) {
+    final var msg = String.format("""
+            {
+             "event": "Inconsistent OracleSource Across Configs",
+             "slot": %s,
+             "previousSource": "%s",
+             "index": %d,
+             "b": %s
+            }
+            """,
+        Long.toUnsignedString(slot),
+        previousOracleSource,
+        i, assetMeta.toJson()
+    );
+    logger.log(ERROR, msg);
+    for (final var listener : listeners) {
+      listener.onInconsistentOracleSourceAcrossConfigs(slot, previousOracleSource, assetMeta);
+    }
+  }
+
+  private static void reportInconsistentOracleSourceWithinConfig(final long slot,
+                                                                 final AssetMetaContext otherMeta,
+                                                                 final AssetMetaContext assetMeta,
+                                                                 final Set<GlobalConfigListener> listeners) {
+    final var msg = String.format("""
+            {
+             "event": "Inconsistent OracleSource Within GlobalConfig",
+             "slot": %s,
+             "a": %s,
+             "b": %s
+            }
+            """,
+        Long.toUnsignedString(slot),
+        otherMeta.toJson(), assetMeta.toJson()
+    );
+    logger.log(ERROR, msg);
+    for (final var listener : listeners) {
+      listener.onInconsistentOracleSourceWithinConfig(slot, otherMeta, assetMeta);
+    }
+  }
+
+  private static void reportDuplicateOracleForAsset(final long slot,
+                                                    final AssetMetaContext entry,
+                                                    final AssetMetaContext assetMeta,
+                                                    final Set<GlobalConfigListener> listeners) {
+    final var msg = String.format("""
+            {
+             "event": "Duplicate Oracle For Asset",
+             "slot": %s,
+             "a": %s,
+             "b": %s
+            }""",
+        Long.toUnsignedString(slot),
+        entry.toJson(), assetMeta.toJson()
+    );
+    logger.log(ERROR, msg);
+    for (final var listener : listeners) {
+      listener.onDuplicateOracleForAsset(slot, entry, assetMeta);
+    }
+  }
+
+  private static void reportInconsistentDecimalsWithinConfig(final long slot,
+                                                             final AssetMetaContext refMeta,
+                                                             final AssetMetaContext assetMeta,
+                                                             final Set<GlobalConfigListener> listeners) {
+    final var msg = String.format("""
+            {
+             "event": "Inconsistent Asset Decimals Within Config",
+             "slot": %s,
+             "a": %s,
+             "b": %s
+            }
+            """,
+        Long.toUnsignedString(slot),
+        refMeta.toJson(), assetMeta.toJson()
+    );
+    logger.log(ERROR, msg);
+    for (final var listener : listeners) {
+      listener.onInconsistentDecimalsWithinConfig(slot, refMeta, assetMeta);
+    }
+  }
+
   static Map<PublicKey, AssetMetaContext[]> createMapChecked(final long slot,
                                                              final AssetMetaContext[] assetMetaContexts,
                                                              final Map<PublicKey, OracleSource> previousOracleSourceMap,
@@ -447,39 +689,7 @@ final class GlobalConfigCacheImpl implements GlobalConfigCache, Consumer<Account
     final var assetMetaMap = HashMap.<PublicKey, AssetMetaContext[]>newHashMap(assetMetaContexts.length);
     for (int i = 0; i < assetMetaContexts.length; ++i) {
       final var assetMeta = assetMetaContexts[i];
-      final var mintContext = mintCache.get(assetMeta.asset());
-      if (mintContext != null && mintContext.decimals() != assetMeta.decimals()) {
-        final var msg = String.format("""
-                {
-                 "event": "GlobalConfig Asset Decimals Does Not Match Mint",
-                 "slot": %s,
-                 "mintDecimals": %d,
-                 "index": %d,
-                 "entry": %s
-                """,
-            Long.toUnsignedString(slot), mintContext.decimals(), i, assetMeta.toJson()
-        );
-        logger.log(ERROR, msg);
-        for (final var listener : listeners) {
-          listener.onDecimalsDoNotMatchMint(slot, mintContext, assetMeta);
-        }
-        return null;
-      }
-
-      if (!validOracleSource(assetMeta)) {
-        final var msg = String.format("""
-                {
-                 "event": "GlobalConfig Invalid OracleSource",
-                 "slot": %s,
-                 "index": %d,
-                 "entry": %s
-                """,
-            Long.toUnsignedString(slot), i, assetMeta.toJson()
-        );
-        logger.log(ERROR, msg);
-        for (final var listener : listeners) {
-          listener.onInvalidOracleSource(slot, assetMeta);
-        }
+      if (!checkEntry(slot, i, assetMeta, mintCache, listeners)) {
         return null;
       }
       final var mint = assetMeta.asset();
@@ -488,43 +698,13 @@ final class GlobalConfigCacheImpl implements GlobalConfigCache, Consumer<Account
 
       final var previousOracleSource = previousOracleSourceMap.get(oracle);
       if (previousOracleSource != null && !previousOracleSource.equals(oracleSource)) {
-        final var msg = String.format("""
-                {
-                 "event": "Inconsistent OracleSource Across Configs",
-                 "slot": %s,
-                 "previousSource": "%s",
-                 "index": %d,
-                 "b": %s
-                }
-                """,
-            Long.toUnsignedString(slot),
-            previousOracleSource,
-            i, assetMeta.toJson()
-        );
-        logger.log(ERROR, msg);
-        for (final var listener : listeners) {
-          listener.onInconsistentOracleSourceAcrossConfigs(slot, previousOracleSource, assetMeta);
-        }
+        reportInconsistentOracleSourceAcrossConfigs(slot, previousOracleSource, i, assetMeta, listeners);
         return null;
       }
 
       final var otherMeta = distinctOracleSource.put(oracle, assetMeta);
       if (otherMeta != null && !otherMeta.oracleSource().equals(oracleSource)) {
-        final var msg = String.format("""
-                {
-                 "event": "Inconsistent OracleSource Within GlobalConfig",
-                 "slot": %s,
-                 "a": %s,
-                 "b": %s
-                }
-                """,
-            Long.toUnsignedString(slot),
-            otherMeta.toJson(), assetMeta.toJson()
-        );
-        logger.log(ERROR, msg);
-        for (final var listener : listeners) {
-          listener.onInconsistentOracleSourceWithinConfig(slot, otherMeta, assetMeta);
-        }
+        reportInconsistentOracleSourceWithinConfig(slot, otherMeta, assetMeta, listeners);
         return null;
       }
 
@@ -534,20 +714,7 @@ final class GlobalConfigCacheImpl implements GlobalConfigCache, Consumer<Account
       } else {
         for (final var entry : entries) {
           if (entry.oracle().equals(oracle)) {
-            final var msg = String.format("""
-                    {
-                     "event": "Duplicate Oracle For Asset",
-                     "slot": %s,
-                     "a": %s,
-                     "b": %s
-                    }""",
-                Long.toUnsignedString(slot),
-                entry.toJson(), assetMeta.toJson()
-            );
-            logger.log(ERROR, msg);
-            for (final var listener : listeners) {
-              listener.onDuplicateOracleForAsset(slot, entry, assetMeta);
-            }
+            reportDuplicateOracleForAsset(slot, entry, assetMeta, listeners);
             return null;
           }
         }
@@ -567,21 +734,7 @@ final class GlobalConfigCacheImpl implements GlobalConfigCache, Consumer<Account
         for (int i = 1; i < assetMetas.length; ++i) {
           final var assetMeta = assetMetas[i];
           if (assetMeta.decimals() != expectedDecimals) {
-            final var msg = String.format("""
-                    {
-                     "event": "Inconsistent Asset Decimals Within Config",
-                     "slot": %s,
-                     "a": %s,
-                     "b": %s
-                    }
-                    """,
-                Long.toUnsignedString(slot),
-                refMeta.toJson(), assetMeta.toJson()
-            );
-            logger.log(ERROR, msg);
-            for (final var listener : listeners) {
-              listener.onInconsistentDecimalsWithinConfig(slot, refMeta, assetMeta);
-            }
+            reportInconsistentDecimalsWithinConfig(slot, refMeta, assetMeta, listeners);
             return null;
           }
         }
@@ -591,6 +744,129 @@ final class GlobalConfigCacheImpl implements GlobalConfigCache, Consumer<Account
     return assetMetaMap;
   }
 
+  /// The indexes of the asset meta entries that differ between two versions
+  /// of the GlobalConfig account, or null if the entries cannot be compared
+  /// in place because the account or its entry count changed size.
+  static int[] changedAssetMetas(final byte[] previousData, final byte[] data) {
+    if (data.length != previousData.length || data.length < ASSET_METAS_DATA_OFFSET) {
+      return null;
+    }
+    final int numAssetMetas = ByteUtil.getInt32LE(data, GlobalConfig.ASSET_METAS_OFFSET);
+    if (numAssetMetas != ByteUtil.getInt32LE(previousData, GlobalConfig.ASSET_METAS_OFFSET)
+        || numAssetMetas < 0
+        || numAssetMetas > (data.length - ASSET_METAS_DATA_OFFSET) / AssetMeta.BYTES) {
+      return null;
+    }
+    final int[] changed = new int[numAssetMetas];
+    int numChanged = 0;
+    for (int i = 0, from = ASSET_METAS_DATA_OFFSET; i < numAssetMetas; ++i, from += AssetMeta.BYTES) {
+      final int to = from + AssetMeta.BYTES;
+      if (Arrays.mismatch(previousData, from, to, data, from, to) >= 0) {
+        changed[numChanged++] = i;
+      }
+    }
+    return Arrays.copyOf(changed, numChanged);
+  }
+
+  /// Validates a config that differs from the previous one only in the
+  /// `changed` entries, with the same checks [#createMapChecked] applies to
+  /// the whole config, and derives its map from the previous one by
+  /// regrouping only the mints those entries moved from or to.
+  static Map<PublicKey, AssetMetaContext[]> updateMapChecked(final long slot,
+                                                             final AssetMetaContext[] previousAssetMetaContexts,
+                                                             final Map<PublicKey, AssetMetaContext[]> previousMetaMap,
+                                                             final AssetMetaContext[] assetMetaContexts,
+                                                             final int[] changed,
+                                                             final MintCache mintCache,
+                                                             final Set<GlobalConfigListener> listeners) {
+    for (final int i : changed) {
+      if (!checkEntryChange(slot, i, previousAssetMetaContexts[i], assetMetaContexts[i], assetMetaContexts, listeners)) {
+        return null;
+      }
+    }
+
+    final var affectedMints = HashSet.<PublicKey>newHashSet(changed.length << 1);
+    for (final int i : changed) {
+      final var assetMeta = assetMetaContexts[i];
+      if (!checkEntry(slot, i, assetMeta, mintCache, listeners)) {
+        return null;
+      }
+      final var mint = assetMeta.asset();
+      final var oracle = assetMeta.oracle();
+      final var oracleSource = assetMeta.oracleSource();
+
+      // the previous config was consistent, so its first use of the oracle speaks for all of them
+      for (final var previous : previousAssetMetaContexts) {
+        if (previous.oracle().equals(oracle)) {
+          if (previous.oracleSource() != oracleSource) {
+            reportInconsistentOracleSourceAcrossConfigs(slot, previous.oracleSource(), i, assetMeta, listeners);
+            return null;
+          }
+          break;
+        }
+      }
+
+      for (int j = 0; j < assetMetaContexts.length; ++j) {
+        final var other = assetMetaContexts[j];
+        if (j == i || !other.oracle().equals(oracle)) {
+          continue;
+        }
+        final var a = j < i ? other : assetMeta;
+        final var b = j < i ? assetMeta : other;
+        if (other.oracleSource() != oracleSource) {
+          reportInconsistentOracleSourceWithinConfig(slot, a, b, listeners);
+          return null;
+        } else if (other.asset().equals(mint)) {
+          reportDuplicateOracleForAsset(slot, a, b, listeners);
+          return null;
+        }
+      }
+
+      affectedMints.add(previousAssetMetaContexts[i].asset());
+      affectedMints.add(mint);
+    }
+
+    final var assetMetaMap = new HashMap<>(previousMetaMap);
+    assetMetaMap.keySet().removeAll(affectedMints);
+    for (final var assetMeta : assetMetaContexts) {
+      final var mint = assetMeta.asset();
+      if (affectedMints.contains(mint)) {
+        final var entries = assetMetaMap.get(mint);
+        if (entries == null) {
+          assetMetaMap.put(mint, new AssetMetaContext[]{assetMeta});
+        } else {
+          final int len = entries.length;
+          final var newEntries = Arrays.copyOf(entries, len + 1);
+          newEntries[len] = assetMeta;
+          assetMetaMap.put(mint, newEntries);
+        }
+      }
+    }
+
+    for (final var mint : affectedMints) {
+      final var assetMetas = assetMetaMap.get(mint);
+      if (assetMetas == null) {
+        continue;
+      }
+      if (assetMetas.length > 1) {
+        Arrays.sort(assetMetas);
+        final var refMeta = assetMetas[0];
+        final int expectedDecimals = refMeta.decimals();
+        for (int i = 1; i < assetMetas.length; ++i) {
+          final var assetMeta = assetMetas[i];
+          if (assetMeta.decimals() != expectedDecimals) {
+            reportInconsistentDecimalsWithinConfig(slot, refMeta, assetMeta, listeners);
+            return null;
+          }
+        }
+      }
+      if (!checkDecimalsAcrossConfigs(slot, previousMetaMap.get(mint), assetMetas, listeners)) {
+        return null;
+      }
+    }
+    return assetMetaMap;
+  }
+
   static boolean checkAccount(final PublicKey expectedOwner, final PublicKey owner,
                               final long slot, final PublicKey account, final byte[] data) {
     if (GlobalConfig.DISCRIMINATOR.equals(data, 0) && owner.equals(expectedOwner)) {
@@ -621,12 +897,12 @@ final class GlobalConfigCacheImpl implements GlobalConfigCache, Consumer<Account
 
   @Override
   public void subscribe(final GlobalConfigListener listener) {
-    listeners.add(listener);
+    eventBus.subscribe(listener);
   }
 
   @Override
   public void unsubscribe(final GlobalConfigListener listener) {
-    listeners.remove(listener);
+    eventBus.unsubscribe(listener);
   }
 
   @Override
@@ -635,19 +911,48 @@ final class GlobalConfigCacheImpl implements GlobalConfigCache, Consumer<Account
     if (!AccountFetcher.isNull(globalConfigAccountInfo)) {
       accept(globalConfigAccountInfo);
     }
-    final var assetMap = this.assetMetaMap;
+    final var snapshot = this.snapshot.get();
+    if (snapshot == null) {
+      return;
+    }
+    final var mintIndex = snapshot.mintIndex;
     for (final var accountInfo : accounts) {
       if (AccountFetcher.isNull(accountInfo)) {
         continue;
       }
       final var key = accountInfo.pubKey();
-      if (assetMap.containsKey(key) && mintCache.get(key) == null) {
+      if (mintIndex.containsKey(key) && mintCache.get(key) == null) {
         final var mintContext = mintCache.setGet(MintContext.createContext(solanaAccounts, accountInfo));
         topPriorityForMintChecked(mintContext);
       }
     }
   }
 
+  @Override
+  public long listenerEventsDelivered() {
+    return eventBus.delivered();
+  }
+
+  @Override
+  public long listenerEventsCoalesced() {
+    return eventBus.coalesced();
+  }
+
+  @Override
+  public long listenerEventsDropped() {
+    return eventBus.dropped();
+  }
+
+  @Override
+  public Duration listenerDeliveryLag() {
+    return eventBus.lastDeliveryLag();
+  }
+
+  @Override
+  public Duration maxListenerDeliveryLag() {
+    return eventBus.maxDeliveryLag();
+  }
+
   @Override
   public void mutableKeysExceededMaxSize() {
 
@@ -655,47 +960,74 @@ final class GlobalConfigCacheImpl implements GlobalConfigCache, Consumer<Account
 
   @Override
   public void accept(final AccountInfo<byte[]> accountInfo) {
-    var globalConfigUpdate = this.globalConfigUpdate;
-    if (globalConfigUpdate == null) {
+    var previous = this.snapshot.get();
+    if (previous == null) {
       return;
     }
     final byte[] data = accountInfo.data();
-    if (Arrays.equals(data, globalConfigUpdate.data())) {
+    if (Arrays.equals(data, previous.globalConfigUpdate.data())) {
       return;
     }
-    writeLock.lock();
+    lock.lock();
     try {
-      globalConfigUpdate = this.globalConfigUpdate;
-      if (globalConfigUpdate == null || Arrays.equals(data, globalConfigUpdate.data())) {
+      previous = this.snapshot.get();
+      if (previous == null || Arrays.equals(data, previous.globalConfigUpdate.data())) {
         return;
       }
       final long slot = accountInfo.context().slot();
       if (checkAccount(configProgram, accountInfo.owner(), slot, accountInfo.pubKey(), data)) {
-        final var previousConfigUpdate = this.globalConfigUpdate;
+        final var previousConfigUpdate = previous.globalConfigUpdate;
         final long previousSlot = previousConfigUpdate.slot();
-        if (Long.compareUnsigned(slot, previousSlot) <= 0 || Arrays.equals(data, previousConfigUpdate.data())) {
+        if (Long.compareUnsigned(slot, previousSlot) <= 0) {
           return;
         }
 
-        final var globalConfig = GlobalConfig.read(accountInfo);
-        final var assetMetaContexts = AssetMetaContext.mapAssetMetas(globalConfig);
-
-        final var previousAssetMetaMap = this.assetMetaMap;
-        final var assetMetaMap = createMapChecked(
-            slot,
-            previousConfigUpdate.assetMetaContexts(), previousAssetMetaMap,
-            assetMetaContexts,
-            this.mintCache,
-            this.listeners
-        );
-        if (assetMetaMap == null) {
-          this.globalConfigUpdate = null;
-          this.assetMetaMap = null;
-          this.invalidGlobalConfig.signalAll();
+        final var previousAssetMetaContexts = previousConfigUpdate.assetMetaContexts();
+        final var previousAssetMetaMap = previous.assetMetaMap;
+        final AssetMetaContext[] assetMetaContexts;
+        final Map<PublicKey, AssetMetaContext[]> assetMetaMap;
+        final int[] changed = changedAssetMetas(previousConfigUpdate.data(), data);
+        if (changed == null) {
+          final var globalConfig = GlobalConfig.read(accountInfo);
+          assetMetaContexts = AssetMetaContext.mapAssetMetas(globalConfig);
+          assetMetaMap = createMapChecked(
+              slot,
+              previousAssetMetaContexts, previousAssetMetaMap,
+              assetMetaContexts,
+              this.mintCache,
+              this.listeners
+          );
+        } else if (changed.length == 0) {
+          // only the admin, fee or referrer fields changed
+          assetMetaContexts = previousAssetMetaContexts;
+          assetMetaMap = previousAssetMetaMap;
         } else {
-          this.assetMetaMap = assetMetaMap;
-          this.globalConfigUpdate = new GlobalConfigUpdate(slot, assetMetaContexts, data);
-          persistGlobalConfig(globalConfigFilePath, data);
+          assetMetaContexts = previousAssetMetaContexts.clone();
+          for (final int i : changed) {
+            final var assetMeta = AssetMeta.read(data, ASSET_METAS_DATA_OFFSET + (i * AssetMeta.BYTES));
+            assetMetaContexts[i] = AssetMetaContext.create(i, assetMeta);
+          }
+          assetMetaMap = updateMapChecked(
+              slot,
+              previousAssetMetaContexts, previousAssetMetaMap,
+              assetMetaContexts, changed,
+              this.mintCache,
+              this.listeners
+          );
+        }
+        // a failed swap means a checked lookup invalidated the config while
+        // this one was being validated, and invalid stays invalid
+        if (assetMetaMap == null) {
+          if (this.snapshot.compareAndSet(previous, null)) {
+            signalInvalid();
+          }
+        } else if (this.snapshot.compareAndSet(
+            previous,
+            assetMetaMap == previousAssetMetaMap
+                ? previous.withUpdate(new GlobalConfigUpdate(slot, assetMetaContexts, data))
+                : Snapshot.create(new GlobalConfigUpdate(slot, assetMetaContexts, data), assetMetaMap)
+        )) {
+          journalGlobalConfig(journal, slot, data);
 
           final var mintsNeeded = assetMetaMap.keySet().stream().<PublicKey>mapMulti((mint, downstream) -> {
             if (!previousAssetMetaMap.containsKey(mint) && mintCache.get(mint) == null) {
@@ -710,32 +1042,38 @@ final class GlobalConfigCacheImpl implements GlobalConfigCache, Consumer<Account
         }
       }
     } finally {
-      writeLock.unlock();
+      lock.unlock();
     }
   }
 
   @Override
   public GlobalConfigUpdate awaitNewGlobalConfig(final GlobalConfigUpdate globalConfigUpdate,
                                                  final long awaitNanos) throws InterruptedException {
-    writeLock.lock();
+    lock.lock();
     try {
-      for (long remainingNanos = awaitNanos; globalConfigUpdate == this.globalConfigUpdate; ) {
+      for (long remainingNanos = awaitNanos; globalConfigUpdate == globalConfigUpdate(); ) {
         remainingNanos = newGlobalConfig.awaitNanos(remainingNanos);
         if (remainingNanos <= 0) {
           break;
         }
       }
-      return this.globalConfigUpdate;
+      return globalConfigUpdate();
     } finally {
-      writeLock.unlock();
+      lock.unlock();
     }
   }
 
-  static void persistGlobalConfig(final Path filePath, final byte[] data) {
-    try (final var out = new GZIPOutputStream(newOutputStream(filePath, CREATE, TRUNCATE_EXISTING, WRITE))) {
-      out.write(data);
-    } catch (final IOException e) {
-      logger.log(WARNING, "Failed to write GlobalConfig to file", e);
+  @Override
+  public void close() {
+    journal.close();
+  }
+
+  /// A journal that cannot be written costs the history, not the update.
+  static void journalGlobalConfig(final GlobalConfigJournal journal, final long slot, final byte[] data) {
+    try {
+      journal.append(slot, data);
+    } catch (final UncheckedIOException e) {
+      logger.log(WARNING, "Failed to journal GlobalConfig update", e);
     }
   }
 }
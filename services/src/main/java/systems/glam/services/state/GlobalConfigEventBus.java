@@ -0,0 +1,364 @@
+package systems.glam.services.state;
+
+import software.sava.core.accounts.PublicKey;
+import systems.glam.sdk.idl.programs.glam.config.gen.types.OracleSource;
+import systems.glam.services.mints.AssetMetaContext;
+import systems.glam.services.mints.MintContext;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+import static java.lang.System.Logger.Level.ERROR;
+import static java.lang.System.Logger.Level.WARNING;
+
+/// Delivers [GlobalConfigListener] events off the thread that raised them.
+///
+/// The cache reports to the bus as if it were its one listener, while holding
+/// its write lock; the bus only queues. Each subscriber has its own bounded
+/// queue, drained in order on a virtual thread, so a slow listener delays no
+/// one but itself.
+///
+/// A listener that falls behind sees consecutive changes to the same asset
+/// index folded into one, from the first `previous` to the last `latest`. If
+/// its queue still fills, its oldest event is dropped rather than holding up
+/// the cache.
+final class GlobalConfigEventBus implements GlobalConfigListener {
+
+  private static final System.Logger logger = System.getLogger(GlobalConfigEventBus.class.getName());
+
+  static final int DEFAULT_CAPACITY = 1_024;
+
+  private final int capacity;
+  private final ConcurrentHashMap<GlobalConfigListener, ListenerQueue> queues;
+  private final LongAdder delivered;
+  private final LongAdder coalesced;
+  private final LongAdder dropped;
+  private final AtomicLong maxLagNanos;
+  private volatile long lastLagNanos;
+
+  GlobalConfigEventBus(final int capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("A listener queue needs a capacity of at least one, not " + capacity);
+    }
+    this.capacity = capacity;
+    this.queues = new ConcurrentHashMap<>();
+    this.delivered = new LongAdder();
+    this.coalesced = new LongAdder();
+    this.dropped = new LongAdder();
+    this.maxLagNanos = new AtomicLong();
+  }
+
+  GlobalConfigEventBus() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  void subscribe(final GlobalConfigListener listener) {
+    queues.computeIfAbsent(listener, ListenerQueue::new);
+  }
+
+  /// Events already queued for the listener are discarded.
+  void unsubscribe(final GlobalConfigListener listener) {
+    final var queue = queues.remove(listener);
+    if (queue != null) {
+      queue.close();
+    }
+  }
+
+  long delivered() {
+    return delivered.sum();
+  }
+
+  long coalesced() {
+    return coalesced.sum();
+  }
+
+  long dropped() {
+    return dropped.sum();
+  }
+
+  /// From publishing to delivery, for the most recently delivered event.
+  Duration lastDeliveryLag() {
+    return Duration.ofNanos(lastLagNanos);
+  }
+
+  Duration maxDeliveryLag() {
+    return Duration.ofNanos(maxLagNanos.get());
+  }
+
+  private void publish(final Event event) {
+    for (final var queue : queues.values()) {
+      queue.offer(event);
+    }
+  }
+
+  private void publish(final Consumer<GlobalConfigListener> delivery) {
+    publish(new Notice(System.nanoTime(), delivery));
+  }
+
+  private void publish(final Kind kind,
+                       final long slot,
+                       final AssetMetaContext previous,
+                       final AssetMetaContext latest,
+                       final AssetMetaContext[] assetMetaContexts) {
+    publish(new EntryChange(System.nanoTime(), kind, slot, previous, latest, assetMetaContexts));
+  }
+
+  @Override
+  public void onInvalidDecimals(final PublicKey mint,
+                                final int mintDecimals,
+                                final AssetMetaContext assetMeta,
+                                final GlobalConfigUpdate globalConfigUpdate) {
+    publish(listener -> listener.onInvalidDecimals(mint, mintDecimals, assetMeta, globalConfigUpdate));
+  }
+
+  @Override
+  public void onAssetMetaRemoved(final long slot,
+                                 final AssetMetaContext[] previous,
+                                 final AssetMetaContext[] latest) {
+    publish(listener -> listener.onAssetMetaRemoved(slot, previous, latest));
+  }
+
+  @Override
+  public void onAssetMetaAdded(final long slot,
+                               final AssetMetaContext[] previous,
+                               final AssetMetaContext[] latest) {
+    publish(listener -> listener.onAssetMetaAdded(slot, previous, latest));
+  }
+
+  @Override
+  public void onDecimalsChange(final long slot,
+                               final AssetMetaContext previous,
+                               final AssetMetaContext latest) {
+    publish(Kind.DECIMALS_CHANGE, slot, previous, latest, null);
+  }
+
+  @Override
+  public void onInconsistentOracleSource(final long slot,
+                                         final AssetMetaContext previous,
+                                         final AssetMetaContext latest) {
+    publish(Kind.INCONSISTENT_ORACLE_SOURCE, slot, previous, latest, null);
+  }
+
+  @Override
+  public void onOracleConfigurationChange(final long slot,
+                                          final AssetMetaContext previous,
+                                          final AssetMetaContext latest,
+                                          final AssetMetaContext[] assetMetaContexts) {
+    publish(Kind.ORACLE_CONFIGURATION_CHANGE, slot, previous, latest, assetMetaContexts);
+  }
+
+  @Override
+  public void onOracleEntryRotation(final long slot,
+                                    final AssetMetaContext previous,
+                                    final AssetMetaContext latest,
+                                    final AssetMetaContext[] assetMetaContexts) {
+    publish(Kind.ORACLE_ENTRY_ROTATION, slot, previous, latest, assetMetaContexts);
+  }
+
+  @Override
+  public void onUnexpectedOracleChange(final long slot,
+                                       final AssetMetaContext previous,
+                                       final AssetMetaContext latest) {
+    publish(Kind.UNEXPECTED_ORACLE_CHANGE, slot, previous, latest, null);
+  }
+
+  @Override
+  public void onInconsistentDecimals(final long slot,
+                                     final AssetMetaContext previous,
+                                     final AssetMetaContext latest) {
+    publish(listener -> listener.onInconsistentDecimals(slot, previous, latest));
+  }
+
+  @Override
+  public void onDecimalsDoNotMatchMint(final long slot,
+                                       final MintContext mintContext,
+                                       final AssetMetaContext assetMeta) {
+    publish(listener -> listener.onDecimalsDoNotMatchMint(slot, mintContext, assetMeta));
+  }
+
+  @Override
+  public void onInvalidOracleSource(final long slot, final AssetMetaContext assetMeta) {
+    publish(listener -> listener.onInvalidOracleSource(slot, assetMeta));
+  }
+
+  @Override
+  public void onInconsistentOracleSourceAcrossConfigs(final long slot,
+                                                      final OracleSource previousOracleSource,
+                                                      final AssetMetaContext assetMeta) {
+    publish(listener -> listener.onInconsistentOracleSourceAcrossConfigs(slot, previousOracleSource, assetMeta));
+  }
+
+  @Override
+  public void onInconsistentOracleSourceWithinConfig(final long slot,
+                                                     final AssetMetaContext a,
+                                                     final AssetMetaContext b) {
+    publish(listener -> listener.onInconsistentOracleSourceWithinConfig(slot, a, b));
+  }
+
+  @Override
+  public void onDuplicateOracleForAsset(final long slot,
+                                        final AssetMetaContext a,
+                                        final AssetMetaContext b) {
+    publish(listener -> listener.onDuplicateOracleForAsset(slot, a, b));
+  }
+
+  @Override
+  public void onInconsistentDecimalsWithinConfig(final long slot,
+                                                 final AssetMetaContext a,
+                                                 final AssetMetaContext b) {
+    publish(listener -> listener.onInconsistentDecimalsWithinConfig(slot, a, b));
+  }
+
+  private sealed interface Event permits Notice, EntryChange {
+
+    long publishedNanos();
+
+    void deliver(final GlobalConfigListener listener);
+  }
+
+  private record Notice(long publishedNanos, Consumer<GlobalConfigListener> delivery) implements Event {
+
+    @Override
+    public void deliver(final GlobalConfigListener listener) {
+      delivery.accept(listener);
+    }
+  }
+
+  private enum Kind {
+    DECIMALS_CHANGE,
+    INCONSISTENT_ORACLE_SOURCE,
+    ORACLE_CONFIGURATION_CHANGE,
+    ORACLE_ENTRY_ROTATION,
+    UNEXPECTED_ORACLE_CHANGE
+  }
+
+  /// A change to the entry at one asset index, which a later change of the
+  /// same kind to the same index can be folded into.
+  private record EntryChange(long publishedNanos,
+                             Kind kind,
+                             long slot,
+                             AssetMetaContext previous,
+                             AssetMetaContext latest,
+                             AssetMetaContext[] assetMetaContexts) implements Event {
+
+    /// Keeps the first publish time: the listener has been behind since then.
+    EntryChange coalesce(final EntryChange next) {
+      if (kind != next.kind || latest.index() != next.previous.index()) {
+        return null;
+      }
+      return new EntryChange(publishedNanos, kind, next.slot, previous, next.latest, next.assetMetaContexts);
+    }
+
+    @Override
+    public void deliver(final GlobalConfigListener listener) {
+      switch (kind) {
+        case DECIMALS_CHANGE -> listener.onDecimalsChange(slot, previous, latest);
+        case INCONSISTENT_ORACLE_SOURCE -> listener.onInconsistentOracleSource(slot, previous, latest);
+        case ORACLE_CONFIGURATION_CHANGE ->
+            listener.onOracleConfigurationChange(slot, previous, latest, assetMetaContexts);
+        case ORACLE_ENTRY_ROTATION -> listener.onOracleEntryRotation(slot, previous, latest, assetMetaContexts);
+        case UNEXPECTED_ORACLE_CHANGE -> listener.onUnexpectedOracleChange(slot, previous, latest);
+      }
+    }
+  }
+
+  /// Runs one listener's events in the order they were published, one at a
+  /// time. Whatever is still queued has not been seen by the listener, which
+  /// is what makes it safe to coalesce into or drop.
+  private final class ListenerQueue implements Runnable {
+
+    private final GlobalConfigListener listener;
+    private final ArrayDeque<Event> pending;
+    private final ReentrantLock queueLock;
+
+    private boolean scheduled;
+    private boolean closed;
+    /// Set on the first drop of a backlog so it is logged once.
+    private boolean overflowing;
+
+    private ListenerQueue(final GlobalConfigListener listener) {
+      this.listener = listener;
+      this.pending = new ArrayDeque<>(Math.min(capacity, 64));
+      this.queueLock = new ReentrantLock();
+    }
+
+    private void offer(final Event event) {
+      queueLock.lock();
+      try {
+        if (closed) {
+          return;
+        }
+        if (event instanceof EntryChange next && pending.peekLast() instanceof EntryChange last) {
+          final var merged = last.coalesce(next);
+          if (merged != null) {
+            pending.pollLast();
+            pending.addLast(merged);
+            coalesced.increment();
+            return;
+          }
+        }
+        if (pending.size() >= capacity) {
+          pending.pollFirst();
+          dropped.increment();
+          if (!overflowing) {
+            overflowing = true;
+            logger.log(WARNING, String.format(
+                "GlobalConfig listener %s is %d events behind; dropping its oldest.",
+                listener, capacity
+            ));
+          }
+        }
+        pending.addLast(event);
+        if (scheduled) {
+          return;
+        }
+        scheduled = true;
+      } finally {
+        queueLock.unlock();
+      }
+      Thread.ofVirtual().name("global-config-listener").start(this);
+    }
+
+    private void close() {
+      queueLock.lock();
+      try {
+        closed = true;
+        pending.clear();
+      } finally {
+        queueLock.unlock();
+      }
+    }
+
+    @Override
+    public void run() {
+      for (; ; ) {
+        final Event event;
+        queueLock.lock();
+        try {
+          event = pending.pollFirst();
+          if (event == null) {
+            scheduled = false;
+            overflowing = false;
+            return;
+          }
+        } finally {
+          queueLock.unlock();
+        }
+        final long lagNanos = System.nanoTime() - event.publishedNanos();
+        lastLagNanos = lagNanos;
+        maxLagNanos.accumulateAndGet(lagNanos, Math::max);
+        try {
+          event.deliver(listener);
+        } catch (final RuntimeException ex) {
+          logger.log(ERROR, "GlobalConfig listener failed; continuing to deliver.", ex);
+        }
+        delivered.increment();
+      }
+    }
+  }
+}
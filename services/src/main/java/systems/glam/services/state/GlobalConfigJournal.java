@@ -0,0 +1,136 @@
+package systems.glam.services.state;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/// An append-only history of the GlobalConfig account.
+///
+/// Each record holds the slot of an accepted update and either the whole
+/// account, a checkpoint, or only the byte ranges that changed since the
+/// record before it. A checkpoint is written first, whenever the account
+/// changes size, and every [#DEFAULT_CHECKPOINT_INTERVAL] records. Their
+/// offsets are indexed beside the journal, so opening it replays from the
+/// last checkpoint rather than the start. Records carry a checksum, and a
+/// torn record at the end of the file, left by a crash mid-append, is
+/// discarded when the journal is next opened.
+///
+/// Once the file passes [#DEFAULT_MAX_JOURNAL_BYTES] the next record is
+/// written as a checkpoint to a fresh one, and the full one is kept beside it
+/// under the slot of that checkpoint, see [#rolledJournalPaths(Path)].
+///
+/// The files can be read without a running cache, see [#readHistory(Path)].
+public interface GlobalConfigJournal extends AutoCloseable {
+
+  String JOURNAL_FILE_EXTENSION = ".journal";
+  int DEFAULT_CHECKPOINT_INTERVAL = 64;
+  long DEFAULT_MAX_JOURNAL_BYTES = 64L << 20;
+
+  /// The journal kept beside the compressed GlobalConfig account file.
+  static Path resolveJournalPath(final Path globalConfigFilePath) {
+    final var fileName = globalConfigFilePath.getFileName().toString();
+    final int extension = fileName.indexOf('.');
+    return globalConfigFilePath.resolveSibling(
+        (extension < 0 ? fileName : fileName.substring(0, extension)) + JOURNAL_FILE_EXTENSION
+    );
+  }
+
+  static GlobalConfigJournal openJournal(final Path journalPath,
+                                         final int checkpointInterval,
+                                         final long maxJournalBytes) {
+    if (checkpointInterval < 1) {
+      throw new IllegalArgumentException("A journal needs a checkpoint interval of at least one, not " + checkpointInterval);
+    }
+    if (maxJournalBytes < 1) {
+      throw new IllegalArgumentException("A journal needs a size bound of at least one byte, not " + maxJournalBytes);
+    }
+    try {
+      Files.createDirectories(journalPath.getParent());
+      return GlobalConfigJournalImpl.openJournal(journalPath, checkpointInterval, maxJournalBytes);
+    } catch (final IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  static GlobalConfigJournal openJournal(final Path journalPath, final int checkpointInterval) {
+    return openJournal(journalPath, checkpointInterval, DEFAULT_MAX_JOURNAL_BYTES);
+  }
+
+  static GlobalConfigJournal openJournal(final Path journalPath) {
+    return openJournal(journalPath, DEFAULT_CHECKPOINT_INTERVAL);
+  }
+
+  /// Every record in the journal file at `journalPath`, oldest first, each
+  /// with the whole account as of that record. Reads only: a torn record at
+  /// the end is left in place and not returned. Replays the whole file, so is
+  /// meant for offline queries rather than restoring the latest record.
+  static List<Change> readHistory(final Path journalPath) {
+    try (final var fileChannel = FileChannel.open(journalPath, StandardOpenOption.READ)) {
+      final var history = new ArrayList<Change>();
+      GlobalConfigJournalImpl.replay(fileChannel, 0, change -> history.add(new Change(
+          change.slot(), change.checkpoint(), change.changedRanges(), change.data().clone()
+      )));
+      return history;
+    } catch (final IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  /// The journals rolled over from the one at `journalPath`, oldest first.
+  /// Each is named for the slot the one after it starts from, and reads like
+  /// any other with [#readHistory(Path)].
+  static List<Path> rolledJournalPaths(final Path journalPath) {
+    final var prefix = journalPath.getFileName() + ".";
+    try (final Stream<Path> files = Files.list(journalPath.getParent())) {
+      return files.filter(path -> {
+        final var fileName = path.getFileName().toString();
+        return fileName.length() > prefix.length()
+            && fileName.startsWith(prefix)
+            && fileName.chars().skip(prefix.length()).allMatch(Character::isDigit);
+      }).sorted(Comparator.comparingLong(path -> Long.parseLong(
+          path.getFileName().toString().substring(prefix.length())
+      ))).toList();
+    } catch (final IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  Path filePath();
+
+  /// The last record, or null if the journal is empty.
+  Change latest();
+
+  /// Records `data` as of `slot`, as the changes from [#latest()] or as a
+  /// checkpoint when one is due. Data identical to the latest is not
+  /// recorded.
+  void append(final long slot, final byte[] data);
+
+  /// Forces the journal and its index to disk before closing them. Closing
+  /// twice is harmless.
+  @Override
+  void close();
+
+  /// `changedRanges` holds offset and length pairs of the bytes that differ
+  /// from the record before; a checkpoint lists the whole account as one range.
+  record Change(long slot, boolean checkpoint, int[] changedRanges, byte[] data) {
+
+    /// Whether this record changed any of the `length` bytes at `offset`.
+    public boolean changed(final int offset, final int length) {
+      final int end = offset + length;
+      for (int i = 0; i < changedRanges.length; i += 2) {
+        final int from = changedRanges[i];
+        if (from < end && offset < from + changedRanges[i + 1]) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+}
@@ -0,0 +1,518 @@
+package systems.glam.services.state;
+
+import software.sava.core.encoding.ByteUtil;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+import static java.lang.System.Logger.Level.WARNING;
+
+/// Record layout, little endian: `i32` body length, `i32` CRC32C of the body,
+/// then the body: `u8` kind, `i64` slot, and either the whole account or
+/// repeated `i32` offset, `i32` length and the bytes at that offset.
+///
+/// The checkpoint index beside the journal is a run of `i64` offsets of
+/// checkpoint records, each followed by the `i32` CRC32C of its offset. An
+/// entry is only added once its checkpoint is on disk, and is checked against
+/// the journal before a replay starts from it.
+final class GlobalConfigJournalImpl implements GlobalConfigJournal {
+
+  private static final System.Logger logger = System.getLogger(GlobalConfigJournal.class.getName());
+
+  private static final int RECORD_HEADER_LENGTH = Integer.BYTES + Integer.BYTES;
+  private static final int BODY_HEADER_LENGTH = 1 + Long.BYTES;
+  private static final int RANGE_HEADER_LENGTH = Integer.BYTES + Integer.BYTES;
+  static final int INDEX_ENTRY_LENGTH = Long.BYTES + Integer.BYTES;
+  private static final byte CHECKPOINT = 0;
+  private static final byte DELTA = 1;
+  /// Unchanged runs shorter than a range header are cheaper to rewrite.
+  private static final int MERGE_GAP = RANGE_HEADER_LENGTH;
+
+  /// Package-private so tests can assert the lock is released; a leaked lock
+  /// blocks every other caller and no result assertion can see it.
+  final ReentrantLock lock;
+  private final Path filePath;
+  private final FileChannel indexChannel;
+  private final int checkpointInterval;
+  private final long maxJournalBytes;
+
+  private FileChannel fileChannel;
+  private volatile Change latest;
+  private long position;
+  private int sinceCheckpoint;
+  private long indexPosition;
+
+  private GlobalConfigJournalImpl(final Path filePath,
+                                  final FileChannel fileChannel,
+                                  final FileChannel indexChannel,
+                                  final int checkpointInterval,
+                                  final long maxJournalBytes,
+                                  final Change latest,
+                                  final long position,
+                                  final int sinceCheckpoint,
+                                  final long indexPosition) {
+    this.lock = new ReentrantLock();
+    this.filePath = filePath;
+    this.fileChannel = fileChannel;
+    this.indexChannel = indexChannel;
+    this.checkpointInterval = checkpointInterval;
+    this.maxJournalBytes = maxJournalBytes;
+    this.latest = latest;
+    this.position = position;
+    this.sinceCheckpoint = sinceCheckpoint;
+    this.indexPosition = indexPosition;
+  }
+
+  static Path indexPath(final Path filePath) {
+    return filePath.resolveSibling(filePath.getFileName() + ".index");
+  }
+
+  static Path rollingPath(final Path filePath) {
+    return filePath.resolveSibling(filePath.getFileName() + ".tmp");
+  }
+
+  static Path rolledPath(final Path filePath, final long slot) {
+    return filePath.resolveSibling(filePath.getFileName() + "." + slot);
+  }
+
+  static GlobalConfigJournalImpl openJournal(final Path filePath,
+                                             final int checkpointInterval,
+                                             final long maxJournalBytes) throws IOException {
+    final var rollingPath = rollingPath(filePath);
+    if (Files.exists(rollingPath)) {
+      if (Files.notExists(filePath)) {
+        // a roll was cut short after the full journal was moved aside
+        Files.move(rollingPath, filePath, StandardCopyOption.ATOMIC_MOVE);
+      } else {
+        Files.delete(rollingPath);
+      }
+    }
+    final var fileChannel = FileChannel.open(
+        filePath,
+        StandardOpenOption.CREATE,
+        StandardOpenOption.READ,
+        StandardOpenOption.WRITE
+    );
+    try {
+      final var indexChannel = FileChannel.open(
+          indexPath(filePath),
+          StandardOpenOption.CREATE,
+          StandardOpenOption.READ,
+          StandardOpenOption.WRITE
+      );
+      try {
+        return replay(filePath, fileChannel, indexChannel, checkpointInterval, maxJournalBytes);
+      } catch (final IOException | RuntimeException ex) {
+        indexChannel.close();
+        throw ex;
+      }
+    } catch (final IOException | RuntimeException ex) {
+      fileChannel.close();
+      throw ex;
+    }
+  }
+
+  /// Replays from the last indexed checkpoint rather than the start, so
+  /// opening reads no more than one checkpoint interval of records.
+  private static GlobalConfigJournalImpl replay(final Path filePath,
+                                                final FileChannel fileChannel,
+                                                final FileChannel indexChannel,
+                                                final int checkpointInterval,
+                                                final long maxJournalBytes) throws IOException {
+    final long size = fileChannel.size();
+    final var entry = ByteBuffer.allocate(INDEX_ENTRY_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+    final var crc = new CRC32C();
+    long from = 0;
+    long indexPosition = indexChannel.size() / INDEX_ENTRY_LENGTH * INDEX_ENTRY_LENGTH;
+    while (indexPosition > 0) {
+      entry.clear();
+      read(indexChannel, entry, indexPosition - INDEX_ENTRY_LENGTH);
+      crc.reset();
+      crc.update(entry.array(), 0, Long.BYTES);
+      final long offset = entry.getLong(0);
+      if ((int) crc.getValue() == entry.getInt(Long.BYTES) && isCheckpoint(fileChannel, offset)) {
+        from = offset;
+        break;
+      }
+      indexPosition -= INDEX_ENTRY_LENGTH;
+    }
+    // entries past the one replayed from point at nothing intact
+    indexChannel.truncate(indexPosition);
+
+    final var replayed = new Change[1];
+    final int[] sinceCheckpoint = new int[1];
+    final long validLength = replay(fileChannel, from, change -> {
+      replayed[0] = change;
+      sinceCheckpoint[0] = change.checkpoint() ? 0 : sinceCheckpoint[0] + 1;
+    });
+    if (validLength < size) {
+      logger.log(WARNING, String.format(
+          "Discarding the last %d bytes of GlobalConfig journal %s, a torn or corrupt record.",
+          size - validLength, filePath
+      ));
+      fileChannel.truncate(validLength);
+      fileChannel.force(false);
+    }
+    // the replay's working buffer, no longer written to
+    return new GlobalConfigJournalImpl(
+        filePath, fileChannel, indexChannel, checkpointInterval, maxJournalBytes,
+        replayed[0], validLength, sinceCheckpoint[0], indexPosition
+    );
+  }
+
+  private static boolean isCheckpoint(final FileChannel fileChannel, final long offset) throws IOException {
+    if (offset < 0) {
+      return false;
+    }
+    final var reader = new RecordReader(fileChannel, offset);
+    return reader.next() >= 0 && reader.body[0] == CHECKPOINT;
+  }
+
+  /// Applies each intact record from `from`, the start of a record, to one
+  /// working buffer, and hands `consumer` a [Change] whose data is that
+  /// buffer: it holds only until the next record, so a consumer keeping more
+  /// than the last copies it. Stops at the first record that is torn, corrupt,
+  /// or has no checkpoint to apply to, and returns where that record starts.
+  static long replay(final FileChannel fileChannel,
+                     final long from,
+                     final Consumer<Change> consumer) throws IOException {
+    final var reader = new RecordReader(fileChannel, from);
+    byte[] state = null;
+    for (; ; ) {
+      final long position = reader.position;
+      final int bodyLength = reader.next();
+      if (bodyLength < 0) {
+        return position;
+      }
+      final byte[] body = reader.body;
+      final long slot = ByteUtil.getInt64LE(body, 1);
+      final Change change;
+      if (body[0] == CHECKPOINT) {
+        final int length = bodyLength - BODY_HEADER_LENGTH;
+        if (state == null || state.length != length) {
+          state = new byte[length];
+        }
+        System.arraycopy(body, BODY_HEADER_LENGTH, state, 0, length);
+        change = new Change(slot, true, new int[]{0, length}, state);
+      } else if (body[0] == DELTA && state != null) {
+        final int[] ranges = deltaRanges(body, bodyLength, state.length);
+        if (ranges == null) {
+          return position;
+        }
+        for (int r = 0, i = BODY_HEADER_LENGTH; r < ranges.length; r += 2) {
+          i += RANGE_HEADER_LENGTH;
+          System.arraycopy(body, i, state, ranges[r], ranges[r + 1]);
+          i += ranges[r + 1];
+        }
+        change = new Change(slot, false, ranges, state);
+      } else {
+        return position;
+      }
+      consumer.accept(change);
+    }
+  }
+
+  /// The offset and length pairs of a delta body, or null if any is cut short
+  /// or falls outside an account of `stateLength` bytes. Checked before any
+  /// is applied, so a bad record leaves the working buffer as it was.
+  private static int[] deltaRanges(final byte[] body, final int bodyLength, final int stateLength) {
+    int[] ranges = new int[8];
+    int numRanges = 0;
+    for (int i = BODY_HEADER_LENGTH; i < bodyLength; ) {
+      if (bodyLength - i < RANGE_HEADER_LENGTH) {
+        return null;
+      }
+      final int offset = ByteUtil.getInt32LE(body, i);
+      final int length = ByteUtil.getInt32LE(body, i + Integer.BYTES);
+      i += RANGE_HEADER_LENGTH;
+      if (offset < 0 || length <= 0 || length > stateLength - offset || length > bodyLength - i) {
+        return null;
+      }
+      i += length;
+      if (numRanges == ranges.length) {
+        ranges = Arrays.copyOf(ranges, numRanges << 1);
+      }
+      ranges[numRanges++] = offset;
+      ranges[numRanges++] = length;
+    }
+    return Arrays.copyOf(ranges, numRanges);
+  }
+
+  /// Reads a journal one record at a time, into one body buffer.
+  private static final class RecordReader {
+
+    private final FileChannel fileChannel;
+    private final long size;
+    private final ByteBuffer header;
+    private final CRC32C crc;
+    private byte[] body;
+    private long position;
+
+    private RecordReader(final FileChannel fileChannel, final long position) throws IOException {
+      this.fileChannel = fileChannel;
+      this.size = fileChannel.size();
+      this.header = ByteBuffer.allocate(RECORD_HEADER_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+      this.crc = new CRC32C();
+      this.body = new byte[256];
+      this.position = position;
+    }
+
+    /// Reads the next record's body into [#body] and returns its length, or
+    /// -1, staying put, if the journal ends or the record is torn or corrupt.
+    private int next() throws IOException {
+      if (size - position < RECORD_HEADER_LENGTH) {
+        return -1;
+      }
+      header.clear();
+      read(fileChannel, header, position);
+      final int bodyLength = header.getInt(0);
+      final long from = position + RECORD_HEADER_LENGTH;
+      if (bodyLength < BODY_HEADER_LENGTH || bodyLength > size - from) {
+        return -1;
+      }
+      if (body.length < bodyLength) {
+        body = new byte[Math.max(bodyLength, body.length << 1)];
+      }
+      read(fileChannel, ByteBuffer.wrap(body, 0, bodyLength), from);
+      crc.reset();
+      crc.update(body, 0, bodyLength);
+      if ((int) crc.getValue() != header.getInt(Integer.BYTES)) {
+        return -1;
+      }
+      position = from + bodyLength;
+      return bodyLength;
+    }
+  }
+
+  private static void read(final FileChannel fileChannel, final ByteBuffer buffer, final long position) throws IOException {
+    for (long at = position; buffer.hasRemaining(); ) {
+      final int read = fileChannel.read(buffer, at);
+      if (read < 0) {
+        throw new EOFException("GlobalConfig journal ended at " + at);
+      }
+      at += read;
+    }
+  }
+
+  private static void write(final FileChannel fileChannel, final byte[] bytes, final long position) throws IOException {
+    final var buffer = ByteBuffer.wrap(bytes);
+    for (long at = position; buffer.hasRemaining(); ) {
+      at += fileChannel.write(buffer, at);
+    }
+  }
+
+  /// Offset and length pairs covering every byte that differs between two
+  /// arrays of the same length.
+  static int[] changedRanges(final byte[] previous, final byte[] data) {
+    final int length = data.length;
+    int[] ranges = new int[8];
+    int numRanges = 0;
+    for (int i = 0; i < length; ) {
+      final int mismatch = Arrays.mismatch(previous, i, length, data, i, length);
+      if (mismatch < 0) {
+        break;
+      }
+      final int start = i + mismatch;
+      int end = start + 1;
+      while (end < length && previous[end] != data[end]) {
+        ++end;
+      }
+      if (numRanges > 0 && start - (ranges[numRanges - 2] + ranges[numRanges - 1]) < MERGE_GAP) {
+        ranges[numRanges - 1] = end - ranges[numRanges - 2];
+      } else {
+        if (numRanges == ranges.length) {
+          ranges = Arrays.copyOf(ranges, numRanges << 1);
+        }
+        ranges[numRanges++] = start;
+        ranges[numRanges++] = end - start;
+      }
+      i = end;
+    }
+    return Arrays.copyOf(ranges, numRanges);
+  }
+
+  @Override
+  public Path filePath() {
+    return filePath;
+  }
+
+  @Override
+  public Change latest() {
+    return latest;
+  }
+
+  @Override
+  public void append(final long slot, final byte[] data) {
+    lock.lock();
+    try {
+      final var previous = this.latest;
+      if (previous != null && Arrays.equals(previous.data(), data)) {
+        return;
+      }
+      final byte[] state = data.clone();
+      // past the bound, the journal rolls over to one starting from this record
+      final boolean roll = position >= maxJournalBytes;
+      int[] ranges = null;
+      int bodyLength = BODY_HEADER_LENGTH;
+      if (previous != null && !roll
+          && previous.data().length == state.length && sinceCheckpoint + 1 < checkpointInterval) {
+        ranges = changedRanges(previous.data(), state);
+        for (int i = 1; i < ranges.length; i += 2) {
+          bodyLength += RANGE_HEADER_LENGTH + ranges[i];
+        }
+        if (bodyLength - BODY_HEADER_LENGTH >= state.length >> 1) {
+          // as large as half a checkpoint: start afresh from a whole one
+          ranges = null;
+        }
+      }
+      final boolean checkpoint = ranges == null;
+      if (checkpoint) {
+        bodyLength = BODY_HEADER_LENGTH + state.length;
+      }
+
+      final byte[] record = new byte[RECORD_HEADER_LENGTH + bodyLength];
+      ByteUtil.putInt32LE(record, 0, bodyLength);
+      final int from = RECORD_HEADER_LENGTH;
+      record[from] = checkpoint ? CHECKPOINT : DELTA;
+      ByteUtil.putInt64LE(record, from + 1, slot);
+      int i = from + BODY_HEADER_LENGTH;
+      if (checkpoint) {
+        System.arraycopy(state, 0, record, i, state.length);
+      } else {
+        for (int r = 0; r < ranges.length; r += 2) {
+          final int offset = ranges[r];
+          final int length = ranges[r + 1];
+          ByteUtil.putInt32LE(record, i, offset);
+          ByteUtil.putInt32LE(record, i + Integer.BYTES, length);
+          i += RANGE_HEADER_LENGTH;
+          System.arraycopy(state, offset, record, i, length);
+          i += length;
+        }
+      }
+      final var crc = new CRC32C();
+      crc.update(record, from, bodyLength);
+      ByteUtil.putInt32LE(record, Integer.BYTES, (int) crc.getValue());
+
+      if (roll) {
+        roll(slot, record);
+        position = record.length;
+      } else {
+        try {
+          write(fileChannel, record, position);
+          fileChannel.force(false);
+        } catch (final IOException ex) {
+          // leave the file as the latest record left it, so the next append
+          // still applies on top of what a restart would replay
+          try {
+            fileChannel.truncate(position);
+          } catch (final IOException | RuntimeException truncateEx) {
+            ex.addSuppressed(truncateEx);
+          }
+          throw new UncheckedIOException(ex);
+        }
+        if (checkpoint && position > 0) {
+          indexCheckpoint(position);
+        }
+        position += record.length;
+      }
+      sinceCheckpoint = checkpoint ? 0 : sinceCheckpoint + 1;
+      this.latest = new Change(slot, checkpoint, checkpoint ? new int[]{0, state.length} : ranges, state);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /// Starts a fresh journal from `record`, a checkpoint, and moves the full
+  /// one aside under `slot`, the first it does not hold. Until the fresh one
+  /// takes its place the full one is left as it was, and a roll cut short by
+  /// a crash is finished when the journal is next opened.
+  private void roll(final long slot, final byte[] record) {
+    final var rollingPath = rollingPath(filePath);
+    final var rolledPath = rolledPath(filePath, slot);
+    try {
+      try (final var rolling = FileChannel.open(
+          rollingPath,
+          StandardOpenOption.CREATE,
+          StandardOpenOption.TRUNCATE_EXISTING,
+          StandardOpenOption.WRITE
+      )) {
+        write(rolling, record, 0);
+        rolling.force(true);
+      }
+      // an empty index is never wrong, only slower to replay from
+      indexChannel.truncate(0);
+      indexChannel.force(false);
+      indexPosition = 0;
+      Files.move(filePath, rolledPath);
+      try {
+        Files.move(rollingPath, filePath, StandardCopyOption.ATOMIC_MOVE);
+      } catch (final IOException | RuntimeException ex) {
+        try {
+          Files.move(rolledPath, filePath);
+        } catch (final IOException | RuntimeException restoreEx) {
+          ex.addSuppressed(restoreEx);
+        }
+        throw ex;
+      }
+      final var rolled = fileChannel;
+      fileChannel = FileChannel.open(filePath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      rolled.close();
+    } catch (final IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  /// The index only spares a restart replaying from the start, so failing to
+  /// extend it is logged rather than failing the append.
+  private void indexCheckpoint(final long offset) {
+    final byte[] entry = new byte[INDEX_ENTRY_LENGTH];
+    ByteUtil.putInt64LE(entry, 0, offset);
+    final var crc = new CRC32C();
+    crc.update(entry, 0, Long.BYTES);
+    ByteUtil.putInt32LE(entry, Long.BYTES, (int) crc.getValue());
+    try {
+      write(indexChannel, entry, indexPosition);
+      indexChannel.force(false);
+      indexPosition += INDEX_ENTRY_LENGTH;
+    } catch (final IOException ex) {
+      logger.log(WARNING, "Failed to index a checkpoint of GlobalConfig journal " + filePath, ex);
+    }
+  }
+
+  @Override
+  public void close() {
+    lock.lock();
+    try {
+      if (fileChannel.isOpen()) {
+        try {
+          fileChannel.force(true);
+        } finally {
+          fileChannel.close();
+        }
+      }
+      if (indexChannel.isOpen()) {
+        try {
+          indexChannel.force(true);
+        } finally {
+          indexChannel.close();
+        }
+      }
+    } catch (final IOException ex) {
+      throw new UncheckedIOException(ex);
+    } finally {
+      lock.unlock();
+    }
+  }
+}
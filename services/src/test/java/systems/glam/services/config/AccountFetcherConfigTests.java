@@ -15,6 +15,15 @@ class AccountFetcherConfigTests {
     final var config = AccountFetcherConfig.createDefault();
     assertEquals(Duration.ofSeconds(5), config.fetchDelay());
     assertFalse(config.reactive());
+    assertEquals(1, config.fetchLanes());
+    assertEquals(Duration.ZERO, config.responseCacheTtl());
+    assertEquals(Duration.ZERO, config.maxBatchAge());
+    assertEquals(AccountFetcherConfig.DEFAULT_DISPATCH_QUEUE_CAPACITY, config.dispatchQueueCapacity());
+    assertEquals(AccountFetcherConfig.FetchMode.BALANCED, config.fetchMode());
+    assertEquals(AccountFetcherConfig.DEFAULT_HEDGE_PERCENTILE, config.hedgePercentile());
+    assertEquals(0, config.hotKeyChanges());
+    assertEquals(Duration.ZERO, config.hotKeyWindow());
+    assertEquals(Duration.ZERO, config.maxPollInterval());
   }
 
   @Test
@@ -22,12 +31,30 @@ class AccountFetcherConfigTests {
     final String json = """
         {
           "fetchDelay": "PT10S",
-          "reactive": true
+          "reactive": true,
+          "fetchLanes": 4,
+          "responseCacheTtl": "PT2S",
+          "maxBatchAge": "PT20S",
+          "dispatchQueueCapacity": 64,
+          "fetchMode": "hedged",
+          "hedgePercentile": 0.9,
+          "hotKeyChanges": 5,
+          "hotKeyWindow": "PT30S",
+          "maxPollInterval": "PT1M"
         }
         """;
     final var config = AccountFetcherConfig.parseConfig(JsonIterator.parse(json));
     assertEquals(Duration.ofSeconds(10), config.fetchDelay());
     assertTrue(config.reactive());
+    assertEquals(4, config.fetchLanes());
+    assertEquals(Duration.ofSeconds(2), config.responseCacheTtl());
+    assertEquals(Duration.ofSeconds(20), config.maxBatchAge());
+    assertEquals(64, config.dispatchQueueCapacity());
+    assertEquals(AccountFetcherConfig.FetchMode.HEDGED, config.fetchMode());
+    assertEquals(0.9, config.hedgePercentile());
+    assertEquals(5, config.hotKeyChanges());
+    assertEquals(Duration.ofSeconds(30), config.hotKeyWindow());
+    assertEquals(Duration.ofMinutes(1), config.maxPollInterval());
   }
 
   @Test
@@ -48,6 +75,15 @@ class AccountFetcherConfigTests {
     final var config = AccountFetcherConfig.parseConfig(JsonIterator.parse(json));
     assertEquals(Duration.ofSeconds(5), config.fetchDelay());
     assertFalse(config.reactive());
+    assertEquals(1, config.fetchLanes());
+    assertEquals(Duration.ZERO, config.responseCacheTtl());
+    assertEquals(Duration.ZERO, config.maxBatchAge());
+    assertEquals(AccountFetcherConfig.DEFAULT_DISPATCH_QUEUE_CAPACITY, config.dispatchQueueCapacity());
+    assertEquals(AccountFetcherConfig.FetchMode.BALANCED, config.fetchMode());
+    assertEquals(AccountFetcherConfig.DEFAULT_HEDGE_PERCENTILE, config.hedgePercentile());
+    assertEquals(0, config.hotKeyChanges());
+    assertEquals(Duration.ZERO, config.hotKeyWindow());
+    assertEquals(Duration.ZERO, config.maxPollInterval());
   }
 
   @Test
@@ -55,9 +91,27 @@ class AccountFetcherConfigTests {
     final var properties = new Properties();
     properties.setProperty("fetchDelay", "PT10S");
     properties.setProperty("reactive", "true");
+    properties.setProperty("fetchLanes", "3");
+    properties.setProperty("responseCacheTtl", "PT1S");
+    properties.setProperty("maxBatchAge", "PT30S");
+    properties.setProperty("dispatchQueueCapacity", "8");
+    properties.setProperty("fetchMode", "SHARDED");
+    properties.setProperty("hedgePercentile", "0.99");
+    properties.setProperty("hotKeyChanges", "3");
+    properties.setProperty("hotKeyWindow", "PT2M");
+    properties.setProperty("maxPollInterval", "PT5M");
     final var config = AccountFetcherConfig.parseConfig(properties);
     assertEquals(Duration.ofSeconds(10), config.fetchDelay());
     assertTrue(config.reactive());
+    assertEquals(3, config.fetchLanes());
+    assertEquals(Duration.ofSeconds(1), config.responseCacheTtl());
+    assertEquals(Duration.ofSeconds(30), config.maxBatchAge());
+    assertEquals(8, config.dispatchQueueCapacity());
+    assertEquals(AccountFetcherConfig.FetchMode.SHARDED, config.fetchMode());
+    assertEquals(0.99, config.hedgePercentile());
+    assertEquals(3, config.hotKeyChanges());
+    assertEquals(Duration.ofMinutes(2), config.hotKeyWindow());
+    assertEquals(Duration.ofMinutes(5), config.maxPollInterval());
   }
 
   @Test
@@ -18,6 +18,7 @@ import software.sava.services.solana.remote.call.RpcCaller;
 import systems.glam.sdk.GlamAccounts;
 import systems.glam.sdk.GlamEnv;
 import systems.glam.services.ServiceContextImpl;
+import systems.glam.services.rpc.SlotClock;
 
 import java.lang.reflect.Proxy;
 import java.math.BigInteger;
@@ -91,13 +92,15 @@ final class ExecutionServiceContextTests {
         }
     );
 
+    final var slotClock = SlotClock.createClock();
     final var context = new ExecutionServiceContextImpl(
-        serviceContext, epochInfoService, instructionProcessor, transactionFactory
+        serviceContext, epochInfoService, instructionProcessor, transactionFactory, slotClock
     );
 
     assertSame(epochInfoService, context.epochInfoService());
     assertSame(instructionProcessor, context.instructionProcessor());
     assertSame(transactionFactory, context.transactionFactory());
+    assertSame(slotClock, context.slotClock());
     assertFalse(context.feePayerBalanceLow());
     assertEquals(411L, context.medianMillisPerSlot());
 
@@ -120,14 +123,14 @@ final class ExecutionServiceContextTests {
           throw new UnsupportedOperationException(method.getName());
         }
     );
-    final var context = new ExecutionServiceContextImpl(lowBalanceContext, null, null, null);
+    final var context = new ExecutionServiceContextImpl(lowBalanceContext, null, null, null, null);
     assertTrue(context.feePayerBalanceLow());
   }
 
   @Test
   void theBaseContextDelegatesToTheServiceContext(@TempDir final Path tempDir) throws InterruptedException {
     final var serviceContext = serviceContext(tempDir, Duration.ofMillis(30));
-    final var context = new ExecutionServiceContextImpl(serviceContext, null, null, null);
+    final var context = new ExecutionServiceContextImpl(serviceContext, null, null, null, null);
 
     assertEquals(Duration.ofMillis(30).toNanos(), context.minCheckStateDelayNanos());
     assertEquals(Duration.ofMinutes(5).toNanos(), context.maxCheckStateDelayNanos());
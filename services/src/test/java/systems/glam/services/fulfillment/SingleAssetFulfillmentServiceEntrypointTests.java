@@ -9,6 +9,7 @@ import systems.glam.sdk.Protocol;
 import systems.glam.sdk.StateAccountClient;
 import systems.glam.sdk.idl.programs.glam.mint.gen.GlamMintConstants;
 import systems.glam.sdk.idl.programs.glam.protocol.gen.types.*;
+import systems.glam.services.rpc.AccountFetcher;
 import systems.glam.services.tests.LogCapture;
 
 import java.lang.reflect.Proxy;
@@ -142,6 +143,19 @@ final class SingleAssetFulfillmentServiceEntrypointTests {
         }
     );
 
+    final var accountFetcherRan = new CountDownLatch(1);
+    final var accountFetcher = (AccountFetcher) Proxy.newProxyInstance(
+        AccountFetcher.class.getClassLoader(),
+        new Class<?>[]{AccountFetcher.class},
+        (proxy, method, args) -> {
+          if (method.getName().equals("run")) {
+            accountFetcherRan.countDown();
+            return null;
+          }
+          throw new UnsupportedOperationException(method.getName());
+        }
+    );
+
     final var fulfillmentServiceRan = new CountDownLatch(1);
     final var fulfillmentService = new FulfillmentService() {
       @Override
@@ -156,15 +170,17 @@ final class SingleAssetFulfillmentServiceEntrypointTests {
     };
 
     final var entrypoint = new SingleAssetFulfillmentServiceEntrypoint(
-        webSocketManager, epochInfoService, fulfillmentService
+        webSocketManager, epochInfoService, accountFetcher, fulfillmentService
     );
     assertSame(webSocketManager, entrypoint.webSocketManager());
     assertSame(epochInfoService, entrypoint.epochInfoService());
+    assertSame(accountFetcher, entrypoint.accountFetcher());
     assertSame(fulfillmentService, entrypoint.fulfillmentService());
 
     final var runner = new Thread(entrypoint::run);
     runner.start();
     assertTrue(epochServiceRan.await(5, SECONDS), "the epoch service was never executed");
+    assertTrue(accountFetcherRan.await(5, SECONDS), "the account fetcher was never executed");
     assertTrue(fulfillmentServiceRan.await(5, SECONDS), "the fulfillment service was never executed");
 
     Thread.sleep(250L);
@@ -20,8 +20,10 @@ import systems.glam.services.execution.ExecutionServiceContext;
 import systems.glam.services.execution.InstructionProcessor;
 import systems.glam.services.fulfillment.accounting.RedemptionSummary;
 import systems.glam.services.mints.MintContext;
+import systems.glam.services.rpc.SlotClock;
 import systems.glam.services.tests.LogCapture;
 
+import java.time.Instant;
 import java.util.*;
 import java.util.function.Function;
 
@@ -116,6 +118,7 @@ final class SingleAssetFulfillmentServiceTests {
     final long maxDelayNanos;
     Clock clock;
     long medianMillisPerSlot = 400;
+    final SlotClock slotClock = SlotClock.createClock();
     int fetches = 0;
     private final RpcCaller rpcCaller;
 
@@ -199,6 +202,11 @@ final class SingleAssetFulfillmentServiceTests {
       return medianMillisPerSlot;
     }
 
+    @Override
+    public SlotClock slotClock() {
+      return slotClock;
+    }
+
     @Override
     public boolean processInstructions(final String logContext, final List<Instruction> instructions) {
       processedContexts.add(logContext);
@@ -482,6 +490,23 @@ final class SingleAssetFulfillmentServiceTests {
     );
   }
 
+  @Test
+  void slotRedemptionTimersFollowTheObservedSlotRate() {
+    final var slots = harness(NoticePeriodType.Hard, TimeUnit.Slot, 100L, false, 5, 77);
+    slots.ctx.medianMillisPerSlot = 400;
+    // the cluster is running slow: 500ms per slot, with slot 500 reached now
+    final var now = Instant.now();
+    for (long slot = 400; slot <= 500; ++slot) {
+      slots.ctx.slotClock.observe(slot, now.minusMillis((500 - slot) * 500));
+    }
+    final long availableIn = slots.service.redemptionAvailableIn(
+        summary(10_000L, 500L, 100L, false, pending(1, 10L, 450L))
+    );
+    // slot 550 is 50 slots out at the observed rate, not the epoch median
+    assertTrue(availableIn <= MILLISECONDS.toNanos(50L * 500L), Long.toString(availableIn));
+    assertTrue(availableIn > MILLISECONDS.toNanos(50L * 500L - 1_000L), Long.toString(availableIn));
+  }
+
   @Test
   void fulfillableRedemptionsRespectTheSoftRedeemFlags() {
     final var hardShares = summary(10_000L, 500L, 100L, true, pending(1, 40L, 9_000L));
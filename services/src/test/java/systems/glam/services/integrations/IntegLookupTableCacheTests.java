@@ -156,11 +156,17 @@ final class IntegLookupTableCacheTests {
   void theRunLoopPollsTheTrackedTables(@TempDir final Path tempDir) {
     final var tables = new ConcurrentHashMap<PublicKey, AddressLookupTable>();
     final var queued = new ArrayList<List<PublicKey>>();
+    final var bounded = new ArrayList<List<PublicKey>>();
     final var fetcher = (AccountFetcher) Proxy.newProxyInstance(
         AccountFetcher.class.getClassLoader(),
         new Class<?>[]{AccountFetcher.class},
         (proxy, method, args) -> {
-          if (method.getName().equals("queueBatchable")) {
+          if (method.getName().equals("boundPollInterval")) {
+            assertEquals(Duration.ofMillis(1), args[1]);
+            @SuppressWarnings("unchecked") final var keys = (List<PublicKey>) args[0];
+            bounded.add(keys);
+            return null;
+          } else if (method.getName().equals("queueBatchableBy")) {
             @SuppressWarnings("unchecked") final var keys = (List<PublicKey>) args[0];
             queued.add(keys);
             if (queued.size() == 2) {
@@ -178,6 +184,8 @@ final class IntegLookupTableCacheTests {
 
     assertEquals(2, queued.size());
     assertEquals(List.of(key(1)), queued.getFirst());
+    // each pass keeps the fetcher from backing the tables off past the delay
+    assertEquals(queued, bounded);
   }
 
   @Test
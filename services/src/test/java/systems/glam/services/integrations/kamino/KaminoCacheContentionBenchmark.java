@@ -0,0 +1,291 @@
+package systems.glam.services.integrations.kamino;
+
+import software.sava.core.accounts.PublicKey;
+import software.sava.core.encoding.ByteUtil;
+import software.sava.idl.clients.kamino.KaminoAccounts;
+import software.sava.idl.clients.kamino.lend.gen.types.Reserve;
+import software.sava.idl.clients.kamino.lend.gen.types.ReserveCollateral;
+import software.sava.idl.clients.kamino.lend.gen.types.ReserveConfig;
+import software.sava.idl.clients.kamino.lend.gen.types.ReserveLiquidity;
+import software.sava.idl.clients.kamino.lend.gen.types.ScopeConfiguration;
+import software.sava.idl.clients.kamino.lend.gen.types.TokenInfo;
+import software.sava.idl.clients.kamino.scope.gen.types.Configuration;
+import software.sava.idl.clients.kamino.scope.gen.types.OracleMappings;
+import software.sava.idl.clients.kamino.scope.gen.types.OracleType;
+import software.sava.rpc.json.http.response.AccountInfo;
+import software.sava.rpc.json.http.response.Context;
+import systems.glam.services.tests.ResourceUtil;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+/// Measures how far a burst of reserve updates on one Scope price feed holds
+/// up [KaminoCacheImpl#indexes] lookups for the other feeds.
+///
+/// The traffic is the recorded mainnet SOL reserve, replayed as reserves
+/// spread over synthetic price feeds whose chains head with a direct oracle
+/// entry, as in [KaminoCacheDirectFeedTests], each feed with its own mint. One
+/// writer thread bursts collateral changes into the reserves of the first
+/// feed. The lookup threads ask, on the other feeds' mints, for oracles the
+/// cache has not answered before, so every lookup computes rather than being
+/// served from the index.
+///
+/// Each run is made three ways: with no writer, with the writer taking only
+/// the locks an update takes, and with the writer also holding the whole-cache
+/// write lock around each update, as every update did before the locks were
+/// striped by price feed. Reports lookup throughput and latency percentiles,
+/// and the writer's update rate.
+///
+/// Run from the test classpath with the number of lookup threads, by default
+/// `4`, and the seconds per run, by default `3`.
+public final class KaminoCacheContentionBenchmark {
+
+  private static final PublicKey SOL_RESERVE_KEY = PublicKey.fromBase58Encoded("d4A2prbA2whesmvHaL88BH6Ewn5N4bTSU2Ze8P6Bc4Q");
+  private static final int NUM_FEEDS = 8;
+  private static final int RESERVES_PER_FEED = 16;
+  private static final int CHAIN_INDEX = 11;
+  private static final int MAX_SAMPLES_PER_THREAD = 1 << 20;
+
+  private static final int SCOPE_CONFIG_BASE =
+      Reserve.CONFIG_OFFSET + ReserveConfig.TOKEN_INFO_OFFSET + TokenInfo.SCOPE_CONFIGURATION_OFFSET;
+  private static final int COLLATERAL_SUPPLY_OFFSET =
+      Reserve.COLLATERAL_OFFSET + ReserveCollateral.MINT_TOTAL_SUPPLY_OFFSET;
+  private static final int MINT_OFFSET = Reserve.LIQUIDITY_OFFSET + ReserveLiquidity.MINT_PUBKEY_OFFSET;
+
+  private enum Mode {
+    IDLE,
+    STRIPED,
+    GLOBAL
+  }
+
+  private record Result(long lookups, long[] samples, long updates) {
+  }
+
+  private KaminoCacheContentionBenchmark() {
+  }
+
+  private static PublicKey key(final int tag, final int feed, final long id) {
+    final byte[] bytes = new byte[PublicKey.PUBLIC_KEY_LENGTH];
+    bytes[0] = (byte) tag;
+    bytes[1] = (byte) feed;
+    ByteUtil.putInt64LE(bytes, 2, id);
+    return PublicKey.createPubKey(bytes);
+  }
+
+  private static PublicKey configKey(final int feed) {
+    return key(1, feed, 0);
+  }
+
+  private static PublicKey mappingsKey(final int feed) {
+    return key(2, feed, 0);
+  }
+
+  private static PublicKey pricesKey(final int feed) {
+    return key(3, feed, 0);
+  }
+
+  private static PublicKey oracle(final int feed) {
+    return key(4, feed, 0);
+  }
+
+  private static PublicKey mint(final int feed) {
+    return key(5, feed, 0);
+  }
+
+  private static PublicKey reserveKey(final int feed, final int reserve) {
+    return key(6, feed, reserve);
+  }
+
+  private static AccountInfo<byte[]> accountInfo(final PublicKey pubKey, final long slot, final byte[] data) {
+    return new AccountInfo<>(
+        pubKey, new Context(slot, null), false, 0, KaminoAccounts.MAIN_NET.kLendProgram(),
+        BigInteger.ZERO, 0, data
+    );
+  }
+
+  private static byte[] reserveData(final byte[] fixture, final int feed, final long collateral) {
+    final var data = fixture.clone();
+    pricesKey(feed).write(data, SCOPE_CONFIG_BASE + ScopeConfiguration.PRICE_FEED_OFFSET);
+    final int chainOffset = SCOPE_CONFIG_BASE + ScopeConfiguration.PRICE_CHAIN_OFFSET;
+    ByteUtil.putInt16LE(data, chainOffset, CHAIN_INDEX);
+    ByteUtil.putInt16LE(data, chainOffset + 2, 65_535);
+    ByteUtil.putInt16LE(data, chainOffset + 4, 65_535);
+    ByteUtil.putInt16LE(data, chainOffset + 6, 65_535);
+    mint(feed).write(data, MINT_OFFSET);
+    ByteUtil.putInt64LE(data, COLLATERAL_SUPPLY_OFFSET, collateral);
+    return data;
+  }
+
+  /// An RPC-only cache holding every feed and its reserves.
+  private static KaminoCacheImpl createCache(final byte[] fixture) {
+    final var kaminoAccounts = KaminoAccounts.MAIN_NET;
+    final var cache = new KaminoCacheImpl(
+        null, null,
+        kaminoAccounts.kLendProgram(),
+        kaminoAccounts.scopePricesProgram(),
+        kaminoAccounts.kVaultsProgram(),
+        null, null, false,
+        Duration.ofSeconds(1),
+        null, null, null, null,
+        Map.of(),
+        new ConcurrentHashMap<>(),
+        new ConcurrentHashMap<>(),
+        new ConcurrentHashMap<>()
+    );
+    for (int feed = 0; feed < NUM_FEEDS; ++feed) {
+      final var configData = new byte[Configuration.BYTES];
+      System.arraycopy(Configuration.DISCRIMINATOR.data(), 0, configData, 0, 8);
+      mappingsKey(feed).write(configData, Configuration.ORACLE_MAPPINGS_OFFSET);
+      pricesKey(feed).write(configData, Configuration.ORACLE_PRICES_OFFSET);
+      cache.accept(accountInfo(configKey(feed), 1L, configData));
+
+      final var mappingsData = new byte[OracleMappings.BYTES];
+      System.arraycopy(OracleMappings.DISCRIMINATOR.data(), 0, mappingsData, 0, 8);
+      oracle(feed).write(mappingsData, OracleMappings.PRICE_INFO_ACCOUNTS_OFFSET + CHAIN_INDEX * PublicKey.PUBLIC_KEY_LENGTH);
+      mappingsData[OracleMappings.PRICE_TYPES_OFFSET + CHAIN_INDEX] = (byte) OracleType.SwitchboardOnDemand.ordinal();
+      cache.accept(accountInfo(mappingsKey(feed), 1L, mappingsData));
+
+      for (int r = 0; r < RESERVES_PER_FEED; ++r) {
+        cache.accept(accountInfo(reserveKey(feed, r), 1L, reserveData(fixture, feed, 1_000L + r)));
+      }
+    }
+    return cache;
+  }
+
+  public static void main(final String[] args) throws IOException, InterruptedException {
+    final int numLookupThreads = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+    final long runNanos = Duration.ofSeconds(args.length > 1 ? Long.parseLong(args[1]) : 3).toNanos();
+    final byte[] fixture = ResourceUtil.readResource("accounts/kamino/" + SOL_RESERVE_KEY + ".dat.gz");
+
+    // two collateral values per burst reserve, so every update changes it
+    final var burstData = new byte[RESERVES_PER_FEED][2][];
+    for (int r = 0; r < RESERVES_PER_FEED; ++r) {
+      burstData[r][0] = reserveData(fixture, 0, 2_000L + r);
+      burstData[r][1] = reserveData(fixture, 0, 3_000L + r);
+    }
+
+    // warm up
+    for (final var mode : Mode.values()) {
+      run(createCache(fixture), mode, numLookupThreads, runNanos / 3, burstData);
+    }
+
+    System.out.printf("%8s %12s %10s %10s %10s %10s %10s %12s%n",
+        "mode", "lookups/s", "p50 us", "p90 us", "p99 us", "p99.9 us", "max us", "updates/s"
+    );
+    final double seconds = runNanos / 1e9;
+    for (final var mode : Mode.values()) {
+      final var result = run(createCache(fixture), mode, numLookupThreads, runNanos, burstData);
+      final long[] samples = result.samples();
+      Arrays.sort(samples);
+      System.out.printf("%8s %12.0f %10.1f %10.1f %10.1f %10.1f %10.1f %12.0f%n",
+          mode.name().toLowerCase(),
+          result.lookups() / seconds,
+          percentile(samples, 0.5), percentile(samples, 0.9),
+          percentile(samples, 0.99), percentile(samples, 0.999),
+          samples.length == 0 ? 0 : samples[samples.length - 1] / 1e3,
+          result.updates() / seconds
+      );
+    }
+    System.out.printf("%d feeds of %d reserves, %d lookup threads, burst on 1 feed%n",
+        NUM_FEEDS, RESERVES_PER_FEED, numLookupThreads
+    );
+  }
+
+  private static double percentile(final long[] sorted, final double percentile) {
+    if (sorted.length == 0) {
+      return 0;
+    }
+    final int i = Math.min(sorted.length - 1, (int) (sorted.length * percentile));
+    return sorted[i] / 1e3;
+  }
+
+  private static Result run(final KaminoCacheImpl cache,
+                            final Mode mode,
+                            final int numLookupThreads,
+                            final long runNanos,
+                            final byte[][][] burstData) throws InterruptedException {
+    final var start = new CountDownLatch(1);
+    final long[] updates = new long[1];
+    final var writer = new Thread(() -> {
+      try {
+        start.await();
+      } catch (final InterruptedException e) {
+        return;
+      }
+      final var globalLock = cache.lock.writeLock();
+      long slot = 2;
+      for (long n = 0; !Thread.currentThread().isInterrupted(); ++n, ++slot) {
+        final int r = (int) (n % RESERVES_PER_FEED);
+        final var accountInfo = accountInfo(reserveKey(0, r), slot, burstData[r][(int) ((n / RESERVES_PER_FEED) & 1)]);
+        if (mode == Mode.GLOBAL) {
+          globalLock.lock();
+          try {
+            cache.accept(accountInfo);
+          } finally {
+            globalLock.unlock();
+          }
+        } else {
+          cache.accept(accountInfo);
+        }
+        updates[0] = n + 1;
+      }
+    });
+
+    final var lookupSamples = new long[numLookupThreads][];
+    final var lookupCounts = new long[numLookupThreads];
+    final var lookupThreads = new Thread[numLookupThreads];
+    for (int t = 0; t < numLookupThreads; ++t) {
+      final int thread = t;
+      lookupThreads[t] = new Thread(() -> {
+        final long[] samples = new long[MAX_SAMPLES_PER_THREAD];
+        try {
+          start.await();
+        } catch (final InterruptedException e) {
+          return;
+        }
+        final long deadline = System.nanoTime() + runNanos;
+        long n = 0;
+        for (long now = System.nanoTime(); now < deadline; ++n) {
+          final int feed = 1 + (int) (n % (NUM_FEEDS - 1));
+          // never asked before, so the lookup computes its answer
+          final var oracle = key(7 + thread, feed, n);
+          cache.indexes(mint(feed), oracle, OracleType.SwitchboardOnDemand);
+          final long end = System.nanoTime();
+          if (n < MAX_SAMPLES_PER_THREAD) {
+            samples[(int) n] = end - now;
+          }
+          now = end;
+        }
+        lookupCounts[thread] = n;
+        lookupSamples[thread] = Arrays.copyOf(samples, (int) Math.min(n, MAX_SAMPLES_PER_THREAD));
+      });
+      lookupThreads[t].start();
+    }
+    if (mode != Mode.IDLE) {
+      writer.start();
+    }
+    start.countDown();
+    long lookups = 0;
+    int numSamples = 0;
+    for (int t = 0; t < numLookupThreads; ++t) {
+      lookupThreads[t].join();
+      lookups += lookupCounts[t];
+      numSamples += lookupSamples[t].length;
+    }
+    if (mode != Mode.IDLE) {
+      writer.interrupt();
+      writer.join();
+    }
+    final long[] samples = new long[numSamples];
+    for (int t = 0, from = 0; t < numLookupThreads; ++t) {
+      System.arraycopy(lookupSamples[t], 0, samples, from, lookupSamples[t].length);
+      from += lookupSamples[t].length;
+    }
+    return new Result(lookups, samples, updates[0]);
+  }
+}
@@ -9,6 +9,7 @@ import software.sava.idl.clients.kamino.KaminoAccounts;
 import software.sava.idl.clients.kamino.lend.gen.types.Reserve;
 import software.sava.idl.clients.kamino.lend.gen.types.ReserveCollateral;
 import software.sava.idl.clients.kamino.lend.gen.types.ReserveConfig;
+import software.sava.idl.clients.kamino.lend.gen.types.ReserveLiquidity;
 import software.sava.idl.clients.kamino.lend.gen.types.TokenInfo;
 import software.sava.idl.clients.kamino.lend.gen.types.ScopeConfiguration;
 import software.sava.idl.clients.kamino.scope.gen.types.Configuration;
@@ -26,7 +27,11 @@ import java.nio.file.Path;
 import java.time.Duration;
 import java.util.Arrays;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static software.sava.core.accounts.PublicKey.fromBase58Encoded;
@@ -87,8 +92,12 @@ final class KaminoCacheDirectFeedTests {
   /// The real SOL reserve, re-pointed at the synthetic feed with a direct
   /// single-entry chain and an explicit collateral supply.
   private static byte[] reserveOn(final int chainIndex, final long collateral) {
+    return reserveOn(PRICES2_KEY, chainIndex, collateral);
+  }
+
+  private static byte[] reserveOn(final PublicKey priceFeed, final int chainIndex, final long collateral) {
     final var data = reserveFixture.clone();
-    PRICES2_KEY.write(data, SCOPE_CONFIG_BASE + ScopeConfiguration.PRICE_FEED_OFFSET);
+    priceFeed.write(data, SCOPE_CONFIG_BASE + ScopeConfiguration.PRICE_FEED_OFFSET);
     final int chainOffset = SCOPE_CONFIG_BASE + ScopeConfiguration.PRICE_CHAIN_OFFSET;
     ByteUtil.putInt16LE(data, chainOffset, chainIndex);
     ByteUtil.putInt16LE(data, chainOffset + 2, 65_535);
@@ -119,11 +128,12 @@ final class KaminoCacheDirectFeedTests {
         kaminoAccounts.kLendProgram(),
         kaminoAccounts.scopePricesProgram(),
         kaminoAccounts.kVaultsProgram(),
-        null, null,
+        null, null, false,
         Duration.ofSeconds(1),
         tempDir.resolve("configurations"),
         tempDir.resolve("mappings"),
         tempDir.resolve("reserves"),
+        null,
         Map.of(),
         new ConcurrentHashMap<>(),
         new ConcurrentHashMap<>(),
@@ -185,9 +195,163 @@ final class KaminoCacheDirectFeedTests {
     assertUnlocked(cache);
   }
 
+  @Test
+  void aReserveMovedToAnotherFeedLeavesThePreviousOne(@TempDir final Path tempDir) {
+    final var cache = createCache(tempDir);
+    cache.accept(accountInfo(CONFIG2_KEY, 100L, config2Data));
+    cache.accept(accountInfo(MAPPINGS2_KEY, 100L, mappings2Data));
+
+    // a third feed listing the same oracle at chain index 20
+    final var config3Key = key(50);
+    final var mappings3Key = key(51);
+    final var prices3Key = key(52);
+    final var config3Data = config2Data.clone();
+    mappings3Key.write(config3Data, Configuration.ORACLE_MAPPINGS_OFFSET);
+    prices3Key.write(config3Data, Configuration.ORACLE_PRICES_OFFSET);
+    final var mappings3Data = new byte[OracleMappings.BYTES];
+    System.arraycopy(OracleMappings.DISCRIMINATOR.data(), 0, mappings3Data, 0, 8);
+    ORACLE.write(mappings3Data, OracleMappings.PRICE_INFO_ACCOUNTS_OFFSET + 20 * PublicKey.PUBLIC_KEY_LENGTH);
+    mappings3Data[OracleMappings.PRICE_TYPES_OFFSET + 20] = (byte) OracleType.SwitchboardOnDemand.ordinal();
+    cache.accept(accountInfo(config3Key, 100L, config3Data));
+    cache.accept(accountInfo(mappings3Key, 100L, mappings3Data));
+
+    cache.accept(accountInfo(RESERVE_A_KEY, 100L, reserveOn(11, 9_000L)));
+    cache.accept(accountInfo(RESERVE_B_KEY, 100L, reserveOn(12, 1_000L)));
+    final var mint = cache.reserveContext(RESERVE_A_KEY).mint();
+    var feed = cache.indexes(mint, ORACLE, OracleType.SwitchboardOnDemand);
+    assertArrayEquals(new short[]{11, 12, -1, -1}, feed.indexes());
+    assertEquals(BigInteger.valueOf(10_000L), feed.liquidity());
+
+    // the previous feed must drop it: left indexed there, it would keep
+    // outweighing the feed it moved to with its old chain index
+    cache.accept(accountInfo(RESERVE_A_KEY, 101L, reserveOn(prices3Key, 20, 9_000L)));
+    assertEquals(prices3Key, cache.reserveContext(RESERVE_A_KEY).priceFeed());
+    feed = cache.indexes(mint, ORACLE, OracleType.SwitchboardOnDemand);
+    assertArrayEquals(new short[]{20, -1, -1, -1}, feed.indexes());
+    assertEquals(BigInteger.valueOf(9_000L), feed.liquidity());
+
+    // and moving back drops it from the feed it had moved to, which would
+    // otherwise outweigh the previous feed with both reserves
+    cache.accept(accountInfo(RESERVE_B_KEY, 101L, reserveOn(prices3Key, 20, 1_000L)));
+    cache.accept(accountInfo(RESERVE_A_KEY, 102L, reserveOn(13, 9_000L)));
+    feed = cache.indexes(mint, ORACLE, OracleType.SwitchboardOnDemand);
+    assertArrayEquals(new short[]{13, -1, -1, -1}, feed.indexes());
+    assertEquals(BigInteger.valueOf(9_000L), feed.liquidity());
+    cache.accept(accountInfo(RESERVE_B_KEY, 102L, reserveOn(12, 1_000L)));
+    feed = cache.indexes(mint, ORACLE, OracleType.SwitchboardOnDemand);
+    assertArrayEquals(new short[]{13, 12, -1, -1}, feed.indexes());
+    assertEquals(BigInteger.valueOf(10_000L), feed.liquidity());
+    assertUnlocked(cache);
+  }
+
+  /// Answers are remembered rather than recomputed per lookup: the writers
+  /// bring a remembered answer, or a remembered miss, up to date, and a
+  /// remembered answer is served while a writer holds the lock.
+  @Test
+  void lookupsAreServedFromTheIndexAndKeptCurrent(@TempDir final Path tempDir) throws Exception {
+    final var cache = createCache(tempDir);
+    cache.accept(accountInfo(CONFIG2_KEY, 100L, config2Data));
+    cache.accept(accountInfo(MAPPINGS2_KEY, 100L, mappings2Data));
+    final var mint = PublicKey.readPubKey(reserveFixture, Reserve.LIQUIDITY_OFFSET + ReserveLiquidity.MINT_PUBKEY_OFFSET);
+    final var otherOracle = key(47);
+
+    // without reserves only the mappings fallback answers
+    var feed = cache.indexes(mint, ORACLE, OracleType.SwitchboardOnDemand);
+    assertArrayEquals(new short[]{11, 12, 13, -1}, feed.indexes());
+    assertEquals(BigInteger.ZERO, feed.liquidity());
+    assertNull(cache.indexes(mint, otherOracle, OracleType.SwitchboardOnDemand));
+
+    // an arriving reserve replaces the remembered fallback
+    cache.accept(accountInfo(RESERVE_A_KEY, 100L, reserveOn(11, 1_000L)));
+    feed = cache.indexes(mint, ORACLE, OracleType.SwitchboardOnDemand);
+    assertArrayEquals(new short[]{11, -1, -1, -1}, feed.indexes());
+    assertEquals(BigInteger.valueOf(1_000L), feed.liquidity());
+
+    // a remembered miss is answered once the mappings list the oracle
+    final var updatedMappings = mappings2Data.clone();
+    otherOracle.write(updatedMappings, OracleMappings.PRICE_INFO_ACCOUNTS_OFFSET + 20 * PublicKey.PUBLIC_KEY_LENGTH);
+    updatedMappings[OracleMappings.PRICE_TYPES_OFFSET + 20] = (byte) OracleType.SwitchboardOnDemand.ordinal();
+    cache.accept(accountInfo(MAPPINGS2_KEY, 101L, updatedMappings));
+    final var other = cache.indexes(mint, otherOracle, OracleType.SwitchboardOnDemand);
+    assertNotNull(other);
+    assertArrayEquals(new short[]{20, -1, -1, -1}, other.indexes());
+    final var remembered = cache.indexes(mint, ORACLE, OracleType.SwitchboardOnDemand);
+    assertArrayEquals(new short[]{11, -1, -1, -1}, remembered.indexes());
+    assertUnlocked(cache);
+
+    final var writerHolds = new CountDownLatch(1);
+    final var release = new CountDownLatch(1);
+    final var writer = new Thread(() -> {
+      cache.lock.writeLock().lock();
+      try {
+        writerHolds.countDown();
+        release.await();
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } finally {
+        cache.lock.writeLock().unlock();
+      }
+    });
+    writer.start();
+    try {
+      writerHolds.await();
+      final var served = CompletableFuture.supplyAsync(() -> cache.indexes(mint, ORACLE, OracleType.SwitchboardOnDemand));
+      assertSame(remembered, served.get(1, TimeUnit.SECONDS));
+    } finally {
+      release.countDown();
+      writer.join();
+    }
+    assertUnlocked(cache);
+  }
+
+  @Test
+  void aHeldFeedStripeOnlyHoldsUpThatFeed(@TempDir final Path tempDir) throws Exception {
+    final var cache = createCache(tempDir);
+    cache.accept(accountInfo(CONFIG2_KEY, 100L, config2Data));
+    cache.accept(accountInfo(MAPPINGS2_KEY, 100L, mappings2Data));
+    cache.accept(accountInfo(RESERVE_A_KEY, 100L, reserveOn(11, 1_000L)));
+    final var mint = PublicKey.readPubKey(reserveFixture, Reserve.LIQUIDITY_OFFSET + ReserveLiquidity.MINT_PUBKEY_OFFSET);
+
+    final var feedLock = cache.feedLocks[KaminoCacheImpl.feedStripe(PRICES2_KEY)];
+    final var writerHolds = new CountDownLatch(1);
+    final var release = new CountDownLatch(1);
+    final var writer = new Thread(() -> {
+      feedLock.lock();
+      try {
+        writerHolds.countDown();
+        release.await();
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } finally {
+        feedLock.unlock();
+      }
+    });
+    writer.start();
+    final CompletableFuture<Void> update;
+    try {
+      writerHolds.await();
+      // a lookup miss only needs the read side of the structure lock
+      final var miss = CompletableFuture.supplyAsync(() -> cache.indexes(mint, key(48), OracleType.SwitchboardOnDemand));
+      assertNull(miss.get(1, TimeUnit.SECONDS));
+
+      update = CompletableFuture.runAsync(() -> cache.accept(accountInfo(RESERVE_A_KEY, 101L, reserveOn(11, 2_000L))));
+      assertThrows(TimeoutException.class, () -> update.get(200, TimeUnit.MILLISECONDS));
+    } finally {
+      release.countDown();
+      writer.join();
+    }
+    update.get(1, TimeUnit.SECONDS);
+    final var feed = cache.indexes(mint, ORACLE, OracleType.SwitchboardOnDemand);
+    assertEquals(BigInteger.valueOf(2_000L), feed.liquidity());
+    assertUnlocked(cache);
+  }
+
   private static void assertUnlocked(final KaminoCacheImpl cache) {
     assertFalse(cache.lock.isWriteLocked());
     assertEquals(0, cache.lock.getReadLockCount());
+    for (final var feedLock : cache.feedLocks) {
+      assertFalse(feedLock.isLocked());
+    }
   }
 
   private static final class NoopTracker extends software.sava.services.core.request_capacity.trackers.RootErrorTracker<software.sava.rpc.json.http.client.SolanaRpcClient, byte[]> {
@@ -269,11 +433,12 @@ final class KaminoCacheDirectFeedTests {
     // migrate: after init it exists compressed and the legacy file is gone
     Files.write(configurationsPath.resolve(CONFIG2_KEY.toBase58() + ".dat"), config2Data);
     Files.write(mappingsPath.resolve(MAPPINGS2_KEY.toBase58() + ".dat"), mappings2Data);
+    final byte[] reserveData = reserveOn(11, 1_000L);
     final var reserveContext = ReserveContext.createContext(
-        accountInfo(RESERVE_A_KEY, 100L, reserveOn(11, 1_000L)), Map.of());
+        accountInfo(RESERVE_A_KEY, 100L, reserveData), Map.of());
     final var marketPath = reservesPath.resolve(reserveContext.market().toBase58());
     Files.createDirectories(marketPath);
-    Files.write(marketPath.resolve(RESERVE_A_KEY.toBase58() + ".dat"), reserveContext.data());
+    Files.write(marketPath.resolve(RESERVE_A_KEY.toBase58() + ".dat"), reserveData);
     // corrupted junk beside the good files: loaded past, never fatal
     Files.write(configurationsPath.resolve(key(90).toBase58() + ".dat"), new byte[]{1, 2, 3});
     systems.glam.services.io.FileUtils.writeCompressedAccountData(mappingsPath, key(91), new byte[]{1, 2, 3});
@@ -291,7 +456,7 @@ final class KaminoCacheDirectFeedTests {
         systems.glam.services.rpc.AccountFetcher.class.getClassLoader(),
         new Class<?>[]{systems.glam.services.rpc.AccountFetcher.class},
         (proxy, method, args) -> {
-          if (method.getName().equals("listenToAll")) {
+          if (method.getName().equals("listenToChanges")) {
             listening.add(args[0]);
             return null;
           }
@@ -364,6 +529,68 @@ final class KaminoCacheDirectFeedTests {
         "the corrupted reserve file was not deleted");
   }
 
+  @Test
+  void initSnapshotServiceRestoresAndPersistsThroughOneFile(@TempDir final Path tempDir) throws IOException {
+    final var snapshotPath = tempDir.resolve("kamino.snapshot");
+    try (final var snapshot = systems.glam.services.io.AccountSnapshot.openSnapshot(snapshotPath)) {
+      snapshot.write(CONFIG2_KEY, 100L, config2Data);
+      snapshot.write(MAPPINGS2_KEY, 100L, mappings2Data);
+      snapshot.write(RESERVE_A_KEY, 100L, reserveOn(11, 1_000L));
+      // junk beside the good accounts: passed over and dropped
+      snapshot.write(key(92), 100L, new byte[]{1, 2, 3});
+    }
+
+    final var vaultStateData = Arrays.copyOf(readVaultFixture(), KaminoCacheImpl.MIN_VAULT_STATE_LENGTH);
+    final var vaultKey = fromBase58Encoded("5YxwKgsvyTdT8q2CBgwA4L9BKbnKNrB66K9wUzij5wH");
+    final var fetcher = (systems.glam.services.rpc.AccountFetcher) java.lang.reflect.Proxy.newProxyInstance(
+        systems.glam.services.rpc.AccountFetcher.class.getClassLoader(),
+        new Class<?>[]{systems.glam.services.rpc.AccountFetcher.class},
+        (proxy, method, args) -> method.getName().equals("listenToChanges") ? null
+            : Void.class.cast(new UnsupportedOperationException(method.getName()))
+    );
+    final var requests = new java.util.ArrayList<software.sava.rpc.json.http.client.ProgramAccountsRequest<?>>();
+    final var cache = KaminoCache.initSnapshotService(
+        snapshotPath,
+        rpcCaller(java.util.List.of(accountInfo(vaultKey, 100L, vaultStateData)), requests),
+        fetcher,
+        KaminoAccounts.MAIN_NET,
+        Duration.ofSeconds(1),
+        false
+    ).join();
+
+    // the only fetch is the vault scan, and no directory tree was made
+    assertEquals(1, requests.size());
+    assertEquals(KaminoAccounts.MAIN_NET.kVaultsProgram(), requests.getFirst().programId());
+    assertNull(cache.reserveDataFilePath());
+    assertNull(cache.configurationsPath());
+    assertNull(cache.mappingsPath());
+    try (final var files = Files.list(tempDir)) {
+      assertEquals(java.util.List.of(snapshotPath), files.toList());
+    }
+
+    final var restored = cache.reserveContext(RESERVE_A_KEY);
+    assertNotNull(restored, "the reserve was not restored from the snapshot");
+    var feed = cache.indexes(restored.mint(), ORACLE, OracleType.SwitchboardOnDemand);
+    assertArrayEquals(new short[]{11, -1, -1, -1}, feed.indexes());
+    assertEquals(BigInteger.valueOf(1_000L), feed.liquidity());
+    assertNull(cache.reserveContext(key(92)));
+
+    // a changed reserve is written back to the snapshot
+    final byte[] moved = reserveOn(12, 1_000L);
+    cache.accept(accountInfo(RESERVE_A_KEY, 101L, moved));
+    feed = cache.indexes(restored.mint(), ORACLE, OracleType.SwitchboardOnDemand);
+    assertArrayEquals(new short[]{12, -1, -1, -1}, feed.indexes());
+    // closing forces the snapshot and lets it go; a second close is harmless
+    cache.close();
+    cache.close();
+    try (final var snapshot = systems.glam.services.io.AccountSnapshot.openSnapshot(snapshotPath)) {
+      assertArrayEquals(moved, snapshot.read(RESERVE_A_KEY));
+      assertEquals(101L, snapshot.slot(RESERVE_A_KEY));
+      assertNull(snapshot.read(key(92)), "the junk account was not dropped");
+      assertEquals(3, snapshot.numAccounts());
+    }
+  }
+
   /// A cold start whose reserve scan comes back empty must still create the
   /// reserve directory instead of crashing on the missing path.
   @Test
@@ -389,7 +616,7 @@ final class KaminoCacheDirectFeedTests {
     final var fetcher = (systems.glam.services.rpc.AccountFetcher) java.lang.reflect.Proxy.newProxyInstance(
         systems.glam.services.rpc.AccountFetcher.class.getClassLoader(),
         new Class<?>[]{systems.glam.services.rpc.AccountFetcher.class},
-        (proxy, method, args) -> method.getName().equals("listenToAll") ? null
+        (proxy, method, args) -> method.getName().equals("listenToChanges") ? null
             : Void.class.cast(new UnsupportedOperationException(method.getName()))
     );
     final var cache = KaminoCache.initService(
@@ -453,7 +680,7 @@ final class KaminoCacheDirectFeedTests {
     final var fetcher = (systems.glam.services.rpc.AccountFetcher) java.lang.reflect.Proxy.newProxyInstance(
         systems.glam.services.rpc.AccountFetcher.class.getClassLoader(),
         new Class<?>[]{systems.glam.services.rpc.AccountFetcher.class},
-        (proxy, method, args) -> method.getName().equals("listenToAll") ? null
+        (proxy, method, args) -> method.getName().equals("listenToChanges") ? null
             : Void.class.cast(new UnsupportedOperationException(method.getName()))
     );
     final var cache = KaminoCache.initService(
@@ -576,7 +803,7 @@ final class KaminoCacheDirectFeedTests {
     final var fetcher = (systems.glam.services.rpc.AccountFetcher) java.lang.reflect.Proxy.newProxyInstance(
         systems.glam.services.rpc.AccountFetcher.class.getClassLoader(),
         new Class<?>[]{systems.glam.services.rpc.AccountFetcher.class},
-        (proxy, method, args) -> method.getName().equals("listenToAll") ? null
+        (proxy, method, args) -> method.getName().equals("listenToChanges") ? null
             : Void.class.cast(new UnsupportedOperationException(method.getName()))
     );
 
@@ -6,6 +6,8 @@ import org.junit.jupiter.api.io.TempDir;
 import software.sava.core.accounts.PublicKey;
 import software.sava.core.encoding.ByteUtil;
 import software.sava.idl.clients.kamino.KaminoAccounts;
+import software.sava.idl.clients.kamino.lend.gen.types.LastUpdate;
+import software.sava.idl.clients.kamino.lend.gen.types.LendingMarket;
 import software.sava.idl.clients.kamino.lend.gen.types.Reserve;
 import software.sava.idl.clients.kamino.lend.gen.types.ReserveConfig;
 import software.sava.idl.clients.kamino.lend.gen.types.TokenInfo;
@@ -30,6 +32,7 @@ import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -208,23 +211,45 @@ final class KaminoCachePollingTests {
       final AtomicReference<Object> listened,
       final List<List<PublicKey>> batchQueued,
       final java.util.function.Function<List<PublicKey>, AccountResult> priorityResults) {
+    return recordingFetcher(listened, batchQueued, new HashMap<>(), priorityResults);
+  }
+
+  private static systems.glam.services.rpc.AccountFetcher recordingFetcher(
+      final AtomicReference<Object> listened,
+      final List<List<PublicKey>> batchQueued,
+      final Map<PublicKey, Duration> pollBounds,
+      final java.util.function.Function<List<PublicKey>, AccountResult> priorityResults) {
     return (systems.glam.services.rpc.AccountFetcher) java.lang.reflect.Proxy.newProxyInstance(
         systems.glam.services.rpc.AccountFetcher.class.getClassLoader(),
         new Class<?>[]{systems.glam.services.rpc.AccountFetcher.class},
         (proxy, method, args) -> switch (method.getName()) {
-          case "listenToAll" -> {
+          case "listenToChanges" -> {
             listened.set(args[0]);
             yield null;
           }
+          case "boundPollInterval" -> {
+            @SuppressWarnings("unchecked") final var keys = (Collection<PublicKey>) args[0];
+            for (final var key : keys) {
+              pollBounds.put(key, (Duration) args[1]);
+            }
+            yield null;
+          }
           case "priorityQueueBatchable" -> {
             @SuppressWarnings("unchecked") final var keys = (List<PublicKey>) args[0];
             batchQueued.add(List.copyOf(keys));
             yield null;
           }
-          case "priorityQueue" -> {
+          case "priorityQueueSnapshot" -> {
             @SuppressWarnings("unchecked") final var keys = (List<PublicKey>) args[0];
             yield CompletableFuture.completedFuture(priorityResults.apply(keys));
           }
+          case "priorityQueue" -> {
+            if (args.length != 1) {
+              throw new UnsupportedOperationException("priorityQueue/" + args.length);
+            }
+            @SuppressWarnings("unchecked") final var keys = (Collection<PublicKey>) args[0];
+            yield CompletableFuture.completedFuture(priorityResults.apply(List.copyOf(keys)));
+          }
           default -> throw new UnsupportedOperationException(method.getName());
         }
     );
@@ -453,7 +478,8 @@ final class KaminoCachePollingTests {
         }
     );
     final var requestedKeys = new CopyOnWriteArrayList<List<PublicKey>>();
-    final var fetcher = recordingFetcher(new AtomicReference<>(), new ArrayList<>(), keys -> {
+    final var pollBounds = new java.util.concurrent.ConcurrentHashMap<PublicKey, Duration>();
+    final var fetcher = recordingFetcher(new AtomicReference<>(), new ArrayList<>(), pollBounds, keys -> {
       requestedKeys.add(List.copyOf(keys));
       final var map = new HashMap<PublicKey, AccountInfo<byte[]>>(keys.size());
       for (final var requested : keys) {
@@ -506,6 +532,9 @@ final class KaminoCachePollingTests {
     assertNotNull(feed);
     assertEquals(BigInteger.valueOf(2_000L), feed.liquidity());
     assertTrue(listener.events.contains(new Recorded("newReserve", RESERVE_A_KEY)));
+    // the scope accounts the loop polls may not be backed off past its delay
+    assertEquals(Duration.ofMillis(30), pollBounds.get(CONFIG2_KEY));
+    assertEquals(Duration.ofMillis(30), pollBounds.get(MAPPINGS2_KEY));
     // the polled reserve sweep is an observed write like any other: raw account
     // activity is reported on every ingestion path, not only the websocket ones
     assertTrue(listener.events.contains(new Recorded("reserveUpdate", RESERVE_A_KEY)),
@@ -576,6 +605,292 @@ final class KaminoCachePollingTests {
     }
   }
 
+  /// Between full sweeps the loop polls only each reserve's LastUpdate, and
+  /// fetches in full just the reserves whose LastUpdate moved.
+  @Test
+  void fingerprintPollsFetchOnlyTheReservesThatMoved() throws Exception {
+    final var kaminoAccounts = KaminoAccounts.MAIN_NET;
+    final var onChain = new AtomicReference<>(reserveOn(11, 1_000L));
+    final var cacheHolder = new AtomicReference<KaminoCacheImpl>();
+    final var fingerprintPolls = new AtomicInteger();
+    final var client = (software.sava.rpc.json.http.client.SolanaRpcClient) java.lang.reflect.Proxy.newProxyInstance(
+        software.sava.rpc.json.http.client.SolanaRpcClient.class.getClassLoader(),
+        new Class<?>[]{software.sava.rpc.json.http.client.SolanaRpcClient.class},
+        (proxy, method, args) -> switch (method.getName()) {
+          case "getProgramAccounts" -> {
+            final var request = (software.sava.rpc.json.http.client.ProgramAccountsRequest<?>) args[0];
+            final var program = request.programId();
+            if (program.equals(kaminoAccounts.kVaultsProgram())) {
+              yield CompletableFuture.completedFuture(List.of());
+            } else if (program.equals(kaminoAccounts.scopePricesProgram())) {
+              yield CompletableFuture.completedFuture(defaultInitAccounts("configs"));
+            } else if (program.equals(kaminoAccounts.kLendProgram())) {
+              final var cache = cacheHolder.get();
+              final byte[] data = onChain.get();
+              if (cache != null && request == cache.reserveFingerprintsRequest) {
+                fingerprintPolls.incrementAndGet();
+                yield CompletableFuture.completedFuture(List.of(accountInfo(RESERVE_A_KEY, 300L, Arrays.copyOfRange(
+                    data, Reserve.LAST_UPDATE_OFFSET, Reserve.LAST_UPDATE_OFFSET + LastUpdate.BYTES
+                ))));
+              }
+              yield CompletableFuture.completedFuture(List.of(
+                  accountInfo(RESERVE_A_KEY, 300L, Arrays.copyOf(data, KaminoCacheImpl.MIN_RESERVE_LENGTH))
+              ));
+            }
+            throw new UnsupportedOperationException("getProgramAccounts for " + program);
+          }
+          case "getAccounts" -> CompletableFuture.completedFuture(defaultInitAccounts("mappings"));
+          default -> throw new UnsupportedOperationException(method.getName());
+        }
+    );
+    final var reserveFetches = new CopyOnWriteArrayList<List<PublicKey>>();
+    final var fetcher = recordingFetcher(new AtomicReference<>(), new ArrayList<>(), keys -> {
+      final var map = new HashMap<PublicKey, AccountInfo<byte[]>>(keys.size());
+      for (final var requested : keys) {
+        if (requested.equals(CONFIG2_KEY)) {
+          map.put(requested, accountInfo(CONFIG2_KEY, 300L, config2Data));
+        } else if (requested.equals(MAPPINGS2_KEY)) {
+          map.put(requested, accountInfo(MAPPINGS2_KEY, 300L, mappings2Data));
+        } else if (requested.equals(RESERVE_A_KEY)) {
+          map.put(requested, accountInfo(RESERVE_A_KEY, 400L, onChain.get()));
+        }
+      }
+      if (map.containsKey(RESERVE_A_KEY)) {
+        reserveFetches.add(List.copyOf(keys));
+      }
+      return new AccountResult(List.copyOf(map.values()), map);
+    });
+
+    final var cache = (KaminoCacheImpl) KaminoCache.initService(
+        callerFor(client),
+        fetcher,
+        kaminoAccounts,
+        Duration.ofMillis(10)
+    ).join();
+    cacheHolder.set(cache);
+
+    final var runner = new Thread(cache::run);
+    try {
+      runner.start();
+      final long deadline = System.nanoTime() + FIXTURE_DEADLINE_NANOS;
+      while (fingerprintPolls.get() < 3) {
+        assertTrue(System.nanoTime() < deadline, "the poll loop never polled fingerprints");
+        //noinspection BusyWait
+        Thread.sleep(1L);
+      }
+      assertEquals(List.of(), reserveFetches, "an unmoved reserve must not be fetched in full");
+
+      // a refresh on chain moves the LastUpdate along with the reserve
+      final byte[] refreshed = reserveOn(11, 3_000L);
+      ByteUtil.putInt64LE(refreshed, Reserve.LAST_UPDATE_OFFSET,
+          ByteUtil.getInt64LE(refreshed, Reserve.LAST_UPDATE_OFFSET) + 1);
+      onChain.set(refreshed);
+      while (cache.reserveContext(RESERVE_A_KEY).totalCollateral() != 3_000L) {
+        assertTrue(System.nanoTime() < deadline, "the moved reserve was never fetched");
+        //noinspection BusyWait
+        Thread.sleep(1L);
+      }
+      assertEquals(List.of(RESERVE_A_KEY), reserveFetches.getFirst());
+
+      // once applied, the new fingerprint is the baseline
+      final int fetches = reserveFetches.size();
+      final int polls = fingerprintPolls.get();
+      while (fingerprintPolls.get() < polls + 3) {
+        assertTrue(System.nanoTime() < deadline, "the poll loop stopped polling fingerprints");
+        //noinspection BusyWait
+        Thread.sleep(1L);
+      }
+      assertEquals(fetches, reserveFetches.size());
+    } finally {
+      runner.interrupt();
+      runner.join(FIXTURE_JOIN_MILLIS);
+    }
+  }
+
+  /// A reserve left out for want of its price feed keeps no fingerprint, so
+  /// the polls between full sweeps keep fetching it in full rather than
+  /// taking its unmoved LastUpdate for one already applied.
+  @Test
+  void aReserveLeftOutKeepsBeingFetchedInFull() throws Exception {
+    final var kaminoAccounts = KaminoAccounts.MAIN_NET;
+    final byte[] unknownFeed = reserveOn(11, 1_000L);
+    key(80).write(unknownFeed, SCOPE_CONFIG_BASE + ScopeConfiguration.PRICE_FEED_OFFSET);
+    final var cacheHolder = new AtomicReference<KaminoCacheImpl>();
+    final var fingerprintPolls = new AtomicInteger();
+    final var client = (software.sava.rpc.json.http.client.SolanaRpcClient) java.lang.reflect.Proxy.newProxyInstance(
+        software.sava.rpc.json.http.client.SolanaRpcClient.class.getClassLoader(),
+        new Class<?>[]{software.sava.rpc.json.http.client.SolanaRpcClient.class},
+        (proxy, method, args) -> switch (method.getName()) {
+          case "getProgramAccounts" -> {
+            final var request = (software.sava.rpc.json.http.client.ProgramAccountsRequest<?>) args[0];
+            final var program = request.programId();
+            if (program.equals(kaminoAccounts.kVaultsProgram())) {
+              yield CompletableFuture.completedFuture(List.of());
+            } else if (program.equals(kaminoAccounts.scopePricesProgram())) {
+              yield CompletableFuture.completedFuture(defaultInitAccounts("configs"));
+            } else if (program.equals(kaminoAccounts.kLendProgram())) {
+              final var cache = cacheHolder.get();
+              if (cache != null && request == cache.reserveFingerprintsRequest) {
+                fingerprintPolls.incrementAndGet();
+                yield CompletableFuture.completedFuture(List.of(accountInfo(RESERVE_A_KEY, 300L, Arrays.copyOfRange(
+                    unknownFeed, Reserve.LAST_UPDATE_OFFSET, Reserve.LAST_UPDATE_OFFSET + LastUpdate.BYTES
+                ))));
+              }
+              yield CompletableFuture.completedFuture(List.of(
+                  accountInfo(RESERVE_A_KEY, 300L, Arrays.copyOf(unknownFeed, KaminoCacheImpl.MIN_RESERVE_LENGTH))
+              ));
+            }
+            throw new UnsupportedOperationException("getProgramAccounts for " + program);
+          }
+          case "getAccounts" -> CompletableFuture.completedFuture(defaultInitAccounts("mappings"));
+          default -> throw new UnsupportedOperationException(method.getName());
+        }
+    );
+    final var reserveFetches = new AtomicInteger();
+    final var fetcher = recordingFetcher(new AtomicReference<>(), new ArrayList<>(), keys -> {
+      final var map = new HashMap<PublicKey, AccountInfo<byte[]>>(keys.size());
+      for (final var requested : keys) {
+        if (requested.equals(CONFIG2_KEY)) {
+          map.put(requested, accountInfo(CONFIG2_KEY, 300L, config2Data));
+        } else if (requested.equals(MAPPINGS2_KEY)) {
+          map.put(requested, accountInfo(MAPPINGS2_KEY, 300L, mappings2Data));
+        } else if (requested.equals(RESERVE_A_KEY)) {
+          map.put(requested, accountInfo(RESERVE_A_KEY, 400L, unknownFeed));
+          reserveFetches.incrementAndGet();
+        }
+      }
+      return new AccountResult(List.copyOf(map.values()), map);
+    });
+
+    final var cache = (KaminoCacheImpl) KaminoCache.initService(
+        callerFor(client),
+        fetcher,
+        kaminoAccounts,
+        Duration.ofMillis(10)
+    ).join();
+    cacheHolder.set(cache);
+
+    final var runner = new Thread(cache::run);
+    try {
+      runner.start();
+      final long deadline = System.nanoTime() + FIXTURE_DEADLINE_NANOS;
+      while (fingerprintPolls.get() < 3) {
+        assertTrue(System.nanoTime() < deadline, "the poll loop never polled fingerprints");
+        //noinspection BusyWait
+        Thread.sleep(1L);
+      }
+      // the sweep could not take it in, so no LastUpdate of it counts as applied
+      assertTrue(reserveFetches.get() >= 2, () -> reserveFetches.get() + " full fetches of the left out reserve");
+      assertNull(cache.reserveContext(RESERVE_A_KEY));
+    } finally {
+      runner.interrupt();
+      runner.join(FIXTURE_JOIN_MILLIS);
+    }
+  }
+
+  /// Partitioned, no request covers the whole lending program: the markets
+  /// are found first, then each market's reserves are fetched on their own,
+  /// at init and in the poll loop's full sweep.
+  @Test
+  void partitionedFetchesRequestTheReservesMarketByMarket() throws Exception {
+    final var kaminoAccounts = KaminoAccounts.MAIN_NET;
+    final var marketA = key(70);
+    final var marketB = key(71);
+    final var feedless = Arrays.copyOf(feedlessReserve(5L), KaminoCacheImpl.MIN_RESERVE_LENGTH);
+    marketB.write(feedless, Reserve.LENDING_MARKET_OFFSET);
+    final var reservesByMarket = Map.of(
+        marketA, List.of(accountInfo(RESERVE_A_KEY, 100L,
+            Arrays.copyOf(reserveOn(11, 1_000L), KaminoCacheImpl.MIN_RESERVE_LENGTH))),
+        marketB, List.of(accountInfo(FEEDLESS_KEY, 100L, feedless))
+    );
+    final var cacheHolder = new AtomicReference<KaminoCacheImpl>();
+    final var marketSweeps = new AtomicInteger();
+    final var partitionsRequested = new CopyOnWriteArrayList<PublicKey>();
+    final var client = (software.sava.rpc.json.http.client.SolanaRpcClient) java.lang.reflect.Proxy.newProxyInstance(
+        software.sava.rpc.json.http.client.SolanaRpcClient.class.getClassLoader(),
+        new Class<?>[]{software.sava.rpc.json.http.client.SolanaRpcClient.class},
+        (proxy, method, args) -> switch (method.getName()) {
+          case "getProgramAccounts" -> {
+            final var request = (software.sava.rpc.json.http.client.ProgramAccountsRequest<?>) args[0];
+            final var program = request.programId();
+            if (program.equals(kaminoAccounts.kVaultsProgram())) {
+              yield CompletableFuture.completedFuture(defaultInitAccounts("vaults"));
+            } else if (program.equals(kaminoAccounts.scopePricesProgram())) {
+              yield CompletableFuture.completedFuture(defaultInitAccounts("configs"));
+            } else if (program.equals(kaminoAccounts.kLendProgram())) {
+              final var filters = request.filters();
+              if (filters.contains(LendingMarket.DISCRIMINATOR_FILTER)) {
+                marketSweeps.incrementAndGet();
+                yield CompletableFuture.completedFuture(List.of(
+                    accountInfo(marketA, 100L, new byte[0]),
+                    accountInfo(marketB, 100L, new byte[0])
+                ));
+              }
+              for (final var market : reservesByMarket.entrySet()) {
+                if (filters.contains(Reserve.createLendingMarketFilter(market.getKey()))) {
+                  partitionsRequested.add(market.getKey());
+                  yield CompletableFuture.completedFuture(market.getValue());
+                }
+              }
+              final var cache = cacheHolder.get();
+              if (cache != null && request == cache.reserveFingerprintsRequest) {
+                yield CompletableFuture.completedFuture(List.of());
+              }
+              throw new UnsupportedOperationException("a reserve request not partitioned by market");
+            }
+            throw new UnsupportedOperationException("getProgramAccounts for " + program);
+          }
+          case "getAccounts" -> CompletableFuture.completedFuture(defaultInitAccounts("mappings"));
+          default -> throw new UnsupportedOperationException(method.getName());
+        }
+    );
+    final var fetcher = recordingFetcher(new AtomicReference<>(), new ArrayList<>(), keys -> {
+      final var map = new HashMap<PublicKey, AccountInfo<byte[]>>(keys.size());
+      for (final var requested : keys) {
+        if (requested.equals(CONFIG2_KEY)) {
+          map.put(requested, accountInfo(CONFIG2_KEY, 100L, config2Data));
+        } else if (requested.equals(MAPPINGS2_KEY)) {
+          map.put(requested, accountInfo(MAPPINGS2_KEY, 100L, mappings2Data));
+        }
+      }
+      return new AccountResult(List.copyOf(map.values()), map);
+    });
+
+    final var cache = (KaminoCacheImpl) KaminoCache.initService(
+        callerFor(client),
+        fetcher,
+        kaminoAccounts,
+        Duration.ofSeconds(1),
+        true
+    ).join();
+    cacheHolder.set(cache);
+    assertEquals(1, marketSweeps.get());
+    assertEquals(Set.of(marketA, marketB), Set.copyOf(partitionsRequested));
+    assertEquals(2, partitionsRequested.size());
+    // as unpartitioned, init keeps only the feedless reserves
+    assertNull(cache.reserveContext(RESERVE_A_KEY));
+    assertEquals(marketB, cache.reserveContext(FEEDLESS_KEY).market());
+    assertEquals(1, cache.reserveContexts().size());
+
+    // the first poll is a full sweep, partitioned the same way
+    final var runner = new Thread(cache::run);
+    try {
+      runner.start();
+      final long deadline = System.nanoTime() + FIXTURE_DEADLINE_NANOS;
+      while (cache.reserveContext(RESERVE_A_KEY) == null) {
+        assertTrue(runner.isAlive(), "the poll loop ended");
+        assertTrue(System.nanoTime() < deadline, "the partitioned sweep never applied the reserve");
+        //noinspection BusyWait
+        Thread.sleep(1L);
+      }
+      assertEquals(2, marketSweeps.get());
+      assertEquals(4, partitionsRequested.size());
+    } finally {
+      runner.interrupt();
+      runner.join(FIXTURE_JOIN_MILLIS);
+    }
+  }
+
   @Test
   void aPollFailureIsLoggedAndEndsTheLoop() {
     final var throwingClient = (software.sava.rpc.json.http.client.SolanaRpcClient) java.lang.reflect.Proxy.newProxyInstance(
@@ -591,9 +906,9 @@ final class KaminoCachePollingTests {
         kaminoAccounts.kLendProgram(),
         kaminoAccounts.scopePricesProgram(),
         kaminoAccounts.kVaultsProgram(),
-        null, null,
+        null, null, false,
         Duration.ofMillis(10),
-        null, null, null,
+        null, null, null, null,
         Map.of(),
         new java.util.concurrent.ConcurrentHashMap<>(),
         new java.util.concurrent.ConcurrentHashMap<>(),
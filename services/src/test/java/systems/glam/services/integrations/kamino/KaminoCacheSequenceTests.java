@@ -80,11 +80,12 @@ final class KaminoCacheSequenceTests {
         kaminoAccounts.kLendProgram(),
         kaminoAccounts.scopePricesProgram(),
         kaminoAccounts.kVaultsProgram(),
-        null, null,
+        null, null, false,
         Duration.ofSeconds(1),
         tempDir.resolve("configurations"),
         tempDir.resolve("mappings"),
         tempDir.resolve("reserves"),
+        null,
         Map.of(),
         new ConcurrentHashMap<>(),
         new ConcurrentHashMap<>(),
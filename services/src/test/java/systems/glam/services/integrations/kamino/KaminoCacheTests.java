@@ -78,11 +78,12 @@ final class KaminoCacheTests {
         kaminoAccounts.kLendProgram(),
         kaminoAccounts.scopePricesProgram(),
         kaminoAccounts.kVaultsProgram(),
-        null, null,
+        null, null, false,
         Duration.ofSeconds(1),
         tempDir.resolve("configurations"),
         tempDir.resolve("mappings"),
         tempDir.resolve("reserves"),
+        null,
         Map.of(),
         new ConcurrentHashMap<>(),
         new ConcurrentHashMap<>(),
@@ -95,6 +96,9 @@ final class KaminoCacheTests {
   private static void assertUnlocked(final KaminoCacheImpl cache) {
     assertFalse(cache.lock.isWriteLocked());
     assertEquals(0, cache.lock.getReadLockCount());
+    for (final var feedLock : cache.feedLocks) {
+      assertFalse(feedLock.isLocked());
+    }
   }
 
   private record RecordingListener(PublicKey key, List<String> events) implements KaminoListener {
@@ -448,11 +452,12 @@ final class KaminoCacheTests {
         kaminoAccounts.kLendProgram(),
         kaminoAccounts.scopePricesProgram(),
         kaminoAccounts.kVaultsProgram(),
-        null, null,
+        null, null, false,
         Duration.ofSeconds(1),
         null,
         null,
         tempDir.resolve("reserves"),
+        null,
         Map.of(),
         new ConcurrentHashMap<>(),
         new ConcurrentHashMap<>(),
@@ -61,7 +61,7 @@ final class ReserveContextChangeTests {
                                         final TokenInfo tokenInfo,
                                         final PriceChainsRecord priceChains) {
     return new ReserveContext(
-        1L, new byte[0], RESERVE, AccountMeta.createWrite(RESERVE),
+        1L, RESERVE, AccountMeta.createWrite(RESERVE),
         market, tokenName, mint, totalCollateral, priceChains, tokenInfo
     );
   }
@@ -152,7 +152,7 @@ final class ReserveContextChangeTests {
   @Test
   void comparingADifferentReserveIsRejected() {
     final var other = new ReserveContext(
-        1L, new byte[0], key(42), AccountMeta.createWrite(key(42)),
+        1L, key(42), AccountMeta.createWrite(key(42)),
         MARKET, "SOL", MINT, 1_000L, chains(11, 21), tokenInfo("SOL", PRICE_FEED, 60, 120, 300)
     );
     assertThrows(IllegalStateException.class, () -> base().changed(other));
@@ -0,0 +1,143 @@
+package systems.glam.services.integrations.kamino;
+
+import software.sava.core.accounts.PublicKey;
+import software.sava.core.accounts.meta.AccountMeta;
+import software.sava.core.encoding.ByteUtil;
+import software.sava.idl.clients.core.gen.SerDeUtil;
+import software.sava.idl.clients.kamino.lend.gen.types.Reserve;
+import software.sava.idl.clients.kamino.lend.gen.types.ReserveCollateral;
+import software.sava.idl.clients.kamino.lend.gen.types.ReserveConfig;
+import software.sava.idl.clients.kamino.lend.gen.types.ReserveLiquidity;
+import software.sava.idl.clients.kamino.lend.gen.types.TokenInfo;
+import systems.glam.services.tests.ResourceUtil;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/// Compares what a [ReserveContext] costs per Kamino reserve against the
+/// representation it replaced, which kept the whole account data and a
+/// decoded [TokenInfo] beside the indexed fields.
+///
+/// Reports, per reserve, the bytes allocated to build a context from polled
+/// account data, the smallest of several rounds, and the heap retained by a
+/// cache of contexts, measured as the growth in used heap across a full
+/// collection. The retained figure depends on the collector and is only
+/// stable to a few percent; run with a fixed heap, e.g. `-Xms1g -Xmx1g`, and
+/// compare runs on one machine rather than reading it in absolute terms.
+///
+/// Run from the test classpath with the number of reserves as the argument,
+/// by default `1024`.
+public final class ReserveContextFootprintBenchmark {
+
+  private static final PublicKey SOL_RESERVE_KEY = PublicKey.fromBase58Encoded("d4A2prbA2whesmvHaL88BH6Ewn5N4bTSU2Ze8P6Bc4Q");
+  private static final int TOKEN_INFO_OFFSET = Reserve.CONFIG_OFFSET + ReserveConfig.TOKEN_INFO_OFFSET;
+  private static final int ROUNDS = 16;
+
+  /// What each reserve held before: its account and the decoded config.
+  private record Retained(ReserveContext context, byte[] data, TokenInfo tokenInfo) {
+  }
+
+  private ReserveContextFootprintBenchmark() {
+  }
+
+  public static void main(final String[] args) throws IOException {
+    final int numReserves = args.length == 0 ? 1_024 : Integer.parseInt(args[0]);
+    final byte[] fixture = ResourceUtil.readResource("accounts/kamino/" + SOL_RESERVE_KEY + ".dat.gz");
+    final var keys = new PublicKey[numReserves];
+    final var accounts = new byte[numReserves][];
+    for (int i = 0; i < numReserves; ++i) {
+      final byte[] key = SOL_RESERVE_KEY.toByteArray().clone();
+      ByteUtil.putInt32LE(key, 0, i);
+      keys[i] = PublicKey.createPubKey(key);
+      accounts[i] = fixture.clone();
+    }
+
+    final var threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long compactAllocated = Long.MAX_VALUE;
+    long decodedAllocated = Long.MAX_VALUE;
+    long sink = 0;
+    for (int round = 0; round < ROUNDS; ++round) {
+      long start = threadMXBean.getCurrentThreadAllocatedBytes();
+      for (int i = 0; i < numReserves; ++i) {
+        sink += compact(keys[i], accounts[i]).totalCollateral();
+      }
+      compactAllocated = Math.min(compactAllocated, threadMXBean.getCurrentThreadAllocatedBytes() - start);
+      start = threadMXBean.getCurrentThreadAllocatedBytes();
+      for (int i = 0; i < numReserves; ++i) {
+        sink += decoded(keys[i], accounts[i]).context().totalCollateral();
+      }
+      decodedAllocated = Math.min(decodedAllocated, threadMXBean.getCurrentThreadAllocatedBytes() - start);
+    }
+
+    final long compactRetained = retainedBytes(numReserves, i -> compact(keys[i], accounts[i]));
+    // the polled array would have been kept, so it counts against the old form
+    final long decodedRetained = retainedBytes(numReserves, i -> decoded(keys[i], accounts[i].clone()));
+
+    System.out.printf("%10s %20s %20s%n", "form", "allocated / reserve", "retained / reserve");
+    System.out.printf("%10s %20d %20d%n", "compact",
+        compactAllocated / numReserves, compactRetained / numReserves
+    );
+    System.out.printf("%10s %20d %20d%n", "decoded",
+        decodedAllocated / numReserves, decodedRetained / numReserves
+    );
+    System.out.printf("%10d reserves of %d bytes each%n", numReserves, Reserve.BYTES);
+    if (sink == 42) {
+      System.out.println();
+    }
+  }
+
+  private static ReserveContext compact(final PublicKey reserveKey, final byte[] data) {
+    return ReserveContext.createContext(reserveKey, data, Map.of());
+  }
+
+  /// The previous decode: the whole [TokenInfo], its name and the account.
+  private static Retained decoded(final PublicKey reserveKey, final byte[] data) {
+    final var tokenInfo = TokenInfo.read(data, TOKEN_INFO_OFFSET);
+    final var context = new ReserveContext(
+        0L,
+        reserveKey, AccountMeta.createWrite(reserveKey),
+        PublicKey.readPubKey(data, Reserve.LENDING_MARKET_OFFSET),
+        SerDeUtil.fixedLengthString(tokenInfo.name()),
+        PublicKey.readPubKey(data, Reserve.LIQUIDITY_OFFSET + ReserveLiquidity.MINT_PUBKEY_OFFSET),
+        ByteUtil.getInt64LE(data, Reserve.COLLATERAL_OFFSET + ReserveCollateral.MINT_TOTAL_SUPPLY_OFFSET),
+        null,
+        tokenInfo
+    );
+    return new Retained(context, data, tokenInfo);
+  }
+
+  private static long retainedBytes(final int numReserves, final IntFunction<Object> create) {
+    final var runtime = Runtime.getRuntime();
+    long best = Long.MAX_VALUE;
+    for (int round = 0; round < 4; ++round) {
+      fullGc();
+      final long before = runtime.totalMemory() - runtime.freeMemory();
+      final var cache = new Object[numReserves];
+      for (int i = 0; i < numReserves; ++i) {
+        cache[i] = create.apply(i);
+      }
+      fullGc();
+      best = Math.min(best, runtime.totalMemory() - runtime.freeMemory() - before);
+      Reference.reachabilityFence(cache);
+      Arrays.fill(cache, null);
+    }
+    return best;
+  }
+
+  private static void fullGc() {
+    for (int i = 0; i < 3; ++i) {
+      System.gc();
+      try {
+        //noinspection BusyWait
+        Thread.sleep(20L);
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+  }
+}
@@ -4,6 +4,7 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import software.sava.core.accounts.PublicKey;
 import software.sava.core.accounts.meta.AccountMeta;
+import software.sava.idl.clients.core.gen.SerDeUtil;
 import software.sava.idl.clients.kamino.KaminoAccounts;
 import software.sava.idl.clients.kamino.lend.gen.types.PythConfiguration;
 import software.sava.idl.clients.kamino.lend.gen.types.Reserve;
@@ -20,6 +21,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static software.sava.core.accounts.PublicKey.fromBase58Encoded;
@@ -112,6 +114,48 @@ final class ReserveContextTests {
     assertSame(ReserveContext.readPriceFeedMeta(key(4)), accounts.get(5));
   }
 
+  /// The snapshot loader decodes reserves in parallel: concurrent first
+  /// lookups of a key must still settle on one instance.
+  @Test
+  void concurrentLookupsShareOneInstancePerKey() throws Exception {
+    final int numThreads = 8;
+    final var feeds = new PublicKey[64];
+    final var markets = new PublicKey[64];
+    for (int i = 0; i < feeds.length; ++i) {
+      // keys no other test looks up, so each lookup here is a first
+      final byte[] feed = new byte[PublicKey.PUBLIC_KEY_LENGTH];
+      feed[0] = (byte) i;
+      feed[1] = 25;
+      feeds[i] = PublicKey.createPubKey(feed);
+      final byte[] market = feed.clone();
+      market[1] = 26;
+      markets[i] = PublicKey.createPubKey(market);
+    }
+    final var start = new java.util.concurrent.CountDownLatch(1);
+    try (final var executor = java.util.concurrent.Executors.newFixedThreadPool(numThreads)) {
+      final var results = new ArrayList<java.util.concurrent.Future<AccountMeta[]>>(numThreads);
+      for (int t = 0; t < numThreads; ++t) {
+        results.add(executor.submit(() -> {
+          start.await();
+          final var metas = new AccountMeta[feeds.length << 1];
+          for (int i = 0; i < feeds.length; ++i) {
+            metas[i << 1] = ReserveContext.readPriceFeedMeta(feeds[i]);
+            metas[(i << 1) + 1] = ReserveContext.writeMarketMeta(markets[i]);
+          }
+          return metas;
+        }));
+      }
+      start.countDown();
+      final var first = results.getFirst().get();
+      for (final var result : results) {
+        final var metas = result.get();
+        for (int i = 0; i < metas.length; ++i) {
+          assertSame(first[i], metas[i]);
+        }
+      }
+    }
+  }
+
   @Test
   void aScopeFeedFillsTheLastOracleSlot() {
     final var feed = key(4);
@@ -151,6 +195,29 @@ final class ReserveContextTests {
     assertNullMeta(accounts.get(5));
   }
 
+  @Test
+  void fieldsReadInPlaceMatchTheDecodedTokenInfo() {
+    final var data = reserveWithOracles(key(8), PublicKey.NONE, key(9), KaminoAccounts.NULL_KEY);
+    final var context = context(data);
+    final var tokenInfo = TokenInfo.read(data, TOKEN_INFO_BASE);
+    final var decoded = new ReserveContext(
+        context.slot(), context.pubKey(), context.writeReserve(), context.market(), context.tokenName(),
+        context.mint(), context.totalCollateral(), context.priceChains(), tokenInfo
+    );
+    assertEquals(Set.of(), context.changed(decoded));
+    assertEquals(SerDeUtil.fixedLengthString(tokenInfo.name()), context.tokenName());
+    assertEquals(tokenInfo.scopeConfiguration(), context.scopeConfiguration());
+    assertEquals(tokenInfo.pythConfiguration().price(), context.pythOracle());
+    assertEquals(key(9), context.switchboardPriceAggregator());
+    assertEquals(tokenInfo.maxAgePriceSeconds(), context.maxAgePriceSeconds());
+    assertEquals(tokenInfo.maxAgeTwapSeconds(), context.maxAgeTwapSeconds());
+    assertEquals(tokenInfo.maxTwapDivergenceBps(), context.maxTwapDivergenceBps());
+    // unset oracles share one instance per spelling instead of a copy each
+    assertSame(PublicKey.NONE, context.pythOracle());
+    assertSame(KaminoAccounts.NULL_KEY, context.switchboardTwapAggregator());
+    assertSame(KaminoAccounts.NULL_KEY, decoded.switchboardTwapAggregator());
+  }
+
   @Test
   void noOracleConfigurationAtAllIsFatal() {
     final var context = context(reserveWithOracles(
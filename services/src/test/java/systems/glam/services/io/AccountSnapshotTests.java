@@ -0,0 +1,226 @@
+package systems.glam.services.io;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import software.sava.core.accounts.PublicKey;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+final class AccountSnapshotTests {
+
+  private static PublicKey key(final int id) {
+    final byte[] bytes = new byte[PublicKey.PUBLIC_KEY_LENGTH];
+    bytes[0] = (byte) (id >> 8);
+    bytes[1] = (byte) id;
+    return PublicKey.createPubKey(bytes);
+  }
+
+  private static byte[] data(final int length, final int fill) {
+    final byte[] data = new byte[length];
+    Arrays.fill(data, (byte) fill);
+    return data;
+  }
+
+  private static Path snapshotPath(final Path tempDir) {
+    return tempDir.resolve("sub").resolve("accounts.snapshot");
+  }
+
+  /// Every entry point takes the lock in a try/finally. A leaked lock blocks
+  /// every other caller and no result assertion can see it, so each test that
+  /// mutates the snapshot checks the lock was handed back.
+  private static void assertUnlocked(final AccountSnapshot snapshot) {
+    assertFalse(((AccountSnapshotImpl) snapshot).lock.isLocked());
+  }
+
+  private static int headerInt(final Path filePath, final int offset) throws Exception {
+    return ByteBuffer.wrap(Files.readAllBytes(filePath)).order(ByteOrder.LITTLE_ENDIAN).getInt(offset);
+  }
+
+  @Test
+  void accountsSurviveAReopen(@TempDir final Path tempDir) {
+    final var filePath = snapshotPath(tempDir);
+    try (final var snapshot = AccountSnapshot.openSnapshot(filePath)) {
+      assertEquals(0, snapshot.numAccounts());
+      snapshot.write(key(1), 10L, data(100, 1));
+      snapshot.write(key(2), 20L, data(200, 2));
+      snapshot.write(key(3), 30L, data(0, 0));
+      assertUnlocked(snapshot);
+    }
+    try (final var snapshot = AccountSnapshot.openSnapshot(filePath)) {
+      assertEquals(List.of(key(1), key(2), key(3)), snapshot.keys());
+      assertArrayEquals(data(100, 1), snapshot.read(key(1)));
+      assertArrayEquals(data(200, 2), snapshot.read(key(2)));
+      assertArrayEquals(new byte[0], snapshot.read(key(3)));
+      assertEquals(20L, snapshot.slot(key(2)));
+      assertNull(snapshot.read(key(4)));
+      assertEquals(-1L, snapshot.slot(key(4)));
+      assertUnlocked(snapshot);
+    }
+  }
+
+  @Test
+  void aWriteThatFitsGoesInPlace(@TempDir final Path tempDir) throws Exception {
+    final var filePath = snapshotPath(tempDir);
+    try (final var snapshot = AccountSnapshot.openSnapshot(filePath)) {
+      snapshot.write(key(1), 10L, data(100, 1));
+      final long size = Files.size(filePath);
+
+      snapshot.write(key(1), 11L, data(80, 2));
+      assertEquals(size, Files.size(filePath));
+      assertArrayEquals(data(80, 2), snapshot.read(key(1)));
+
+      // grows back into the room it was first given
+      snapshot.write(key(1), 12L, data(100, 3));
+      assertEquals(size, Files.size(filePath));
+      assertArrayEquals(data(100, 3), snapshot.read(key(1)));
+
+      // and past it, appended
+      snapshot.write(key(1), 13L, data(120, 4));
+      assertEquals(size + 120, Files.size(filePath));
+      assertArrayEquals(data(120, 4), snapshot.read(key(1)));
+      assertEquals(13L, snapshot.slot(key(1)));
+      assertUnlocked(snapshot);
+    }
+    try (final var snapshot = AccountSnapshot.openSnapshot(filePath)) {
+      assertArrayEquals(data(120, 4), snapshot.read(key(1)));
+      assertEquals(1, snapshot.numAccounts());
+    }
+  }
+
+  @Test
+  void removeFillsTheHoleWithTheLastEntry(@TempDir final Path tempDir) {
+    final var filePath = snapshotPath(tempDir);
+    try (final var snapshot = AccountSnapshot.openSnapshot(filePath)) {
+      snapshot.write(key(1), 10L, data(10, 1));
+      snapshot.write(key(2), 20L, data(20, 2));
+      snapshot.write(key(3), 30L, data(30, 3));
+
+      assertTrue(snapshot.remove(key(1)));
+      assertFalse(snapshot.remove(key(1)));
+      assertFalse(snapshot.remove(key(4)));
+      assertEquals(List.of(key(3), key(2)), snapshot.keys());
+      assertUnlocked(snapshot);
+    }
+    try (final var snapshot = AccountSnapshot.openSnapshot(filePath)) {
+      assertEquals(List.of(key(3), key(2)), snapshot.keys());
+      assertNull(snapshot.read(key(1)));
+      assertArrayEquals(data(30, 3), snapshot.read(key(3)));
+      assertArrayEquals(data(20, 2), snapshot.read(key(2)));
+    }
+  }
+
+  @Test
+  void aFullIndexDoublesIt(@TempDir final Path tempDir) throws Exception {
+    final var filePath = snapshotPath(tempDir);
+    final int numAccounts = AccountSnapshotImpl.INITIAL_INDEX_CAPACITY + 1;
+    try (final var snapshot = AccountSnapshot.openSnapshot(filePath)) {
+      for (int i = 0; i < numAccounts; ++i) {
+        snapshot.write(key(i), i, data(8, i));
+      }
+      assertEquals(numAccounts, snapshot.numAccounts());
+      assertUnlocked(snapshot);
+    }
+    assertEquals(AccountSnapshotImpl.INITIAL_INDEX_CAPACITY << 1, headerInt(filePath, 8));
+    assertEquals(numAccounts, headerInt(filePath, 12));
+    try (final var snapshot = AccountSnapshot.openSnapshot(filePath)) {
+      for (int i = 0; i < numAccounts; ++i) {
+        assertArrayEquals(data(8, i), snapshot.read(key(i)));
+        assertEquals(i, snapshot.slot(key(i)));
+      }
+    }
+  }
+
+  @Test
+  void replacedDataIsCompactedAway(@TempDir final Path tempDir) throws Exception {
+    final var filePath = snapshotPath(tempDir);
+    final int length = (int) AccountSnapshotImpl.MIN_COMPACTION_BYTES;
+    final long dataStart = AccountSnapshotImpl.dataStart(AccountSnapshotImpl.INITIAL_INDEX_CAPACITY);
+    try (final var snapshot = AccountSnapshot.openSnapshot(filePath)) {
+      snapshot.write(key(1), 1L, data(length / 2, 1));
+      snapshot.write(key(1), 2L, data(length - 1, 2));
+      // not yet: what was replaced is under the floor
+      assertEquals(dataStart + (length / 2) + (length - 1), Files.size(filePath));
+
+      snapshot.write(key(1), 3L, data(length, 3));
+      // the replaced data now outweighs the live data and passes the floor
+      assertEquals(dataStart + length, Files.size(filePath));
+      assertArrayEquals(data(length, 3), snapshot.read(key(1)));
+      assertFalse(Files.exists(filePath.resolveSibling(filePath.getFileName() + ".tmp")));
+      assertUnlocked(snapshot);
+    }
+    try (final var snapshot = AccountSnapshot.openSnapshot(filePath)) {
+      assertArrayEquals(data(length, 3), snapshot.read(key(1)));
+      assertEquals(3L, snapshot.slot(key(1)));
+    }
+  }
+
+  @Test
+  void aFileThatIsNotASnapshotStartsOverEmpty(@TempDir final Path tempDir) throws Exception {
+    final var filePath = snapshotPath(tempDir);
+    Files.createDirectories(filePath.getParent());
+    Files.write(filePath, data(64, 7));
+    try (final var snapshot = AccountSnapshot.openSnapshot(filePath)) {
+      assertEquals(0, snapshot.numAccounts());
+      snapshot.write(key(1), 10L, data(10, 1));
+      assertArrayEquals(data(10, 1), snapshot.read(key(1)));
+      assertUnlocked(snapshot);
+    }
+    assertEquals(AccountSnapshotImpl.MAGIC, headerInt(filePath, 0));
+  }
+
+  @Test
+  void anAccountTornInPlaceIsDropped(@TempDir final Path tempDir) throws Exception {
+    final var filePath = snapshotPath(tempDir);
+    final long dataStart = AccountSnapshotImpl.dataStart(AccountSnapshotImpl.INITIAL_INDEX_CAPACITY);
+    try (final var snapshot = AccountSnapshot.openSnapshot(filePath)) {
+      snapshot.write(key(1), 10L, data(100, 1));
+      snapshot.write(key(2), 20L, data(20, 2));
+    }
+    // as if a crash landed half of an in-place write and none of its entry
+    final byte[] file = Files.readAllBytes(filePath);
+    Arrays.fill(file, (int) dataStart, (int) dataStart + 50, (byte) 3);
+    Files.write(filePath, file);
+
+    try (final var snapshot = AccountSnapshot.openSnapshot(filePath)) {
+      assertEquals(List.of(key(2)), snapshot.keys());
+      assertNull(snapshot.read(key(1)));
+      assertArrayEquals(data(20, 2), snapshot.read(key(2)));
+      assertUnlocked(snapshot);
+    }
+  }
+
+  @Test
+  void anEntryPointingPastTheDataIsDropped(@TempDir final Path tempDir) throws Exception {
+    final var filePath = snapshotPath(tempDir);
+    try (final var snapshot = AccountSnapshot.openSnapshot(filePath)) {
+      snapshot.write(key(1), 10L, data(10, 1));
+      snapshot.write(key(2), 20L, data(20, 2));
+      snapshot.write(key(3), 30L, data(30, 3));
+    }
+    // as if a crash cut the second account short after its entry landed
+    final byte[] file = Files.readAllBytes(filePath);
+    final int entryOffset = AccountSnapshotImpl.HEADER_BYTES + AccountSnapshotImpl.INDEX_ENTRY_BYTES
+        + PublicKey.PUBLIC_KEY_LENGTH + Long.BYTES;
+    ByteBuffer.wrap(file).order(ByteOrder.LITTLE_ENDIAN).putLong(entryOffset, file.length);
+    Files.write(filePath, file);
+
+    try (final var snapshot = AccountSnapshot.openSnapshot(filePath)) {
+      assertEquals(List.of(key(1), key(3)), snapshot.keys());
+      assertArrayEquals(data(10, 1), snapshot.read(key(1)));
+      assertArrayEquals(data(30, 3), snapshot.read(key(3)));
+      assertUnlocked(snapshot);
+    }
+    // the index was written out again without it
+    try (final var snapshot = AccountSnapshot.openSnapshot(filePath)) {
+      assertEquals(List.of(key(1), key(3)), snapshot.keys());
+      assertEquals(30L, snapshot.slot(key(3)));
+    }
+  }
+}
@@ -0,0 +1,155 @@
+package systems.glam.services.mints;
+
+import software.sava.core.accounts.PublicKey;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+/// Compares [PublicKeyIndex] lookups against the maps it replaced in the mint,
+/// stake pool and GlobalConfig caches.
+///
+/// Each round looks up a shuffled mix of present and absent keys two ways: by
+/// [PublicKey], as callers holding a key do, and from a key inside account
+/// data, as a stake pool or token account poll does. The maps have to read
+/// such a key into a [PublicKey] first; the index reads it in place.
+///
+/// Reports nanoseconds per lookup per table size. A plain main rather than a
+/// JMH benchmark, which this build does not carry: compare runs on one
+/// machine rather than reading the numbers in absolute terms.
+///
+/// Run from the test classpath with the table sizes as arguments, by default
+/// `64 1024 16384`.
+public final class PublicKeyIndexBenchmark {
+
+  private static final int LOOKUPS = 1 << 16;
+  private static final int ROUNDS = 64;
+  private static final int DATA_OFFSET = 32;
+
+  private PublicKeyIndexBenchmark() {
+  }
+
+  public static void main(final String[] args) {
+    final int[] sizes = args.length == 0
+        ? new int[]{64, 1_024, 16_384}
+        : Arrays.stream(args).mapToInt(Integer::parseInt).toArray();
+    System.out.printf("%8s %16s %16s %16s %16s %16s %16s%n",
+        "size",
+        "HashMap key", "CHM key", "index key",
+        "HashMap data", "CHM data", "index data"
+    );
+    for (final int size : sizes) {
+      run(size);
+    }
+  }
+
+  private static void run(final int size) {
+    final var random = new Random(size);
+    final var keys = new PublicKey[size];
+    final var hashMap = HashMap.<PublicKey, Integer>newHashMap(size);
+    final var concurrentMap = new ConcurrentHashMap<PublicKey, Integer>(size);
+    final var index = PublicKeyIndex.<Integer>createIndex(size);
+    for (int i = 0; i < size; ++i) {
+      keys[i] = key(random);
+      hashMap.put(keys[i], i);
+      concurrentMap.put(keys[i], i);
+      index.put(keys[i], i);
+    }
+    // three in four lookups hit, with keys decoded afresh as callers' are
+    final var lookups = new PublicKey[LOOKUPS];
+    final var accounts = new byte[LOOKUPS][];
+    for (int i = 0; i < LOOKUPS; ++i) {
+      lookups[i] = (i & 3) == 0
+          ? key(random)
+          : PublicKey.createPubKey(keys[random.nextInt(size)].toByteArray().clone());
+      final byte[] data = new byte[DATA_OFFSET + PublicKey.PUBLIC_KEY_LENGTH + 32];
+      random.nextBytes(data);
+      lookups[i].write(data, DATA_OFFSET);
+      accounts[i] = data;
+    }
+
+    final long[] best = new long[6];
+    Arrays.fill(best, Long.MAX_VALUE);
+    long sink = 0;
+    for (int round = 0; round < ROUNDS; ++round) {
+      long start = System.nanoTime();
+      sink += byKey(hashMap, lookups);
+      best[0] = Math.min(best[0], System.nanoTime() - start);
+      start = System.nanoTime();
+      sink += byKey(concurrentMap, lookups);
+      best[1] = Math.min(best[1], System.nanoTime() - start);
+      start = System.nanoTime();
+      sink += byKey(index, lookups);
+      best[2] = Math.min(best[2], System.nanoTime() - start);
+      start = System.nanoTime();
+      sink += byData(hashMap, accounts);
+      best[3] = Math.min(best[3], System.nanoTime() - start);
+      start = System.nanoTime();
+      sink += byData(concurrentMap, accounts);
+      best[4] = Math.min(best[4], System.nanoTime() - start);
+      start = System.nanoTime();
+      sink += byData(index, accounts);
+      best[5] = Math.min(best[5], System.nanoTime() - start);
+    }
+    System.out.printf("%8d %16.1f %16.1f %16.1f %16.1f %16.1f %16.1f%n",
+        size,
+        best[0] / (double) LOOKUPS, best[1] / (double) LOOKUPS, best[2] / (double) LOOKUPS,
+        best[3] / (double) LOOKUPS, best[4] / (double) LOOKUPS, best[5] / (double) LOOKUPS
+    );
+    if (sink == 42) {
+      System.out.println();
+    }
+  }
+
+  private static long byKey(final Map<PublicKey, Integer> map, final PublicKey[] lookups) {
+    long found = 0;
+    for (final var key : lookups) {
+      final var value = map.get(key);
+      if (value != null) {
+        found += value;
+      }
+    }
+    return found;
+  }
+
+  private static long byKey(final PublicKeyIndex<Integer> index, final PublicKey[] lookups) {
+    long found = 0;
+    for (final var key : lookups) {
+      final var value = index.get(key);
+      if (value != null) {
+        found += value;
+      }
+    }
+    return found;
+  }
+
+  private static long byData(final Map<PublicKey, Integer> map, final byte[][] accounts) {
+    long found = 0;
+    for (final byte[] data : accounts) {
+      final var value = map.get(PublicKey.readPubKey(data, DATA_OFFSET));
+      if (value != null) {
+        found += value;
+      }
+    }
+    return found;
+  }
+
+  private static long byData(final PublicKeyIndex<Integer> index, final byte[][] accounts) {
+    long found = 0;
+    for (final byte[] data : accounts) {
+      final var value = index.get(data, DATA_OFFSET);
+      if (value != null) {
+        found += value;
+      }
+    }
+    return found;
+  }
+
+  private static PublicKey key(final Random random) {
+    final byte[] bytes = new byte[PublicKey.PUBLIC_KEY_LENGTH];
+    random.nextBytes(bytes);
+    return PublicKey.createPubKey(bytes);
+  }
+}
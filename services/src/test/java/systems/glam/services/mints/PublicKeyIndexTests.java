@@ -0,0 +1,155 @@
+package systems.glam.services.mints;
+
+import org.junit.jupiter.api.Test;
+import software.sava.core.accounts.PublicKey;
+
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+final class PublicKeyIndexTests {
+
+  private static PublicKey key(final Random random) {
+    final byte[] bytes = new byte[PublicKey.PUBLIC_KEY_LENGTH];
+    random.nextBytes(bytes);
+    return PublicKey.createPubKey(bytes);
+  }
+
+  @Test
+  void growsWellPastItsInitialCapacity() {
+    final var random = new Random(11);
+    final var index = PublicKeyIndex.<Integer>createIndex(0);
+    final var expected = new HashMap<PublicKey, Integer>();
+    for (int i = 0; i < 10_000; ++i) {
+      final var key = key(random);
+      assertNull(index.put(key, i));
+      expected.put(key, i);
+    }
+    expected.forEach((key, value) -> assertEquals(value, index.get(key)));
+    assertNull(index.get(key(random)));
+  }
+
+  @Test
+  void looksUpKeysInsideAccountData() {
+    final var random = new Random(13);
+    final var mint = key(random);
+    final var index = PublicKeyIndex.<String>createIndex(4);
+    index.put(mint, "mint");
+
+    final byte[] data = new byte[165];
+    random.nextBytes(data);
+    mint.write(data, 64);
+    assertEquals("mint", index.get(data, 64));
+    assertNull(index.get(data, 0));
+  }
+
+  @Test
+  void keysThatShareAPrefixStayApart() {
+    // vanity and program derived keys often agree on their leading bytes
+    final var index = PublicKeyIndex.<Integer>createIndex(0);
+    final var keys = new PublicKey[256];
+    for (int i = 0; i < keys.length; ++i) {
+      final byte[] bytes = new byte[PublicKey.PUBLIC_KEY_LENGTH];
+      bytes[PublicKey.PUBLIC_KEY_LENGTH - 1] = (byte) i;
+      keys[i] = PublicKey.createPubKey(bytes);
+      index.put(keys[i], i);
+    }
+    for (int i = 0; i < keys.length; ++i) {
+      assertEquals(i, index.get(keys[i]));
+    }
+  }
+
+  @Test
+  void putIfAbsentKeepsTheFirstValueAndPutReplacesIt() {
+    final var key = key(new Random(17));
+    final var index = PublicKeyIndex.<String>createIndex(1);
+    assertNull(index.putIfAbsent(key, "first"));
+    assertEquals("first", index.putIfAbsent(key, "second"));
+    assertEquals("first", index.get(key));
+    assertTrue(index.containsKey(key));
+
+    assertEquals("first", index.put(key, "third"));
+    assertEquals("third", index.get(key));
+  }
+
+  @Test
+  void removedKeysMissUntilPutBack() {
+    final var random = new Random(19);
+    final var index = PublicKeyIndex.<Integer>createIndex(0);
+    final var keys = new PublicKey[64];
+    for (int i = 0; i < keys.length; ++i) {
+      keys[i] = key(random);
+      index.put(keys[i], i);
+    }
+    for (int i = 0; i < keys.length; i += 2) {
+      assertEquals(i, index.remove(keys[i]));
+    }
+    assertNull(index.remove(keys[0]));
+    for (int i = 0; i < keys.length; ++i) {
+      if ((i & 1) == 0) {
+        assertNull(index.get(keys[i]));
+        assertFalse(index.containsKey(keys[i]));
+      } else {
+        assertEquals(i, index.get(keys[i]));
+      }
+    }
+    assertNull(index.putIfAbsent(keys[0], -1));
+    assertEquals(-1, index.get(keys[0]));
+
+    // churn through removals long enough to force rehashes that drop them
+    for (int round = 0; round < 1_000; ++round) {
+      final var key = key(random);
+      index.put(key, round);
+      assertEquals(round, index.remove(key));
+    }
+    for (int i = 1; i < keys.length; i += 2) {
+      assertEquals(i, index.get(keys[i]));
+    }
+  }
+
+  @Test
+  void readersSeeEveryPublishedEntryWhileTheWriterGrowsTheTable() throws InterruptedException {
+    final var random = new Random(23);
+    final var keys = new PublicKey[20_000];
+    for (int i = 0; i < keys.length; ++i) {
+      keys[i] = key(random);
+    }
+    final var index = PublicKeyIndex.<Integer>createIndex(0);
+    final var published = new AtomicInteger();
+    final var failure = new AtomicReference<String>();
+    final var start = new CountDownLatch(1);
+    final var readers = new Thread[4];
+    for (int r = 0; r < readers.length; ++r) {
+      readers[r] = Thread.ofPlatform().start(() -> {
+        try {
+          start.await();
+        } catch (final InterruptedException e) {
+          return;
+        }
+        while (published.get() < keys.length && failure.get() == null) {
+          final int upTo = published.get();
+          for (int i = Math.max(0, upTo - 64); i < upTo; ++i) {
+            final var value = index.get(keys[i]);
+            if (value == null || value != i) {
+              failure.set("key " + i + " of " + upTo + " read as " + value);
+              return;
+            }
+          }
+        }
+      });
+    }
+    start.countDown();
+    for (int i = 0; i < keys.length; ++i) {
+      index.put(keys[i], i);
+      published.set(i + 1);
+    }
+    for (final var reader : readers) {
+      reader.join();
+    }
+    assertNull(failure.get());
+  }
+}
@@ -38,12 +38,12 @@ final class StakePoolCacheTests {
     for (final var tooSmall : new Duration[]{Duration.ZERO, Duration.ofNanos(999_999), Duration.ofMillis(-1)}) {
       final var ex = assertThrows(
           IllegalArgumentException.class,
-          () -> new StakePoolCacheImpl(tooSmall, null, List.of(), Map.of(), Map.of())
+          () -> new StakePoolCacheImpl(tooSmall, null, List.of(), Map.of(), PublicKeyIndex.createIndex(0))
       );
       assertTrue(ex.getMessage().contains("at least one millisecond"), ex.getMessage());
     }
     // exactly the floor is accepted
-    assertNotNull(new StakePoolCacheImpl(Duration.ofMillis(1), null, List.of(), Map.of(), Map.of()));
+    assertNotNull(new StakePoolCacheImpl(Duration.ofMillis(1), null, List.of(), Map.of(), PublicKeyIndex.createIndex(0)));
   }
 
   private static PublicKey key(final int id) {
@@ -247,6 +247,8 @@ final class StakePoolCacheTests {
       assertEquals(key(25), context.stateKey());
       assertEquals(StakePoolContext.BYTES, context.l());
       assertEquals(StakePoolContext.BYTES, Files.size(filePath));
+      // and found straight from account data
+      assertSame(context, cache.get(poolAccount(multi, key(25), key(26)).data(), StakePoolState.POOL_MINT_OFFSET));
 
       // the same mint again is not re-appended, even from another state account
       impl.accept(poolAccount(multi, key(27), key(26)));
@@ -321,7 +323,7 @@ final class StakePoolCacheTests {
           }),
           List.of(),
           Map.of(POOLS.stakePoolProgram(), flatFile),
-          new ConcurrentHashMap<>()
+          PublicKeyIndex.createIndex(0)
       );
       try (final var logs = LogCapture.attach(StakePoolCache.class.getName())) {
         failing.run();
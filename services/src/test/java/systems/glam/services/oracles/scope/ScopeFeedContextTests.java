@@ -73,7 +73,7 @@ final class ScopeFeedContextTests {
     );
     final var reserveKey = key(id);
     return new ReserveContext(
-        1L, new byte[0], reserveKey, AccountMeta.createWrite(reserveKey),
+        1L, reserveKey, AccountMeta.createWrite(reserveKey),
         key(7000), "R" + id, MINT, collateral, priceChains, tokenInfo
     );
   }
@@ -291,7 +291,7 @@ final class ScopeFeedContextTests {
     final var chained = reserve(101, 1_000L, 11, ORACLE);
     // same mint, no resolved chains: contributes nothing, breaks nothing
     final var chainless = new ReserveContext(
-        1L, new byte[0], key(102), AccountMeta.createWrite(key(102)),
+        1L, key(102), AccountMeta.createWrite(key(102)),
         key(7000), "R102", MINT, 5_000L, null,
         new software.sava.idl.clients.kamino.lend.gen.types.TokenInfo(
             new byte[software.sava.idl.clients.kamino.lend.gen.types.TokenInfo.NAME_LEN],
@@ -381,7 +381,7 @@ final class ScopeFeedContextTests {
     );
     final var reserveKey = key(id);
     return new ReserveContext(
-        1L, new byte[0], reserveKey, AccountMeta.createWrite(reserveKey),
+        1L, reserveKey, AccountMeta.createWrite(reserveKey),
         key(7000), "F" + id, MINT, 5L, priceChains, tokenInfo
     );
   }
@@ -0,0 +1,242 @@
+package systems.glam.services.rpc;
+
+import software.sava.core.accounts.PublicKey;
+import software.sava.core.accounts.SolanaAccounts;
+import software.sava.rpc.json.http.client.SolanaRpcClient;
+import software.sava.rpc.json.http.response.AccountInfo;
+import software.sava.rpc.json.http.response.Context;
+import software.sava.services.core.NanoClock;
+import software.sava.services.core.remote.call.Backoff;
+import software.sava.services.core.remote.load_balance.BalancedItem;
+import software.sava.services.core.remote.load_balance.LoadBalancer;
+import software.sava.services.core.request_capacity.CapacityConfig;
+import software.sava.services.core.request_capacity.CapacityState;
+import software.sava.services.core.request_capacity.trackers.RootErrorTracker;
+import software.sava.services.solana.remote.call.CallWeights;
+import software.sava.services.solana.remote.call.RpcCaller;
+import systems.glam.services.config.AccountFetcherConfig;
+
+import java.lang.reflect.Proxy;
+import java.math.BigInteger;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/// Measures how queueing into a running [AccountFetcher] holds up as producers
+/// pile on — the path every cache and service thread goes through.
+///
+/// Each producer is a virtual thread queueing single-consumer batches in a
+/// tight loop against a reactive, two-lane fetcher whose endpoint answers at
+/// once. Most batches are covered by the always-fetch keys and ride a lane's
+/// in-flight request; every [#FRESH_BATCH_INTERVAL]th one carries a key of its
+/// own and joins the queue for the lanes to plan, which keeps the lanes busy
+/// without letting the queue grow past what a planning pass can scan. Only the
+/// submission phase is timed; the run then waits for every batch to be
+/// delivered, so a lost rider shows up as a hang rather than a fast number.
+///
+/// Reports queue calls per second per producer count. A plain main rather than a JMH benchmark, which this build
+/// does not carry: compare runs on one machine, e.g. before and after a change
+/// to the submission path, rather than reading the numbers in absolute terms.
+///
+/// Run from the test classpath with the producer counts as arguments, by
+/// default `1 4 16 64 256`.
+public final class AccountFetcherContentionBenchmark {
+
+  private static final int CALLS_PER_PRODUCER = 4_096;
+  private static final int FRESH_BATCH_INTERVAL = 16;
+  private static final int NUM_ALWAYS_FETCH = 64;
+
+  private AccountFetcherContentionBenchmark() {
+  }
+
+  public static void main(final String[] args) throws InterruptedException {
+    final int[] producerCounts = args.length == 0
+        ? new int[]{1, 4, 16, 64, 256}
+        : Arrays.stream(args).mapToInt(Integer::parseInt).toArray();
+    // warm up the submission and planning paths before anything is timed
+    run(16);
+    System.out.printf("%10s %16s%n", "producers", "queue calls/s");
+    for (final int numProducers : producerCounts) {
+      final long elapsedNanos = run(numProducers);
+      final long numCalls = (long) numProducers * CALLS_PER_PRODUCER;
+      System.out.printf("%10d %16.0f%n", numProducers, numCalls / (elapsedNanos / 1e9));
+    }
+  }
+
+  /// Returns the nanoseconds the producers took to submit everything.
+  private static long run(final int numProducers) throws InterruptedException {
+    final var callerExecutor = Executors.newSingleThreadExecutor();
+    try {
+      final var alwaysFetch = new ArrayList<PublicKey>(NUM_ALWAYS_FETCH);
+      for (int i = 0; i < NUM_ALWAYS_FETCH; ++i) {
+        alwaysFetch.add(key(i));
+      }
+      final var config = new AccountFetcherConfig(
+          Duration.ZERO, true, 2, Duration.ZERO, Duration.ZERO,
+          AccountFetcherConfig.DEFAULT_DISPATCH_QUEUE_CAPACITY,
+          AccountFetcherConfig.FetchMode.BALANCED, AccountFetcherConfig.DEFAULT_HEDGE_PERCENTILE, 0, Duration.ZERO, Duration.ZERO
+      );
+      final var fetcher = AccountFetcher.createFetcher(config, Runnable::run, createCaller(callerExecutor), Set.copyOf(alwaysFetch));
+      // one consumer per producer, as with independent callers, so the
+      // deliveries do not back up behind one dispatch queue
+      final var delivered = new LongAdder();
+      final var flushConsumer = new CountingConsumer(new LongAdder());
+      final var fetchThread = Thread.ofPlatform().name("account-fetcher").start(fetcher);
+
+      final var start = new CountDownLatch(1);
+      final var producers = new Thread[numProducers];
+      for (int p = 0; p < numProducers; ++p) {
+        final int producer = p;
+        final var consumer = new CountingConsumer(delivered);
+        producers[p] = Thread.ofVirtual().start(() -> {
+          try {
+            start.await();
+          } catch (final InterruptedException e) {
+            return;
+          }
+          for (int i = 0; i < CALLS_PER_PRODUCER; ++i) {
+            if (i % FRESH_BATCH_INTERVAL == 0) {
+              fetcher.queue(List.of(key(NUM_ALWAYS_FETCH + producer * CALLS_PER_PRODUCER + i)), consumer);
+            } else {
+              final int from = (producer + i) % (NUM_ALWAYS_FETCH - 1);
+              fetcher.queue(alwaysFetch.subList(from, from + 2), consumer);
+            }
+          }
+        });
+      }
+      final long startedAt = System.nanoTime();
+      start.countDown();
+      for (final var producer : producers) {
+        producer.join();
+      }
+      final long elapsedNanos = System.nanoTime() - startedAt;
+
+      // riders on an idle request wait for the next one; keep requests coming
+      final long expected = (long) numProducers * CALLS_PER_PRODUCER;
+      for (int flush = 0; delivered.sum() < expected; ++flush) {
+        fetcher.queue(List.of(key(Integer.MAX_VALUE - flush)), flushConsumer);
+        if (flush > 60_000) {
+          throw new IllegalStateException(
+              "Only " + delivered.sum() + " of " + expected + " batches were delivered."
+          );
+        }
+        Thread.sleep(1);
+      }
+      fetchThread.interrupt();
+      fetchThread.join();
+      return elapsedNanos;
+    } finally {
+      callerExecutor.shutdownNow();
+    }
+  }
+
+  private static PublicKey key(final int id) {
+    final byte[] bytes = new byte[PublicKey.PUBLIC_KEY_LENGTH];
+    bytes[0] = (byte) (id >> 24);
+    bytes[1] = (byte) (id >> 16);
+    bytes[2] = (byte) (id >> 8);
+    bytes[3] = (byte) id;
+    return PublicKey.createPubKey(bytes);
+  }
+
+  /// One endpoint that answers every key at once with an empty account.
+  private static RpcCaller createCaller(final ExecutorService executor) {
+    final var client = (SolanaRpcClient) Proxy.newProxyInstance(
+        SolanaRpcClient.class.getClassLoader(),
+        new Class<?>[]{SolanaRpcClient.class},
+        (_, method, args) -> {
+          if (method.getName().equals("getAccounts")) {
+            @SuppressWarnings("unchecked") final var keys = (List<PublicKey>) args[0];
+            final var accounts = new ArrayList<AccountInfo<byte[]>>(keys.size());
+            for (final var key : keys) {
+              accounts.add(new AccountInfo<>(
+                  key, new Context(1, null), false, 0, SolanaAccounts.MAIN_NET.systemProgram(),
+                  BigInteger.ZERO, 0, new byte[0]
+              ));
+            }
+            return CompletableFuture.completedFuture(accounts);
+          }
+          throw new UnsupportedOperationException(method.getName());
+        }
+    );
+    final var resetDuration = Duration.ofSeconds(1);
+    final var capacityConfig = new CapacityConfig(
+        0, 1_000_000, resetDuration, 8, resetDuration, resetDuration, resetDuration, resetDuration);
+    final var monitor = capacityConfig.createMonitor("benchmark", NoopTracker::new, new FixedClock());
+    final var item = BalancedItem.createItem(client, monitor, Backoff.single(MILLISECONDS, 0));
+    return new RpcCaller(executor, LoadBalancer.createBalancer(List.of(item)), CallWeights.createDefault());
+  }
+
+  private static final class CountingConsumer implements AccountConsumer {
+
+    private final LongAdder delivered;
+
+    private CountingConsumer(final LongAdder delivered) {
+      this.delivered = delivered;
+    }
+
+    @Override
+    public void accept(final List<AccountInfo<byte[]>> accounts, final Map<PublicKey, AccountInfo<byte[]>> accountMap) {
+      delivered.increment();
+    }
+
+    @Override
+    public void mutableKeysExceededMaxSize() {
+    }
+  }
+
+  private static final class FixedClock implements NanoClock {
+
+    @Override
+    public long nanoTime() {
+      return 2_718_281_828L;
+    }
+
+    @Override
+    public void sleep(final long millis) {
+    }
+  }
+
+  private static final class NoopTracker extends RootErrorTracker<SolanaRpcClient, byte[]> {
+
+    NoopTracker(final CapacityState capacityState) {
+      super(capacityState);
+    }
+
+    @Override
+    protected boolean isServerError(final SolanaRpcClient response) {
+      return false;
+    }
+
+    @Override
+    protected boolean isRequestError(final SolanaRpcClient response) {
+      return false;
+    }
+
+    @Override
+    protected boolean isRateLimited(final SolanaRpcClient response) {
+      return false;
+    }
+
+    @Override
+    protected boolean updateGroupedErrorResponseCount(final long now,
+                                                      final SolanaRpcClient response,
+                                                      final byte[] body) {
+      return false;
+    }
+
+    @Override
+    protected void logResponse(final SolanaRpcClient response, final byte[] body) {
+    }
+  }
+}
@@ -17,19 +17,23 @@ import software.sava.services.core.request_capacity.CapacityState;
 import software.sava.services.core.request_capacity.trackers.RootErrorTracker;
 import software.sava.services.solana.remote.call.CallWeights;
 import software.sava.services.solana.remote.call.RpcCaller;
+import systems.glam.services.config.AccountFetcherConfig;
 
 import java.lang.reflect.Proxy;
 import java.math.BigInteger;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static org.junit.jupiter.api.Assertions.*;
@@ -94,11 +98,20 @@ final class AccountFetcherTests {
   /// and interrupts the running thread on batch number `interruptOnCall`.
   private static final class RecordingRpc {
 
-    final List<List<PublicKey>> calls = new ArrayList<>();
+    // lanes record from their own threads
+    final List<List<PublicKey>> calls = Collections.synchronizedList(new ArrayList<>());
     final Map<PublicKey, AccountInfo<byte[]>> universe = new HashMap<>();
     int interruptOnCall = 1;
     long respondDelayMillis;
+    /// Answers asynchronously this long after the call instead of at once.
+    long answerAfterMillis;
     boolean returnNull;
+    boolean fail;
+    /// When set, call `i` answers every account from slot `callSlots[i]`.
+    long[] callSlots;
+    /// When set, each call counts down and holds until the latch opens, so a
+    /// response only arrives once that many requests are in flight together.
+    CountDownLatch inFlight;
 
     SolanaRpcClient client() {
       return (SolanaRpcClient) Proxy.newProxyInstance(
@@ -108,18 +121,36 @@ final class AccountFetcherTests {
             if (method.getName().equals("getAccounts")) {
               @SuppressWarnings("unchecked") final var keys = (List<PublicKey>) args[0];
               calls.add(List.copyOf(keys));
+              if (inFlight != null) {
+                inFlight.countDown();
+                if (!inFlight.await(5, TimeUnit.SECONDS)) {
+                  throw new IllegalStateException("requests were never in flight together");
+                }
+              }
               if (respondDelayMillis > 0) {
                 Thread.sleep(respondDelayMillis);
               }
               if (returnNull) {
                 return java.util.concurrent.CompletableFuture.completedFuture(null);
               }
+              if (fail) {
+                return java.util.concurrent.CompletableFuture.failedFuture(new IllegalStateException("endpoint down"));
+              }
               if (calls.size() >= interruptOnCall) {
                 Thread.currentThread().interrupt();
               }
               final var accounts = new ArrayList<AccountInfo<byte[]>>(keys.size());
               for (final var key : keys) {
-                accounts.add(universe.get(key));
+                final var accountInfo = universe.get(key);
+                accounts.add(callSlots == null || accountInfo == null
+                    ? accountInfo
+                    : account(key, callSlots[calls.size() - 1], accountInfo.data()));
+              }
+              if (answerAfterMillis > 0) {
+                return java.util.concurrent.CompletableFuture.supplyAsync(
+                    () -> accounts,
+                    java.util.concurrent.CompletableFuture.delayedExecutor(answerAfterMillis, MILLISECONDS)
+                );
               }
               return java.util.concurrent.CompletableFuture.completedFuture(accounts);
             }
@@ -138,13 +169,16 @@ final class AccountFetcherTests {
     Thread.interrupted();
   }
 
-  private RpcCaller createCaller(final RecordingRpc rpc) {
+  private RpcCaller createCaller(final RecordingRpc... endpoints) {
     final var resetDuration = Duration.ofSeconds(1);
     final var config = new CapacityConfig(
         0, 1_000, resetDuration, 8, resetDuration, resetDuration, resetDuration, resetDuration);
-    final var monitor = config.createMonitor("test", NoopTracker::new, new TestClock());
-    final var item = BalancedItem.createItem(rpc.client(), monitor, Backoff.single(MILLISECONDS, 0));
-    return new RpcCaller(executor, LoadBalancer.createBalancer(item), CallWeights.createDefault());
+    final var items = new ArrayList<BalancedItem<SolanaRpcClient>>(endpoints.length);
+    for (final var rpc : endpoints) {
+      final var monitor = config.createMonitor("test", NoopTracker::new, new TestClock());
+      items.add(BalancedItem.createItem(rpc.client(), monitor, Backoff.single(MILLISECONDS, 0)));
+    }
+    return new RpcCaller(executor, LoadBalancer.createBalancer(items), CallWeights.createDefault());
   }
 
   private static PublicKey key(final int id) {
@@ -177,11 +211,27 @@ final class AccountFetcherTests {
     }
   }
 
+  private static AccountFetcherConfig config(final Duration fetchDelay, final boolean reactive, final int fetchLanes) {
+    return new AccountFetcherConfig(
+        fetchDelay, reactive, fetchLanes, Duration.ZERO, Duration.ZERO,
+        AccountFetcherConfig.DEFAULT_DISPATCH_QUEUE_CAPACITY,
+        AccountFetcherConfig.FetchMode.BALANCED, AccountFetcherConfig.DEFAULT_HEDGE_PERCENTILE, 0, Duration.ZERO, Duration.ZERO
+    );
+  }
+
+  /// Dispatches on the fetching thread, so every consumer has been served by
+  /// the time run() returns.
+  private AccountFetcher createFetcher(final RecordingRpc rpc,
+                                       final AccountFetcherConfig config,
+                                       final Set<PublicKey> alwaysFetch) {
+    return AccountFetcher.createFetcher(config, Runnable::run, createCaller(rpc), alwaysFetch);
+  }
+
   private AccountFetcher createFetcher(final RecordingRpc rpc, final Set<PublicKey> alwaysFetch) {
     // one millisecond is the floor a polling fetcher accepts; the fake
     // interrupts the thread on its last batch, so the sleep throws at once
     // rather than actually waiting
-    return AccountFetcher.createFetcher(Duration.ofMillis(1), false, createCaller(rpc), alwaysFetch);
+    return createFetcher(rpc, config(Duration.ofMillis(1), false, 1), alwaysFetch);
   }
 
   @Test
@@ -712,7 +762,7 @@ final class AccountFetcherTests {
     final var rpc = new RecordingRpc();
     final var present = key(1);
     rpc.universe.put(present, account(present, 42L, new byte[]{1}));
-    final var fetcher = AccountFetcher.createFetcher(Duration.ZERO, true, createCaller(rpc), Set.of());
+    final var fetcher = createFetcher(rpc, config(Duration.ZERO, true, 1), Set.of());
     final var consumer = new RecordingConsumer();
 
     final var worker = new Thread(fetcher::run, "account-fetcher");
@@ -976,7 +1026,7 @@ final class AccountFetcherTests {
     final var second = key(2);
     rpc.universe.put(first, account(first, 42L, new byte[]{1}));
     rpc.universe.put(second, account(second, 43L, new byte[]{2}));
-    final var fetcher = AccountFetcher.createFetcher(Duration.ofMillis(150), true, createCaller(rpc), Set.of());
+    final var fetcher = createFetcher(rpc, config(Duration.ofMillis(150), true, 1), Set.of());
     final var consumer = new RecordingConsumer();
 
     final var worker = new Thread(fetcher::run, "account-fetcher");
@@ -1046,4 +1096,1024 @@ final class AccountFetcherTests {
     assertFalse(worker.isAlive());
     assertEquals(1, rpc.calls.size());
   }
+
+  @Test
+  void aFetcherNeedsAtLeastOneLane() {
+    final var rpc = new RecordingRpc();
+    final var caller = createCaller(rpc);
+    final var ex = assertThrows(
+        IllegalArgumentException.class,
+        () -> AccountFetcher.createFetcher(Duration.ofMillis(1), false, 0, caller, Set.of())
+    );
+    assertTrue(ex.getMessage().contains("at least one fetch lane"), ex.getMessage());
+  }
+
+  @Test
+  void lanesKeepRequestsInFlightTogether() throws InterruptedException {
+    final var rpc = new RecordingRpc();
+    rpc.interruptOnCall = 99;
+    // neither response is released until both requests are out, so a single
+    // lane would fail here instead of fetching one batch after the other
+    rpc.inFlight = new CountDownLatch(2);
+    final var a = new ArrayList<PublicKey>(60);
+    for (int i = 0; i < 60; ++i) {
+      final var accountKey = key(500 + i);
+      a.add(accountKey);
+      rpc.universe.put(accountKey, account(accountKey, 10L, new byte[]{1}));
+    }
+    final var b = new ArrayList<PublicKey>(90);
+    for (int i = 0; i < 90; ++i) {
+      final var accountKey = key(600 + i);
+      b.add(accountKey);
+      rpc.universe.put(accountKey, account(accountKey, 11L, new byte[]{2}));
+    }
+    final var fetcher = createFetcher(rpc, config(Duration.ofMillis(1), false, 2), Set.of());
+    final var aConsumer = new RecordingConsumer();
+    final var bConsumer = new RecordingConsumer();
+    fetcher.queue(a, aConsumer);
+    fetcher.queue(b, bConsumer);
+
+    final var worker = new Thread(fetcher::run, "account-fetcher");
+    worker.start();
+    try {
+      awaitTrue("both lanes were served", () -> aConsumer.received.size() == 1 && bConsumer.received.size() == 1);
+    } finally {
+      worker.interrupt();
+    }
+    worker.join(5_000);
+    assertFalse(worker.isAlive());
+    assertFalse(((AccountFetcherImpl) fetcher).lock.isLocked());
+
+    // the batches still could not share a request: one per lane, each whole
+    assertEquals(2, rpc.calls.size());
+    assertTrue(rpc.calls.stream().anyMatch(call -> call.size() == 60 && call.containsAll(a)));
+    assertTrue(rpc.calls.stream().anyMatch(call -> call.size() == 90 && call.containsAll(b)));
+    // whichever lane answered last, the slot only moves forward
+    assertEquals(11L, fetcher.recentSlot().slot());
+  }
+
+  @Test
+  void recentSlotNeverMovesBackwards() {
+    final var rpc = new RecordingRpc();
+    rpc.interruptOnCall = 2;
+    final var ahead = key(1);
+    final var behind = key(2);
+    rpc.universe.put(ahead, account(ahead, 900L, new byte[]{1}));
+    // a lagging node answers the second request from an older slot
+    rpc.universe.put(behind, account(behind, 800L, new byte[]{2}));
+    final var fetcher = createFetcher(rpc, Set.of());
+    final var second = new RecordingConsumer();
+    final var first = new RecordingConsumer() {
+      @Override
+      public void accept(final List<AccountInfo<byte[]>> accounts, final Map<PublicKey, AccountInfo<byte[]>> accountMap) {
+        super.accept(accounts, accountMap);
+        fetcher.queue(List.of(behind), second);
+      }
+    };
+    fetcher.queue(List.of(ahead), first);
+    fetcher.run();
+
+    assertEquals(2, rpc.calls.size());
+    assertEquals(1, second.received.size());
+    assertEquals(900L, fetcher.recentSlot().slot());
+  }
+
+  private AccountFetcher createCachingFetcher(final RecordingRpc rpc) {
+    final var config = new AccountFetcherConfig(
+        Duration.ofMillis(1), false, 1, Duration.ofMinutes(1), Duration.ZERO,
+        AccountFetcherConfig.DEFAULT_DISPATCH_QUEUE_CAPACITY,
+        AccountFetcherConfig.FetchMode.BALANCED, AccountFetcherConfig.DEFAULT_HEDGE_PERCENTILE, 0, Duration.ZERO, Duration.ZERO
+    );
+    return createFetcher(rpc, config, Set.of());
+  }
+
+  @Test
+  void freshCachedKeysAreServedWithoutAnotherRequest() {
+    final var rpc = new RecordingRpc();
+    final var present = key(1);
+    final var absent = key(2);
+    rpc.universe.put(present, account(present, 42L, new byte[]{7}));
+    final var fetcher = createCachingFetcher(rpc);
+
+    fetcher.queue(List.of(present, absent), new RecordingConsumer());
+    fetcher.run();
+    assertEquals(1, rpc.calls.size());
+
+    // every key, including the confirmed-missing one, is younger than the bound
+    final var future = fetcher.priorityQueue(List.of(absent, present), Duration.ofMinutes(1));
+    assertTrue(future.isDone());
+    final var result = future.join();
+    assertEquals(1, rpc.calls.size());
+    assertArrayEquals(new byte[]{7}, result.accountMap().get(present).data());
+    assertTrue(AccountFetcher.isNull(result.accountMap().get(absent)));
+    // the list follows the request, with null for the missing account
+    assertNull(result.accounts().getFirst());
+    assertSame(result.accountMap().get(present), result.accounts().get(1));
+    assertEquals(2, fetcher.cacheHits());
+    assertEquals(0, fetcher.cacheMisses());
+  }
+
+  @Test
+  void onlyTheStaleSubsetIsFetched() {
+    final var rpc = new RecordingRpc();
+    rpc.interruptOnCall = 2;
+    final var cached = key(1);
+    final var fresh = key(2);
+    rpc.universe.put(cached, account(cached, 42L, new byte[]{1}));
+    rpc.universe.put(fresh, account(fresh, 43L, new byte[]{2}));
+    final var fetcher = createCachingFetcher(rpc);
+
+    final var partial = new java.util.concurrent.atomic.AtomicReference<java.util.concurrent.CompletableFuture<AccountResult>>();
+    fetcher.queue(List.of(cached), new RecordingConsumer() {
+      @Override
+      public void accept(final List<AccountInfo<byte[]>> accounts, final Map<PublicKey, AccountInfo<byte[]>> accountMap) {
+        partial.set(fetcher.queue(List.of(cached, fresh), Duration.ofMinutes(1)));
+      }
+    });
+    fetcher.run();
+
+    assertEquals(2, rpc.calls.size());
+    assertEquals(List.of(fresh), rpc.calls.get(1));
+    final var result = partial.get().join();
+    assertEquals(2, result.accounts().size());
+    assertArrayEquals(new byte[]{1}, result.accountMap().get(cached).data());
+    assertArrayEquals(new byte[]{2}, result.accountMap().get(fresh).data());
+    assertEquals(1, fetcher.cacheHits());
+    assertEquals(1, fetcher.cacheMisses());
+  }
+
+  @Test
+  void aStaleOrUncachedRequestFetchesEverything() {
+    final var rpc = new RecordingRpc();
+    final var present = key(1);
+    rpc.universe.put(present, account(present, 42L, new byte[]{1}));
+    final var fetcher = createCachingFetcher(rpc);
+
+    fetcher.queue(List.of(present), new RecordingConsumer());
+    fetcher.run();
+    Thread.interrupted();
+
+    // no cached response is younger than zero
+    final var refetched = fetcher.priorityQueue(List.of(present), Duration.ZERO);
+    assertFalse(refetched.isDone());
+    fetcher.run();
+
+    assertEquals(2, rpc.calls.size());
+    assertNotNull(refetched.join().accountMap().get(present));
+    assertEquals(0, fetcher.cacheHits());
+    assertEquals(1, fetcher.cacheMisses());
+
+    // without a configured cache the freshness bound is ignored entirely
+    Thread.interrupted();
+    final var uncachedRpc = new RecordingRpc();
+    uncachedRpc.universe.put(present, account(present, 42L, new byte[]{1}));
+    final var uncached = createFetcher(uncachedRpc, Set.of());
+    uncached.queue(List.of(present), new RecordingConsumer());
+    uncached.run();
+    final var future = uncached.priorityQueue(List.of(present), Duration.ofDays(1));
+    assertFalse(future.isDone());
+    assertEquals(0, uncached.cacheHits());
+    assertEquals(0, uncached.cacheMisses());
+  }
+
+  private static List<PublicKey> keys(final int from, final int count) {
+    final var keys = new ArrayList<PublicKey>(count);
+    for (int i = 0; i < count; ++i) {
+      keys.add(key(from + i));
+    }
+    return keys;
+  }
+
+  @Test
+  void thePlannerPacksTheBatchesThatFillTheRequest() {
+    final var rpc = new RecordingRpc();
+    rpc.interruptOnCall = 2;
+    final var fetcher = createFetcher(rpc, Set.of());
+    assertTrue(Double.isNaN(fetcher.batchFillRatio()));
+    final var oldest = keys(500, 40);
+    final var small = keys(600, 30);
+    // 65 keys, but 5 of them are already requested by the oldest batch
+    final var overlapping = new ArrayList<>(oldest.subList(0, 5));
+    overlapping.addAll(keys(700, 60));
+    final var oldestConsumer = new RecordingConsumer();
+    final var smallConsumer = new RecordingConsumer();
+    final var overlappingConsumer = new RecordingConsumer();
+    fetcher.queue(oldest, oldestConsumer);
+    fetcher.queue(small, smallConsumer);
+    fetcher.queue(overlapping, overlappingConsumer);
+
+    fetcher.run();
+
+    // queue order would stop at 70 keys; counting the shared keys as free
+    // fills the request exactly
+    assertEquals(2, rpc.calls.size());
+    final var first = rpc.calls.getFirst();
+    assertEquals(SolanaRpcClient.MAX_MULTIPLE_ACCOUNTS, first.size());
+    assertTrue(first.containsAll(oldest));
+    assertTrue(first.containsAll(overlapping));
+    assertEquals(1, oldestConsumer.received.size());
+    assertSame(oldestConsumer.received.getFirst(), overlappingConsumer.received.getFirst());
+    assertEquals(small, rpc.calls.get(1));
+    assertEquals(1, smallConsumer.received.size());
+    assertEquals(130 / 200.0, fetcher.batchFillRatio());
+  }
+
+  @Test
+  void anOverdueBatchIsServedAheadOfPriorityWork() {
+    final var rpc = new RecordingRpc();
+    rpc.interruptOnCall = 2;
+    // any queued batch is past a one nanosecond age bound
+    final var config = new AccountFetcherConfig(
+        Duration.ofMillis(1), false, 1, Duration.ZERO, Duration.ofNanos(1),
+        AccountFetcherConfig.DEFAULT_DISPATCH_QUEUE_CAPACITY,
+        AccountFetcherConfig.FetchMode.BALANCED, AccountFetcherConfig.DEFAULT_HEDGE_PERCENTILE, 0, Duration.ZERO, Duration.ZERO
+    );
+    final var fetcher = createFetcher(rpc, config, Set.of());
+    final var waiting = keys(500, 60);
+    final var urgent = keys(600, 60);
+    final var waitingConsumer = new RecordingConsumer();
+    final var urgentConsumer = new RecordingConsumer();
+    fetcher.queue(waiting, waitingConsumer);
+    fetcher.priorityQueue(urgent, urgentConsumer);
+
+    fetcher.run();
+
+    assertEquals(2, rpc.calls.size());
+    assertEquals(waiting, rpc.calls.getFirst());
+    assertEquals(urgent, rpc.calls.get(1));
+    assertEquals(1, waitingConsumer.received.size());
+    assertEquals(1, urgentConsumer.received.size());
+  }
+
+  @Test
+  void changeListenersOnlyReceiveAccountsThatChanged() {
+    final var rpc = new RecordingRpc();
+    final var a = key(1);
+    final var b = key(2);
+    final var gone = key(3);
+    final var keys = List.of(a, b, gone);
+    rpc.universe.put(a, account(a, 10L, new byte[]{1}));
+    rpc.universe.put(b, account(b, 10L, new byte[]{2}));
+    rpc.universe.put(gone, account(gone, 10L, new byte[]{3}));
+
+    final var fetcher = createFetcher(rpc, Set.of());
+    final var listener = new RecordingConsumer();
+    fetcher.listenToChanges(listener);
+    fetcher.queue(keys, new RecordingConsumer());
+    fetcher.run();
+    assertEquals(1, listener.received.size());
+    assertEquals(Set.of(a, b, gone), listener.received.getFirst().keySet());
+
+    // same data at a later slot: nothing to deliver
+    Thread.interrupted();
+    rpc.universe.put(a, account(a, 11L, new byte[]{1}));
+    rpc.universe.put(b, account(b, 11L, new byte[]{2}));
+    fetcher.queue(keys, new RecordingConsumer());
+    fetcher.run();
+    assertEquals(1, listener.received.size());
+
+    // b changed, gone was closed, and a lagging response for a is older than
+    // the one already delivered
+    Thread.interrupted();
+    rpc.universe.put(a, account(a, 9L, new byte[]{9}));
+    rpc.universe.put(b, account(b, 12L, new byte[]{4}));
+    rpc.universe.remove(gone);
+    fetcher.queue(keys, new RecordingConsumer());
+    fetcher.run();
+    assertEquals(2, listener.received.size());
+    final var changes = listener.received.get(1);
+    assertEquals(Set.of(b, gone), changes.keySet());
+    assertArrayEquals(new byte[]{4}, changes.get(b).data());
+    assertTrue(AccountFetcher.isNull(changes.get(gone)));
+
+    Thread.interrupted();
+    fetcher.stopListening(listener);
+    rpc.universe.put(b, account(b, 13L, new byte[]{5}));
+    fetcher.queue(keys, new RecordingConsumer());
+    fetcher.run();
+    assertEquals(2, listener.received.size());
+  }
+
+  /// Records each delivered key set from whichever thread dispatches it, and
+  /// holds every callback until `release` opens.
+  private static final class BlockingListener implements AccountConsumer {
+
+    final java.util.concurrent.LinkedBlockingQueue<Set<PublicKey>> received = new java.util.concurrent.LinkedBlockingQueue<>();
+    final CountDownLatch release = new CountDownLatch(1);
+
+    @Override
+    public void accept(final List<AccountInfo<byte[]>> accounts, final Map<PublicKey, AccountInfo<byte[]>> accountMap) {
+      try {
+        release.await();
+      } catch (final InterruptedException e) {
+        throw new IllegalStateException(e);
+      }
+      received.add(Set.copyOf(accountMap.keySet()));
+    }
+
+    @Override
+    public void mutableKeysExceededMaxSize() {
+    }
+  }
+
+  @Test
+  void aSlowConsumerDoesNotHoldUpFetching() throws InterruptedException {
+    final var rpc = new RecordingRpc();
+    rpc.interruptOnCall = 2;
+    final var a = keys(500, 60);
+    final var b = keys(600, 90);
+    final var fetcher = AccountFetcher.createFetcher(config(Duration.ofMillis(1), false, 1), createCaller(rpc), Set.of());
+    final var listener = new BlockingListener();
+    fetcher.listenToAll(listener);
+    fetcher.queue(a, new RecordingConsumer());
+    fetcher.queue(b, new RecordingConsumer());
+
+    // both requests go out while the listener is still stuck on the first
+    fetcher.run();
+    assertEquals(2, rpc.calls.size());
+    assertTrue(listener.received.isEmpty());
+
+    listener.release.countDown();
+    assertEquals(Set.copyOf(a), listener.received.poll(5, TimeUnit.SECONDS));
+    assertEquals(Set.copyOf(b), listener.received.poll(5, TimeUnit.SECONDS));
+    assertEquals(0, fetcher.dispatchStalls());
+  }
+
+  @Test
+  void aConsumerThatFallsBehindStallsFetchingInOrder() throws InterruptedException {
+    final var rpc = new RecordingRpc();
+    rpc.interruptOnCall = 3;
+    final var a = keys(500, 60);
+    final var b = keys(600, 60);
+    final var c = keys(700, 60);
+    final var config = new AccountFetcherConfig(Duration.ofMillis(1), false, 1, Duration.ZERO, Duration.ZERO, 1,
+        AccountFetcherConfig.FetchMode.BALANCED, AccountFetcherConfig.DEFAULT_HEDGE_PERCENTILE, 0, Duration.ZERO, Duration.ZERO);
+    // nothing is dispatched until the test runs the submitted drains itself
+    final var submitted = new java.util.concurrent.LinkedBlockingQueue<Runnable>();
+    final var fetcher = AccountFetcher.createFetcher(config, submitted::add, createCaller(rpc), Set.of());
+    final var listener = new BlockingListener();
+    listener.release.countDown();
+    fetcher.listenToAll(listener);
+    fetcher.queue(a, new RecordingConsumer());
+    fetcher.queue(b, new RecordingConsumer());
+    fetcher.queue(c, new RecordingConsumer());
+
+    final var worker = new Thread(fetcher::run, "account-fetcher");
+    worker.start();
+    try {
+      // the first batch fills the listener's queue, so the second one waits
+      awaitTrue("the second batch stalled", () -> fetcher.dispatchStalls() == 1);
+      assertEquals(2, rpc.calls.size());
+      while (worker.isAlive() || !submitted.isEmpty()) {
+        final var drain = submitted.poll(1, TimeUnit.MILLISECONDS);
+        if (drain != null) {
+          drain.run();
+        }
+      }
+    } finally {
+      worker.interrupt();
+    }
+    assertEquals(3, rpc.calls.size());
+    assertEquals(Set.copyOf(a), listener.received.poll());
+    assertEquals(Set.copyOf(b), listener.received.poll());
+    assertEquals(Set.copyOf(c), listener.received.poll());
+    assertTrue(fetcher.dispatchStalls() >= 1);
+  }
+
+  @Test
+  void aDispatchQueueNeedsCapacity() {
+    final var rpc = new RecordingRpc();
+    final var config = new AccountFetcherConfig(Duration.ofMillis(1), false, 1, Duration.ZERO, Duration.ZERO, 0,
+        AccountFetcherConfig.FetchMode.BALANCED, AccountFetcherConfig.DEFAULT_HEDGE_PERCENTILE, 0, Duration.ZERO, Duration.ZERO);
+    final var ex = assertThrows(IllegalArgumentException.class, () -> createFetcher(rpc, config, Set.of()));
+    assertTrue(ex.getMessage().contains("dispatch queue capacity"), ex.getMessage());
+  }
+
+  @Test
+  void batchesAreFetchedEarliestDeadlineFirst() {
+    final var rpc = new RecordingRpc();
+    rpc.interruptOnCall = 3;
+    final var fetcher = createFetcher(rpc, Set.of());
+    final var whenever = keys(500, 60);
+    final var late = keys(600, 60);
+    final var later = keys(700, 60);
+    final var now = Instant.now();
+    fetcher.queue(whenever, new RecordingConsumer());
+    fetcher.queueBy(late, now.minusSeconds(1), new RecordingConsumer());
+    final var laterFuture = fetcher.queueBy(later, now.minusSeconds(2));
+
+    fetcher.run();
+
+    assertEquals(3, rpc.calls.size());
+    assertEquals(later, rpc.calls.get(0));
+    assertEquals(late, rpc.calls.get(1));
+    assertEquals(whenever, rpc.calls.get(2));
+    assertTrue(laterFuture.isDone());
+  }
+
+  @Test
+  void slackBatchesRideAlongWithUrgentOnes() {
+    final var rpc = new RecordingRpc();
+    rpc.interruptOnCall = 2;
+    final var fetcher = createFetcher(rpc, Set.of());
+    final var urgent = keys(500, 30);
+    final var slack = keys(600, 40);
+    final var tooBig = keys(700, 90);
+    final var now = Instant.now();
+    fetcher.queueBy(tooBig, now.plus(Duration.ofHours(1)), new RecordingConsumer());
+    fetcher.queueBy(slack, now.plus(Duration.ofHours(2)), new RecordingConsumer());
+    fetcher.queueBy(urgent, now, new RecordingConsumer());
+
+    fetcher.run();
+
+    // the urgent batch leads; of the slack work only what fits joins it
+    assertEquals(2, rpc.calls.size());
+    final var first = rpc.calls.getFirst();
+    assertEquals(70, first.size());
+    assertTrue(first.containsAll(urgent));
+    assertTrue(first.containsAll(slack));
+    assertEquals(tooBig, rpc.calls.get(1));
+  }
+
+  @Test
+  void anUrgentDeadlineWakesAPollingFetcher() throws InterruptedException {
+    final var rpc = new RecordingRpc();
+    final var present = key(1);
+    rpc.universe.put(present, account(present, 42L, new byte[]{1}));
+    final var fetcher = createFetcher(rpc, config(Duration.ofMinutes(1), false, 1), Set.of());
+    final var consumer = new RecordingConsumer();
+
+    final var worker = new Thread(fetcher::run, "account-fetcher");
+    worker.start();
+    try {
+      awaitTrue("the poller waited", () -> worker.getState() == Thread.State.TIMED_WAITING);
+      // a minute-long poll would miss this deadline, so it must not wait
+      fetcher.queueBy(List.of(present), Instant.now(), consumer);
+      worker.join(5_000);
+      assertFalse(worker.isAlive(), "the urgent batch waited out the poll delay");
+    } finally {
+      worker.interrupt();
+    }
+    assertEquals(1, rpc.calls.size());
+    assertEquals(1, consumer.received.size());
+  }
+
+  @Test
+  void concurrentProducersAreEachServedExactlyOnce() throws InterruptedException {
+    final var rpc = new RecordingRpc();
+    rpc.interruptOnCall = Integer.MAX_VALUE;
+    final var always = keys(0, 20);
+    final var fetcher = createFetcher(rpc, config(Duration.ZERO, true, 2), Set.copyOf(always));
+    final int numProducers = 16;
+    final int callsPerProducer = 200;
+    final var deliveries = new java.util.concurrent.atomic.AtomicIntegerArray(numProducers * callsPerProducer);
+
+    final var worker = new Thread(fetcher::run, "account-fetcher");
+    worker.start();
+    try {
+      final var producers = new Thread[numProducers];
+      for (int p = 0; p < numProducers; ++p) {
+        final int producer = p;
+        producers[p] = Thread.ofVirtual().start(() -> {
+          for (int i = 0; i < callsPerProducer; ++i) {
+            final int call = producer * callsPerProducer + i;
+            final var consumer = new AccountConsumer() {
+              @Override
+              public void accept(final List<AccountInfo<byte[]>> accounts, final Map<PublicKey, AccountInfo<byte[]>> accountMap) {
+                deliveries.incrementAndGet(call);
+              }
+
+              @Override
+              public void mutableKeysExceededMaxSize() {
+              }
+            };
+            // most ride whichever request carries the always-fetch keys, racing
+            // the lanes closing it; the rest queue on their own
+            final int from = i % (always.size() - 1);
+            fetcher.queue(i % 4 == 0 ? List.of(key(100 + call)) : always.subList(from, from + 2), consumer);
+          }
+        });
+      }
+      for (final var producer : producers) {
+        producer.join();
+      }
+      // riders on an idle request are served by the next one
+      awaitTrue("every batch was served", () -> {
+        fetcher.queue(List.of(key(9_000)), new RecordingConsumer());
+        for (int call = 0; call < deliveries.length(); ++call) {
+          if (deliveries.get(call) == 0) {
+            return false;
+          }
+        }
+        return true;
+      });
+    } finally {
+      worker.interrupt();
+      worker.join(5_000);
+    }
+    for (int call = 0; call < deliveries.length(); ++call) {
+      assertEquals(1, deliveries.get(call), "call " + call);
+    }
+    assertFalse(((AccountFetcherImpl) fetcher).lock.isLocked());
+  }
+
+  private static AccountFetcherConfig adaptiveConfig(final Duration fetchDelay, final boolean reactive) {
+    return new AccountFetcherConfig(
+        fetchDelay, reactive, 1, Duration.ZERO, Duration.ZERO,
+        AccountFetcherConfig.DEFAULT_DISPATCH_QUEUE_CAPACITY,
+        AccountFetcherConfig.FetchMode.BALANCED, AccountFetcherConfig.DEFAULT_HEDGE_PERCENTILE, 0, Duration.ZERO,
+        Duration.ofHours(1)
+    );
+  }
+
+  @Test
+  void quietAlwaysFetchKeysBackOffWhileChangingOnesRideEveryRequest() {
+    final var rpc = new RecordingRpc();
+    final int numCalls = 10;
+    rpc.interruptOnCall = numCalls;
+    rpc.callSlots = new long[numCalls];
+    for (int i = 0; i < numCalls; ++i) {
+      rpc.callSlots[i] = 100 + i;
+    }
+    final var hot = key(1);
+    final var quiet = key(2);
+    rpc.universe.put(hot, account(hot, 100, new byte[]{0}));
+    rpc.universe.put(quiet, account(quiet, 100, new byte[]{0}));
+    final var fetcher = createFetcher(rpc, adaptiveConfig(Duration.ofMillis(20), false), Set.of(hot, quiet));
+
+    // every delivery changes the hot key and queues the next request
+    final var consumer = new RecordingConsumer() {
+      @Override
+      public void accept(final List<AccountInfo<byte[]>> accounts, final Map<PublicKey, AccountInfo<byte[]>> accountMap) {
+        super.accept(accounts, accountMap);
+        rpc.universe.put(hot, account(hot, 100, new byte[]{(byte) received.size()}));
+        fetcher.queue(List.of(key(100 + received.size())), this);
+      }
+    };
+    fetcher.queue(List.of(key(100)), consumer);
+    fetcher.run();
+
+    assertEquals(numCalls, rpc.calls.size());
+    int quietCalls = 0;
+    for (final var call : rpc.calls) {
+      assertTrue(call.contains(hot), call.toString());
+      if (call.contains(quiet)) {
+        ++quietCalls;
+      }
+    }
+    // fetched first, then again only as its doubling interval passes
+    assertTrue(rpc.calls.getFirst().contains(quiet));
+    assertTrue(quietCalls < numCalls, "the quiet key never backed off");
+    assertEquals(numCalls - quietCalls, fetcher.deferredPolls());
+  }
+
+  @Test
+  void aPollBoundForcesAFetchWithNothingQueued() throws InterruptedException {
+    final var rpc = new RecordingRpc();
+    rpc.interruptOnCall = 2;
+    final var always = key(1);
+    rpc.universe.put(always, account(always, 100, new byte[]{0}));
+    final var fetcher = createFetcher(rpc, adaptiveConfig(Duration.ZERO, true), Set.of(always));
+    // the configured hour would never come up in a test; the key's class
+    // bound does
+    fetcher.boundPollInterval(List.of(always), Duration.ofMillis(50));
+
+    final var worker = new Thread(fetcher::run, "account-fetcher");
+    worker.start();
+    try {
+      worker.join(5_000);
+      assertFalse(worker.isAlive(), "the bound never forced a fetch");
+    } finally {
+      worker.interrupt();
+    }
+    assertEquals(List.of(List.of(always), List.of(always)), rpc.calls);
+  }
+
+  @Test
+  void coveredFutureRequestsShareOnePendingFetch() {
+    final var rpc = new RecordingRpc();
+    final var fetcher = createFetcher(rpc, Set.of());
+    final var batch = keys(500, 10);
+
+    final var future = fetcher.queue(batch);
+    assertSame(future, fetcher.queue(batch));
+    assertSame(future, fetcher.queue(batch.subList(2, 5)));
+    // keys the pending batch does not cover queue on their own
+    final var other = fetcher.queue(keys(505, 10));
+    assertNotSame(future, other);
+
+    fetcher.run();
+    assertEquals(1, rpc.calls.size());
+    // both requests ride the one fetch, and each future gets the whole of it
+    assertEquals(15, rpc.calls.getFirst().size());
+    assertSame(future.join().accountMap(), other.join().accountMap());
+    assertTrue(other.isDone());
+  }
+
+  @Test
+  void anEarlierDeadlineDoesNotShareASlackerFetch() {
+    final var rpc = new RecordingRpc();
+    final var fetcher = createFetcher(rpc, Set.of());
+    final var batch = keys(500, 10);
+
+    final var slack = fetcher.queue(batch);
+    final var urgent = fetcher.priorityQueue(batch);
+    assertNotSame(slack, urgent);
+    // a later request with as much slack still shares the pending fetch
+    assertSame(slack, fetcher.queue(batch));
+
+    fetcher.run();
+    assertEquals(1, rpc.calls.size());
+    assertTrue(slack.isDone());
+    assertTrue(urgent.isDone());
+  }
+
+  @Test
+  void aFutureCoveredByTheBatchInFlightSharesItsResult() {
+    final var rpc = new RecordingRpc();
+    final var present = key(1);
+    rpc.universe.put(present, account(present, 1L, new byte[]{1}));
+    final var fetcher = createFetcher(rpc, Set.of());
+
+    final var shared = new ArrayList<java.util.concurrent.CompletableFuture<AccountResult>>();
+    final var consumer = new RecordingConsumer() {
+      @Override
+      public void accept(final List<AccountInfo<byte[]>> accounts, final Map<PublicKey, AccountInfo<byte[]>> accountMap) {
+        super.accept(accounts, accountMap);
+        shared.add(fetcher.queue(List.of(present)));
+        shared.add(fetcher.priorityQueue(List.of(present)));
+      }
+    };
+    fetcher.queue(List.of(present), consumer);
+    fetcher.run();
+
+    assertEquals(1, rpc.calls.size());
+    assertEquals(2, shared.size());
+    assertSame(shared.getFirst(), shared.getLast());
+    assertSame(consumer.received.getFirst(), shared.getFirst().join().accountMap());
+  }
+
+  /// Endpoints for router tests: they never interrupt the calling thread and
+  /// each serves `present` from its own slot.
+  private static RecordingRpc endpoint(final PublicKey present, final long slot) {
+    final var rpc = new RecordingRpc();
+    rpc.interruptOnCall = Integer.MAX_VALUE;
+    rpc.universe.put(present, account(present, slot, new byte[]{(byte) slot}));
+    return rpc;
+  }
+
+  private static void sampleLatencies(final EndpointRouter router, final Duration latency) {
+    for (int i = 0; i < EndpointRouter.MIN_LATENCY_SAMPLES; ++i) {
+      router.recordLatency(latency.toNanos());
+    }
+  }
+
+  @Test
+  void aSlowRequestIsHedgedToASecondEndpoint() throws InterruptedException {
+    final var present = key(1);
+    final var slow = endpoint(present, 10);
+    slow.answerAfterMillis = 5_000;
+    final var fast = endpoint(present, 11);
+    final var router = new EndpointRouter(createCaller(slow, fast), AccountFetcherConfig.FetchMode.HEDGED, 0.9);
+    sampleLatencies(router, Duration.ofMillis(1));
+
+    final long start = System.nanoTime();
+    final var accounts = router.getAccounts(List.of(present), 0);
+    assertTrue(System.nanoTime() - start < Duration.ofSeconds(5).toNanos());
+    assertEquals(11, accounts.getFirst().context().slot());
+    assertEquals(1, slow.calls.size());
+    assertEquals(1, fast.calls.size());
+    assertEquals(1, router.hedgedRequests());
+  }
+
+  @Test
+  void hedgingWaitsForEnoughLatencySamples() throws InterruptedException {
+    final var present = key(1);
+    final var primary = endpoint(present, 10);
+    primary.answerAfterMillis = 50;
+    final var other = endpoint(present, 11);
+    final var router = new EndpointRouter(createCaller(primary, other), AccountFetcherConfig.FetchMode.HEDGED, 0.5);
+
+    assertEquals(-1, router.hedgeDelayNanos());
+    final var accounts = router.getAccounts(List.of(present), 0);
+    assertEquals(10, accounts.getFirst().context().slot());
+    assertTrue(other.calls.isEmpty());
+    assertEquals(0, router.hedgedRequests());
+    // the answer itself is the first sample
+    router.recordLatency(Duration.ofMillis(3).toNanos());
+    sampleLatencies(router, Duration.ofMillis(1));
+    assertEquals(Duration.ofMillis(1).toNanos(), router.hedgeDelayNanos());
+  }
+
+  @Test
+  void aStaleAnswerIsHedgedAtOnce() throws InterruptedException {
+    final var present = key(1);
+    final var lagging = endpoint(present, 5);
+    final var current = endpoint(present, 12);
+    final var router = new EndpointRouter(createCaller(lagging, current), AccountFetcherConfig.FetchMode.HEDGED, 0.9);
+    sampleLatencies(router, Duration.ofMinutes(1));
+
+    final var accounts = router.getAccounts(List.of(present), 10);
+    assertEquals(12, accounts.getFirst().context().slot());
+    assertEquals(1, router.hedgedRequests());
+  }
+
+  @Test
+  void unusableHedgedAnswersFallBackToTheBalancedPath() throws InterruptedException {
+    final var present = key(1);
+    final var down = endpoint(present, 10);
+    down.fail = true;
+    final var lagging = endpoint(present, 5);
+    final var router = new EndpointRouter(createCaller(lagging, down), AccountFetcherConfig.FetchMode.HEDGED, 0.9);
+
+    // the balanced path still answers, stale or not
+    final var accounts = router.getAccounts(List.of(present), 10);
+    assertEquals(1, down.calls.size());
+    assertEquals(2, lagging.calls.size());
+    assertEquals(5, accounts.getFirst().context().slot());
+  }
+
+  @Test
+  void shardedBatchesStickToTheEndpointTheirKeysHashTo() throws InterruptedException {
+    final var present = key(1);
+    final var a = endpoint(present, 10);
+    final var b = endpoint(present, 10);
+    final var router = new EndpointRouter(createCaller(a, b), AccountFetcherConfig.FetchMode.SHARDED, 0.9);
+
+    final var batch = keys(500, 10);
+    router.getAccounts(batch, 0);
+    final var reordered = new ArrayList<>(batch);
+    Collections.reverse(reordered);
+    router.getAccounts(reordered, 0);
+    assertTrue(a.calls.size() == 2 || b.calls.size() == 2);
+
+    for (int i = 0; i < 32; ++i) {
+      router.getAccounts(keys(600 + i, 3), 0);
+    }
+    assertFalse(a.calls.isEmpty());
+    assertFalse(b.calls.isEmpty());
+    assertEquals(34, a.calls.size() + b.calls.size());
+  }
+
+  @Test
+  void aHedgedFetcherNeedsAPercentile() {
+    final var rpc = new RecordingRpc();
+    final var config = new AccountFetcherConfig(Duration.ofMillis(1), false, 1, Duration.ZERO, Duration.ZERO, 1,
+        AccountFetcherConfig.FetchMode.HEDGED, 0, 0, Duration.ZERO, Duration.ZERO);
+    final var ex = assertThrows(IllegalArgumentException.class, () -> createFetcher(rpc, config, Set.of()));
+    assertTrue(ex.getMessage().contains("hedge percentile"), ex.getMessage());
+  }
+
+  @Test
+  void aShardedFetcherServesItsConsumers() {
+    final var present = key(1);
+    final var a = endpoint(present, 10);
+    final var b = endpoint(present, 10);
+    a.interruptOnCall = 1;
+    b.interruptOnCall = 1;
+    final var config = new AccountFetcherConfig(Duration.ofMillis(1), false, 1, Duration.ZERO, Duration.ZERO, 1,
+        AccountFetcherConfig.FetchMode.SHARDED, AccountFetcherConfig.DEFAULT_HEDGE_PERCENTILE, 0, Duration.ZERO, Duration.ZERO);
+    final var fetcher = AccountFetcher.createFetcher(config, Runnable::run, createCaller(a, b), Set.of());
+    final var consumer = new RecordingConsumer();
+    fetcher.queue(List.of(present), consumer);
+    fetcher.run();
+
+    assertEquals(1, a.calls.size() + b.calls.size());
+    assertEquals(1, consumer.received.size());
+    assertEquals(10, consumer.received.getFirst().get(present).context().slot());
+  }
+
+  /// Records subscriptions and pushes to them on demand.
+  private static final class FakeWebsocket {
+
+    final Map<PublicKey, java.util.function.Consumer<AccountInfo<byte[]>>> subscribed = new HashMap<>();
+    final List<PublicKey> unsubscribed = new ArrayList<>();
+    int numSubscribes;
+
+    software.sava.rpc.json.http.ws.SolanaRpcWebsocket websocket() {
+      return (software.sava.rpc.json.http.ws.SolanaRpcWebsocket) Proxy.newProxyInstance(
+          software.sava.rpc.json.http.ws.SolanaRpcWebsocket.class.getClassLoader(),
+          new Class<?>[]{software.sava.rpc.json.http.ws.SolanaRpcWebsocket.class},
+          (proxy, method, args) -> switch (method.getName()) {
+            case "accountSubscribe" -> {
+              ++numSubscribes;
+              @SuppressWarnings("unchecked") final var onPush = (java.util.function.Consumer<AccountInfo<byte[]>>) args[1];
+              subscribed.put((PublicKey) args[0], onPush);
+              yield true;
+            }
+            case "accountUnsubscribe" -> {
+              unsubscribed.add((PublicKey) args[0]);
+              yield subscribed.remove((PublicKey) args[0]) != null;
+            }
+            default -> throw new UnsupportedOperationException(method.getName());
+          }
+      );
+    }
+  }
+
+  @Test
+  void frequentlyChangingKeysMoveFromPollingToPushes() {
+    final var rpc = new RecordingRpc();
+    final var hot = key(1);
+    final var cold = key(2);
+    rpc.universe.put(hot, account(hot, 10L, new byte[]{1}));
+    rpc.universe.put(cold, account(cold, 10L, new byte[]{2}));
+    // every fetch closes a one nanosecond window, and one change makes a key hot
+    final var config = new AccountFetcherConfig(Duration.ofMillis(1), false, 1, Duration.ZERO, Duration.ZERO,
+        AccountFetcherConfig.DEFAULT_DISPATCH_QUEUE_CAPACITY,
+        AccountFetcherConfig.FetchMode.BALANCED, AccountFetcherConfig.DEFAULT_HEDGE_PERCENTILE, 1, Duration.ofNanos(1), Duration.ZERO);
+    final var fetcher = createFetcher(rpc, config, Set.of());
+    final var ws = new FakeWebsocket();
+    fetcher.subscribe(ws.websocket());
+    final var both = List.of(hot, cold);
+
+    fetcher.queue(both);
+    fetcher.run();
+    assertTrue(ws.subscribed.isEmpty());
+
+    rpc.universe.put(hot, account(hot, 11L, new byte[]{3}));
+    fetcher.queue(both);
+    fetcher.run();
+    assertEquals(Set.of(hot), ws.subscribed.keySet());
+
+    // while the push is fresh only the cold key is requested
+    ws.subscribed.get(hot).accept(account(hot, 12L, new byte[]{4}));
+    final var pushedResult = fetcher.queue(both);
+    fetcher.run();
+    assertEquals(List.of(cold), rpc.calls.getLast());
+    assertArrayEquals(new byte[]{4}, pushedResult.join().accountMap().get(hot).data());
+    assertArrayEquals(new byte[]{2}, pushedResult.join().accountMap().get(cold).data());
+    assertEquals(1, fetcher.pushedKeys());
+
+    // a new websocket renews the subscription, and the key is polled until it pushes
+    fetcher.subscribe(ws.websocket());
+    assertEquals(2, ws.numSubscribes);
+    fetcher.queue(both);
+    fetcher.run();
+    assertEquals(both, rpc.calls.getLast());
+    assertEquals(4, rpc.calls.size());
+  }
+
+  /// A dropped connection is only learned of from the next websocket, so a
+  /// push is served for no longer than a poll would take, well before the
+  /// subscription itself is given up on.
+  @Test
+  void quietOrReplacedPushesFallBackToPolling() throws InterruptedException {
+    final var rpc = new RecordingRpc();
+    final var hot = key(1);
+    final var cold = key(2);
+    rpc.universe.put(hot, account(hot, 10L, new byte[]{1}));
+    rpc.universe.put(cold, account(cold, 10L, new byte[]{2}));
+    final var config = new AccountFetcherConfig(Duration.ofMillis(1), false, 1, Duration.ZERO, Duration.ofSeconds(30),
+        AccountFetcherConfig.DEFAULT_DISPATCH_QUEUE_CAPACITY,
+        AccountFetcherConfig.FetchMode.BALANCED, AccountFetcherConfig.DEFAULT_HEDGE_PERCENTILE, 1, Duration.ofNanos(1), Duration.ZERO);
+    final var fetcher = createFetcher(rpc, config, Set.of());
+    final var ws = new FakeWebsocket();
+    fetcher.subscribe(ws.websocket());
+    final var both = List.of(hot, cold);
+    fetcher.queue(both);
+    fetcher.run();
+    rpc.universe.put(hot, account(hot, 11L, new byte[]{3}));
+    fetcher.queue(both);
+    fetcher.run();
+    assertEquals(Set.of(hot), ws.subscribed.keySet());
+
+    ws.subscribed.get(hot).accept(account(hot, 12L, new byte[]{4}));
+    fetcher.queue(both);
+    fetcher.run();
+    assertEquals(List.of(cold), rpc.calls.getLast());
+
+    // quiet for longer than a poll, far short of the batch age bound
+    Thread.sleep(400);
+    fetcher.queue(both);
+    fetcher.run();
+    assertEquals(both, rpc.calls.getLast());
+    assertTrue(ws.unsubscribed.isEmpty(), "a quiet subscription was given up on too early");
+
+    // a late push over a replaced connection is not served
+    final var replaced = ws.subscribed.get(hot);
+    fetcher.subscribe(ws.websocket());
+    replaced.accept(account(hot, 13L, new byte[]{5}));
+    fetcher.queue(both);
+    fetcher.run();
+    assertEquals(both, rpc.calls.getLast());
+
+    // while one over the current connection is
+    ws.subscribed.get(hot).accept(account(hot, 14L, new byte[]{6}));
+    final var pushedResult = fetcher.queue(both);
+    fetcher.run();
+    assertEquals(List.of(cold), rpc.calls.getLast());
+    assertArrayEquals(new byte[]{6}, pushedResult.join().accountMap().get(hot).data());
+  }
+
+  @Test
+  void withoutAWebsocketHotKeysStayPolled() {
+    final var rpc = new RecordingRpc();
+    final var hot = key(1);
+    final var config = new AccountFetcherConfig(Duration.ofMillis(1), false, 1, Duration.ZERO, Duration.ZERO,
+        AccountFetcherConfig.DEFAULT_DISPATCH_QUEUE_CAPACITY,
+        AccountFetcherConfig.FetchMode.BALANCED, AccountFetcherConfig.DEFAULT_HEDGE_PERCENTILE, 1, Duration.ofNanos(1), Duration.ZERO);
+    final var fetcher = createFetcher(rpc, config, Set.of());
+    for (int i = 0; i < 3; ++i) {
+      rpc.universe.put(hot, account(hot, 10L + i, new byte[]{(byte) i}));
+      fetcher.queue(List.of(hot));
+      fetcher.run();
+    }
+    assertEquals(3, rpc.calls.size());
+    assertEquals(0, fetcher.pushedKeys());
+  }
+
+  @Test
+  void snapshotKeysBehindTheHighestSlotAreFetchedAgainOnce() {
+    final var rpc = new RecordingRpc();
+    final var keys = keys(500, 150);
+    for (final var key : keys) {
+      rpc.universe.put(key, account(key, 1L, new byte[]{1}));
+    }
+    // the first batch lags the second, and its retry catches up
+    rpc.callSlots = new long[]{10, 12, 12};
+    rpc.interruptOnCall = 3;
+    final var fetcher = createFetcher(rpc, Set.of());
+
+    final var snapshot = fetcher.priorityQueueSnapshot(keys, Duration.ZERO);
+    fetcher.run();
+
+    assertEquals(3, rpc.calls.size());
+    assertEquals(keys.subList(0, 100), rpc.calls.get(2));
+    final var result = snapshot.join();
+    assertEquals(150, result.accounts().size());
+    assertEquals(keys.getFirst(), result.accounts().getFirst().pubKey());
+    assertEquals(12, result.accountMap().get(keys.getFirst()).context().slot());
+    assertEquals(12, result.accountMap().get(keys.getLast()).context().slot());
+    assertEquals(100, fetcher.snapshotRetries());
+  }
+
+  /// The lagging batch lands last, while its request is still the lane's in
+  /// flight one: the retry must not share or ride that request, which would
+  /// hand back the very response being retried.
+  @Test
+  void aSnapshotRetryOfTheLastBatchIsFetchedAnew() {
+    final var rpc = new RecordingRpc();
+    final var keys = keys(500, 150);
+    for (final var key : keys) {
+      rpc.universe.put(key, account(key, 1L, new byte[]{1}));
+    }
+    rpc.callSlots = new long[]{12, 10, 12};
+    rpc.interruptOnCall = 3;
+    final var fetcher = createFetcher(rpc, Set.of());
+
+    final var snapshot = fetcher.priorityQueueSnapshot(keys, Duration.ZERO);
+    fetcher.run();
+
+    assertEquals(3, rpc.calls.size());
+    assertEquals(keys.subList(100, 150), rpc.calls.get(2));
+    final var result = snapshot.join();
+    for (final var key : keys) {
+      assertEquals(12, result.accountMap().get(key).context().slot());
+    }
+    assertEquals(50, fetcher.snapshotRetries());
+  }
+
+  @Test
+  void aSnapshotRetryStillBehindFailsTheSnapshot() {
+    final var rpc = new RecordingRpc();
+    final var keys = keys(500, 150);
+    for (final var key : keys) {
+      rpc.universe.put(key, account(key, 1L, new byte[]{1}));
+    }
+    rpc.callSlots = new long[]{12, 10, 11};
+    rpc.interruptOnCall = 3;
+    final var fetcher = createFetcher(rpc, Set.of());
+
+    final var snapshot = fetcher.priorityQueueSnapshot(keys, Duration.ZERO);
+    fetcher.run();
+
+    assertEquals(3, rpc.calls.size());
+    final var ex = assertThrows(java.util.concurrent.CompletionException.class, snapshot::join);
+    assertInstanceOf(InconsistentSnapshotException.class, ex.getCause());
+    assertTrue(ex.getCause().getMessage().contains("50 of 150"), ex.getCause().getMessage());
+  }
+
+
+  @Test
+  void aConsistentSnapshotIsNotFetchedAgain() {
+    final var rpc = new RecordingRpc();
+    final var keys = keys(500, 150);
+    for (final var key : keys) {
+      rpc.universe.put(key, account(key, 10L, new byte[]{1}));
+    }
+    rpc.universe.remove(keys.get(7));
+    rpc.interruptOnCall = 2;
+    final var fetcher = createFetcher(rpc, Set.of());
+
+    final var snapshot = fetcher.queueSnapshot(keys, Duration.ZERO);
+    fetcher.run();
+
+    assertEquals(2, rpc.calls.size());
+    final var result = snapshot.join();
+    assertNull(result.accounts().get(7));
+    assertTrue(AccountFetcher.isNull(result.accountMap().get(keys.get(7))));
+    assertEquals(0, fetcher.snapshotRetries());
+    assertTrue(fetcher.queueSnapshot(List.of(), Duration.ZERO).isDone());
+  }
 }
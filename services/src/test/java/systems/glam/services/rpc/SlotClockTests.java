@@ -0,0 +1,135 @@
+package systems.glam.services.rpc;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+final class SlotClockTests {
+
+  private static final Instant ORIGIN = Instant.parse("2026-01-01T00:00:00Z");
+
+  @Test
+  void noEstimateUntilEnoughSamplesSpanEnoughSlots() {
+    final var slotClock = SlotClock.createClock();
+    assertNull(slotClock.timeOfSlot(100));
+    assertNull(slotClock.slotAt(ORIGIN));
+    assertTrue(Double.isNaN(slotClock.millisPerSlot()));
+
+    slotClock.observe(100, ORIGIN);
+    // a second look at the same slot is not a second sample
+    slotClock.observe(100, ORIGIN.plusMillis(300));
+    slotClock.observe(101, ORIGIN.plusMillis(400));
+    // two samples one slot apart would place a line, but not one to trust
+    assertNull(slotClock.timeOfSlot(110));
+
+    for (long slot = 102; slot < 100 + SlotClock.MIN_SAMPLES; ++slot) {
+      slotClock.observe(slot, ORIGIN.plusMillis((slot - 100) * 400));
+    }
+    // enough samples, but not yet spanning enough slots
+    assertNull(slotClock.timeOfSlot(110));
+    assertNull(slotClock.slotAt(ORIGIN.plusSeconds(4)));
+    assertTrue(Double.isNaN(slotClock.millisPerSlot()));
+
+    slotClock.observe(100 + SlotClock.MIN_SLOT_SPAN, ORIGIN.plusMillis(SlotClock.MIN_SLOT_SPAN * 400));
+    assertEquals(400, slotClock.millisPerSlot(), 1e-6);
+    assertEquals(new SlotClock.SlotTime(ORIGIN.plusSeconds(4), Duration.ZERO), slotClock.timeOfSlot(110));
+    assertEquals(new SlotClock.EstimatedSlot(110, 0), slotClock.slotAt(ORIGIN.plusSeconds(4)));
+  }
+
+  @Test
+  void theSpanFollowsTheWindow() {
+    final var slotClock = SlotClock.createClock(SlotClock.MIN_SAMPLES);
+    // an old sample far back would make the span, until the window drops it
+    slotClock.observe(0, ORIGIN);
+    for (long slot = 1_000; slot < 1_000 + SlotClock.MIN_SAMPLES; ++slot) {
+      slotClock.observe(slot, ORIGIN.plusMillis(slot * 400));
+    }
+    assertNull(slotClock.timeOfSlot(2_000));
+  }
+
+  @Test
+  void fewSamplesStillCoverTheSlotTheyProject() {
+    // the error bound must hold at the minimum sample count as it does at
+    // many: a flat two standard errors undercovers when the variance itself
+    // comes from a handful of residuals
+    int covered = 0;
+    final int trials = 200;
+    for (int seed = 0; seed < trials; ++seed) {
+      final var slotClock = SlotClock.createClock();
+      final var random = new Random(seed);
+      for (long slot = 0; slot < SlotClock.MIN_SAMPLES; ++slot) {
+        slotClock.observe(slot * 2, ORIGIN.plusMillis(slot * 2 * 420 + random.nextInt(80)));
+      }
+      final var estimate = slotClock.timeOfSlot(100);
+      final var expected = ORIGIN.plusMillis(100 * 420 + 40);
+      final long offByMicros = Math.abs(Duration.between(expected, estimate.time()).toNanos() / 1_000);
+      if (offByMicros <= estimate.error().toNanos() / 1_000) {
+        ++covered;
+      }
+    }
+    assertTrue(covered >= trials * 9 / 10, covered + " of " + trials);
+  }
+
+  @Test
+  void jitteredSamplesPlaceSlotsWithinTheirErrorBound() {
+    final var slotClock = SlotClock.createClock();
+    final var random = new Random(7);
+    for (long slot = 1_000; slot < 1_200; ++slot) {
+      // observed anywhere up to 80ms after the slot began
+      slotClock.observe(slot, ORIGIN.plusMillis((slot - 1_000) * 420 + random.nextInt(80)));
+    }
+    assertEquals(420, slotClock.millisPerSlot(), 1);
+
+    for (final long slot : new long[]{1_100, 1_200, 1_300}) {
+      final var estimate = slotClock.timeOfSlot(slot);
+      // the fit tracks the middle of the jitter
+      final var expected = ORIGIN.plusMillis((slot - 1_000) * 420 + 40);
+      final long offByMillis = Math.abs(Duration.between(expected, estimate.time()).toMillis());
+      assertTrue(offByMillis <= estimate.error().toMillis(), offByMillis + " > " + estimate.error());
+      // well under a slot
+      assertTrue(estimate.error().toMillis() < 210, estimate.error().toString());
+    }
+    // further past the samples is less certain
+    assertTrue(slotClock.timeOfSlot(1_300).error().compareTo(slotClock.timeOfSlot(1_100).error()) > 0);
+
+    final var slot = slotClock.slotAt(ORIGIN.plusMillis(150 * 420 + 40));
+    assertEquals(1_150, slot.slot());
+    assertEquals(1, slot.error());
+  }
+
+  @Test
+  void laggingObservationsAreIgnored() {
+    final var slotClock = SlotClock.createClock();
+    for (long slot = 0; slot < 10; ++slot) {
+      slotClock.observe(slot, ORIGIN.plusMillis(slot * 400));
+    }
+    // a node behind the cluster reports an old slot long after it passed
+    slotClock.observe(3, ORIGIN.plusSeconds(60));
+    assertEquals(400, slotClock.millisPerSlot(), 1e-6);
+    assertEquals(ORIGIN.plusMillis(4_000), slotClock.timeOfSlot(10).time());
+  }
+
+  @Test
+  void theWindowForgetsOldSamples() {
+    final var slotClock = SlotClock.createClock(16);
+    for (long slot = 0; slot < 100; ++slot) {
+      slotClock.observe(slot, ORIGIN.plusMillis(slot * 400));
+    }
+    // the cluster slows down
+    final var slowedAt = ORIGIN.plusMillis(99 * 400);
+    for (long slot = 100; slot < 116; ++slot) {
+      slotClock.observe(slot, slowedAt.plusMillis((slot - 99) * 600));
+    }
+    assertEquals(600, slotClock.millisPerSlot(), 1e-6);
+    assertEquals(slowedAt.plusMillis(101 * 600), slotClock.timeOfSlot(200).time());
+  }
+
+  @Test
+  void aWindowNeedsTheMinimumSamples() {
+    assertThrows(IllegalArgumentException.class, () -> SlotClock.createClock(SlotClock.MIN_SAMPLES - 1));
+  }
+}
@@ -31,7 +31,6 @@ import java.util.logging.Handler;
 import java.util.logging.Level;
 import java.util.logging.LogRecord;
 import java.util.logging.Logger;
-import java.util.zip.GZIPInputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -121,6 +120,8 @@ final class GlobalConfigCacheTests {
     final var globalConfigFile = FileUtils.resolveCompressedAccountPath(tempDir, GLOBAL_CONFIG_KEY);
     try {
       FileUtils.writeCompressedAccountData(tempDir, GLOBAL_CONFIG_KEY, globalConfigData);
+      // start from the fixture, not from what an earlier cache in the directory journaled
+      Files.deleteIfExists(GlobalConfigJournal.resolveJournalPath(globalConfigFile));
     } catch (final IOException e) {
       throw new UncheckedIOException(e);
     }
@@ -325,7 +326,7 @@ final class GlobalConfigCacheTests {
     final var result = GlobalConfigCacheImpl.createMapChecked(
         1L,
         previousGlobalConfigUpdate.assetMetaContexts(),
-        cache.assetMetaMap,
+        cache.assetMetaMap(),
         AssetMetaContext.mapAssetMetas(invalidGlobalConfig),
         NULL_MINT_CACHE,
         Set.of(listener)
@@ -376,7 +377,7 @@ final class GlobalConfigCacheTests {
     var globalConfigCache = GlobalConfigCacheImpl.createMapChecked(
         1L,
         previousGlobalConfigUpdate.assetMetaContexts(),
-        cache.assetMetaMap,
+        cache.assetMetaMap(),
         AssetMetaContext.mapAssetMetas(oracleChangedConfig),
         NULL_MINT_CACHE,
         Set.of(listener)
@@ -412,7 +413,7 @@ final class GlobalConfigCacheTests {
     globalConfigCache = GlobalConfigCacheImpl.createMapChecked(
         1L,
         previousGlobalConfigUpdate.assetMetaContexts(),
-        cache.assetMetaMap,
+        cache.assetMetaMap(),
         AssetMetaContext.mapAssetMetas(assetChangedConfig),
         NULL_MINT_CACHE,
         Set.of(listener)
@@ -504,7 +505,7 @@ final class GlobalConfigCacheTests {
     final var result = GlobalConfigCacheImpl.createMapChecked(
         1L,
         previousGlobalConfigUpdate.assetMetaContexts(),
-        cache.assetMetaMap,
+        cache.assetMetaMap(),
         AssetMetaContext.mapAssetMetas(newGlobalConfig),
         NULL_MINT_CACHE,
         Set.of(listener)
@@ -628,7 +629,7 @@ final class GlobalConfigCacheTests {
     final var result = GlobalConfigCacheImpl.createMapChecked(
         1L,
         previousGlobalConfigUpdate.assetMetaContexts(),
-        cache.assetMetaMap,
+        cache.assetMetaMap(),
         AssetMetaContext.mapAssetMetas(invalidConfig),
         NULL_MINT_CACHE,
         Set.of(listener)
@@ -658,11 +659,10 @@ final class GlobalConfigCacheTests {
     assertLogged("Unexpected GlobalConfig Account");
   }
 
-  /// Every entry point takes a read or write lock in a try/finally. A leaked
-  /// lock blocks every other caller and no result assertion can see it.
+  /// Every writer takes the lock in a try/finally. A leaked lock blocks every
+  /// other writer and no result assertion can see it.
   private static void assertUnlocked(final GlobalConfigCacheImpl cache) {
-    assertFalse(cache.lock.isWriteLocked());
-    assertEquals(0, cache.lock.getReadLockCount());
+    assertFalse(cache.lock.isLocked());
   }
 
   @Test
@@ -689,6 +689,26 @@ final class GlobalConfigCacheTests {
     assertUnlocked(cache);
   }
 
+  @Test
+  void readsDoNotWaitOnAWriter(@TempDir final Path tempDir) throws InterruptedException {
+    final var cache = createCache(tempDir);
+    final var usdc = PublicKey.fromBase58Encoded("EPjFWdd5AufqSSqeM2qN1xzybapC8G4wEGGkZwyTDt1v");
+    final var expected = cache.topPriorityForMint(usdc);
+    final var read = new AtomicReference<AssetMetaContext>();
+    cache.lock.lock();
+    try {
+      final var reader = Thread.ofVirtual().start(() -> {
+        if (cache.hasAssetMetaForMint(usdc) && cache.getByIndex(0) != null) {
+          read.set(cache.topPriorityForMint(usdc));
+        }
+      });
+      assertTrue(reader.join(Duration.ofSeconds(5)), "a reader waited on the write lock");
+    } finally {
+      cache.lock.unlock();
+    }
+    assertSame(expected, read.get());
+  }
+
   private static final class NoopTracker extends software.sava.services.core.request_capacity.trackers.RootErrorTracker<software.sava.rpc.json.http.client.SolanaRpcClient, byte[]> {
 
     NoopTracker(final software.sava.services.core.request_capacity.CapacityState capacityState) {
@@ -779,15 +799,18 @@ final class GlobalConfigCacheTests {
     final var cache = (GlobalConfigCacheImpl) cacheFuture.join();
 
     assertEquals(7L, cache.globalConfigUpdate().slot());
-    // the fetched config was persisted for the next start
-    assertTrue(Files.exists(globalConfigFile));
-    assertArrayEquals(globalConfigData, FileUtils.readAccountData(globalConfigFile).data());
+    // the fetched config was journaled, at its slot, for the next start
+    final var journaled = cache.journal.latest();
+    assertTrue(Files.exists(GlobalConfigJournal.resolveJournalPath(globalConfigFile)));
+    assertEquals(7L, journaled.slot());
+    assertTrue(journaled.checkpoint());
+    assertArrayEquals(globalConfigData, journaled.data());
     // every asset mint is unknown to the null cache, so all were queued
     final var config = GlobalConfig.read(cache.globalConfigUpdate().data(), 0);
     assertEquals(1, queued.size());
     assertEquals(config.assetMetas().length, queued.getFirst().size());
     // the fetched config was actually indexed, not just stored
-    assertNotNull(cache.assetMetaMap.get(config.assetMetas()[0].asset()));
+    assertNotNull(cache.assetMetaMap().get(config.assetMetas()[0].asset()));
     assertUnlocked(cache);
   }
 
@@ -858,9 +881,9 @@ final class GlobalConfigCacheTests {
   }
 
   @Test
-  void initCacheIgnoresAnEmptyPersistedFile(@TempDir final Path tempDir) {
+  void initCacheIgnoresAnEmptyPersistedFile(@TempDir final Path tempDir) throws IOException {
     final var globalConfigFile = FileUtils.resolveCompressedAccountPath(tempDir, GLOBAL_CONFIG_KEY);
-    GlobalConfigCacheImpl.persistGlobalConfig(globalConfigFile, new byte[0]);
+    FileUtils.writeCompressedAccountData(tempDir, GLOBAL_CONFIG_KEY, new byte[0]);
     assertTrue(Files.exists(globalConfigFile));
 
     final var cache = (GlobalConfigCacheImpl) GlobalConfigCache.initCache(
@@ -879,7 +902,7 @@ final class GlobalConfigCacheTests {
   }
 
   @Test
-  void aFileLoadedConfigSortsMultipleOraclesPerAsset(@TempDir final Path tempDir) {
+  void aFileLoadedConfigSortsMultipleOraclesPerAsset(@TempDir final Path tempDir) throws IOException {
     final var config = GlobalConfig.read(globalConfigData, 0);
     final var metas = config.assetMetas();
     final var first = metas[0];
@@ -898,7 +921,7 @@ final class GlobalConfigCacheTests {
     modified.write(data, 0);
 
     final var globalConfigFile = FileUtils.resolveCompressedAccountPath(tempDir, GLOBAL_CONFIG_KEY);
-    GlobalConfigCacheImpl.persistGlobalConfig(globalConfigFile, data);
+    FileUtils.writeCompressedAccountData(tempDir, GLOBAL_CONFIG_KEY, data);
     final var cache = (GlobalConfigCacheImpl) GlobalConfigCache.initCache(
         globalConfigFile,
         GlamAccounts.MAIN_NET.configProgram(),
@@ -910,7 +933,7 @@ final class GlobalConfigCacheTests {
         Duration.ofSeconds(1)
     ).join();
 
-    final var entries = cache.assetMetaMap.get(first.asset());
+    final var entries = cache.assetMetaMap().get(first.asset());
     assertEquals(2, entries.length, "both oracles for the asset must be indexed");
     assertEquals(PublicKey.NONE, entries[0].oracle(), "the better priority entry is served first");
     assertEquals(first.priority(), entries[0].priority());
@@ -978,11 +1001,55 @@ final class GlobalConfigCacheTests {
     assertSame(after, cache.awaitNewGlobalConfig(before, 1L));
     assertUnlocked(cache);
 
-    // and the update was persisted for the next restart
-    final var persistedPath = FileUtils.resolveCompressedAccountPath(tempDir, GLOBAL_CONFIG_KEY);
-    try (final var in = new GZIPInputStream(Files.newInputStream(persistedPath))) {
-      assertArrayEquals(changed, in.readAllBytes());
-    }
+    // and the update was journaled, as a delta on the migrated checkpoint
+    final var history = GlobalConfigJournal.readHistory(cache.journal.filePath());
+    assertEquals(2, history.size());
+    assertTrue(history.getFirst().checkpoint());
+    assertArrayEquals(globalConfigData, history.getFirst().data());
+    final var journaled = history.getLast();
+    assertFalse(journaled.checkpoint());
+    assertEquals(newSlot, journaled.slot());
+    assertArrayEquals(changed, journaled.data());
+  }
+
+  @Test
+  void aRestartResumesFromTheJournaledSlot(@TempDir final Path tempDir) {
+    final var cache = createCache(tempDir);
+    final var globalConfig = GlobalConfig.read(globalConfigData, 0);
+    final var configProgram = GlamAccounts.MAIN_NET.configProgram();
+    final long firstSlot = cache.globalConfigUpdate().slot() + 10;
+    final byte[] first = new GlobalConfig(
+        globalConfig._address(), globalConfig.discriminator(),
+        globalConfig.admin(), globalConfig.feeAuthority(), globalConfig.referrer(),
+        globalConfig.baseFeeBps() + 1, globalConfig.flowFeeBps(),
+        globalConfig.assetMetas()
+    ).write();
+    cache.accept(accountInfo(firstSlot, configProgram, first));
+    final byte[] second = new GlobalConfig(
+        globalConfig._address(), globalConfig.discriminator(),
+        globalConfig.admin(), globalConfig.feeAuthority(), globalConfig.referrer(),
+        globalConfig.baseFeeBps() + 1, globalConfig.flowFeeBps() + 1,
+        globalConfig.assetMetas()
+    ).write();
+    cache.accept(accountInfo(firstSlot + 5, configProgram, second));
+    cache.journal.close();
+
+    // no RPC: the restart must come from the journal alone
+    final var globalConfigFile = FileUtils.resolveCompressedAccountPath(tempDir, GLOBAL_CONFIG_KEY);
+    final var restarted = (GlobalConfigCacheImpl) GlobalConfigCache.initCache(
+        globalConfigFile,
+        configProgram,
+        GLOBAL_CONFIG_KEY,
+        SolanaAccounts.MAIN_NET,
+        NULL_MINT_CACHE,
+        null,
+        null,
+        Duration.ofSeconds(1)
+    ).join();
+    assertEquals(firstSlot + 5, restarted.globalConfigUpdate().slot());
+    assertArrayEquals(second, restarted.globalConfigUpdate().data());
+    assertNotNull(restarted.topPriorityForMint(SolanaAccounts.MAIN_NET.wrappedSolTokenMint()));
+    restarted.journal.close();
   }
 
   @Test
@@ -1010,10 +1077,15 @@ final class GlobalConfigCacheTests {
     cache.accept(accountInfo(before.slot() + 1, configProgram, invalid));
 
     assertNull(cache.globalConfig());
-    assertEquals("onDecimalsChange", called.get());
+    // listeners hear of it after the fact, off the cache's lock
+    awaitTrue("onDecimalsChange", () -> "onDecimalsChange".equals(called.get()));
     assertLogged("Inconsistent Asset Decimals Across GlobalConfig");
     // a waiter learns the config is gone rather than blocking
     assertNull(cache.awaitNewGlobalConfig(before, 1L));
+    // unchecked reads see the invalidation as a miss
+    assertNull(cache.getByIndex(0));
+    assertFalse(cache.hasAssetMetaForMint(first.asset()));
+    assertNull(cache.topPriorityForMint(first.asset()));
     // and so do checked lookups after the invalidation
     assertNull(cache.topPriorityForMintChecked(
         MintContext.createContext(SolanaAccounts.MAIN_NET,
@@ -1023,7 +1095,7 @@ final class GlobalConfigCacheTests {
   }
 
   @Test
-  void topPriorityForMintCheckedValidatesDecimals(@TempDir final Path tempDir) {
+  void topPriorityForMintCheckedValidatesDecimals(@TempDir final Path tempDir) throws InterruptedException {
     final var usdc = PublicKey.fromBase58Encoded("EPjFWdd5AufqSSqeM2qN1xzybapC8G4wEGGkZwyTDt1v");
 
     final var matching = createCache(tempDir, new MintCache() {
@@ -1084,7 +1156,7 @@ final class GlobalConfigCacheTests {
     assertThrows(IllegalStateException.class, () -> mismatched.topPriorityForMintChecked(usdc));
     // the write lock is released even on the throwing path
     assertUnlocked(mismatched);
-    assertEquals("onInvalidDecimals", called.get());
+    awaitTrue("onInvalidDecimals", () -> "onInvalidDecimals".equals(called.get()));
     assertLogged("GlobalConfig decimals for Asset does not match Mint");
     assertNull(mismatched.globalConfig());
   }
@@ -1122,7 +1194,7 @@ final class GlobalConfigCacheTests {
 
     var called = new AtomicReference<String>();
     var result = GlobalConfigCacheImpl.createMapChecked(
-        1L, previous.assetMetaContexts(), cache.assetMetaMap,
+        1L, previous.assetMetaContexts(), cache.assetMetaMap(),
         contexts(config, ageChanged), NULL_MINT_CACHE, Set.of(new TestGlobalConfigListener(called))
     );
     assertNotNull(result, "a changed max age is a valid config");
@@ -1134,7 +1206,7 @@ final class GlobalConfigCacheTests {
     priorityChanged[0] = withPriority(first, first.priority() + 3);
     called = new AtomicReference<>();
     result = GlobalConfigCacheImpl.createMapChecked(
-        1L, previous.assetMetaContexts(), cache.assetMetaMap,
+        1L, previous.assetMetaContexts(), cache.assetMetaMap(),
         contexts(config, priorityChanged), NULL_MINT_CACHE, Set.of(new TestGlobalConfigListener(called))
     );
     assertNotNull(result);
@@ -1149,7 +1221,7 @@ final class GlobalConfigCacheTests {
 
     final var called = new AtomicReference<String>();
     final var result = GlobalConfigCacheImpl.createMapChecked(
-        1L, previous.assetMetaContexts(), cache.assetMetaMap,
+        1L, previous.assetMetaContexts(), cache.assetMetaMap(),
         contexts(config, config.assetMetas()), NULL_MINT_CACHE, Set.of(new TestGlobalConfigListener(called))
     );
     // identical lengths are not a removal, and nothing moved
@@ -1176,7 +1248,7 @@ final class GlobalConfigCacheTests {
 
     final var called = new AtomicReference<String>();
     final var result = GlobalConfigCacheImpl.createMapChecked(
-        1L, contexts(config, previousMetas), cache.assetMetaMap,
+        1L, contexts(config, previousMetas), cache.assetMetaMap(),
         contexts(config, rotated), NULL_MINT_CACHE, Set.of(new TestGlobalConfigListener(called))
     );
     assertNotNull(result);
@@ -1196,7 +1268,7 @@ final class GlobalConfigCacheTests {
 
     final var called = new AtomicReference<String>();
     final var result = GlobalConfigCacheImpl.createMapChecked(
-        1L, contexts(config, fewer), cache.assetMetaMap,
+        1L, contexts(config, fewer), cache.assetMetaMap(),
         contexts(config, metas), NULL_MINT_CACHE, Set.of(new TestGlobalConfigListener(called))
     );
     assertNotNull(result, "adding an oracle is valid");
@@ -1225,7 +1297,7 @@ final class GlobalConfigCacheTests {
     final var called = new AtomicReference<String>();
     assertNotNull(previous);
     final var result = GlobalConfigCacheImpl.createMapChecked(
-        1L, previous.assetMetaContexts(), cache.assetMetaMap,
+        1L, previous.assetMetaContexts(), cache.assetMetaMap(),
         contexts(config, swapped), NULL_MINT_CACHE, Set.of(new TestGlobalConfigListener(called))
     );
     // deliberately flag-and-continue: the swap is logged and notified but the
@@ -1249,7 +1321,7 @@ final class GlobalConfigCacheTests {
 
     final var called = new AtomicReference<String>();
     final var result = GlobalConfigCacheImpl.createMapChecked(
-        1L, contexts(config, metas), cache.assetMetaMap,
+        1L, contexts(config, metas), cache.assetMetaMap(),
         contexts(config, metas), NULL_MINT_CACHE, Set.of(new TestGlobalConfigListener(called))
     );
     assertNull(result);
@@ -1288,7 +1360,7 @@ final class GlobalConfigCacheTests {
     };
     final var called = new AtomicReference<String>();
     final var result = GlobalConfigCacheImpl.createMapChecked(
-        1L, previous.assetMetaContexts(), cache.assetMetaMap,
+        1L, previous.assetMetaContexts(), cache.assetMetaMap(),
         contexts(config, config.assetMetas()), wrongDecimals, Set.of(new TestGlobalConfigListener(called))
     );
     assertNull(result, "the on-chain mint is the authority on decimals");
@@ -1311,7 +1383,7 @@ final class GlobalConfigCacheTests {
 
     final var called = new AtomicReference<String>();
     final var result = GlobalConfigCacheImpl.createMapChecked(
-        1L, previous.assetMetaContexts(), cache.assetMetaMap,
+        1L, previous.assetMetaContexts(), cache.assetMetaMap(),
         contexts(config, metas), NULL_MINT_CACHE, Set.of(new TestGlobalConfigListener(called))
     );
     assertNull(result, "an asset cannot change decimals between configs");
@@ -1341,7 +1413,7 @@ final class GlobalConfigCacheTests {
 
     final var called = new AtomicReference<String>();
     final var result = GlobalConfigCacheImpl.createMapChecked(
-        1L, previous.assetMetaContexts(), cache.assetMetaMap,
+        1L, previous.assetMetaContexts(), cache.assetMetaMap(),
         contexts(config, metas), NULL_MINT_CACHE, Set.of(new TestGlobalConfigListener(called))
     );
     assertNull(result, "one oracle account cannot serve two sources");
@@ -1379,7 +1451,7 @@ final class GlobalConfigCacheTests {
       }
     };
     final var result = GlobalConfigCacheImpl.createMapChecked(
-        1L, previous.assetMetaContexts(), cache.assetMetaMap,
+        1L, previous.assetMetaContexts(), cache.assetMetaMap(),
         contexts(config, config.assetMetas()), agreeing, Set.of()
     );
     assertNotNull(result, "an agreeing mint cache is not a rejection");
@@ -1403,7 +1475,7 @@ final class GlobalConfigCacheTests {
     );
 
     final var result = GlobalConfigCacheImpl.createMapChecked(
-        1L, previous.assetMetaContexts(), cache.assetMetaMap,
+        1L, previous.assetMetaContexts(), cache.assetMetaMap(),
         contexts(config, extended), NULL_MINT_CACHE, Set.of()
     );
     assertNotNull(result);
@@ -1527,10 +1599,25 @@ final class GlobalConfigCacheTests {
       final java.util.concurrent.atomic.AtomicInteger consumerQueues,
       final List<List<PublicKey>> batchQueued,
       final java.util.function.Supplier<systems.glam.services.rpc.AccountResult> resultSupplier) {
+    return scriptedFetcher(consumerQueues, batchQueued, new HashMap<>(), resultSupplier);
+  }
+
+  private static systems.glam.services.rpc.AccountFetcher scriptedFetcher(
+      final java.util.concurrent.atomic.AtomicInteger consumerQueues,
+      final List<List<PublicKey>> batchQueued,
+      final Map<PublicKey, Duration> pollBounds,
+      final java.util.function.Supplier<systems.glam.services.rpc.AccountResult> resultSupplier) {
     return (systems.glam.services.rpc.AccountFetcher) java.lang.reflect.Proxy.newProxyInstance(
         systems.glam.services.rpc.AccountFetcher.class.getClassLoader(),
         new Class<?>[]{systems.glam.services.rpc.AccountFetcher.class},
         (proxy, method, args) -> switch (method.getName()) {
+          case "boundPollInterval" -> {
+            @SuppressWarnings("unchecked") final var keys = (Collection<PublicKey>) args[0];
+            for (final var key : keys) {
+              pollBounds.put(key, (Duration) args[1]);
+            }
+            yield null;
+          }
           case "priorityQueue" -> {
             if (method.getReturnType() == java.util.concurrent.CompletableFuture.class) {
               yield java.util.concurrent.CompletableFuture.completedFuture(resultSupplier.get());
@@ -1555,6 +1642,8 @@ final class GlobalConfigCacheTests {
     final var globalConfigFile = FileUtils.resolveCompressedAccountPath(tempDir, GLOBAL_CONFIG_KEY);
     try {
       FileUtils.writeCompressedAccountData(tempDir, GLOBAL_CONFIG_KEY, globalConfigData);
+      // start from the fixture, not from what an earlier cache in the directory journaled
+      Files.deleteIfExists(GlobalConfigJournal.resolveJournalPath(globalConfigFile));
     } catch (final IOException e) {
       throw new UncheckedIOException(e);
     }
@@ -1592,12 +1681,15 @@ final class GlobalConfigCacheTests {
   @Test
   void theRunLoopRefetchesOnTheDelayAndStopsWhenInvalidated(@TempDir final Path tempDir) throws Exception {
     final var consumerQueues = new java.util.concurrent.atomic.AtomicInteger();
-    final var fetcher = scriptedFetcher(consumerQueues, new ArrayList<>(), () -> null);
+    final var pollBounds = new java.util.concurrent.ConcurrentHashMap<PublicKey, Duration>();
+    final var fetcher = scriptedFetcher(consumerQueues, new ArrayList<>(), pollBounds, () -> null);
     final var cache = createCache(tempDir, NULL_MINT_CACHE, fetcher, Duration.ofMillis(40));
 
     final var runner = new Thread(cache::run);
     runner.start();
     awaitTrue("the poll loop refetches after the delay", () -> consumerQueues.get() >= 2);
+    // the fetcher may not back the config off past the loop's own delay
+    assertEquals(Map.of(GLOBAL_CONFIG_KEY, Duration.ofMillis(40)), pollBounds);
 
     // an invalid replacement empties the cache; the loop must notice and exit
     final var globalConfig = GlobalConfig.read(globalConfigData, 0);
@@ -1863,6 +1955,8 @@ final class GlobalConfigCacheTests {
     final var globalConfigFile = FileUtils.resolveCompressedAccountPath(tempDir, GLOBAL_CONFIG_KEY);
     try {
       FileUtils.writeCompressedAccountData(tempDir, GLOBAL_CONFIG_KEY, globalConfigData);
+      // start from the fixture, not from what an earlier cache in the directory journaled
+      Files.deleteIfExists(GlobalConfigJournal.resolveJournalPath(globalConfigFile));
     } catch (final IOException e) {
       throw new UncheckedIOException(e);
     }
@@ -1896,12 +1990,316 @@ final class GlobalConfigCacheTests {
   }
 
   @Test
-  void aFailedConfigPersistIsLoggedNotFatal(@TempDir final Path tempDir) throws IOException {
-    // the target path is an occupied directory: the write fails, the cache lives
-    final var blocked = tempDir.resolve("config.dat.gz");
-    Files.createDirectories(blocked.resolve("occupant"));
-    GlobalConfigCacheImpl.persistGlobalConfig(blocked, new byte[]{1, 2, 3});
-    assertLogged("Failed to write GlobalConfig to file");
-    assertTrue(Files.isDirectory(blocked));
+  void aFailedJournalAppendIsLoggedNotFatal(@TempDir final Path tempDir) {
+    final var cache = createCache(tempDir);
+    // a closed journal fails every append: the update must still be served
+    cache.journal.close();
+    final var globalConfig = GlobalConfig.read(globalConfigData, 0);
+    final byte[] changed = new GlobalConfig(
+        globalConfig._address(), globalConfig.discriminator(),
+        globalConfig.admin(), globalConfig.feeAuthority(), globalConfig.referrer(),
+        globalConfig.baseFeeBps() + 1, globalConfig.flowFeeBps(),
+        globalConfig.assetMetas()
+    ).write();
+    final long newSlot = cache.globalConfigUpdate().slot() + 1;
+    cache.accept(accountInfo(newSlot, GlamAccounts.MAIN_NET.configProgram(), changed));
+    assertLogged("Failed to journal GlobalConfig update");
+    assertEquals(newSlot, cache.globalConfigUpdate().slot());
+    assertEquals(0L, cache.journal.latest().slot());
+    assertUnlocked(cache);
+  }
+
+  @Test
+  void closeForcesAndClosesTheJournal(@TempDir final Path tempDir) {
+    final var cache = createCache(tempDir);
+    final var journaled = cache.journal.latest();
+    cache.close();
+    // closing twice is harmless
+    cache.close();
+
+    final var globalConfig = GlobalConfig.read(globalConfigData, 0);
+    final byte[] changed = new GlobalConfig(
+        globalConfig._address(), globalConfig.discriminator(),
+        globalConfig.admin(), globalConfig.feeAuthority(), globalConfig.referrer(),
+        globalConfig.baseFeeBps() + 1, globalConfig.flowFeeBps(),
+        globalConfig.assetMetas()
+    ).write();
+    final long newSlot = cache.globalConfigUpdate().slot() + 1;
+    cache.accept(accountInfo(newSlot, GlamAccounts.MAIN_NET.configProgram(), changed));
+    // still served, no longer kept
+    assertLogged("Failed to journal GlobalConfig update");
+    assertEquals(newSlot, cache.globalConfigUpdate().slot());
+
+    final var reopened = GlobalConfigJournal.openJournal(cache.journal.filePath());
+    assertEquals(journaled.slot(), reopened.latest().slot());
+    assertArrayEquals(journaled.data(), reopened.latest().data());
+    reopened.close();
+  }
+
+  @Test
+  void aFailedInitClosesTheJournal(@TempDir final Path tempDir) throws IOException {
+    final var fdDirectory = Path.of("/proc/self/fd");
+    org.junit.jupiter.api.Assumptions.assumeTrue(Files.isDirectory(fdDirectory), "needs /proc to list open files");
+    final var globalConfigFile = FileUtils.resolveCompressedAccountPath(tempDir.resolve("fresh"), GLOBAL_CONFIG_KEY);
+    final var journalPath = GlobalConfigJournal.resolveJournalPath(globalConfigFile);
+    // fails after the fetched config was journaled
+    final var failingFetcher = (systems.glam.services.rpc.AccountFetcher) java.lang.reflect.Proxy.newProxyInstance(
+        systems.glam.services.rpc.AccountFetcher.class.getClassLoader(),
+        new Class<?>[]{systems.glam.services.rpc.AccountFetcher.class},
+        (proxy, method, args) -> {
+          throw new UnsupportedOperationException(method.getName());
+        }
+    );
+    final var cacheFuture = GlobalConfigCache.initCache(
+        globalConfigFile,
+        GlamAccounts.MAIN_NET.configProgram(),
+        GLOBAL_CONFIG_KEY,
+        SolanaAccounts.MAIN_NET,
+        NULL_MINT_CACHE,
+        rpcCaller(accountInfo(7L, GlamAccounts.MAIN_NET.configProgram(), globalConfigData)),
+        failingFetcher,
+        Duration.ofSeconds(1)
+    );
+    final var failure = assertThrows(java.util.concurrent.CompletionException.class, cacheFuture::join);
+    assertInstanceOf(UnsupportedOperationException.class, failure.getCause());
+
+    assertTrue(Files.exists(journalPath));
+    final var journalFile = journalPath.toRealPath();
+    try (final var openFiles = Files.list(fdDirectory)) {
+      final var leaked = openFiles.filter(fd -> {
+        try {
+          return Files.readSymbolicLink(fd).equals(journalFile);
+        } catch (final IOException | UnsupportedOperationException e) {
+          // the listing's own descriptor may be gone by now
+          return false;
+        }
+      }).toList();
+      assertEquals(List.of(), leaked);
+    }
+  }
+
+  private static byte[] configData(final GlobalConfig config, final AssetMeta[] metas) {
+    return new GlobalConfig(
+        config._address(), config.discriminator(), config.admin(), config.feeAuthority(),
+        config.referrer(), config.baseFeeBps(), config.flowFeeBps(), metas
+    ).write();
+  }
+
+  private static void assertEntries(final AssetMetaContext[] expected, final AssetMetaContext[] actual) {
+    assertEquals(expected.length, actual.length);
+    for (int i = 0; i < expected.length; ++i) {
+      assertEquals(expected[i].toJson(), actual[i].toJson());
+    }
+  }
+
+  @Test
+  void changedAssetMetasComparesEntriesInPlace() {
+    final var config = GlobalConfig.read(globalConfigData, 0);
+    final var metas = config.assetMetas();
+    assertTrue(metas.length > 2);
+
+    // a fee change touches no entry
+    final byte[] feeChanged = new GlobalConfig(
+        config._address(), config.discriminator(), config.admin(), config.feeAuthority(),
+        config.referrer(), config.baseFeeBps(), config.flowFeeBps() + 1, metas
+    ).write();
+    assertArrayEquals(new int[0], GlobalConfigCacheImpl.changedAssetMetas(globalConfigData, feeChanged));
+
+    final var changed = Arrays.copyOf(metas, metas.length);
+    changed[0] = withPriority(metas[0], metas[0].priority() + 1);
+    final var last = metas[metas.length - 1];
+    changed[metas.length - 1] = new AssetMeta(last.asset(), last.decimals(), last.oracle(), last.oracleSource(),
+        last.maxAgeSeconds() + 1, last.priority(), last.padding()
+    );
+    assertArrayEquals(
+        new int[]{0, metas.length - 1},
+        GlobalConfigCacheImpl.changedAssetMetas(globalConfigData, configData(config, changed))
+    );
+
+    // an added or removed entry shifts the account, so nothing lines up
+    final var added = Arrays.copyOf(metas, metas.length + 1);
+    added[metas.length] = metas[0];
+    assertNull(GlobalConfigCacheImpl.changedAssetMetas(globalConfigData, configData(config, added)));
+    final var removed = Arrays.copyOf(metas, metas.length - 1);
+    assertNull(GlobalConfigCacheImpl.changedAssetMetas(globalConfigData, configData(config, removed)));
+  }
+
+  @Test
+  void anIncrementalUpdateMatchesTheFullValidation(@TempDir final Path tempDir) {
+    final var cache = createCache(tempDir);
+    final var previous = cache.globalConfigUpdate();
+    final var config = GlobalConfig.read(previous.data(), 0);
+    final var metas = config.assetMetas();
+
+    final var changed = Arrays.copyOf(metas, metas.length);
+    changed[0] = withPriority(metas[0], metas[0].priority() + 3);
+    // an entry moved over to another asset, with an oracle of its own
+    final var target = metas[2];
+    final byte[] oracle = new byte[PublicKey.PUBLIC_KEY_LENGTH];
+    new Random(16).nextBytes(oracle);
+    changed[1] = new AssetMeta(target.asset(), target.decimals(), PublicKey.createPubKey(oracle),
+        target.oracleSource(), target.maxAgeSeconds(), target.priority() + 1, target.padding()
+    );
+    final byte[] data = configData(config, changed);
+    final var previousEntries = cache.assetMetaMap().get(metas[1].asset());
+    final var previousOrder = previousEntries.clone();
+    final int[] changedIndexes = GlobalConfigCacheImpl.changedAssetMetas(previous.data(), data);
+    assertArrayEquals(new int[]{0, 1}, changedIndexes);
+
+    final var contexts = contexts(config, changed);
+    final var expected = GlobalConfigCacheImpl.createMapChecked(
+        1L, previous.assetMetaContexts(), cache.assetMetaMap(), contexts, NULL_MINT_CACHE, Set.of()
+    );
+    final var incremental = GlobalConfigCacheImpl.updateMapChecked(
+        1L, previous.assetMetaContexts(), cache.assetMetaMap(), contexts, changedIndexes, NULL_MINT_CACHE, Set.of()
+    );
+    assertNotNull(expected);
+    assertNotNull(incremental);
+    assertEquals(expected.keySet(), incremental.keySet());
+    expected.forEach((mint, entries) -> assertEntries(entries, incremental.get(mint)));
+    // the previous snapshot's entries are regrouped into new arrays, never sorted in place
+    assertArrayEquals(previousOrder, previousEntries);
+
+    // and accept takes the same path
+    cache.accept(accountInfo(previous.slot() + 1, GlamAccounts.MAIN_NET.configProgram(), data));
+    final var after = cache.globalConfigUpdate();
+    assertEquals(previous.slot() + 1, after.slot());
+    assertEntries(contexts, after.assetMetaContexts());
+    assertEquals(expected.keySet(), cache.assetMetaMap().keySet());
+    assertSame(cache.assetMetaMap().get(target.asset())[0], cache.topPriorityForMint(target.asset()));
+    assertUnlocked(cache);
+  }
+
+  @Test
+  void anIncrementalUpdateStillRejectsADuplicateOracle(@TempDir final Path tempDir) {
+    final var cache = createCache(tempDir);
+    final var previous = cache.globalConfigUpdate();
+    final var config = GlobalConfig.read(previous.data(), 0);
+    final var metas = config.assetMetas();
+
+    // the changed entry only clashes with an unchanged one
+    final var changed = Arrays.copyOf(metas, metas.length);
+    changed[1] = metas[2];
+    final var called = new AtomicReference<String>();
+    final var result = GlobalConfigCacheImpl.updateMapChecked(
+        1L, previous.assetMetaContexts(), cache.assetMetaMap(), contexts(config, changed), new int[]{1},
+        NULL_MINT_CACHE, Set.of(new TestGlobalConfigListener(called))
+    );
+    assertNull(result);
+    assertEquals("onDuplicateOracleForAsset", called.get());
+    assertLogged("Duplicate Oracle For Asset");
+  }
+
+  @Test
+  void aHeaderOnlyChangeKeepsTheAssetMetas(@TempDir final Path tempDir) {
+    final var cache = createCache(tempDir);
+    final var before = cache.globalConfigUpdate();
+    final var assetMetaMap = cache.assetMetaMap();
+    final var config = GlobalConfig.read(before.data(), 0);
+    final byte[] changed = new GlobalConfig(
+        config._address(), config.discriminator(), config.admin(), config.feeAuthority(),
+        config.referrer(), config.baseFeeBps() + 1, config.flowFeeBps(), config.assetMetas()
+    ).write();
+
+    cache.accept(accountInfo(before.slot() + 1, GlamAccounts.MAIN_NET.configProgram(), changed));
+
+    final var after = cache.globalConfigUpdate();
+    assertEquals(before.slot() + 1, after.slot());
+    assertArrayEquals(changed, after.data());
+    assertSame(before.assetMetaContexts(), after.assetMetaContexts());
+    assertSame(assetMetaMap, cache.assetMetaMap());
+    assertNotNull(cache.topPriorityForMint(SolanaAccounts.MAIN_NET.wrappedSolTokenMint()));
+  }
+
+  @Test
+  void everyEntryIsFoundByItsOracle(@TempDir final Path tempDir) {
+    final var cache = createCache(tempDir);
+    final var contexts = cache.globalConfigUpdate().assetMetaContexts();
+    for (final var assetMeta : contexts) {
+      final var entries = cache.assetMetasForOracle(assetMeta.oracle());
+      assertNotNull(entries, assetMeta.toJson());
+      assertTrue(Arrays.asList(entries).contains(assetMeta), assetMeta.toJson());
+      for (int i = 1; i < entries.length; ++i) {
+        assertTrue(entries[i - 1].index() < entries[i].index());
+      }
+    }
+    assertNull(cache.assetMetasForOracle(PublicKey.NONE));
+
+    // a re-pointed entry moves over to its new oracle
+    final var config = GlobalConfig.read(globalConfigData, 0);
+    final var metas = Arrays.copyOf(config.assetMetas(), config.assetMetas().length);
+    final var first = metas[0];
+    final byte[] oracle = new byte[PublicKey.PUBLIC_KEY_LENGTH];
+    new Random(18).nextBytes(oracle);
+    final var newOracle = PublicKey.createPubKey(oracle);
+    metas[0] = new AssetMeta(first.asset(), first.decimals(), newOracle, first.oracleSource(),
+        first.maxAgeSeconds(), first.priority(), first.padding()
+    );
+    cache.accept(accountInfo(cache.globalConfigUpdate().slot() + 1, GlamAccounts.MAIN_NET.configProgram(),
+        configData(config, metas)
+    ));
+    final var moved = cache.assetMetasForOracle(newOracle);
+    assertNotNull(moved);
+    assertEquals(1, moved.length);
+    assertEquals(0, moved[0].index());
+    final var previousOracleEntries = cache.assetMetasForOracle(first.oracle());
+    if (previousOracleEntries != null) {
+      for (final var entry : previousOracleEntries) {
+        assertNotEquals(0, entry.index());
+      }
+    }
+  }
+
+  @Test
+  void topPriorityForMintsCheckedResolvesABatchAgainstOneConfig(@TempDir final Path tempDir) throws InterruptedException {
+    final var usdc = PublicKey.fromBase58Encoded("EPjFWdd5AufqSSqeM2qN1xzybapC8G4wEGGkZwyTDt1v");
+    final var wSol = SolanaAccounts.MAIN_NET.wrappedSolTokenMint();
+    final var usdcDecimals = new int[]{6};
+    final var cache = createCache(tempDir, new MintCache() {
+          @Override
+          public MintContext get(final PublicKey mintPubkey) {
+            if (mintPubkey.equals(usdc)) {
+              return MintContext.createContext(SolanaAccounts.MAIN_NET, usdc, usdcDecimals[0], 0);
+            } else if (mintPubkey.equals(PublicKey.NONE)) {
+              return MintContext.createContext(SolanaAccounts.MAIN_NET, PublicKey.NONE, 6, 0);
+            } else {
+              return null;
+            }
+          }
+
+          @Override
+          public MintContext setGet(final MintContext mintContext) {
+            return mintContext;
+          }
+
+          @Override
+          public MintContext delete(final PublicKey mintPubkey) {
+            return null;
+          }
+
+          @Override
+          public void close() {
+          }
+        }
+    );
+    // wSOL has an entry but no cached mint; NONE is cached but has no entry
+    final var mints = new PublicKey[]{usdc, wSol, PublicKey.NONE, usdc};
+    final var assetMetas = cache.topPriorityForMintsChecked(mints);
+    assertEquals(mints.length, assetMetas.length);
+    assertSame(cache.topPriorityForMintChecked(usdc), assetMetas[0]);
+    assertNull(assetMetas[1]);
+    assertNull(assetMetas[2]);
+    assertSame(assetMetas[0], assetMetas[3]);
+    assertNotNull(cache.globalConfig());
+
+    final var called = new AtomicReference<String>();
+    cache.subscribe(new TestGlobalConfigListener(called));
+    usdcDecimals[0] = 9;
+    assertThrows(IllegalStateException.class, () -> cache.topPriorityForMintsChecked(mints));
+    assertNull(cache.globalConfig());
+    awaitTrue("onInvalidDecimals", () -> "onInvalidDecimals".equals(called.get()));
+    assertLogged("GlobalConfig decimals for Asset does not match Mint");
+    // an invalidated config resolves nothing
+    assertArrayEquals(new AssetMetaContext[mints.length], cache.topPriorityForMintsChecked(mints));
   }
 }
@@ -0,0 +1,193 @@
+package systems.glam.services.state;
+
+import org.junit.jupiter.api.Test;
+import software.sava.core.accounts.PublicKey;
+import systems.glam.sdk.idl.programs.glam.config.gen.types.AssetMeta;
+import systems.glam.sdk.idl.programs.glam.config.gen.types.OracleSource;
+import systems.glam.services.mints.AssetMetaContext;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+final class GlobalConfigEventBusTests {
+
+  private static final AssetMetaContext[] NO_METAS = new AssetMetaContext[0];
+
+  private static AssetMetaContext meta(final int index, final int maxAgeSeconds) {
+    final byte[] key = new byte[PublicKey.PUBLIC_KEY_LENGTH];
+    key[0] = (byte) index;
+    final var asset = PublicKey.createPubKey(key);
+    return AssetMetaContext.create(index, new AssetMeta(
+        asset, 6, asset, OracleSource.PythPull, maxAgeSeconds, 1, new byte[AssetMeta.PADDING_LEN]
+    ));
+  }
+
+  private static void awaitTrue(final String what, final BooleanSupplier condition) throws InterruptedException {
+    final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+    while (!condition.getAsBoolean()) {
+      assertTrue(System.nanoTime() < deadline, what);
+      //noinspection BusyWait
+      Thread.sleep(1L);
+    }
+  }
+
+  /// Records what it hears, and holds up its first delivery until released.
+  private static final class RecordingListener implements GlobalConfigListener {
+
+    private final List<String> heard = new CopyOnWriteArrayList<>();
+    private final CountDownLatch entered = new CountDownLatch(1);
+    private final CountDownLatch release;
+
+    private RecordingListener(final boolean blockFirst) {
+      this.release = new CountDownLatch(blockFirst ? 1 : 0);
+    }
+
+    private void hear(final String event) {
+      heard.add(event);
+      entered.countDown();
+      try {
+        release.await();
+      } catch (final InterruptedException e) {
+        throw new RuntimeException(e);
+      }
+    }
+
+    @Override
+    public void onAssetMetaAdded(final long slot,
+                                 final AssetMetaContext[] previous,
+                                 final AssetMetaContext[] latest) {
+      hear("added@" + slot);
+    }
+
+    @Override
+    public void onInvalidOracleSource(final long slot, final AssetMetaContext assetMeta) {
+      hear("invalid@" + slot);
+    }
+
+    @Override
+    public void onOracleConfigurationChange(final long slot,
+                                            final AssetMetaContext previous,
+                                            final AssetMetaContext latest,
+                                            final AssetMetaContext[] assetMetaContexts) {
+      hear(String.format("config@%d[%d]:%d->%d",
+          slot, latest.index(), previous.maxAgeSeconds(), latest.maxAgeSeconds()
+      ));
+    }
+  }
+
+  @Test
+  void aSlowListenerHoldsUpNoOneButItself() throws InterruptedException {
+    final var bus = new GlobalConfigEventBus();
+    final var slow = new RecordingListener(true);
+    final var fast = new RecordingListener(false);
+    bus.subscribe(slow);
+    bus.subscribe(fast);
+
+    bus.onAssetMetaAdded(1, NO_METAS, NO_METAS);
+    bus.onAssetMetaAdded(2, NO_METAS, NO_METAS);
+    awaitTrue("fast listener", () -> fast.heard.size() == 2);
+    assertEquals(List.of("added@1", "added@2"), fast.heard);
+    assertEquals(List.of("added@1"), slow.heard);
+
+    slow.release.countDown();
+    awaitTrue("slow listener", () -> slow.heard.size() == 2);
+    assertEquals(List.of("added@1", "added@2"), slow.heard);
+  }
+
+  @Test
+  void eachListenerHearsEventsInPublishOrder() throws InterruptedException {
+    final var bus = new GlobalConfigEventBus();
+    final var listener = new RecordingListener(false);
+    bus.subscribe(listener);
+    for (int slot = 0; slot < 500; ++slot) {
+      bus.onInvalidOracleSource(slot, meta(0, 60));
+    }
+    awaitTrue("all events", () -> bus.delivered() == 500);
+    for (int slot = 0; slot < 500; ++slot) {
+      assertEquals("invalid@" + slot, listener.heard.get(slot));
+    }
+    assertEquals(0, bus.coalesced());
+    assertEquals(0, bus.dropped());
+  }
+
+  @Test
+  void aListenerThatIsBehindHearsConsecutiveChangesToAnIndexAsOne() throws InterruptedException {
+    final var bus = new GlobalConfigEventBus();
+    final var listener = new RecordingListener(true);
+    bus.subscribe(listener);
+    bus.onAssetMetaAdded(1, NO_METAS, NO_METAS);
+    assertTrue(listener.entered.await(2, TimeUnit.SECONDS));
+
+    bus.onOracleConfigurationChange(2, meta(3, 10), meta(3, 20), NO_METAS);
+    bus.onOracleConfigurationChange(3, meta(3, 20), meta(3, 30), NO_METAS);
+    bus.onOracleConfigurationChange(4, meta(3, 30), meta(3, 40), NO_METAS);
+    bus.onOracleConfigurationChange(5, meta(4, 10), meta(4, 15), NO_METAS);
+    // no longer consecutive with the first run for index 3
+    bus.onOracleConfigurationChange(6, meta(3, 40), meta(3, 50), NO_METAS);
+    listener.release.countDown();
+
+    awaitTrue("coalesced events", () -> bus.delivered() == 4);
+    assertEquals(
+        List.of("added@1", "config@4[3]:10->40", "config@5[4]:10->15", "config@6[3]:40->50"),
+        listener.heard
+    );
+    assertEquals(2, bus.coalesced());
+  }
+
+  @Test
+  void aFullQueueDropsItsOldestEvents() throws InterruptedException {
+    final var bus = new GlobalConfigEventBus(4);
+    final var listener = new RecordingListener(true);
+    bus.subscribe(listener);
+    bus.onInvalidOracleSource(0, meta(0, 60));
+    assertTrue(listener.entered.await(2, TimeUnit.SECONDS));
+
+    for (int slot = 1; slot <= 10; ++slot) {
+      bus.onInvalidOracleSource(slot, meta(0, 60));
+    }
+    Thread.sleep(20);
+    listener.release.countDown();
+
+    awaitTrue("remaining events", () -> bus.delivered() == 5);
+    assertEquals(List.of("invalid@0", "invalid@7", "invalid@8", "invalid@9", "invalid@10"), listener.heard);
+    assertEquals(6, bus.dropped());
+    // the survivors waited out the hold-up
+    assertTrue(bus.maxDeliveryLag().compareTo(Duration.ofMillis(20)) >= 0, bus.maxDeliveryLag().toString());
+  }
+
+  @Test
+  void aFailingListenerKeepsHearingAndAnUnsubscribedOneStops() throws InterruptedException {
+    final var bus = new GlobalConfigEventBus();
+    final var heard = new CopyOnWriteArrayList<Long>();
+    final var failing = new GlobalConfigListener() {
+      @Override
+      public void onInvalidOracleSource(final long slot, final AssetMetaContext assetMeta) {
+        heard.add(slot);
+        if (slot == 1) {
+          throw new IllegalStateException("listener bug");
+        }
+      }
+    };
+    bus.subscribe(failing);
+    bus.onInvalidOracleSource(1, meta(0, 60));
+    bus.onInvalidOracleSource(2, meta(0, 60));
+    awaitTrue("both events", () -> heard.size() == 2);
+    assertEquals(List.of(1L, 2L), heard);
+
+    bus.unsubscribe(failing);
+    bus.onInvalidOracleSource(3, meta(0, 60));
+    Thread.sleep(20);
+    assertEquals(List.of(1L, 2L), heard);
+  }
+
+  @Test
+  void aQueueNeedsCapacity() {
+    assertThrows(IllegalArgumentException.class, () -> new GlobalConfigEventBus(0));
+  }
+}
@@ -0,0 +1,308 @@
+package systems.glam.services.state;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+final class GlobalConfigJournalTests {
+
+  private static byte[] data(final int length, final int seed) {
+    final byte[] data = new byte[length];
+    for (int i = 0; i < length; ++i) {
+      data[i] = (byte) (i * 31 + seed);
+    }
+    return data;
+  }
+
+  @Test
+  void theJournalSitsBesideTheCompressedAccount() {
+    final var accountFile = Path.of("/tmp", "glam", "key.dat.gz");
+    assertEquals(Path.of("/tmp", "glam", "key.journal"), GlobalConfigJournal.resolveJournalPath(accountFile));
+  }
+
+  @Test
+  void changedRangesMergeShortGaps() {
+    final byte[] previous = new byte[64];
+    final byte[] data = previous.clone();
+    data[3] = 1;
+    data[5] = 1;
+    data[40] = 1;
+    data[41] = 1;
+    data[63] = 1;
+    assertArrayEquals(
+        new int[]{3, 3, 40, 2, 63, 1},
+        GlobalConfigJournalImpl.changedRanges(previous, data)
+    );
+    assertArrayEquals(new int[0], GlobalConfigJournalImpl.changedRanges(previous, previous.clone()));
+  }
+
+  @Test
+  void smallChangesAreDeltasUntilACheckpointIsDue(@TempDir final Path tempDir) {
+    final var journalPath = tempDir.resolve("config.journal");
+    byte[] data = data(1_024, 0);
+    try (final var journal = GlobalConfigJournal.openJournal(journalPath, 3)) {
+      assertNull(journal.latest());
+      journal.append(10, data);
+      for (int slot = 11; slot <= 14; ++slot) {
+        data = data.clone();
+        data[slot * 7] ^= 1;
+        journal.append(slot, data);
+      }
+      // identical data is not recorded
+      journal.append(15, data);
+      assertEquals(14, journal.latest().slot());
+      // a size change always starts from a checkpoint
+      journal.append(16, Arrays.copyOf(data, 900));
+    }
+
+    final var history = GlobalConfigJournal.readHistory(journalPath);
+    assertEquals(6, history.size());
+    final boolean[] checkpoints = new boolean[history.size()];
+    for (int i = 0; i < checkpoints.length; ++i) {
+      checkpoints[i] = history.get(i).checkpoint();
+    }
+    assertArrayEquals(new boolean[]{true, false, false, true, false, true}, checkpoints);
+
+    final var delta = history.get(1);
+    assertEquals(11, delta.slot());
+    assertArrayEquals(new int[]{77, 1}, delta.changedRanges());
+    assertTrue(delta.changed(70, 8));
+    assertFalse(delta.changed(78, 8));
+    assertArrayEquals(data, history.get(4).data());
+    assertEquals(900, history.getLast().data().length);
+  }
+
+  @Test
+  void aLargeChangeIsWrittenAsACheckpoint(@TempDir final Path tempDir) {
+    final var journalPath = tempDir.resolve("config.journal");
+    try (final var journal = GlobalConfigJournal.openJournal(journalPath)) {
+      journal.append(1, data(256, 0));
+      journal.append(2, data(256, 1));
+      assertTrue(journal.latest().checkpoint());
+    }
+  }
+
+  @Test
+  void reopeningDiscardsATornTail(@TempDir final Path tempDir) throws IOException {
+    final var journalPath = tempDir.resolve("config.journal");
+    final byte[] first = data(512, 0);
+    final byte[] second = first.clone();
+    second[100] ^= 1;
+    try (final var journal = GlobalConfigJournal.openJournal(journalPath)) {
+      journal.append(5, first);
+      journal.append(6, second);
+    }
+    final long intactLength = Files.size(journalPath);
+    // a crash part way through the next record
+    final byte[] third = second.clone();
+    third[200] ^= 1;
+    final byte[] record;
+    try (final var journal = GlobalConfigJournal.openJournal(tempDir.resolve("scratch.journal"))) {
+      journal.append(7, third);
+      record = Files.readAllBytes(journal.filePath());
+    }
+    Files.write(journalPath, Arrays.copyOf(record, record.length / 2), StandardOpenOption.APPEND);
+
+    // the torn record is not history, but reading leaves the file be
+    assertEquals(2, GlobalConfigJournal.readHistory(journalPath).size());
+    assertTrue(Files.size(journalPath) > intactLength);
+
+    try (final var journal = GlobalConfigJournal.openJournal(journalPath)) {
+      assertEquals(intactLength, Files.size(journalPath));
+      assertEquals(6, journal.latest().slot());
+      assertArrayEquals(second, journal.latest().data());
+      journal.append(7, third);
+    }
+    final var history = GlobalConfigJournal.readHistory(journalPath);
+    assertEquals(3, history.size());
+    assertFalse(history.getLast().checkpoint());
+    assertArrayEquals(third, history.getLast().data());
+  }
+
+  @Test
+  void aCorruptRecordEndsTheHistory(@TempDir final Path tempDir) throws IOException {
+    final var journalPath = tempDir.resolve("config.journal");
+    final byte[] first = data(512, 0);
+    final byte[] second = first.clone();
+    second[100] ^= 1;
+    try (final var journal = GlobalConfigJournal.openJournal(journalPath)) {
+      journal.append(5, first);
+      journal.append(6, second);
+    }
+    final byte[] journal = Files.readAllBytes(journalPath);
+    // flip a byte of the delta, which its checksum must catch
+    journal[journal.length - 1] ^= 1;
+    Files.write(journalPath, journal);
+
+    final var history = GlobalConfigJournal.readHistory(journalPath);
+    assertEquals(1, history.size());
+    assertArrayEquals(first, history.getFirst().data());
+  }
+
+  @Test
+  void reopeningReplaysFromTheLastIndexedCheckpoint(@TempDir final Path tempDir) throws IOException {
+    final var journalPath = tempDir.resolve("config.journal");
+    byte[] data = data(512, 0);
+    try (final var journal = GlobalConfigJournal.openJournal(journalPath, 3)) {
+      journal.append(10, data);
+      for (int slot = 11; slot <= 14; ++slot) {
+        data = data.clone();
+        data[slot * 7] ^= 1;
+        journal.append(slot, data);
+      }
+      assertFalse(journal.latest().checkpoint());
+    }
+    // the checkpoint at slot 13; the one at the start of the file needs none
+    final var indexPath = GlobalConfigJournalImpl.indexPath(journalPath);
+    assertEquals(GlobalConfigJournalImpl.INDEX_ENTRY_LENGTH, Files.size(indexPath));
+
+    // spoil the first checkpoint: only a replay from the start would read it
+    final byte[] journal = Files.readAllBytes(journalPath);
+    journal[100] ^= 1;
+    Files.write(journalPath, journal);
+    assertTrue(GlobalConfigJournal.readHistory(journalPath).isEmpty());
+
+    try (final var reopened = GlobalConfigJournal.openJournal(journalPath, 3)) {
+      assertEquals(journal.length, Files.size(journalPath));
+      assertEquals(14, reopened.latest().slot());
+      assertArrayEquals(data, reopened.latest().data());
+      // and the count since that checkpoint carries on from the replay
+      data = data.clone();
+      data[1] ^= 1;
+      reopened.append(15, data);
+      assertFalse(reopened.latest().checkpoint());
+      data = data.clone();
+      data[2] ^= 1;
+      reopened.append(16, data);
+      assertTrue(reopened.latest().checkpoint());
+    }
+  }
+
+  @Test
+  void aBadIndexFallsBackToTheStart(@TempDir final Path tempDir) throws IOException {
+    final var journalPath = tempDir.resolve("config.journal");
+    byte[] data = data(512, 0);
+    try (final var journal = GlobalConfigJournal.openJournal(journalPath, 2)) {
+      for (int slot = 1; slot <= 5; ++slot) {
+        data = data.clone();
+        data[slot] ^= 1;
+        journal.append(slot, data);
+      }
+    }
+    final var indexPath = GlobalConfigJournalImpl.indexPath(journalPath);
+    final byte[] index = Files.readAllBytes(indexPath);
+    assertEquals(2 * GlobalConfigJournalImpl.INDEX_ENTRY_LENGTH, index.length);
+    // an intact entry pointing into the middle of a record, then a torn one
+    final long lastCheckpoint = ByteBuffer.wrap(index).order(ByteOrder.LITTLE_ENDIAN)
+        .getLong(GlobalConfigJournalImpl.INDEX_ENTRY_LENGTH);
+    final var entry = ByteBuffer.allocate(GlobalConfigJournalImpl.INDEX_ENTRY_LENGTH + 5)
+        .order(ByteOrder.LITTLE_ENDIAN)
+        .putLong(0, lastCheckpoint + 1);
+    final var crc = new CRC32C();
+    crc.update(entry.array(), 0, Long.BYTES);
+    entry.putInt(Long.BYTES, (int) crc.getValue());
+    Files.write(indexPath, entry.array(), StandardOpenOption.APPEND);
+
+    try (final var journal = GlobalConfigJournal.openJournal(journalPath, 2)) {
+      assertEquals(5, journal.latest().slot());
+      assertArrayEquals(data, journal.latest().data());
+      // entries past the one it replayed from are dropped
+      assertArrayEquals(index, Files.readAllBytes(indexPath));
+    }
+
+    // with no entry to trust, it replays from the start
+    Files.write(indexPath, data(GlobalConfigJournalImpl.INDEX_ENTRY_LENGTH, 7));
+    try (final var journal = GlobalConfigJournal.openJournal(journalPath, 2)) {
+      assertEquals(5, journal.latest().slot());
+      assertArrayEquals(data, journal.latest().data());
+      assertEquals(0, Files.size(indexPath));
+    }
+  }
+
+  @Test
+  void aFullJournalRollsOverToAFreshCheckpoint(@TempDir final Path tempDir) throws IOException {
+    final var journalPath = tempDir.resolve("config.journal");
+    final long maxJournalBytes = 2_000;
+    byte[] data = data(1_024, 0);
+    try (final var journal = GlobalConfigJournal.openJournal(journalPath, 64, maxJournalBytes)) {
+      for (int slot = 1; slot <= 100; ++slot) {
+        data = data.clone();
+        data[slot] ^= 1;
+        journal.append(slot, data);
+        assertTrue(Files.size(journalPath) < maxJournalBytes + data.length,
+            "the journal grew past its bound by more than a checkpoint");
+      }
+    }
+
+    final var rolled = GlobalConfigJournal.rolledJournalPaths(journalPath);
+    assertFalse(rolled.isEmpty());
+    final var history = new java.util.ArrayList<GlobalConfigJournal.Change>();
+    for (final var rolledPath : rolled) {
+      history.addAll(GlobalConfigJournal.readHistory(rolledPath));
+      // named for the slot the next file starts from
+      final var fileName = rolledPath.getFileName().toString();
+      final long nextSlot = Long.parseLong(fileName.substring(fileName.lastIndexOf('.') + 1));
+      assertEquals(nextSlot, history.getLast().slot() + 1);
+    }
+    final var current = GlobalConfigJournal.readHistory(journalPath);
+    assertTrue(current.getFirst().checkpoint());
+    history.addAll(current);
+    assertEquals(100, history.size());
+    for (int i = 0; i < history.size(); ++i) {
+      assertEquals(i + 1, history.get(i).slot());
+    }
+    assertArrayEquals(data, history.getLast().data());
+
+    try (final var journal = GlobalConfigJournal.openJournal(journalPath, 64, maxJournalBytes)) {
+      assertEquals(100, journal.latest().slot());
+      assertArrayEquals(data, journal.latest().data());
+    }
+  }
+
+  @Test
+  void aRollCutShortIsFinishedOnOpen(@TempDir final Path tempDir) throws IOException {
+    final var journalPath = tempDir.resolve("config.journal");
+    final byte[] data = data(256, 0);
+    try (final var journal = GlobalConfigJournal.openJournal(journalPath)) {
+      journal.append(9, data);
+    }
+    // the fresh journal was written, the full one moved aside, and then a crash
+    final var rollingPath = GlobalConfigJournalImpl.rollingPath(journalPath);
+    Files.move(journalPath, rollingPath);
+
+    try (final var journal = GlobalConfigJournal.openJournal(journalPath)) {
+      assertEquals(9, journal.latest().slot());
+      assertArrayEquals(data, journal.latest().data());
+    }
+    assertFalse(Files.exists(rollingPath));
+
+    // a crash before the full one moved leaves it be, and the fresh one is dropped
+    Files.write(rollingPath, data(64, 1));
+    try (final var journal = GlobalConfigJournal.openJournal(journalPath)) {
+      assertEquals(9, journal.latest().slot());
+    }
+    assertFalse(Files.exists(rollingPath));
+  }
+
+  @Test
+  void aJournalNeedsACheckpointInterval(@TempDir final Path tempDir) {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> GlobalConfigJournal.openJournal(tempDir.resolve("config.journal"), 0)
+    );
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> GlobalConfigJournal.openJournal(tempDir.resolve("config.journal"), 1, 0)
+    );
+  }
+}